@@ -0,0 +1,209 @@
+/*
+    File:
+        AlgorithmsBenchmark.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        JMH benchmarks of the primitives of the algorithms package on synthetic
+        alignments with the specified numbers of strains, lengths and
+        polymorphism densities. Every benchmark processes the complete alignment,
+        thus the scores are comparable between the primitives.
+
+        Usage (jmh-core and jmh-generator-annprocess on the class path):
+            java -cp <classpath> org.openjdk.jmh.Main AlgorithmsBenchmark
+            java -cp <classpath> org.openjdk.jmh.Main AlgorithmsBenchmark -p nStrains=50 -p fDensity=0.1
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+import bio.gene.Dataset;
+import bio.gene.dna.Codon;
+import bio.gene.dna.DefaultCodonTable;
+import bio.gene.dna.ICodonTable;
+import java.util.HashSet;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmsBenchmark
+{
+    @Param({"10", "50"})
+    public int nStrains;
+
+    @Param({"3000"})
+    public int nLength;
+
+    @Param({"0.01", "0.05"})
+    public float fDensity;
+
+    private ICodonTable ct          = null;
+    private char[][] sites          = null;     // Alignment columns.
+    private String[][] codons       = null;     // Codons by codon position.
+    private Codon[][] polymorphic   = null;     // Distinct codons of the polymorphic positions.
+    private SitesBlock[] blocks     = null;
+    private String[] seqs           = null;
+    private SequenceBuffer[] buffers = null;
+    private Dataset dataset         = null;
+
+
+    @Setup
+    public void setup()
+    {
+        ct = new DefaultCodonTable();
+        SyntheticDataset gen = new SyntheticDataset(nStrains, 1, nLength, fDensity, 42);
+        seqs = gen.createAlignment(nStrains, nLength, true);
+        sites = new char[nLength][nStrains];
+        for(int i=0;i<nStrains;i++)
+        {
+            for(int iSite=0;iSite<nLength;iSite++)
+                sites[iSite][i] = seqs[i].charAt(iSite);
+        }
+        codons = new String[nLength/3][nStrains];
+        Vector<Codon[]> tmp = new Vector<Codon[]>();
+        for(int iCodon=0;iCodon<codons.length;iCodon++)
+        {
+            HashSet<Codon> distinct = new HashSet<Codon>();
+            for(int i=0;i<nStrains;i++)
+            {
+                codons[iCodon][i] = seqs[i].substring(3*iCodon, 3*iCodon+3);
+                distinct.add(Codon.getCodon(codons[iCodon][i]));
+            }
+            if(distinct.size()>1)
+                tmp.add(distinct.toArray(new Codon[distinct.size()]));
+        }
+        polymorphic = tmp.toArray(new Codon[tmp.size()][]);
+        // Sites blocks of 100 sites each.
+        blocks = new SitesBlock[(nLength+99)/100];
+        for(int i=0;i<blocks.length;i++)
+        {
+            blocks[i] = new SitesBlock(nStrains, false, false, 0.0f);
+            for(int iSite=100*i;iSite<Math.min(100*(i+1), nLength);iSite++)
+                blocks[i].addSite(new SiteComposition(sites[iSite]));
+        }
+        buffers = new SequenceBuffer[nStrains];
+        for(int i=0;i<nStrains;i++)
+            buffers[i] = new SequenceBuffer(seqs[i]);
+        dataset = gen.createDataset(10);
+    }
+
+    @Benchmark
+    public void siteComposition(Blackhole bh)
+    {
+        for(char[] site:sites)
+        {
+            SiteComposition sc = new SiteComposition(site);
+            bh.consume(sc.getNumberOfPolymorphisms());
+            bh.consume(sc.getNumberOfSingletons());
+            bh.consume(BasicStatistics.calculatePi(sc));
+        }
+    }
+
+    @Benchmark
+    public void codonComposition(Blackhole bh)
+    {
+        for(String[] codon:codons)
+        {
+            CodonComposition cc = new CodonComposition(ct, false);
+            for(String strCodon:codon)
+                cc.addCodon(strCodon);
+            bh.consume(cc.getSitesCounts());
+            bh.consume(cc.getNumberOfPolymorphisms());
+        }
+    }
+
+    @Benchmark
+    public void findBestPath(Blackhole bh)
+    {
+        for(Codon[] c:polymorphic)
+            bh.consume(Path.findBestPath(c, ct, false));
+    }
+
+    @Benchmark
+    public float calculateTajD()
+    {
+        return BasicStatistics.calculateTajD(blocks);
+    }
+
+    @Benchmark
+    public void sitesBlocks(Blackhole bh)
+    {
+        SitesBlock[] tmp = new SitesBlock[blocks.length];
+        for(int i=0;i<tmp.length;i++)
+        {
+            tmp[i] = new SitesBlock(nStrains, false, false, 0.0f);
+            for(int iSite=100*i;iSite<Math.min(100*(i+1), nLength);iSite++)
+                tmp[i].addSite(new SiteComposition(sites[iSite]));
+        }
+        bh.consume(BasicStatistics.calculateTajD(tmp));
+    }
+
+    @Benchmark
+    public SequenceBuffer[] sequenceBufferAppend()
+    {
+        SequenceBuffer[] res = new SequenceBuffer[nStrains];
+        for(int i=0;i<nStrains;i++)
+        {
+            res[i] = new SequenceBuffer();
+            for(int iSite=0;iSite<nLength;iSite++)
+                res[i].appendBase(seqs[i].charAt(iSite));
+        }
+        return res;
+    }
+
+    @Benchmark
+    public int sequenceBufferScan()
+    {
+        int nGaps = 0;
+        for(SequenceBuffer sb:buffers)
+        {
+            for(int iSite=0;iSite<sb.length();iSite++)
+            {
+                if(sb.baseAt(iSite)=='-')
+                    nGaps++;
+            }
+        }
+        return nGaps;
+    }
+
+    @Benchmark
+    public void sequenceBufferSubstring(Blackhole bh)
+    {
+        for(SequenceBuffer sb:buffers)
+        {
+            for(int iSite=0;iSite+300<=sb.length();iSite+=300)
+                bh.consume(sb.substring(iSite, iSite+300));
+        }
+    }
+
+    @Benchmark
+    public Coverage calculateCoverage()
+    {
+        return Coverage.calculateCoverage(dataset);
+    }
+}
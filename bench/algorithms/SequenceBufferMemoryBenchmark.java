@@ -0,0 +1,132 @@
+/*
+    File:
+        SequenceBufferMemoryBenchmark.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Compares the memory demand and the access speed of the unpacked
+        (one base per byte) and the packed (two bases per byte) layouts of the
+        SequenceBuffer on a DPGP-like multiple alignment.
+
+        Usage:
+            java -Xmx2g algorithms.SequenceBufferMemoryBenchmark [strains] [length]
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+import java.util.Random;
+
+
+public class SequenceBufferMemoryBenchmark
+{
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+    public static void main(String[] args)
+    {
+        int nStrains = (args.length>0) ? Integer.parseInt(args[0]) : 40;
+        int nLength  = (args.length>1) ? Integer.parseInt(args[1]) : 2000000;
+        System.out.println(String.format("Alignment: %d strains x %d sites", nStrains, nLength));
+        for(boolean bPacked:new boolean[]{false, true})
+        {
+            long before = usedMemory();
+            SequenceBuffer[] seqs = createAlignment(nStrains, nLength, bPacked);
+            long after = usedMemory();
+            // Sequential scan, as done when the alignment is built.
+            long t = System.nanoTime();
+            int nGaps = 0;
+            for(SequenceBuffer sb:seqs)
+            {
+                for(int i=0;i<sb.length();i++)
+                {
+                    if(sb.baseAt(i)=='-')
+                        nGaps++;
+                }
+            }
+            long tScan = System.nanoTime()-t;
+            // Region extraction, as done for every gene region.
+            Random rnd = new Random(1);
+            t = System.nanoTime();
+            int nExtracted = 0;
+            for(int n=0;n<2000;n++)
+            {
+                int iStart = rnd.nextInt(nLength-5000);
+                SequenceBuffer sb = seqs[n%nStrains].subsequence(iStart, iStart+rnd.nextInt(5000));
+                nExtracted += sb.toString().length();
+            }
+            long tExtract = System.nanoTime()-t;
+            System.out.println(String.format("%-8s heap: %8.1f MB   scan: %6d ms   extract: %6d ms   (%d, %d)",
+                    (bPacked) ? "packed" : "unpacked",
+                    (after-before)/1048576.0, tScan/1000000, tExtract/1000000,
+                    nGaps, nExtracted));
+            seqs = null;
+        }
+    }
+
+    /**
+     *  Creates the synthetic alignment. The first sequence is the reference,
+     *  the other sequences differ from the reference by SNPs and contain
+     *  gaps, missing data and poor quality stretches at frequencies typical
+     *  for the DPGP data.
+     *
+     *  @param nStrains
+     *  @param nLength
+     *  @param bPacked
+     *  @return
+     */
+    private static SequenceBuffer[] createAlignment(int nStrains, int nLength, boolean bPacked)
+    {
+        Random rnd = new Random(42);
+        SequenceBuffer[] seqs = new SequenceBuffer[nStrains];
+        seqs[0] = new SequenceBuffer(nLength, bPacked);
+        for(int i=0;i<nLength;i++)
+            seqs[0].appendBase((rnd.nextInt(200)==0) ? '-' : BASES[rnd.nextInt(4)]);
+        for(int n=1;n<nStrains;n++)
+        {
+            seqs[n] = new SequenceBuffer(nLength, bPacked);
+            int i = 0;
+            while(i<nLength)
+            {
+                int r = rnd.nextInt(10000);
+                if(r<5)             // Missing data.
+                {
+                    int nCount = Math.min(rnd.nextInt(2000)+1, nLength-i);
+                    seqs[n].appendBase('.', nCount);
+                    i += nCount;
+                }
+                else if(r<15)       // Poor quality stretch.
+                {
+                    int nCount = Math.min(rnd.nextInt(50)+1, nLength-i);
+                    seqs[n].appendBase('N', nCount);
+                    i += nCount;
+                }
+                else if(r<115)      // SNP.
+                {
+                    seqs[n].appendBase(BASES[rnd.nextInt(4)]);
+                    i++;
+                }
+                else
+                {
+                    seqs[n].appendBase(seqs[0].baseAt(i));
+                    i++;
+                }
+            }
+        }
+        return seqs;
+    }
+
+    private static long usedMemory()
+    {
+        Runtime rt = Runtime.getRuntime();
+        for(int i=0;i<5;i++)
+            System.gc();
+        return rt.totalMemory()-rt.freeMemory();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+    File:
+        SyntheticDataset.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Generates reproducible synthetic datasets for the benchmarks. Every gene
+        consists of two exons separated by an intron and is sampled in the
+        population 'pop', the outgroup 'out' and the distant outgroup 'dist'.
+
+        The polymorphism density is the probability of a site to be segregating
+        in the population. The derived allele of a segregating site is carried
+        by a random number of population strains. The outgroups differ from the
+        ancestral sequence by the divergence. The exons do not contain any gaps
+        or stop codons, the introns contain short deletions at a tenth of the
+        polymorphism density.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+import bio.gene.Dataset;
+import bio.gene.GeneEntry;
+import bio.gene.GeneRegion;
+import bio.gene.StrainEntry;
+import java.util.Random;
+
+
+public class SyntheticDataset
+{
+    public static final String POPULATION   = "pop";
+    public static final String OUTGROUP     = "out";
+    public static final String DISTANT      = "dist";
+
+    private static final char[] BASES       = {'A', 'C', 'G', 'T'};
+    private static final String[] STOPS     = {"TAA", "TAG", "TGA"};
+
+    private int nPopulation     = 10;       // Number of population strains.
+    private int nOutgroup       = 2;        // Number of outgroup strains.
+    private int nLength         = 1500;     // Length of the coding sequence.
+    private int nIntron         = 500;      // Length of the intron.
+    private float fDensity      = 0.02f;    // Polymorphism density.
+    private float fDivergence   = 0.05f;    // Divergence of the outgroups.
+    private Random rnd          = null;
+
+
+    /**
+     *  Creates the generator.
+     *
+     *  @param nPopulation  number of population strains
+     *  @param nOutgroup    number of outgroup strains
+     *  @param nLength      length of the coding sequence, rounded to codons
+     *  @param fDensity     probability of a site to be polymorphic
+     *  @param lSeed
+     */
+    public SyntheticDataset(int nPopulation, int nOutgroup, int nLength, float fDensity, long lSeed)
+    {
+        this.nPopulation = nPopulation;
+        this.nOutgroup = nOutgroup;
+        this.nLength = Math.max(nLength/3, 2)*3;
+        this.nIntron = Math.max(nLength/3, 20);
+        this.fDensity = fDensity;
+        this.rnd = new Random(lSeed);
+    }
+
+    /**
+     *  Sets the divergence of the outgroups from the ancestral sequence.
+     *
+     *  @param fDivergence
+     */
+    public void setDivergence(float fDivergence)
+    {
+        this.fDivergence = fDivergence;
+    }
+
+    /**
+     *  Sets the length of the intron.
+     *
+     *  @param nIntron
+     */
+    public void setIntronLength(int nIntron)
+    {
+        this.nIntron = Math.max(nIntron, 20);
+    }
+
+    /**
+     *  Creates a dataset with the specified number of genes.
+     *
+     *  @param nGenes
+     *  @return
+     */
+    public Dataset createDataset(int nGenes)
+    {
+        Dataset ds = new Dataset();
+        for(int i=0;i<nGenes;i++)
+            ds.addGene(createGene("CG"+(10000+i), "gene"+i));
+        return ds;
+    }
+
+    /**
+     *  Creates a gene entry. The names of the strains are unique within the
+     *  gene entry.
+     *
+     *  @param strCommonName
+     *  @param strAlias
+     *  @return
+     */
+    public GeneEntry createGene(String strCommonName, String strAlias)
+    {
+        int nExon1 = (nLength/6)*3;
+        String strExon1 = "ATG"+createCoding(nExon1-3);
+        String strExon2 = createCoding(nLength-nExon1);
+        String strIntron = "GT"+createRandom(nIntron-4)+"AG";
+        String[][] pop = new String[][]{ createAlignment(strExon1, nPopulation, false),
+                                         createAlignment(strIntron, nPopulation, true),
+                                         createAlignment(strExon2, nPopulation, false) };
+        GeneEntry ge = new GeneEntry(strCommonName, strAlias);
+        for(int i=0;i<nPopulation;i++)
+            ge.addStrain(createStrain(POPULATION, i, new String[]{pop[0][i], pop[1][i], pop[2][i]}));
+        for(int i=0;i<nOutgroup;i++)
+            ge.addStrain(createStrain(OUTGROUP, i, diverge(strExon1, strIntron, strExon2, fDivergence)));
+        ge.addStrain(createStrain(DISTANT, 0, diverge(strExon1, strIntron, strExon2, 2*fDivergence)));
+        return ge;
+    }
+
+    /**
+     *  Creates the alignment of nStrains sequences of the specified length
+     *  with the polymorphism density of the generator.
+     *
+     *  @param nStrains
+     *  @param nSites
+     *  @param bCoding  if true, the sequences do not contain stop codons
+     *  @return
+     */
+    public String[] createAlignment(int nStrains, int nSites, boolean bCoding)
+    {
+        String strSeq = (bCoding) ? createCoding(nSites) : createRandom(nSites);
+        return createAlignment(strSeq, nStrains, false);
+    }
+
+    private StrainEntry createStrain(String strPopulation, int iStrain, String[] seqs)
+    {
+        StrainEntry se = new StrainEntry("Drosophila melanogaster", strPopulation+iStrain);
+        se.setChromosome("2L");
+        se.addPopulations(strPopulation);
+        String[] types = {GeneRegion.EXON, GeneRegion.INTRON, GeneRegion.EXON};
+        int iPos = 1;
+        for(int i=0;i<seqs.length;i++)
+        {
+            GeneRegion gr = new GeneRegion(types[i]);
+            gr.setSequence(seqs[i]);
+            gr.setStart(iPos);
+            gr.setEnd(iPos+seqs[i].length()-1);
+            iPos += seqs[i].length();
+            se.addRegion(gr);
+        }
+        return se;
+    }
+
+    /**
+     *  Creates the sequences of the population from the ancestral sequence.
+     *  In coding sequences only the substitutions, which do not create stop
+     *  codons, are accepted.
+     */
+    private String[] createAlignment(String strAncestral, int nStrains, boolean bGaps)
+    {
+        char[][] seqs = new char[nStrains][];
+        for(int i=0;i<nStrains;i++)
+            seqs[i] = strAncestral.toCharArray();
+        boolean bCoding = !bGaps;
+        for(int iSite=0;iSite<strAncestral.length();iSite++)
+        {
+            float r = rnd.nextFloat();
+            if(bGaps && r<fDensity/10 && iSite>2 && iSite<strAncestral.length()-10)
+            {
+                // Short deletion.
+                int nDel = rnd.nextInt(6)+1;
+                for(int i=0;i<nStrains;i++)
+                {
+                    if(rnd.nextBoolean())
+                        continue;
+                    for(int n=0;n<nDel;n++)
+                        seqs[i][iSite+n] = '-';
+                }
+                iSite += nDel;
+            }
+            else if(r<fDensity)
+            {
+                char derived = mutate(strAncestral.charAt(iSite));
+                int nDerived = rnd.nextInt(Math.max(nStrains-1, 1))+1;
+                for(int i=0;i<nDerived;i++)
+                {
+                    int iStrain = rnd.nextInt(nStrains);
+                    if(!bCoding || !createsStop(seqs[iStrain], iSite, derived))
+                        seqs[iStrain][iSite] = derived;
+                }
+            }
+        }
+        String[] res = new String[nStrains];
+        for(int i=0;i<nStrains;i++)
+            res[i] = new String(seqs[i]);
+        return res;
+    }
+
+    private String[] diverge(String strExon1, String strIntron, String strExon2, float fDiv)
+    {
+        return new String[]{ diverge(strExon1, fDiv, true), diverge(strIntron, fDiv, false), diverge(strExon2, fDiv, true) };
+    }
+
+    private String diverge(String strSeq, float fDiv, boolean bCoding)
+    {
+        char[] seq = strSeq.toCharArray();
+        for(int i=(bCoding) ? 3 : 2;i<seq.length-2;i++)
+        {
+            if(rnd.nextFloat()>=fDiv)
+                continue;
+            char derived = mutate(seq[i]);
+            if(!bCoding || !createsStop(seq, i, derived))
+                seq[i] = derived;
+        }
+        return new String(seq);
+    }
+
+    private boolean createsStop(char[] seq, int iSite, char base)
+    {
+        int iCodon = iSite-iSite%3;
+        if(iCodon+3>seq.length)
+            return false;
+        char[] codon = {seq[iCodon], seq[iCodon+1], seq[iCodon+2]};
+        codon[iSite-iCodon] = base;
+        return isStop(new String(codon));
+    }
+
+    private char mutate(char base)
+    {
+        char derived = base;
+        while(derived==base)
+            derived = BASES[rnd.nextInt(4)];
+        return derived;
+    }
+
+    private String createRandom(int nSites)
+    {
+        StringBuilder sb = new StringBuilder(nSites);
+        for(int i=0;i<nSites;i++)
+            sb.append(BASES[rnd.nextInt(4)]);
+        return sb.toString();
+    }
+
+    private String createCoding(int nSites)
+    {
+        StringBuilder sb = new StringBuilder(nSites+3);
+        while(sb.length()<nSites)
+        {
+            String strCodon = createRandom(3);
+            if(!isStop(strCodon))
+                sb.append(strCodon);
+        }
+        sb.setLength(nSites);
+        return sb.toString();
+    }
+
+    private static boolean isStop(String strCodon)
+    {
+        for(String s:STOPS)
+        {
+            if(s.equals(strCodon))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+    File:
+        GotohEngineBenchmark.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Compares the running time and the peak heap demand of the full matrix
+        Gotoh free-shift alignment and of the linear space engine (with and
+        without band) on pairs of related sequences of increasing length. The
+        full matrices are only used up to the specified length, since they need
+        20 bytes per cell.
+
+        Usage:
+            java -Xmx2g algorithms.alignment.GotohEngineBenchmark [maxfull] [maxlinear] [band]
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms.alignment;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class GotohEngineBenchmark
+{
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+    public static void main(String[] args)
+    {
+        int nMaxFull   = (args.length>0) ? Integer.parseInt(args[0]) : 4000;
+        int nMaxLinear = (args.length>1) ? Integer.parseInt(args[1]) : 50000;
+        int nBand      = (args.length>2) ? Integer.parseInt(args[2]) : 200;
+        System.out.println("length    engine            time [ms]   peak heap [MB]   score   same");
+        for(int nLength=1000;nLength<=nMaxLinear;nLength*=2)
+        {
+            String[] seqs = createSequences(nLength);
+            TracebackPath full = null;
+            if(nLength<=nMaxFull)
+            {
+                resetPeak();
+                long t = System.nanoTime();
+                full = GotohPairwiseFreeshiftAligner.alignFull(seqs[0], seqs[1], 5.0f, -4.0f, -10.0f, -0.5f);
+                print(nLength, "full", System.nanoTime()-t, full, null);
+            }
+            for(int band:new int[]{0, nBand})
+            {
+                LinearGotohEngine engine = new LinearGotohEngine(5.0f, -4.0f, -10.0f, -0.5f);
+                engine.setBandWidth(band);
+                resetPeak();
+                long t = System.nanoTime();
+                TracebackPath linear = engine.align(seqs[0], seqs[1]);
+                print(nLength, (band==0) ? "linear" : "linear, band "+band, System.nanoTime()-t, linear, full);
+            }
+        }
+    }
+
+    private static void print(int nLength, String strEngine, long t, TracebackPath path, TracebackPath full)
+    {
+        String strSame = "-";
+        if(full!=null)
+        {
+            boolean bSame = full.fScore==path.fScore && full.start.equals(path.start) && full.nMoves==path.nMoves &&
+                            Arrays.equals(Arrays.copyOf(full.moves, full.nMoves), Arrays.copyOf(path.moves, path.nMoves));
+            strSame = (bSame) ? "yes" : "no";
+        }
+        System.out.println(String.format("%-9d %-17s %9d   %14.1f   %7.1f   %s",
+                nLength, strEngine, t/1000000, peakHeap()/1048576.0, path.fScore, strSame));
+    }
+
+    /**
+     *  Creates two related sequences. The second sequence differs from the
+     *  first one by SNPs and short insertions and deletions.
+     *
+     *  @param nLength
+     *  @return
+     */
+    private static String[] createSequences(int nLength)
+    {
+        Random rnd = new Random(42);
+        StringBuilder s1 = new StringBuilder(nLength);
+        for(int i=0;i<nLength;i++)
+            s1.append(BASES[rnd.nextInt(4)]);
+        StringBuilder s2 = new StringBuilder(nLength);
+        int i = 0;
+        while(i<nLength)
+        {
+            int r = rnd.nextInt(1000);
+            if(r<2)                 // Deletion.
+                i += rnd.nextInt(10)+1;
+            else if(r<4)            // Insertion.
+            {
+                for(int n=rnd.nextInt(10);n>=0;n--)
+                    s2.append(BASES[rnd.nextInt(4)]);
+            }
+            else if(r<30)           // SNP.
+            {
+                s2.append(BASES[rnd.nextInt(4)]);
+                i++;
+            }
+            else
+            {
+                s2.append(s1.charAt(i));
+                i++;
+            }
+        }
+        return new String[]{s1.toString(), s2.toString()};
+    }
+
+    private static void resetPeak()
+    {
+        System.gc();
+        for(MemoryPoolMXBean pool:ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if(pool.getType()==MemoryType.HEAP)
+                pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeap()
+    {
+        long n = 0;
+        for(MemoryPoolMXBean pool:ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if(pool.getType()==MemoryType.HEAP)
+                n += pool.getPeakUsage().getUsed();
+        }
+        return n;
+    }
+}
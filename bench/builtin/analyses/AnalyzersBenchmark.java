@@ -0,0 +1,162 @@
+/*
+    File:
+        AnalyzersBenchmark.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        JMH benchmark of the end-to-end run of every built-in analyzer on a
+        synthetic dataset. The results are written into a temporary file and
+        are not displayed. The result cache is disabled, thus every invocation
+        analyzes all genes.
+
+        Usage (jmh-core and jmh-generator-annprocess on the class path):
+            java -cp <classpath> org.openjdk.jmh.Main AnalyzersBenchmark
+            java -cp <classpath> org.openjdk.jmh.Main AnalyzersBenchmark -p strAnalysis=daf_cds -p nThreads=4
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package builtin.analyses;
+
+import algorithms.SyntheticDataset;
+import bio.gene.Dataset;
+import bio.gene.dna.DefaultCodonTable;
+import gui.IWaitDialog;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import kernel.ErrorCode;
+import kernel.InitData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import plugin.classes.ADatasetAnalyzer;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzersBenchmark
+{
+    @Param({"synnonsyn", "ffd", "introns", "indel", "daf_intron", "daf_cds",
+            "subst_intron", "subst_cds", "composition_intron", "composition_cds"})
+    public String strAnalysis;
+
+    @Param({"100"})
+    public int nGenes;
+
+    @Param({"20"})
+    public int nStrains;
+
+    @Param({"1500"})
+    public int nLength;
+
+    @Param({"0.02"})
+    public float fDensity;
+
+    @Param({"1"})
+    public int nThreads;
+
+    private Dataset dataset         = null;
+    private ADatasetAnalyzer analyzer = null;
+    private String strParams        = null;
+    private File output             = null;
+
+
+    @Setup
+    public void setup() throws IOException
+    {
+        dataset = new SyntheticDataset(nStrains, 3, nLength, fDensity, 42).createDataset(nGenes);
+        output = File.createTempFile("analysis", ".txt");
+        String strOutput = " output='"+output.getAbsolutePath()+"'";
+        if(strAnalysis.equals("synnonsyn"))
+        {
+            analyzer = new builtin.analyses.synnonsyn.PluginMain();
+            strParams = "pop='pop' out='out' strlimit='' si_freq='' jc_pi='F' jc_t='F' jc_k='F' use_term='F' excl_term='T' exclAll='F'";
+        }
+        else if(strAnalysis.equals("ffd"))
+        {
+            analyzer = new builtin.analyses.ffd.PluginMain();
+            strParams = "pop='pop' out='out' nonffd='F' nonsynffd='F' gap='F' strlimit='' si_freq='' jc_pi='F' jc_t='F' jc_k='F' exclAll='F'";
+        }
+        else if(strAnalysis.equals("introns"))
+        {
+            analyzer = new builtin.analyses.introns.PluginMain();
+            strParams = "pop='pop' out='out' maxlen='' minlen='' nogtag='F' combine='F' range='' strlimit='' si_freq='' jc_pi='F' jc_t='F' jc_k='F' exclAll='F' lenrange='F'";
+        }
+        else if(strAnalysis.equals("indel"))
+        {
+            analyzer = new builtin.analyses.indel.PluginMain();
+            strParams = "pop='pop' out='out' dist='dist' regtype='Intron' maxlen='100000' minlen='0' combine='F' strlimit='' lenragnge='F'";
+        }
+        else if(strAnalysis.startsWith("daf_"))
+        {
+            analyzer = new builtin.analyses.daf.PluginMain();
+            strParams = "pop='pop' out='out' type='"+getRegionType()+"' maxlen='' minlen='' range='' any='F' exclnonffd='F' strlimit='' combine='F' freqs='T' constsize='F' lenrange='F'";
+        }
+        else if(strAnalysis.startsWith("subst_"))
+        {
+            analyzer = new builtin.analyses.subst.PluginMain();
+            strParams = "pop='pop' out='out' type='"+getRegionType()+"' maxlen='100000' minlen='0' range='' any='F' exclnonffd='F' nogtag='F' strlimit='' useterm='F' exclterm='T' lenragnge='F'";
+        }
+        else if(strAnalysis.startsWith("composition_"))
+        {
+            analyzer = new builtin.analyses.composition.PluginMain();
+            strParams = "pop='pop' type='"+getRegionType()+"' maxlen='100000' minlen='0' range='' any='F' exclnonffd='F' nogtag='F' strlimit='' constsize='F' useterm='F' exclterm='T' lenrange='F'";
+        }
+        else
+            throw new IllegalArgumentException("Unknown analysis: "+strAnalysis);
+        strParams += strOutput;
+        InitData id = new InitData(null);
+        id.ct = new DefaultCodonTable();
+        id.locale = Locale.US;
+        id.threads = nThreads;
+        id.wd = new IWaitDialog()
+        {
+            public void show(TYPE type) {}
+            public void setText(String strText, String strTitle) {}
+            public void close() {}
+        };
+        if(analyzer.Initialize(id)!=ErrorCode.Ok)
+            throw new IllegalStateException("The analyzer cannot be initialized");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        output.delete();
+    }
+
+    @Benchmark
+    public ErrorCode analyze()
+    {
+        ErrorCode ec = analyzer.AnalyzeDataset(dataset, strParams);
+        if(ec!=ErrorCode.Ok)
+            throw new IllegalStateException(strAnalysis+": "+ec);
+        return ec;
+    }
+
+    private String getRegionType()
+    {
+        return (strAnalysis.endsWith("_cds")) ? "CDS" : "Intron";
+    }
+}
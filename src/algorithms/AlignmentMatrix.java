@@ -0,0 +1,178 @@
+/*
+    File:
+        AlignmentMatrix.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Column-major representation of a multiple alignment. The bases are
+        stored as small integer codes in a single byte array, so that all bases
+        of one site are adjacent in memory and the per-site base counts can be
+        obtained without allocating objects or scanning separate strings.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+
+public class AlignmentMatrix
+{
+    // Base codes. The codes of the supported bases correspond to the indexes
+    // used by SiteComposition: A, C, G, T, -, N, X.
+    public static final byte BASE_A     = 0;
+    public static final byte BASE_C     = 1;
+    public static final byte BASE_G     = 2;
+    public static final byte BASE_T     = 3;
+    public static final byte BASE_GAP   = 4;
+    public static final byte BASE_N     = 5;
+    public static final byte BASE_X     = 6;
+    public static final byte BASE_OTHER = 7;
+
+    private static final byte[] CODES = new byte[128];
+
+    static
+    {
+        java.util.Arrays.fill(CODES, BASE_OTHER);
+        String strBases = "ACGT-NX";
+        for(int i=0;i<strBases.length();i++)
+        {
+            char c = strBases.charAt(i);
+            CODES[c] = (byte)i;
+            CODES[Character.toLowerCase(c)] = (byte)i;
+        }
+    }
+
+    private byte[] data = null;     // data[col*nRows+row]
+    private int nRows   = 0;
+    private int nCols   = 0;
+
+
+    /**
+     *  Creates the matrix from the aligned sequences. The number of columns is
+     *  defined by the length of the first sequence. Shorter sequences are
+     *  padded with unsupported bases, longer sequences are truncated.
+     *
+     *  @param seqs
+     */
+    public AlignmentMatrix(String[] seqs)
+    {
+        nRows = seqs.length;
+        nCols = (nRows>0) ? seqs[0].length() : 0;
+        data = new byte[nRows*nCols];
+        for(int row=0;row<nRows;row++)
+        {
+            String s = seqs[row];
+            int l = Math.min(s.length(), nCols);
+            int i = row;
+            for(int col=0;col<l;col++,i+=nRows)
+                data[i] = getCode(s.charAt(col));
+            for(int col=l;col<nCols;col++,i+=nRows)
+                data[i] = BASE_OTHER;
+        }
+    }
+
+    /**
+     *  Returns the code of the specified base.
+     *
+     *  @param base
+     *  @return
+     */
+    public static byte getCode(char base)
+    {
+        return (base<128) ? CODES[base] : BASE_OTHER;
+    }
+
+    /**
+     *  Returns the number of sequences in the matrix.
+     *
+     *  @return
+     */
+    public int getRowsCount()
+    {
+        return nRows;
+    }
+
+    /**
+     *  Returns the number of sites in the matrix.
+     *
+     *  @return
+     */
+    public int getColumnsCount()
+    {
+        return nCols;
+    }
+
+    /**
+     *  Returns the code of the base in the specified sequence at the specified site.
+     *
+     *  @param row
+     *  @param col
+     *  @return
+     */
+    public byte getCode(int row, int col)
+    {
+        return data[col*nRows+row];
+    }
+
+    /**
+     *  Returns true if any sequence has a gap at the specified site.
+     *
+     *  @param col
+     *  @return
+     */
+    public boolean hasGap(int col)
+    {
+        int iEnd = (col+1)*nRows;
+        for(int i=col*nRows;i<iEnd;i++)
+        {
+            if(data[i]==BASE_GAP)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     *  Counts the bases at the specified site. The array must have at least
+     *  7 elements, which receive the counts of A, C, G, T, -, N and X.
+     *  Unsupported bases are not counted.
+     *
+     *  @param col
+     *  @param counts
+     *  @return counts
+     */
+    public int[] countBases(int col, int[] counts)
+    {
+        for(int i=0;i<BASE_OTHER;i++)
+            counts[i] = 0;
+        int iEnd = (col+1)*nRows;
+        for(int i=col*nRows;i<iEnd;i++)
+        {
+            byte b = data[i];
+            if(b!=BASE_OTHER)
+                counts[b]++;
+        }
+        return counts;
+    }
+
+    /**
+     *  Fills the site composition with the bases at the specified site and
+     *  returns it. If sc is null, a new site composition is created.
+     *
+     *  @param col
+     *  @param sc
+     *  @return
+     */
+    public SiteComposition getSiteComposition(int col, SiteComposition sc)
+    {
+        if(sc==null)
+            sc = new SiteComposition();
+        countBases(col, sc.getCounts());
+        return sc;
+    }
+}
@@ -3,7 +3,7 @@
         BasicStatistics.java
  *   
     Revision:
-        1.1.0.1
+        1.1.2.0
  * 
     Description:
         Performs some very basic sequence analyses.
@@ -18,6 +18,7 @@
 package algorithms;
 
 import bio.gene.dna.Codon;
+import bio.gene.dna.CodonLookup;
 import bio.gene.dna.ICodonTable;
 
 
@@ -318,33 +319,30 @@ public class BasicStatistics
         Codon[] codons = cc.getValidCodons();
         if(codons.length<2)
             return new float[]{0.0f, 0.0f};
-        int ns = 0;         // Syn. substitutions
-        int nn = 0;         // Nonsyn. substitutions
+        int[] subst = {0, 0};   // Syn. and nonsyn. substitutions
         float syn = 0.0f;   // Number of syn. sites
         float non = 0.0f;   // Number of nonsyn. sites
+        PathCache pc = PathCache.getInstance(ct);
+        CodonLookup lookup = ct.getLookup();
         // Generate the pairs and estimate the number of differences.
         for(int i=0;i<codons.length-1;i++)
         {
             Codon c1 = codons[i];
-            float[] nos = c1.calculateNumberOfSites(ct, bTerm);
-            syn += nos[0];
-            non += nos[1];
+            syn += lookup.getSynonymousSites(c1.getIndex(), bTerm);
+            non += lookup.getNonsynonymousSites(c1.getIndex(), bTerm);
             for(int j=i+1;j<codons.length;j++)
             {                
                 Codon c2 = codons[j];                
                 if(c1!=c2)
-                {
-                    Path bp = Path.findBestPath(new Codon[]{c1, c2}, ct, bTerm);
-                    int[] tmp = (bp!=null) ? bp.getPolymorphismsCount() : new int[]{0,0};
-                    ns += tmp[0];
-                    nn += tmp[1];
-                }
+                    pc.addSubstitutions(c1, c2, bTerm, subst);
             }
         }
+        int ns = subst[0];
+        int nn = subst[1];
         // Estimate the number of syn. and nonsyn. sites of the last codon.
-        float[] nos = codons[codons.length-1].calculateNumberOfSites(ct, bTerm);
-        syn += nos[0];
-        non += nos[1];
+        int iLast = codons[codons.length-1].getIndex();
+        syn += lookup.getSynonymousSites(iLast, bTerm);
+        non += lookup.getNonsynonymousSites(iLast, bTerm);
         float[] res = new float[2];
         int nPairs = codons.length*(codons.length-1)/2;
         res[0] = (syn>0.0f) ? ((float)ns/(float)nPairs)/(syn/(float)codons.length) : 0.0f;
@@ -406,36 +404,33 @@ public class BasicStatistics
         float[] res = {0.0f, 0.0f};
         if(pop.length<1 || out.length<1)
             return res;
-        int ns = 0;          // Syn. substitutions
-        int nn = 0;          // Nonsyn. substitutions
+        int[] subst = {0, 0};// Syn. and nonsyn. substitutions
         float syn = 0.0f;    // Number of syn. sites
         float non = 0.0f;    // Number of nonsyn. sites
         boolean flag = true; // Specifies whether or not to estimate the number
                              // of syn. and nonsyn. sites.
+        PathCache pc = PathCache.getInstance(ct);
+        CodonLookup lookup = ct.getLookup();
         for(Codon c1:pop)
         {
-            float[] st = c1.calculateNumberOfSites(ct, bTerm);
-            syn += st[0];
-            non += st[1];
+            syn += lookup.getSynonymousSites(c1.getIndex(), bTerm);
+            non += lookup.getNonsynonymousSites(c1.getIndex(), bTerm);
             for(Codon c2:out)
             {
                 if(flag)
                 {
-                    float[] st2 = c2.calculateNumberOfSites(ct, bTerm);
-                    syn += st2[0];
-                    non += st2[1];
-                }
-                // Find the best path between the two codons if they are not equal.
-                if(!c1.getSequence().equalsIgnoreCase(c2.getSequence()))
-                {
-                    Path bp = Path.findBestPath(new Codon[]{c1, c2}, ct, bTerm);
-                    int[] tmp = (bp!=null) ? bp.getPolymorphismsCount() : new int[]{0,0};
-                    ns += tmp[0];
-                    nn += tmp[1];                    
+                    syn += lookup.getSynonymousSites(c2.getIndex(), bTerm);
+                    non += lookup.getNonsynonymousSites(c2.getIndex(), bTerm);
                 }
+                // Find the best path between the two codons if they are not
+                // equal. The codons are shared, thus equal codons are identical.
+                if(c1!=c2)
+                    pc.addSubstitutions(c1, c2, bTerm, subst);
             }
             flag = false;
         }
+        int ns = subst[0];
+        int nn = subst[1];
         int nPairs = pop.length*out.length;
         float n = pop.length+out.length;
         res[0] = (syn>0.0f) ? ((float)ns/(float)nPairs)/(syn/n) : 0.0f;
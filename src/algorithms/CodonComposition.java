@@ -3,7 +3,7 @@
         CodonComposition.java
  *
     Revision:
-        1.3.0.2
+        1.3.2.0
  *
     Description:
         Represents the composition of a codon in a multiple alignment.
@@ -18,6 +18,7 @@
 package algorithms;
 
 import bio.gene.dna.Codon;
+import bio.gene.dna.CodonLookup;
 import bio.gene.dna.ICodonTable;
 import java.util.Vector;
 
@@ -71,34 +72,64 @@ public class CodonComposition
      */
     public boolean addCodon(String strSequence)
     {
-        if( (strSequence==null) || (!strSequence.toUpperCase().matches("[ACGTNX-]{3}")) )
+        if( (strSequence==null) || (strSequence.length()!=3) )
+            return false;
+        return addCodon(strSequence.charAt(0), strSequence.charAt(1), strSequence.charAt(2));
+    }
+
+    /**
+     *  Adds a single codon consisting of the specified bases. If one of the
+     *  bases is not A,C,G,T,-,N,X, the method returns false and the codon is
+     *  not added.
+     *
+     *  @param b1
+     *  @param b2
+     *  @param b3
+     *  @return
+     */
+    public boolean addCodon(char b1, char b2, char b3)
+    {
+        if(!isValidBase(b1) || !isValidBase(b2) || !isValidBase(b3))
             return false;
         nTotal++;
-        for(int i=0;i<3;i++)
-            comp[i].addBase(strSequence.charAt(i));
+        comp[0].addBase(b1);
+        comp[1].addBase(b2);
+        comp[2].addBase(b3);
         // If the codon is a valid codon, add it to the path.
-        Codon c = Codon.getCodon(strSequence);
-        if(c!=null)
+        int iCodon = CodonLookup.encode(b1, b2, b3);
+        if(iCodon!=CodonLookup.INVALID)
         {
             path = null;
-            codons.add(c);
+            codons.add(Codon.getCodon(iCodon));
         }
         else
         {
             // Otherwise update the number of gaps, N and X.
-            if(strSequence.indexOf('-')>-1)
+            if(b1=='-' || b2=='-' || b3=='-')
                 nGaps++;
             else
             {
-                if(strSequence.indexOf('N')>-1)
+                if(b1=='N' || b2=='N' || b3=='N')
                     nN++;
-                if(strSequence.indexOf('X')>-1)
+                if(b1=='X' || b2=='X' || b3=='X')
                     nX++;
             }
         }
         return true;
     }
 
+    private static boolean isValidBase(char base)
+    {
+        switch(Character.toUpperCase(base))
+        {
+            case 'A': case 'C': case 'G': case 'T':
+            case 'N': case 'X': case '-':
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      *  Returns the composition of the specified site, or null, if the site
      *  index is invalid.
@@ -182,11 +213,13 @@ public class CodonComposition
     public float[] getSitesCounts()
     {
         float[] res = {0.0f, 0.0f};
-        for(Codon c:codons)
+        CodonLookup lookup = ct.getLookup();
+        int nCodons = codons.size();
+        for(int i=0;i<nCodons;i++)
         {
-            float[] tmp =  c.calculateNumberOfSites(ct, bUseTerminal);
-            res[0] += tmp[0];
-            res[1] += tmp[1];
+            int iCodon = codons.get(i).getIndex();
+            res[0] += lookup.getSynonymousSites(iCodon, bUseTerminal);
+            res[1] += lookup.getNonsynonymousSites(iCodon, bUseTerminal);
         }
         res[0] /= codons.size();
         res[1] /= codons.size();
@@ -223,42 +256,37 @@ public class CodonComposition
     public float[] getBaseFrequencies(ICodonTable ct, boolean bUseTerminal)
     {
         float[] res = new float[10];
-        char[] bases = {'A', 'C', 'G', 'T'};
+        CodonLookup lookup = ct.getLookup();
         for(Codon c:codons)
         {
-            float[] sites_tmp = c.calculateNumberOfSites(ct, bUseTerminal);
-            res[0] += sites_tmp[0];
-            res[5] += sites_tmp[1];
-            String strSeq = c.getSequence();
+            int iCodon = c.getIndex();
+            res[0] += lookup.getSynonymousSites(iCodon, bUseTerminal);
+            res[5] += lookup.getNonsynonymousSites(iCodon, bUseTerminal);
             for(int i=0;i<3;i++)
             {
                 int ns = 0;
                 int nt = 0;
-                char ref = strSeq.charAt(i);
-                for(char b:bases)
+                // The base at the site i occupies two bits of the codon index,
+                // in the order A, C, G, T.
+                int iShift = 2*(2-i);
+                int ref = (iCodon>>iShift)&3;
+                for(int b=0;b<4;b++)
                 {
                     if(b!=ref)
                     {
-                        char[] tmp = strSeq.toCharArray();
-                        tmp[i] = b;
-                        String strCodon = new String(tmp);
-                        if(!bUseTerminal && ct.isTerminal(strCodon))
+                        int iMutant = (iCodon&~(3<<iShift))|(b<<iShift);
+                        if(!bUseTerminal && lookup.isTerminal(iMutant))
                             continue;
                         nt++;
-                        if(ct.areSynonymous(strSeq, strCodon))
+                        if(lookup.areSynonymous(iCodon, iMutant))
                             ns++;
                     }
                 }
                 // Calculate the frequencies.
                 float fs = (float)ns/(float)nt;
                 float fn = 1.0f-fs;
-                switch(ref)
-                {
-                    case 'A': res[1]+= fs; res[6]+=fn; break;
-                    case 'C': res[2]+= fs; res[7]+=fn; break;
-                    case 'G': res[3]+= fs; res[8]+=fn; break;
-                    case 'T': res[4]+= fs; res[9]+=fn; break;
-                }
+                res[1+ref] += fs;
+                res[6+ref] += fn;
             }
         }
         float size = codons.size();
@@ -75,10 +75,12 @@ public class Coverage
         String[] seqs = new String[nStrains];
         for(int i=0;i<nStrains;i++)
             seqs[i] = ge.getStrainEntry(i).getCompleteSequence();
+        AlignmentMatrix am = new AlignmentMatrix(seqs);
+        int[] bc = new int[7];
         for(int i=0;i<l;i++)
         {
-            SiteComposition sc = calculateSiteComposition(seqs, i);
-            int nCount = sc.getValidBasesCount()+sc.getGapsCount();
+            am.countBases(i, bc);
+            int nCount = bc[0]+bc[1]+bc[2]+bc[3]+bc[4];
             float f = (float)nCount/(float)nStrains;
             if(f>=0.9f)
                 cov.counts[9]++;
@@ -103,12 +105,4 @@ public class Coverage
         }
         return cov;
     }
-    
-    private static SiteComposition calculateSiteComposition(String[] seqs, int pos)
-    {
-        SiteComposition sc = new SiteComposition();
-        for(int n=0;n<seqs.length;n++)
-            sc.addBase(seqs[n].charAt(pos));
-        return sc;
-    }
 }
@@ -31,6 +31,7 @@ public class Path
 
     
     private ICodonTable ct      = null;
+    private PathCache pc        = null;
 
     private Vector<Codon> path  = null;
     // Flags, specifying whether the codon is observed.
@@ -42,6 +43,16 @@ public class Path
         path = new Vector<Codon>();
         flg  = new Vector<Boolean>();
         this.ct = ct;
+        if(ct!=null)
+            pc = PathCache.getInstance(ct);
+    }
+
+    private Path(ICodonTable ct, PathCache pc)
+    {
+        path = new Vector<Codon>();
+        flg  = new Vector<Boolean>();
+        this.ct = ct;
+        this.pc = pc;
     }
 
     /**
@@ -146,9 +157,7 @@ public class Path
         int nSyn = 0;
         for(int i=1;i<path.size();i++)
         {
-            Codon prev = path.get(i-1);
-            Codon cur  = path.get(i);
-            if(ct.areSynonymous(prev.getSequence(), cur.getSequence()))
+            if(pc.areSynonymous(path.get(i-1), path.get(i)))
                 nSyn++;
         }
         // There are one less substitutions in the path than there are codons.
@@ -179,7 +188,7 @@ public class Path
         {
             String prev = path.get(i-1).getSequence();
             String cur  = path.get(i).getSequence();
-            offset = (ct.areSynonymous(prev, cur)) ? 0 : 2;
+            offset = (pc.areSynonymous(path.get(i-1), path.get(i))) ? 0 : 2;
             // Find the difference between the codons.
             SEARCHLOOP:for(int k=0;k<3;k++)
             {
@@ -227,13 +236,13 @@ public class Path
         if(idx==0)
         {
             Codon next = path.get(idx+1);
-            return ct.areSynonymous(c.getSequence(), next.getSequence());
+            return pc.areSynonymous(c, next);
         }
         // The codon is the last codon in the path.
         else if(idx==path.size()-1)
         {
             Codon prev = path.get(idx-1);
-            return ct.areSynonymous(c.getSequence(), prev.getSequence());
+            return pc.areSynonymous(c, prev);
         }
         // The codon is somewhere in-between.
         else
@@ -241,14 +250,14 @@ public class Path
             // If the previous codon is syn. there is no need to check
             // the next one.
             Codon prev = path.get(idx-1);
-            if(ct.areSynonymous(c.getSequence(), prev.getSequence()))
+            if(pc.areSynonymous(c, prev))
                 return true;
             else
             {
                 // If the previous codon is nonsyn. check whether the next
                 // codon is syn.
                 Codon next = path.get(idx+1);
-                return ct.areSynonymous(c.getSequence(), next.getSequence());
+                return pc.areSynonymous(c, next);
             }
         }
     }
@@ -315,7 +324,7 @@ public class Path
             String c2 = path.get(last+1).getSequence();
             otherbase = c2.charAt(iSite);
             type = BasicStatistics.getSubstitutionType(c1.charAt(iSite), otherbase);
-            if(ct.areSynonymous(c1, c2))
+            if(pc.areSynonymous(path.get(last), path.get(last+1)))
             {
                 int result = MASK_SYNONYMOUS;                
                 if(type==1) // Transition.
@@ -332,7 +341,7 @@ public class Path
             String c2 = path.get(last+1).getSequence();
             otherbase = c2.charAt(iSite);
             type = BasicStatistics.getSubstitutionType(c1.charAt(iSite), otherbase);
-            if(ct.areSynonymous(c1, c2))
+            if(pc.areSynonymous(path.get(last), path.get(last+1)))
             {
                 int result = MASK_SYNONYMOUS;
                 if(type==1) // Transition.
@@ -350,7 +359,7 @@ public class Path
             String other = path.get(first-1).getSequence();
             otherbase = other.charAt(iSite);
             type = BasicStatistics.getSubstitutionType(f.charAt(iSite), otherbase);
-            if(ct.areSynonymous(f, other))
+            if(pc.areSynonymous(path.get(first), path.get(first-1)))
             {
                 int result = MASK_SYNONYMOUS;
                 if(type==1) // Transition.
@@ -361,7 +370,7 @@ public class Path
             other = path.get(last+1).getSequence();
             otherbase = other.charAt(iSite);
             type = BasicStatistics.getSubstitutionType(l.charAt(iSite), otherbase);
-            if(ct.areSynonymous(l, other))
+            if(pc.areSynonymous(path.get(last), path.get(last+1)))
             {
                 int result = MASK_SYNONYMOUS;
                 if(type==1) // Transition.
@@ -387,7 +396,7 @@ public class Path
     {
         for(Codon c:path)
         {
-            if(ct.isTerminal(c.getSequence()))
+            if(pc.isTerminal(c))
                 return true;
         }
         return false;
@@ -419,7 +428,7 @@ public class Path
     @Override
     public Path clone()
     {
-        Path p = new Path(ct);
+        Path p = new Path(ct, pc);
         p.flg = (Vector<Boolean>)flg.clone();
         p.path = (Vector<Codon>)path.clone();
         return p;
@@ -457,10 +466,11 @@ public class Path
         // In the number of steps exceeds 64, then the path cannot be found for
         // some reason.
         Vector<Path> paths = new Vector<Path>();
+        PathCache pc = PathCache.getInstance(ct);
         while(paths.size()==0 && nSteps<65)
         {
             for(Codon c:codons)
-                generatePaths(c, new Path(ct), paths, codons, nSteps);
+                generatePaths(c, new Path(ct, pc), paths, codons, nSteps);
             nSteps++;
         }
         return paths.toArray(new Path[1]);
@@ -470,6 +480,8 @@ public class Path
      *  Finds the best evolutionary path which can explain the observed
      *  codons pattern. If two or more paths have the same number
      *  of nonsynonymous substitutions one of them is selected at random.
+     *  The found paths are cached per codon table, so that every codon
+     *  pattern is only evaluated once.
      *
      *  Remarks:
      *  The method returns null if one of the following is true:
@@ -485,20 +497,27 @@ public class Path
     {
         if(codons==null || codons.length==0 || ct==null)
             return null;
+        PathCache pc = PathCache.getInstance(ct);
+        Path bp = pc.getBestPath(codons, bUseTerminal);
+        if(bp!=null)
+            return bp;
         Path[] paths = generateAllPaths(codons, ct);
-        Path bp = null;
         int i = Integer.MAX_VALUE;
         for(Path p:paths)
         {
-            if(!bUseTerminal && p.containsTerminalCodons())
+            if(p==null || (!bUseTerminal && p.containsTerminalCodons()))
                 continue;
-            if(p.getPolymorphismsCount()[1]<i)
+            int nNonsyn = p.getPolymorphismsCount()[1];
+            if(nNonsyn<i)
             {
                 bp = p;
-                i = p.getPolymorphismsCount()[1];
+                i = nNonsyn;
             }
         }
-        return (bp!=null) ? bp : new Path(ct);
+        if(bp==null)
+            bp = new Path(ct, pc);
+        pc.putBestPath(codons, bUseTerminal, bp);
+        return bp;
     }
 
     /**
@@ -0,0 +1,169 @@
+/*
+    File:
+        PathCache.java
+ *
+    Revision:
+        1.1.0.0
+ *
+    Description:
+        Per codon table cache of the codon relations and of the best evolutionary
+        paths. The synonymity of any two codons and the terminal flag of every
+        codon are read from the lookup tables of the codon table (CodonLookup),
+        and the best paths found for a codon pattern are remembered, so that the
+        expensive path enumeration is carried out once per pattern only. The
+        numbers of substitutions between any two codons are kept in dense
+        arrays indexed by the codon indices.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+import bio.gene.dna.Codon;
+import bio.gene.dna.CodonLookup;
+import bio.gene.dna.ICodonTable;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+public class PathCache
+{
+    // Maximal number of cached paths. If the limit is reached, the cache is cleared.
+    private static final int MAXPATHS = 100000;
+
+    private static final Map<ICodonTable, PathCache> caches = new WeakHashMap<ICodonTable, PathCache>();
+
+    private ICodonTable ct      = null;
+    private CodonLookup lookup  = null;
+    private ConcurrentHashMap<String, Path> paths = null;
+
+    // Numbers of syn. and nonsyn. substitutions on the best path between two
+    // codons, with and without terminal codons, indexed by i*64+j. Both numbers
+    // are packed into one value (syn<<16|nonsyn)+1, thus 0 marks a pair whose
+    // path is not known yet and the entries can be filled without locking.
+    private int[] diffsTerm     = null;
+    private int[] diffsNoTerm   = null;
+
+
+    private PathCache(ICodonTable ct)
+    {
+        this.ct = ct;
+        lookup = ct.getLookup();
+        paths = new ConcurrentHashMap<String, Path>();
+        diffsTerm = new int[CodonLookup.CODONS*CodonLookup.CODONS];
+        diffsNoTerm = new int[CodonLookup.CODONS*CodonLookup.CODONS];
+    }
+
+    /**
+     *  Returns the cache of the specified codon table. The cache is created
+     *  when the codon table is used for the first time.
+     *
+     *  @param ct
+     *  @return
+     */
+    public static PathCache getInstance(ICodonTable ct)
+    {
+        synchronized(caches)
+        {
+            PathCache pc = caches.get(ct);
+            if(pc==null)
+            {
+                pc = new PathCache(ct);
+                caches.put(ct, pc);
+            }
+            return pc;
+        }
+    }
+
+    /**
+     *  Returns true if both codons encode the same amino acid.
+     *
+     *  @param c1
+     *  @param c2
+     *  @return
+     */
+    public boolean areSynonymous(Codon c1, Codon c2)
+    {
+        return lookup.areSynonymous(c1.getIndex(), c2.getIndex());
+    }
+
+    /**
+     *  Returns true if the codon is a terminal codon.
+     *
+     *  @param c
+     *  @return
+     */
+    public boolean isTerminal(Codon c)
+    {
+        return lookup.isTerminal(c.getIndex());
+    }
+
+    /**
+     *  Adds the numbers of synonymous and nonsynonymous substitutions on the
+     *  best path from c1 to c2 to counts[0] and counts[1] respectively. The
+     *  path of a pair of codons is found only once.
+     *
+     *  @param c1
+     *  @param c2
+     *  @param bUseTerminal
+     *  @param counts
+     */
+    public void addSubstitutions(Codon c1, Codon c2, boolean bUseTerminal, int[] counts)
+    {
+        int[] diffs = (bUseTerminal) ? diffsTerm : diffsNoTerm;
+        int i = c1.getIndex()*CodonLookup.CODONS+c2.getIndex();
+        int d = diffs[i];
+        if(d==0)
+        {
+            int[] tmp = Path.findBestPath(new Codon[]{c1, c2}, ct, bUseTerminal).getPolymorphismsCount();
+            d = ((tmp[0]<<16)|tmp[1])+1;
+            diffs[i] = d;
+        }
+        d--;
+        counts[0] += d>>>16;
+        counts[1] += d&0xFFFF;
+    }
+
+    /**
+     *  Returns the cached best path for the specified codons or null if the
+     *  path has not been found yet. The order of the codons is a part of the key,
+     *  since it determines which of the equally good paths is selected.
+     *
+     *  @param codons
+     *  @param bUseTerminal
+     *  @return
+     */
+    Path getBestPath(Codon[] codons, boolean bUseTerminal)
+    {
+        Path p = paths.get(createKey(codons, bUseTerminal));
+        return (p!=null) ? p.clone() : null;
+    }
+
+    /**
+     *  Caches the best path for the specified codons.
+     *
+     *  @param codons
+     *  @param bUseTerminal
+     *  @param p
+     */
+    void putBestPath(Codon[] codons, boolean bUseTerminal, Path p)
+    {
+        if(paths.size()>=MAXPATHS)
+            paths.clear();
+        paths.put(createKey(codons, bUseTerminal), p.clone());
+    }
+
+    private static String createKey(Codon[] codons, boolean bUseTerminal)
+    {
+        char[] key = new char[codons.length+1];
+        key[0] = (bUseTerminal) ? 'T' : 'F';
+        for(int i=0;i<codons.length;i++)
+            key[i+1] = (char)('0'+codons[i].getIndex());
+        return new String(key);
+    }
+}
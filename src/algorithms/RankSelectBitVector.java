@@ -0,0 +1,162 @@
+/*
+    File:
+        RankSelectBitVector.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Bit vector supporting rank (number of set bits before a position) in
+        constant time and select (position of the n-th set bit) in logarithmic
+        time. The number of set bits is sampled every 512 bits.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+
+public class RankSelectBitVector
+{
+    private static final int WORDS_PER_BLOCK = 8;  // 512 bits per sampled block
+
+    private long[] words = null;
+    private int[] ranks  = null;    // ranks[b]: number of set bits before block b
+    private int nBits    = 0;
+    private int nCount   = 0;       // Total number of set bits.
+
+
+    /**
+     *  Creates the bit vector with the specified number of bits. All bits are
+     *  cleared. After the bits are set, the method build must be called before
+     *  rank or select are used.
+     *
+     *  @param nBits
+     */
+    public RankSelectBitVector(int nBits)
+    {
+        this.nBits = nBits;
+        words = new long[(nBits+63)>>>6];
+    }
+
+    /**
+     *  Sets the specified bit.
+     *
+     *  @param i
+     */
+    public void set(int i)
+    {
+        words[i>>>6] |= 1L<<(i&63);
+    }
+
+    /**
+     *  Returns true if the specified bit is set.
+     *
+     *  @param i
+     *  @return
+     */
+    public boolean get(int i)
+    {
+        return (words[i>>>6] & (1L<<(i&63)))!=0;
+    }
+
+    /**
+     *  Creates the sampled ranks. Must be called after all bits are set.
+     */
+    public void build()
+    {
+        int nBlocks = (words.length+WORDS_PER_BLOCK-1)/WORDS_PER_BLOCK;
+        ranks = new int[nBlocks+1];
+        int n = 0;
+        for(int i=0;i<words.length;i++)
+        {
+            if(i%WORDS_PER_BLOCK==0)
+                ranks[i/WORDS_PER_BLOCK] = n;
+            n += Long.bitCount(words[i]);
+        }
+        ranks[nBlocks] = n;
+        nCount = n;
+    }
+
+    /**
+     *  Returns the number of bits.
+     *
+     *  @return
+     */
+    public int length()
+    {
+        return nBits;
+    }
+
+    /**
+     *  Returns the total number of set bits.
+     *
+     *  @return
+     */
+    public int getCount()
+    {
+        return nCount;
+    }
+
+    /**
+     *  Returns the number of set bits at positions less than i.
+     *
+     *  @param i
+     *  @return
+     */
+    public int rank(int i)
+    {
+        if(i<=0)
+            return 0;
+        if(i>=nBits)
+            return nCount;
+        int iWord = i>>>6;
+        int n = ranks[iWord/WORDS_PER_BLOCK];
+        for(int w=(iWord/WORDS_PER_BLOCK)*WORDS_PER_BLOCK;w<iWord;w++)
+            n += Long.bitCount(words[w]);
+        if((i&63)!=0)
+            n += Long.bitCount(words[iWord] & (-1L>>>(64-(i&63))));
+        return n;
+    }
+
+    /**
+     *  Returns the position of the n-th set bit (n starts at 1) or -1 if
+     *  there are less than n set bits.
+     *
+     *  @param n
+     *  @return
+     */
+    public int select(int n)
+    {
+        if(n<1 || n>nCount)
+            return -1;
+        // Find the last block with less than n set bits before it.
+        int lo = 0;
+        int hi = ranks.length-2;
+        while(lo<hi)
+        {
+            int mid = (lo+hi+1)>>>1;
+            if(ranks[mid]<n)
+                lo = mid;
+            else
+                hi = mid-1;
+        }
+        n -= ranks[lo];
+        int iWord = lo*WORDS_PER_BLOCK;
+        int c = Long.bitCount(words[iWord]);
+        while(c<n)
+        {
+            n -= c;
+            iWord++;
+            c = Long.bitCount(words[iWord]);
+        }
+        long w = words[iWord];
+        for(int i=1;i<n;i++)
+            w &= w-1;
+        return (iWord<<6)+Long.numberOfTrailingZeros(w);
+    }
+}
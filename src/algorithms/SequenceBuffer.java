@@ -10,6 +10,10 @@
         A sequence buffer is like a StringBuffer, but it is not thread-safe,
         and, thus, should not be used by multiple threads. It is, however, faster
         than the StringBuffer, due to removed thread-safety.
+        The buffer can store the bases either one per byte or, in the packed
+        mode, two per byte (4 bits per base). The packed mode only supports
+        the symbols listed in SYMBOLS. If any other symbol is stored in a
+        packed buffer, the buffer is unpacked automatically.
  *
     Project:
         GeneAnalyzer 2.2
@@ -21,15 +25,26 @@
 package algorithms;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class SequenceBuffer implements Serializable
 {
     private static final long serialVersionUID  = 1407200916451L;
     private final static int DEFAULT_CAPACITY   = 500;
+
+    // Symbols which can be stored in the packed mode. The index of the symbol
+    // is its 4-bit code.
+    private final static char[] SYMBOLS = {'-', 'A', 'C', 'G', 'T', 'N', 'X', '.', 'x',
+                                           'a', 'c', 'g', 't', 'n'};
+    private final static byte[] CODES       = createCodes();
+    private final static byte[] COMPLEMENTS = createComplements();
     
-    private int nBases = 0;         // Number of bases stored in the buffer.
-    private byte[] bases = null;    // Array of bases.
+    private int nBases = 0;             // Number of bases stored in the buffer.
+    private byte[] bases = null;        // Array of bases. In the packed mode every byte
+                                        // holds two bases: the low 4 bits hold the base
+                                        // at the even and the high 4 bits at the odd site.
+    private boolean bPacked = false;    // Storage mode.
 
     /**
      *  Creates a sequence buffer with the default initial number of bases (500).
@@ -49,6 +64,19 @@ public class SequenceBuffer implements Serializable
         bases = new byte[nBases];
     }
 
+    /**
+     *  Creates a sequence buffer with the specified initial number of bases.
+     *  If bPacked is true, the buffer stores two bases per byte.
+     *
+     *  @param nBases
+     *  @param bPacked
+     */
+    public SequenceBuffer(int nBases, boolean bPacked)
+    {
+        this.bPacked = bPacked;
+        bases = new byte[(bPacked) ? (nBases+1)/2 : nBases];
+    }
+
     /**
      *  Creates a sequence buffer containing the specified string.
      *
@@ -69,9 +97,64 @@ public class SequenceBuffer implements Serializable
      */
     public void ensureCapacity(int nBases)
     {
-        if(nBases<=bases.length)
+        if(nBases<=capacity())
             return;
-        bases = Arrays.copyOf(bases, nBases);
+        bases = Arrays.copyOf(bases, (bPacked) ? (nBases+1)/2 : nBases);
+    }
+
+    /**
+     *  Converts the buffer into the packed mode, if all bases of the sequence
+     *  can be packed, and returns the reference to this object. Otherwise,
+     *  the buffer is left unchanged.
+     *
+     *  @return
+     */
+    public SequenceBuffer pack()
+    {
+        if(bPacked)
+            return this;
+        for(int i=0;i<nBases;i++)
+        {
+            if(CODES[bases[i] & 0xFF]<0)
+                return this;
+        }
+        byte[] tmp = new byte[(nBases+1)/2];
+        for(int i=0;i<nBases;i++)
+            tmp[i>>1] |= CODES[bases[i] & 0xFF]<<((i&1)<<2);
+        bases = tmp;
+        bPacked = true;
+        return this;
+    }
+
+    /**
+     *  Converts the buffer into the unpacked mode, i.e. one base per byte,
+     *  and returns the reference to this object.
+     *
+     *  @return
+     */
+    public SequenceBuffer unpack()
+    {
+        if(!bPacked)
+            return this;
+        // All stored bases are converted, including the ones beyond the
+        // sequence end, since the buffer might be unpacked while the bases
+        // are appended.
+        byte[] tmp = new byte[capacity()];
+        for(int i=0;i<tmp.length;i++)
+            tmp[i] = get(i);
+        bases = tmp;
+        bPacked = false;
+        return this;
+    }
+
+    /**
+     *  Returns true if the buffer stores two bases per byte and false otherwise.
+     *
+     *  @return
+     */
+    public boolean isPacked()
+    {
+        return bPacked;
     }
 
     /**
@@ -92,9 +175,9 @@ public class SequenceBuffer implements Serializable
      */
     public void appendBase(char base)
     {
-        if(nBases==bases.length)
-            bases = Arrays.copyOf(bases, 2*bases.length);
-        bases[nBases] = (byte)base;
+        if(nBases==capacity())
+            grow(nBases+1);
+        set(nBases, (byte)base);
         nBases++;
     }
 
@@ -112,9 +195,17 @@ public class SequenceBuffer implements Serializable
     {
         // Calculate new length.
         int inl = nBases+nCount;
-        if(inl>bases.length)
-            bases = Arrays.copyOf(bases, 2*inl);
-        Arrays.fill(bases, nBases, nBases+nCount, (byte)base);
+        if(inl>capacity())
+            grow(2*inl);
+        if(bPacked && CODES[base & 0xFF]<0)
+            unpack();
+        if(!bPacked)
+            Arrays.fill(bases, nBases, nBases+nCount, (byte)base);
+        else
+        {
+            for(int i=nBases;i<inl;i++)
+                set(i, (byte)base);
+        }
         nBases += nCount;
     }
 
@@ -131,9 +222,56 @@ public class SequenceBuffer implements Serializable
     {
         int nCount = iEnd-iStart+1;
         int inl = nBases+nCount;
-        if(inl>bases.length)
-            bases = Arrays.copyOf(bases, 2*inl);
-        System.arraycopy(src.bases, iStart, bases, nBases, nCount);
+        if(inl>capacity())
+            grow(2*inl);
+        if(!bPacked && !src.bPacked)
+            System.arraycopy(src.bases, iStart, bases, nBases, nCount);
+        else if(!bPacked)
+        {
+            for(int i=0;i<nCount;i++)
+                bases[nBases+i] = src.get(iStart+i);
+        }
+        else if(src.bPacked && (iStart&1)==0 && (nBases&1)==0)
+        {
+            // Both buffers are packed and the bases are byte-aligned.
+            System.arraycopy(src.bases, iStart>>1, bases, nBases>>1, nCount>>1);
+            if((nCount&1)==1)
+                set(nBases+nCount-1, src.get(iEnd));
+        }
+        else
+        {
+            for(int i=0;i<nCount;i++)
+                set(nBases+i, src.get(iStart+i));
+        }
+        nBases += nCount;
+    }
+
+    /**
+     *  Appends the bases stored in the byte buffer (one base per byte) from
+     *  iStart to iEnd inclusive. The position of the byte buffer is not changed,
+     *  so that the same buffer can be shared between threads.
+     *
+     *  @param src
+     *  @param iStart
+     *  @param iEnd
+     */
+    public void appendBases(ByteBuffer src, int iStart, int iEnd)
+    {
+        int nCount = iEnd-iStart+1;
+        int inl = nBases+nCount;
+        if(inl>capacity())
+            grow(2*inl);
+        if(!bPacked)
+        {
+            ByteBuffer tmp = src.duplicate();
+            tmp.position(iStart);
+            tmp.get(bases, nBases, nCount);
+        }
+        else
+        {
+            for(int i=0;i<nCount;i++)
+                set(nBases+i, src.get(iStart+i));
+        }
         nBases += nCount;
     }
 
@@ -151,7 +289,7 @@ public class SequenceBuffer implements Serializable
         if(iSite<0 || iSite>=nBases)
             throw new IndexOutOfBoundsException();
         else
-            return (char)bases[iSite];
+            return (char)get(iSite);
     }
 
     /**
@@ -171,7 +309,7 @@ public class SequenceBuffer implements Serializable
         if(iSite<0 || iSite>=nBases)
             throw new IndexOutOfBoundsException();
         else
-            bases[iSite] = (byte)base;
+            set(iSite, (byte)base);
     }
 
     /**
@@ -186,6 +324,12 @@ public class SequenceBuffer implements Serializable
     {
         if(iSite<0 || iSite>=nBases)
             throw new IndexOutOfBoundsException();
+        else if(bPacked)
+        {
+            for(int i=iSite;i<nBases-1;i++)
+                set(i, get(i+1));
+            nBases--;
+        }
         else
         {
             byte[] tmp = new byte[bases.length];
@@ -218,6 +362,13 @@ public class SequenceBuffer implements Serializable
             throw new IndexOutOfBoundsException();
         if(iStart+nCount>nBases)
             nCount = nBases-iStart;
+        if(bPacked)
+        {
+            for(int i=iStart;i<nBases-nCount;i++)
+                set(i, get(i+nCount));
+            nBases = nBases-nCount;
+            return nCount;
+        }
         byte[] tmp = new byte[bases.length];
         if(iStart>0)
             System.arraycopy(bases, 0, tmp, 0, iStart);        
@@ -241,9 +392,19 @@ public class SequenceBuffer implements Serializable
     {
         if(iSite<0 || iSite>nBases)
             throw new IndexOutOfBoundsException();
+        if(bPacked)
+        {
+            if(nBases==capacity())
+                grow(nBases+1);
+            for(int i=nBases;i>iSite;i--)
+                set(i, get(i-1));
+            set(iSite, (byte)Character.toUpperCase(base));
+            nBases++;
+            return;
+        }
         byte[] tmp = null;
         if(nBases+1>=bases.length)
-            tmp = new byte[bases.length*2];
+            tmp = new byte[Math.max(bases.length*2, nBases+1)];
         else
             tmp = new byte[bases.length];
         if(iSite>0)
@@ -271,12 +432,12 @@ public class SequenceBuffer implements Serializable
      */
     public SequenceBuffer reverse()
     {
-        int lim = (nBases+1)/2;
+        int lim = nBases/2;
         for(int i=0;i<lim;i++)
         {
-            byte c = bases[i];
-            bases[i] = bases[nBases-1-i];
-            bases[nBases-1-i] = c;
+            byte c = get(i);
+            set(i, get(nBases-1-i));
+            set(nBases-1-i, c);
         }
         return this;
     }
@@ -293,19 +454,7 @@ public class SequenceBuffer implements Serializable
     public SequenceBuffer complement()
     {
         for(int i=0;i<nBases;i++)
-        {
-            switch(bases[i])
-            {
-                case 'A': bases[i] = 'T'; break;
-                case 'C': bases[i] = 'G'; break;
-                case 'G': bases[i] = 'C'; break;
-                case 'T': bases[i] = 'A'; break;
-                case 'a': bases[i] = 't'; break;
-                case 'c': bases[i] = 'g'; break;
-                case 'g': bases[i] = 'c'; break;
-                case 't': bases[i] = 'a'; break;
-            }
-        }
+            set(i, COMPLEMENTS[get(i) & 0xFF]);
         return this;
     }
 
@@ -321,34 +470,10 @@ public class SequenceBuffer implements Serializable
         int lim = (nBases+1)/2;
         for(int i=0;i<lim;i++)
         {
-            byte c1;
-            switch(bases[i])
-            {
-                case 'A': c1 = 'T'; break;
-                case 'C': c1 = 'G'; break;
-                case 'G': c1 = 'C'; break;
-                case 'T': c1 = 'A'; break;
-                case 'a': c1 = 't'; break;
-                case 'c': c1 = 'g'; break;
-                case 'g': c1 = 'c'; break;
-                case 't': c1 = 'a'; break;
-                default: c1 = bases[i]; break;
-            }
-            byte c2;
-            switch(bases[nBases-1-i])
-            {
-                case 'A': c2 = 'T'; break;
-                case 'C': c2 = 'G'; break;
-                case 'G': c2 = 'C'; break;
-                case 'T': c2 = 'A'; break;
-                case 'a': c2 = 't'; break;
-                case 'c': c2 = 'g'; break;
-                case 'g': c2 = 'c'; break;
-                case 't': c2 = 'a'; break;
-                default: c2 = bases[nBases-1-i]; break;
-            }
-            bases[i] = c2;
-            bases[nBases-1-i] = c1;
+            byte c1 = COMPLEMENTS[get(i) & 0xFF];
+            byte c2 = COMPLEMENTS[get(nBases-1-i) & 0xFF];
+            set(i, c2);
+            set(nBases-1-i, c1);
         }
         return this;
     }
@@ -359,7 +484,7 @@ public class SequenceBuffer implements Serializable
      */
     public String toString()
     {
-        return new String(bases, 0, nBases);
+        return substring(0, nBases);
     }
 
     /**
@@ -371,7 +496,36 @@ public class SequenceBuffer implements Serializable
      */
     public String substring(int beginIndex, int endIndex)
     {
-        return new String(bases, beginIndex, endIndex-beginIndex);
+        if(!bPacked)
+            return new String(bases, beginIndex, endIndex-beginIndex);
+        if(beginIndex<0 || endIndex>nBases || beginIndex>endIndex)
+            throw new IndexOutOfBoundsException();
+        byte[] tmp = new byte[endIndex-beginIndex];
+        for(int i=0;i<tmp.length;i++)
+            tmp[i] = get(beginIndex+i);
+        return new String(tmp);
+    }
+
+    /**
+     *  Copies the bases from beginIndex to endIndex (exclusive) into the byte
+     *  array starting at dstBegin, one base per byte.
+     *
+     *  @param beginIndex
+     *  @param endIndex
+     *  @param dst
+     *  @param dstBegin
+     */
+    public void getBytes(int beginIndex, int endIndex, byte[] dst, int dstBegin)
+    {
+        if(beginIndex<0 || endIndex>nBases || beginIndex>endIndex)
+            throw new IndexOutOfBoundsException();
+        if(!bPacked)
+            System.arraycopy(bases, beginIndex, dst, dstBegin, endIndex-beginIndex);
+        else
+        {
+            for(int i=beginIndex;i<endIndex;i++)
+                dst[dstBegin++] = get(i);
+        }
     }
 
     /**
@@ -384,7 +538,7 @@ public class SequenceBuffer implements Serializable
      */
     public SequenceBuffer subsequence(int beginIndex, int endIndex)
     {
-        SequenceBuffer sb = new SequenceBuffer(endIndex-beginIndex+1);
+        SequenceBuffer sb = new SequenceBuffer(endIndex-beginIndex+1, bPacked);
         sb.appendBases(this, beginIndex, endIndex);
         return sb;
     }
@@ -393,8 +547,8 @@ public class SequenceBuffer implements Serializable
     {
         for(int i=0;i<nBases;i++)
         {
-            if(bases[i]==orig)
-                bases[i]=(byte)rep;
+            if(get(i)==(byte)orig)
+                set(i, (byte)rep);
         }
         return this;
     }
@@ -428,7 +582,7 @@ public class SequenceBuffer implements Serializable
         int n = 0;
         for(int i=from;i<=to;i++)
         {
-            if(bases[i]==(byte)c)
+            if(get(i)==(byte)c)
                 n++;
         }
         return n;
@@ -450,9 +604,98 @@ public class SequenceBuffer implements Serializable
      */
     public SequenceBuffer clone()
     {
-        SequenceBuffer sb = new SequenceBuffer(nBases);
-        sb.bases = Arrays.copyOf(bases, nBases);
+        SequenceBuffer sb = new SequenceBuffer(0, bPacked);
+        sb.bases = Arrays.copyOf(bases, (bPacked) ? (nBases+1)/2 : nBases);
         sb.nBases = nBases;
         return sb;
     }
+
+    /**
+     *  Returns the number of bases the buffer can hold without resizing.
+     *
+     *  @return
+     */
+    private int capacity()
+    {
+        return (bPacked) ? 2*bases.length : bases.length;
+    }
+
+    /**
+     *  Resizes the buffer so that it can hold at least nBases bases.
+     *  The capacity is at least doubled.
+     *
+     *  @param nBases
+     */
+    private void grow(int nBases)
+    {
+        ensureCapacity(Math.max(nBases, 2*capacity()));
+    }
+
+    /**
+     *  Returns the base at the specified site without checking the bounds.
+     *
+     *  @param iSite
+     *  @return
+     */
+    private byte get(int iSite)
+    {
+        if(!bPacked)
+            return bases[iSite];
+        return (byte)SYMBOLS[(bases[iSite>>1]>>((iSite&1)<<2)) & 0x0F];
+    }
+
+    /**
+     *  Sets the base at the specified site without checking the bounds.
+     *  If the buffer is packed and the base cannot be packed, the buffer
+     *  is unpacked first.
+     *
+     *  @param iSite
+     *  @param base
+     */
+    private void set(int iSite, byte base)
+    {
+        if(bPacked)
+        {
+            byte code = CODES[base & 0xFF];
+            if(code>-1)
+            {
+                int shift = (iSite&1)<<2;
+                int i = iSite>>1;
+                bases[i] = (byte)((bases[i] & ~(0x0F<<shift)) | (code<<shift));
+                return;
+            }
+            unpack();
+        }
+        bases[iSite] = base;
+    }
+
+    /**
+     *  Creates the table of 4-bit codes of the symbols. The symbols, which
+     *  cannot be packed, have the code -1.
+     *
+     *  @return
+     */
+    private static byte[] createCodes()
+    {
+        byte[] codes = new byte[256];
+        Arrays.fill(codes, (byte)-1);
+        for(int i=0;i<SYMBOLS.length;i++)
+            codes[SYMBOLS[i]] = (byte)i;
+        return codes;
+    }
+
+    /**
+     *  Creates the table of complementary bases.
+     *
+     *  @return
+     */
+    private static byte[] createComplements()
+    {
+        byte[] compl = new byte[256];
+        for(int i=0;i<compl.length;i++)
+            compl[i] = (byte)i;
+        compl['A'] = 'T'; compl['C'] = 'G'; compl['G'] = 'C'; compl['T'] = 'A';
+        compl['a'] = 't'; compl['c'] = 'g'; compl['g'] = 'c'; compl['t'] = 'a';
+        return compl;
+    }
 }
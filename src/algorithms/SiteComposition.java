@@ -64,6 +64,16 @@ public class SiteComposition
         return false;
     }
 
+    /**
+     *  Returns the internal counts array, which is filled by AlignmentMatrix.
+     *
+     *  @return
+     */
+    int[] getCounts()
+    {
+        return bc;
+    }
+
     /**
      *  Returns the total number of VALID bases (A,C,G,T) at this site.
      *
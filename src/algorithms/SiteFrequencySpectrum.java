@@ -0,0 +1,308 @@
+/*
+    File:
+        SiteFrequencySpectrum.java
+ *
+    Revision:
+        1.0.0.0
+ *
+    Description:
+        Accumulates the site frequency spectrum, i.e. the number of sites with
+        k derived alleles among n sampled alleles. The counts are kept in one
+        primitive array per sample size, indexed by the number of derived
+        alleles, thus the sites of different sample sizes, e.g. due to missing
+        data, are not mixed up and no objects are created per site.
+        The spectra of different genes or threads are combined using merge.
+        The spectrum is not synchronized, every thread should fill its own
+        spectrum.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+public class SiteFrequencySpectrum
+{
+    /*
+        Binary layout (all numbers are big-endian):
+            int     magic number ("SFS1")
+            int     number of sample sizes with sites (m)
+            m x     int     sample size (n)
+                    (n+1) x long    counts of 0 to n derived alleles
+    */
+    private static final int FILE_MAGIC = 0x53465331;
+
+    private long[][] counts = new long[0][];    // counts[n][k]: sites with k derived of n alleles.
+
+
+    /**
+     *  Adds a site with nDerived derived alleles among nSampleSize alleles.
+     *
+     *  @param nDerived
+     *  @param nSampleSize
+     */
+    public void add(int nDerived, int nSampleSize)
+    {
+        add(nDerived, nSampleSize, 1);
+    }
+
+    /**
+     *  Adds nSites sites with nDerived derived alleles among nSampleSize alleles.
+     *
+     *  @param nDerived
+     *  @param nSampleSize
+     *  @param nSites
+     */
+    public void add(int nDerived, int nSampleSize, long nSites)
+    {
+        if(nSampleSize<1 || nDerived<0 || nDerived>nSampleSize)
+            throw new IllegalArgumentException(String.format("Invalid allele count %d of %d", nDerived, nSampleSize));
+        getCounts(nSampleSize)[nDerived] += nSites;
+    }
+
+    /**
+     *  Adds the counts of the specified spectrum to this spectrum.
+     *
+     *  @param sfs
+     */
+    public void merge(SiteFrequencySpectrum sfs)
+    {
+        for(int n=1;n<sfs.counts.length;n++)
+        {
+            long[] src = sfs.counts[n];
+            if(src==null)
+                continue;
+            long[] dst = getCounts(n);
+            for(int k=0;k<=n;k++)
+                dst[k] += src[k];
+        }
+    }
+
+    /**
+     *  Removes all sites.
+     */
+    public void clear()
+    {
+        counts = new long[0][];
+    }
+
+    /**
+     *  Returns the largest sample size with sites or 0 if the spectrum is empty.
+     *
+     *  @return
+     */
+    public int getMaxSampleSize()
+    {
+        for(int n=counts.length-1;n>0;n--)
+        {
+            if(getSitesCount(n)>0)
+                return n;
+        }
+        return 0;
+    }
+
+    /**
+     *  Returns the number of sites with nDerived derived alleles among
+     *  nSampleSize alleles.
+     *
+     *  @param nDerived
+     *  @param nSampleSize
+     *  @return
+     */
+    public long getCount(int nDerived, int nSampleSize)
+    {
+        if(nSampleSize<1 || nSampleSize>=counts.length || counts[nSampleSize]==null || nDerived<0 || nDerived>nSampleSize)
+            return 0;
+        return counts[nSampleSize][nDerived];
+    }
+
+    /**
+     *  Returns the number of sites with the specified sample size.
+     *
+     *  @param nSampleSize
+     *  @return
+     */
+    public long getSitesCount(int nSampleSize)
+    {
+        if(nSampleSize<1 || nSampleSize>=counts.length || counts[nSampleSize]==null)
+            return 0;
+        long n = 0;
+        for(long c:counts[nSampleSize])
+            n += c;
+        return n;
+    }
+
+    /**
+     *  Returns the total number of sites.
+     *
+     *  @return
+     */
+    public long getSitesCount()
+    {
+        long n = 0;
+        for(int i=1;i<counts.length;i++)
+            n += getSitesCount(i);
+        return n;
+    }
+
+    /**
+     *  Returns the unfolded spectrum of the sample size, i.e. the numbers of
+     *  sites with 0 to nSampleSize derived alleles.
+     *
+     *  @param nSampleSize
+     *  @return
+     */
+    public long[] getUnfolded(int nSampleSize)
+    {
+        long[] res = new long[nSampleSize+1];
+        if(nSampleSize<counts.length && counts[nSampleSize]!=null)
+            System.arraycopy(counts[nSampleSize], 0, res, 0, nSampleSize+1);
+        return res;
+    }
+
+    /**
+     *  Returns the folded spectrum of the sample size, i.e. the numbers of
+     *  sites with 0 to nSampleSize/2 minor alleles. The folded spectrum does
+     *  not depend on the polarization of the alleles.
+     *
+     *  @param nSampleSize
+     *  @return
+     */
+    public long[] getFolded(int nSampleSize)
+    {
+        long[] res = new long[nSampleSize/2+1];
+        if(nSampleSize<counts.length && counts[nSampleSize]!=null)
+        {
+            for(int k=0;k<=nSampleSize;k++)
+                res[Math.min(k, nSampleSize-k)] += counts[nSampleSize][k];
+        }
+        return res;
+    }
+
+    /**
+     *  Returns the histogram of the allele frequencies of all sample sizes.
+     *  The bin i holds the sites whose frequency f satisfies
+     *  i/nBins <= f < (i+1)/nBins, the last bin also holds the frequency 1.
+     *  If bFolded is true, the minor allele frequencies are used, thus only
+     *  the first half of the bins is filled.
+     *
+     *  @param nBins
+     *  @param bFolded
+     *  @return
+     */
+    public long[] getHistogram(int nBins, boolean bFolded)
+    {
+        long[] res = new long[nBins];
+        for(int n=1;n<counts.length;n++)
+        {
+            if(counts[n]==null)
+                continue;
+            for(int k=0;k<=n;k++)
+            {
+                if(counts[n][k]==0)
+                    continue;
+                int m = (bFolded) ? Math.min(k, n-k) : k;
+                res[(int)Math.min((long)m*nBins/n, nBins-1)] += counts[n][k];
+            }
+        }
+        return res;
+    }
+
+    /**
+     *  Returns the mean allele frequency of all sites or NaN if the spectrum
+     *  is empty.
+     *
+     *  @return
+     */
+    public double getMeanFrequency()
+    {
+        double sum = 0.0;
+        long nSites = 0;
+        for(int n=1;n<counts.length;n++)
+        {
+            if(counts[n]==null)
+                continue;
+            for(int k=0;k<=n;k++)
+            {
+                sum += (double)k/(double)n*counts[n][k];
+                nSites += counts[n][k];
+            }
+        }
+        return (nSites>0) ? sum/nSites : Double.NaN;
+    }
+
+    /**
+     *  Writes the raw spectrum in the binary form.
+     *
+     *  @param out
+     *  @throws java.io.IOException
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        int m = 0;
+        for(int n=1;n<counts.length;n++)
+        {
+            if(counts[n]!=null)
+                m++;
+        }
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(m);
+        for(int n=1;n<counts.length;n++)
+        {
+            if(counts[n]==null)
+                continue;
+            out.writeInt(n);
+            for(long c:counts[n])
+                out.writeLong(c);
+        }
+    }
+
+    /**
+     *  Reads the spectrum written by write.
+     *
+     *  @param in
+     *  @return
+     *  @throws java.io.IOException
+     */
+    public static SiteFrequencySpectrum read(DataInput in) throws IOException
+    {
+        if(in.readInt()!=FILE_MAGIC)
+            throw new IOException("Not a site frequency spectrum");
+        SiteFrequencySpectrum sfs = new SiteFrequencySpectrum();
+        int m = in.readInt();
+        for(int i=0;i<m;i++)
+        {
+            int n = in.readInt();
+            if(n<1)
+                throw new IOException("Invalid sample size "+n);
+            long[] dst = sfs.getCounts(n);
+            for(int k=0;k<=n;k++)
+                dst[k] += in.readLong();
+        }
+        return sfs;
+    }
+
+    /**
+     *  Returns the counts of the sample size, which are created if necessary.
+     */
+    private long[] getCounts(int nSampleSize)
+    {
+        if(nSampleSize>=counts.length)
+        {
+            long[][] tmp = new long[Math.max(nSampleSize+1, 2*counts.length)][];
+            System.arraycopy(counts, 0, tmp, 0, counts.length);
+            counts = tmp;
+        }
+        if(counts[nSampleSize]==null)
+            counts[nSampleSize] = new long[nSampleSize+1];
+        return counts[nSampleSize];
+    }
+}
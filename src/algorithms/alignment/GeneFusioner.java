@@ -3,10 +3,12 @@
         GeneFusioner.java
  *   
     Revision:
-        1.4.0.1
+        1.4.0.2
  * 
     Description:
-        Fuses the genes of the dataset.
+        Fuses the genes of the dataset. Only the genes with similar names are
+        compared. Every pair is scored once, and only the reciprocal best hits
+        are aligned.
  * 
     Project:
         GeneAnalyzer 2.2
@@ -23,19 +25,60 @@ import bio.gene.GeneEntry;
 import bio.gene.GeneRegion;
 import bio.gene.StrainEntry;
 import gui.IWaitDialog;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import plugin.classes.IAligner;
+import plugin.classes.IScoringAligner;
 
 
 public class GeneFusioner 
 {
+    /**
+     *  Pair of genes, which are compared. The first gene has the lower index.
+     */
+    private static class Pair
+    {
+        int a;
+        int b;
+        float fScore  = Float.NaN;      // NaN if the genes cannot be aligned.
+        int[] indices = {-1, -1};       // Indices of the strains which align best.
+
+        Pair(int a, int b)
+        {
+            this.a = a;
+            this.b = b;
+        }
+    }
+
     private String strLastError = "";
     private IWaitDialog wd      = null;
+    private int nThreads        = 1;    // Number of threads scoring the pairs.
 
 
     public GeneFusioner(IWaitDialog wd)
+    {
+        this(wd, 1);
+    }
+
+    /**
+     *  Creates the gene fusioner. If the aligner implements IScoringAligner,
+     *  the pairs of genes are scored using nThreads threads.
+     *
+     *  @param wd
+     *  @param nThreads
+     */
+    public GeneFusioner(IWaitDialog wd, int nThreads)
     {
         this.wd = wd;
+        this.nThreads = Math.max(nThreads, 1);
     }
 
 
@@ -75,32 +118,31 @@ public class GeneFusioner
         wd.show(IWaitDialog.TYPE.Aligner);
         IAligner aligner = opt.aligner;
         int nGenes = ds.getGenesCount();
+        // Score every pair of similar genes once.
+        Vector<Pair> cands = (opt.bUseSim) ? findSimilarPairs(ds) : new Vector<Pair>();
+        scorePairs(ds, aligner, cands);
+        // Find the best hit of every gene. The pairs are sorted, so that the
+        // partners of every gene are processed in ascending order and the first
+        // of several equally good hits is selected.
         int[] pairs = new int[nGenes];
-        Alignment[] alignments = new Alignment[nGenes];
-        for(int i=0;i<nGenes;i++)
+        Pair[] hits = new Pair[nGenes];
+        Arrays.fill(pairs, -1);
+        for(Pair p:cands)
         {
-            GeneEntry ge1 = ds.getGeneEntry(i);
-            pairs[i] = -1;
-            alignments[i] = null;
-            for(int j=0;j<nGenes;j++)
+            if(Float.isNaN(p.fScore))
+                continue;
+            if(hits[p.a]==null || p.fScore>hits[p.a].fScore)
             {
-                if(i==j)
-                    continue;
-                GeneEntry ge2 = ds.getGeneEntry(j);
-                if(opt.bUseSim && areSimilar(ge1.getCommonName(), ge2.getCommonName()))
-                {
-                    Alignment ali = constructAlignment(aligner, ge1, ge2, "");
-                    if(ali==null)
-                        continue;
-                    if(alignments[i]==null || ali.getScore()>alignments[i].getScore())
-                    {
-                        alignments[i] = ali;
-                        pairs[i] = j;
-                    }
-                }
+                hits[p.a] = p;
+                pairs[p.a] = p.b;
+            }
+            if(hits[p.b]==null || p.fScore>hits[p.b].fScore)
+            {
+                hits[p.b] = p;
+                pairs[p.b] = p.a;
             }
         }
-        // Process alignments.
+        // Align the reciprocal best hits.
         Dataset dataset = new Dataset();
         for(int i=0;i<nGenes;i++)
         {
@@ -109,13 +151,16 @@ public class GeneFusioner
             // Reciprocal best hit.
             if(bm!=-1 && pairs[bm]==i)
             {
+                Alignment ali = constructAlignment(aligner, ds.getGeneEntry(i), ds.getGeneEntry(bm), hits[i], "");
+                pairs[i] = -1;
+                if(ali==null)
+                    continue;
                 String strCommonName = ds.getGeneEntry(i).getCommonName()+"_"+ds.getGeneEntry(bm).getCommonName();
                 GeneEntry ge = new GeneEntry(strCommonName, "");
-                int nStrains = alignments[i].getStrainsCount();
+                int nStrains = ali.getStrainsCount();
                 for(int n=0;n<nStrains;n++)
-                    ge.addStrain(alignments[i].getStrainEntry(n));
+                    ge.addStrain(ali.getStrainEntry(n));
                 dataset.addGene(ge);
-                pairs[i] = -1;
             }
         }
         wd.close();
@@ -123,81 +168,262 @@ public class GeneFusioner
     }
 
     /**
-     *  Aligns two genes and returns the alignment of the strain entries of both genes.
-     *  The order of the strain entries in the alignment is the same as if the strain
-     *  entries of both genes, beginning with the first strain entry of ge1, were added
-     *  one by one to the alignment.
+     *  Returns the pairs of genes with similar names sorted by the gene indices.
+     *  Since similar names share at least 75% of the shorter name, the
+     *  candidates of every gene follow each other in the sorted list of names
+     *  and only these are compared.
      *
-     *  @param ge1
-     *  @param ge2
-     *  @param strParams
+     *  @param ds
+     *  @return
+     */
+    private Vector<Pair> findSimilarPairs(Dataset ds)
+    {
+        int nGenes = ds.getGenesCount();
+        final String[] names = new String[nGenes];
+        Integer[] order = new Integer[nGenes];
+        for(int i=0;i<nGenes;i++)
+        {
+            names[i] = ds.getGeneEntry(i).getCommonName();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer o1, Integer o2)
+            {
+                return names[o1].compareTo(names[o2]);
+            }
+        });
+        String[] sorted = new String[nGenes];
+        for(int k=0;k<nGenes;k++)
+            sorted[k] = names[order[k]];
+        Vector<Pair> cands = new Vector<Pair>();
+        HashSet<Long> found = new HashSet<Long>();
+        for(int i=0;i<nGenes;i++)
+        {
+            // Shortest prefix, which a similar name with at least the same length must share.
+            String strPrefix = names[i].substring(0, (3*names[i].length()+3)/4);
+            for(int k=lowerBound(sorted, strPrefix);k<nGenes && sorted[k].startsWith(strPrefix);k++)
+            {
+                int j = order[k];
+                if(j==i || !areSimilar(names[i], names[j]))
+                    continue;
+                Pair p = new Pair(Math.min(i, j), Math.max(i, j));
+                if(found.add((long)p.a*nGenes+p.b))
+                    cands.add(p);
+            }
+        }
+        Collections.sort(cands, new Comparator<Pair>()
+        {
+            public int compare(Pair o1, Pair o2)
+            {
+                if(o1.a!=o2.a)
+                    return (o1.a<o2.a) ? -1 : 1;
+                return (o1.b<o2.b) ? -1 : ((o1.b==o2.b) ? 0 : 1);
+            }
+        });
+        return cands;
+    }
+
+    /**
+     *  Returns the index of the first string, which is not less than the key.
+     *
+     *  @param sorted
+     *  @param strKey
      *  @return
      */
-    private Alignment constructAlignment(IAligner aligner, GeneEntry ge1, GeneEntry ge2, String strParams)
+    private static int lowerBound(String[] sorted, String strKey)
     {
-        if(ge1.getStrainsCount()==0 || ge2.getStrainsCount()==0)
+        int lo = 0;
+        int hi = sorted.length;
+        while(lo<hi)
         {
-            strLastError = "One of the genes does not have any strains";
-            return null;
+            int mid = (lo+hi)>>>1;
+            if(sorted[mid].compareTo(strKey)<0)
+                lo = mid+1;
+            else
+                hi = mid;
         }
-        // Find the best initial pairwise alignment.
-        Alignment ba = null;
-        int[] indices = {-1, -1};   // Indices of the strains which align best.
+        return lo;
+    }
+
+    /**
+     *  Scores all pairs. If the aligner implements IScoringAligner, the
+     *  traceback is skipped and the pairs are scored concurrently. The first
+     *  pair is always scored by the calling thread, so that the aligner
+     *  parameters are set before the other threads start.
+     *
+     *  @param ds
+     *  @param aligner
+     *  @param cands
+     */
+    private void scorePairs(Dataset ds, final IAligner aligner, final Vector<Pair> cands)
+    {
+        // Prepare the sequences of the strains of the compared genes.
+        final StrainEntry[][] seqs = new StrainEntry[ds.getGenesCount()][];
+        for(Pair p:cands)
+        {
+            for(int g:new int[]{p.a, p.b})
+            {
+                if(seqs[g]==null)
+                    seqs[g] = createSequenceEntries(ds.getGeneEntry(g));
+            }
+        }
+        final int nPairs = cands.size();
+        int n = (aligner instanceof IScoringAligner) ? Math.min(nThreads, nPairs-1) : 0;
+        if(n<2)
+        {
+            for(Pair p:cands)
+                scorePair(aligner, seqs[p.a], seqs[p.b], p);
+            return;
+        }
+        scorePair(aligner, seqs[cands.get(0).a], seqs[cands.get(0).b], cands.get(0));
+        final AtomicInteger next = new AtomicInteger(1);
+        ExecutorService pool = Executors.newFixedThreadPool(n);
+        Vector<Future<?>> tasks = new Vector<Future<?>>();
+        for(int t=0;t<n;t++)
+        {
+            tasks.add(pool.submit(new Runnable()
+            {
+                public void run()
+                {
+                    int i;
+                    while( (i=next.getAndIncrement())<nPairs )
+                    {
+                        Pair p = cands.get(i);
+                        scorePair(aligner, seqs[p.a], seqs[p.b], p);
+                    }
+                }
+            }));
+        }
+        try
+        {
+            for(Future<?> task:tasks)
+                task.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Gene fusion was interrupted", e);
+        }
+        catch(ExecutionException e)
+        {
+            // Stop the remaining workers.
+            next.set(nPairs);
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     *  Creates a strain entry with a single region of the complete sequence for
+     *  every strain of the gene. If the sequence consists of gaps and unknown
+     *  bases only, the entry is null, since the alignment does not make any sense.
+     *
+     *  @param ge
+     *  @return
+     */
+    private static StrainEntry[] createSequenceEntries(GeneEntry ge)
+    {
+        int nStrains = ge.getStrainsCount();
+        StrainEntry[] entries = new StrainEntry[nStrains];
+        for(int i=0;i<nStrains;i++)
+        {
+            String strSeq = ge.getStrainEntry(i).getCompleteSequence();
+            if(strSeq.matches("[NXnx-]+"))
+                continue;
+            entries[i] = new StrainEntry("Strain "+(i+1), "");
+            GeneRegion reg = new GeneRegion(GeneRegion.UNNAMED);
+            reg.setStart(1);
+            reg.setEnd(strSeq.length());
+            reg.setSequence(strSeq);
+            entries[i].addRegion(reg);
+        }
+        return entries;
+    }
+
+    /**
+     *  Finds the pair of strains of both genes, which align best, and stores
+     *  its score and the strain indices in the pair. If the aligner implements
+     *  IScoringAligner, the strains are only scored and not aligned.
+     *
+     *  @param aligner
+     *  @param seqs1
+     *  @param seqs2
+     *  @param p
+     */
+    private static void scorePair(IAligner aligner, StrainEntry[] seqs1, StrainEntry[] seqs2, Pair p)
+    {
         StrainEntry[] entries = new StrainEntry[2];
-        int nStrains1 = ge1.getStrainsCount();
-        int nStrains2 = ge2.getStrainsCount();
-        for(int i=0;i<nStrains1;i++)
+        for(int i=0;i<seqs1.length;i++)
         {
-            entries[0] = new StrainEntry("Strain 1", "");
-            GeneRegion reg1 = new GeneRegion(GeneRegion.UNNAMED);
-            reg1.setStart(1);
-            String strSeq1 = ge1.getStrainEntry(i).getCompleteSequence();
-            reg1.setEnd(strSeq1.length());
-            reg1.setSequence(strSeq1);
-            entries[0].addRegion(reg1);
-            // If the entry sequence is not valid, skip it, since the alignment does not make any sence.
-            if(strSeq1.matches("[NXnx-]+"))
+            if(seqs1[i]==null)
                 continue;
-            for(int j=0;j<nStrains2;j++)
+            entries[0] = seqs1[i];
+            for(int j=0;j<seqs2.length;j++)
             {
-                entries[1] = new StrainEntry("Strain 2", "");
-                GeneRegion reg2 = new GeneRegion(GeneRegion.UNNAMED);
-                reg2.setStart(1);
-                String strSeq2 = ge2.getStrainEntry(j).getCompleteSequence();
-                reg2.setEnd(strSeq2.length());
-                reg2.setSequence(strSeq2);
-                entries[1].addRegion(reg2);
-                // If the entry sequence is not valid, skip it, since the alignment does not make any sence.
-                if(entries[1].getCompleteSequence().matches("[NXnx-]+"))
+                if(seqs2[j]==null)
+                    continue;
+                entries[1] = seqs2[j];
+                float fScore = Float.NaN;
+                if(aligner instanceof IScoringAligner)
+                    fScore = ((IScoringAligner)aligner).scoreStrains(entries, "");
+                else
+                {
+                    Alignment ali = aligner.alignStrains(entries, "");
+                    if(ali!=null)
+                        fScore = ali.getScore();
+                }
+                if(Float.isNaN(fScore))
                     continue;
-                Alignment ali = aligner.alignStrains(entries, strParams);                
-                if(ba==null || ali.getScore()>ba.getScore())
+                if(Float.isNaN(p.fScore) || fScore>p.fScore)
                 {
-                    ba = ali;
-                    indices[0] = i;
-                    indices[1] = j;
+                    p.fScore = fScore;
+                    p.indices[0] = i;
+                    p.indices[1] = j;
                 }
             }
         }
-        // If no alignment was found, return null.
-        if(ba==null)
+    }
+
+    /**
+     *  Aligns two genes using the strains found by scorePair and returns the
+     *  alignment of the strain entries of both genes. The order of the strain
+     *  entries in the alignment is the same as if the strain entries of both
+     *  genes, beginning with the first strain entry of ge1, were added one by
+     *  one to the alignment.
+     *
+     *  @param aligner
+     *  @param ge1
+     *  @param ge2
+     *  @param p
+     *  @param strParams
+     *  @return
+     */
+    private Alignment constructAlignment(IAligner aligner, GeneEntry ge1, GeneEntry ge2, Pair p, String strParams)
+    {
+        StrainEntry[] entries = new StrainEntry[2];
+        entries[0] = ge1.getStrainEntry(p.indices[0]);
+        entries[1] = ge2.getStrainEntry(p.indices[1]);
+        Alignment ali = aligner.alignStrains(entries, strParams);
+        if(ali==null)
         {
-            strLastError = "One of the genes consists of invalid sequences only";
+            strLastError = aligner.getLastError();
             return null;
         }
-        // Align the sequences.
-        entries[0] = ge1.getStrainEntry(indices[0]);
-        entries[1] = ge2.getStrainEntry(indices[1]);
-        Alignment ali = aligner.alignStrains(entries, strParams);
-        // Otherwise, extend the alignments to all strains.
+        // Extend the alignment to all strains.
         Vector<StrainEntry> tmp = new Vector<StrainEntry>();
-        StrainEntry[] ent = extendAlignment(ge1, ali.getStrainEntry(0), indices[0]);
+        StrainEntry[] ent = extendAlignment(ge1, ali.getStrainEntry(0), p.indices[0]);
         for(StrainEntry se:ent)
             tmp.add(se);
-        ent = extendAlignment(ge2, ali.getStrainEntry(1), indices[1]);
+        ent = extendAlignment(ge2, ali.getStrainEntry(1), p.indices[1]);
         for(StrainEntry se:ent)
             tmp.add(se);
-        return new Alignment(ba.getScore(), tmp.toArray(new StrainEntry[tmp.size()]), "Pairwise gene alignment", "");
+        return new Alignment(p.fScore, tmp.toArray(new StrainEntry[tmp.size()]), "Pairwise gene alignment", "");
     }
 
     /**
@@ -3,10 +3,11 @@
         GotohPairwiseFreeshiftAligner.java
  *
     Revision:
-        1.0.0.1
+        1.0.0.2
  *
     Description:
-        Encapsulates the Gotoh pairwise alignment.
+        Encapsulates the Gotoh pairwise alignment. Short sequences are aligned
+        using the full matrices, long ones using the linear space engine.
  *
     Project:
         GeneAnalyzer 2.2
@@ -17,7 +18,7 @@
 
 package algorithms.alignment;
 
-import plugin.classes.IAligner;
+import plugin.classes.IScoringAligner;
 import algorithms.Matrix2D;
 import algorithms.SequenceBuffer;
 import bio.gene.GeneRegion;
@@ -32,8 +33,11 @@ import kernel.ErrorCode;
 import plugin.AInitData;
 
 
-public class GotohPairwiseFreeshiftAligner implements IAligner
+public class GotohPairwiseFreeshiftAligner implements IScoringAligner
 {    
+    // Maximal number of cells aligned using the full matrices, if the engine is not specified.
+    private static final long MAXFULLCELLS  = 1<<22;
+
     private AInitData initData = null;
     private String strLastErr  = null;
     private Options options    = null;
@@ -61,7 +65,8 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
 
     public String getParamString()
     {
-        return "match='<NUMBER>' mismatch='<NUMBER>' gap_open='<NUMBER>' gap_extend='<NUMBER>'";
+        return "match='<NUMBER>' mismatch='<NUMBER>' gap_open='<NUMBER>' gap_extend='<NUMBER>' "+
+               "engine='<full|linear>' band='<NUMBER>'";
     }
 
     public String getLastError()
@@ -82,28 +87,85 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
             return null;
         }
         // Options.
-        Options opt = null;
-        if(options==null || strParams==null || (options!=null && strParams!=null && !strParams.isEmpty()))
+        Options opt = acquireOptions(strParams);
+        if(opt==null)
         {
-            opt = getOptions(strParams);
+            strLastErr = "Cancelled by user";
+            return null;
+        }
+        initData.wd.show(IWaitDialog.TYPE.Aligner);
+        String strSeq1 = entries[0].getCompleteSequence();
+        String strSeq2 = entries[1].getCompleteSequence();
+        TracebackPath path = null;
+        long nCells = (long)(strSeq1.length()+1)*(strSeq2.length()+1);
+        if(opt.engine==Engine.Linear || opt.band>0 || (opt.engine==Engine.Auto && nCells>MAXFULLCELLS))
+        {
+            LinearGotohEngine engine = new LinearGotohEngine(opt.match, opt.mismatch, opt.gap_open, opt.gap_extend);
+            engine.setBandWidth(opt.band);
+            path = engine.align(strSeq1, strSeq2);
+        }
+        else
+            path = alignFull(strSeq1, strSeq2, opt.match, opt.mismatch, opt.gap_open, opt.gap_extend);
+        float fScore = path.fScore;
+        // Traceback.
+        entries = traceback(path, strSeq1, strSeq2, entries);
+        String str = String.format("Match: %.3f, mismatch: %.3f, gap open: %.3f, gap extend: %.3f",
+                opt.match, opt.mismatch, opt.gap_open, opt.gap_extend);
+        initData.wd.close();
+        return new Alignment(fScore, entries, "Gotoh freeshift pairwise alignment", str);
+    }
+
+    public float scoreStrains(StrainEntry[] entries, String strParams)
+    {
+        if(entries==null || entries.length!=2)
+            return Float.NaN;
+        Options opt = acquireOptions(strParams);
+        if(opt==null)
+            return Float.NaN;
+        // The forward pass of the linear space engine yields the same score as the full matrices.
+        LinearGotohEngine engine = new LinearGotohEngine(opt.match, opt.mismatch, opt.gap_open, opt.gap_extend);
+        engine.setBandWidth(opt.band);
+        return engine.score(entries[0].getCompleteSequence(), entries[1].getCompleteSequence());
+    }
+
+    /**
+     *  Returns the options to use as described for IAligner.alignStrains or
+     *  null if the options dialog was cancelled.
+     *
+     *  @param strParams
+     *  @return
+     */
+    private synchronized Options acquireOptions(String strParams)
+    {
+        if(options==null || strParams==null || !strParams.isEmpty())
+        {
+            Options opt = getOptions(strParams);
             if(opt==null)
-            {
-                strLastErr = "Cancelled by user";
                 return null;
-            }
             options = opt;
         }
-        else
-            opt = options;
-        initData.wd.show(IWaitDialog.TYPE.Aligner);
+        return options;
+    }
+
+    /**
+     *  Aligns the sequences using the full G, E, F, D and traceback matrices.
+     *
+     *  @param strSeq1
+     *  @param strSeq2
+     *  @param match
+     *  @param mismatch
+     *  @param gap_open
+     *  @param gap_extend
+     *  @return
+     */
+    static TracebackPath alignFull(String strSeq1, String strSeq2, float match, float mismatch, float gap_open, float gap_extend)
+    {
         // Create alignment matrices.
-        String strSeq1 = entries[0].getCompleteSequence();
-        String strSeq2 = entries[1].getCompleteSequence();
         int nRows = strSeq1.length()+1;
         int nCols = strSeq2.length()+1;
         Matrix2D g = createGMatrix(nRows, nCols);
-        Matrix2D e = createEMatrix(nRows, nCols, opt.gap_extend, opt.gap_open);
-        Matrix2D f = createFMatrix(nRows, nCols, opt.gap_extend, opt.gap_open);
+        Matrix2D e = createEMatrix(nRows, nCols, gap_extend, gap_open);
+        Matrix2D f = createFMatrix(nRows, nCols, gap_extend, gap_open);
         Matrix2D d = createDMatrix(nRows, nCols);
         // Traceback matrix.
         Matrix2D tb = new Matrix2D(nRows, nCols);
@@ -115,19 +177,19 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
                 for(int j=1;j<nCols;j++)
                 {
                     // E matrix.
-                    float val_e = Math.max(g.getValue(i, j-1)+opt.gap_open+opt.gap_extend,
-                                           Math.max(e.getValue(i, j-1)+opt.gap_extend, f.getValue(i, j-1)+opt.gap_open+opt.gap_extend));
+                    float val_e = Math.max(g.getValue(i, j-1)+gap_open+gap_extend,
+                                           Math.max(e.getValue(i, j-1)+gap_extend, f.getValue(i, j-1)+gap_open+gap_extend));
                     e.setValue(i, j, val_e);
                     // F matrix.
-                    float val_f = Math.max(g.getValue(i-1, j)+opt.gap_open+opt.gap_extend,
-                                           Math.max(f.getValue(i-1, j)+opt.gap_extend, e.getValue(i-1, j)+opt.gap_open+opt.gap_extend));
+                    float val_f = Math.max(g.getValue(i-1, j)+gap_open+gap_extend,
+                                           Math.max(f.getValue(i-1, j)+gap_extend, e.getValue(i-1, j)+gap_open+gap_extend));
                     f.setValue(i, j, val_f);
                     // G matrix.
                     char c1 = strSeq1.charAt(i-1);
                     char c2 = strSeq2.charAt(j-1);
-                    float val = (c1==c2) ? opt.match : opt.mismatch;
+                    float val = (c1==c2) ? match : mismatch;
                     if(c1=='X' || c2=='X' || c1=='N' || c2=='N')
-                        val = (opt.match+opt.mismatch)/2.0f;
+                        val = (match+mismatch)/2.0f;
                     float val_g = Math.max(g.getValue(i-1, j-1)+val,
                                            Math.max(e.getValue(i-1, j-1)+val, f.getValue(i-1, j-1)+val));
                     g.setValue(i, j, val_g);
@@ -146,8 +208,8 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
         }
         catch(Matrix2D.EIllegalSubscriptException exception) {}
         // Find the maximum.
-        float fScore = 0.0f;
-        Point start = new Point(0, 0);
+        TracebackPath path = new TracebackPath();
+        path.start = new Point(0, 0);
         try
         {
             Matrix2D lastRow = d.submatrix(nRows-1, nRows-1, 0, nCols-1);
@@ -156,29 +218,52 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
             float max2 = lastCol.getMaximum();
             if(max1>max2)
             {
-                fScore = max1;
+                path.fScore = max1;
                 Point p = lastRow.getMaximumIndices();
-                start.x = nRows-1;
-                start.y = p.y;
+                path.start.x = nRows-1;
+                path.start.y = p.y;
             }
             else
             {
-                fScore = max2;
+                path.fScore = max2;
                 Point p = lastCol.getMaximumIndices();
-                start.x = p.x;
-                start.y = nCols-1;
+                path.start.x = p.x;
+                path.start.y = nCols-1;
             }
         }
         catch(Matrix2D.EIllegalSubscriptException exception){}
-        // Traceback.
-        entries = traceback(start, tb, strSeq1, strSeq2, entries);
-        String str = String.format("Match: %.3f, mismatch: %.3f, gap open: %.3f, gap extend: %.3f",
-                opt.match, opt.mismatch, opt.gap_open, opt.gap_extend);
-        initData.wd.close();
-        return new Alignment(fScore, entries, "Gotoh freeshift pairwise alignment", str);
+        // Collect the traceback moves.
+        int i = path.start.x;
+        int j = path.start.y;
+        while(i>0 && j>0)
+        {
+            float tmp = 0.0f;
+            try
+            {
+                tmp = tb.getValue(i, j);
+            }
+            catch(Matrix2D.EIllegalSubscriptException exception){}
+            if(tmp=='d')
+            {
+                path.addMove(TracebackPath.DIAGONAL);
+                i--;
+                j--;
+            }
+            else if(tmp=='l')
+            {
+                path.addMove(TracebackPath.LEFT);
+                j--;
+            }
+            else
+            {
+                path.addMove(TracebackPath.TOP);
+                i--;
+            }
+        }
+        return path;
     }
 
-    private Matrix2D createGMatrix(int nRows, int nCols)
+    private static Matrix2D createGMatrix(int nRows, int nCols)
     {
         Matrix2D m = new Matrix2D(nRows, nCols);
         try
@@ -193,7 +278,7 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
         return m;
     }
 
-    private Matrix2D createEMatrix(int nRows, int nCols, float ge, float go)
+    private static Matrix2D createEMatrix(int nRows, int nCols, float ge, float go)
     {
         Matrix2D m = new Matrix2D(nRows, nCols);
         try
@@ -208,7 +293,7 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
         return m;
     }
 
-    private Matrix2D createFMatrix(int nRows, int nCols, float ge, float go)
+    private static Matrix2D createFMatrix(int nRows, int nCols, float ge, float go)
     {
         Matrix2D m = new Matrix2D(nRows, nCols);
         try
@@ -223,7 +308,7 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
         return m;
     }
 
-    private Matrix2D createDMatrix(int nRows, int nCols)
+    private static Matrix2D createDMatrix(int nRows, int nCols)
     {
         Matrix2D m = new Matrix2D(nRows, nCols);
         try
@@ -238,8 +323,9 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
         return m;
     }
 
-    private StrainEntry[] traceback(Point start, Matrix2D tb, String strSeq1, String strSeq2, StrainEntry[] entries)
+    private StrainEntry[] traceback(TracebackPath path, String strSeq1, String strSeq2, StrainEntry[] entries)
     {
+        Point start = path.start;
         int nRows = strSeq1.length()+1;
         int nCols = strSeq2.length()+1;
         SequenceBuffer seq1 = new SequenceBuffer(nRows+nCols);
@@ -274,16 +360,12 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
             }
         }
         // Append the aligned part of the sequences.
+        int k = 0;
         while(i>0 && j>0)
         {
-            float tmp = 0.0f;
-            try
-            {
-                tmp = tb.getValue(i, j);
-            }
-            catch(Matrix2D.EIllegalSubscriptException exception){}
+            byte tmp = path.moves[k++];
             // Match/mismatch: align sequence1 and sequence2.
-            if(tmp=='d')
+            if(tmp==TracebackPath.DIAGONAL)
             {
                 seq1.appendBase(strSeq1.charAt(i-1));
                 seq2.appendBase(strSeq2.charAt(j-1));
@@ -296,7 +378,7 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
                 i--;
                 j--;
             }
-            else if(tmp=='l') // Insertion in the second sequence: introduce a gap into the first sequence.
+            else if(tmp==TracebackPath.LEFT) // Insertion in the second sequence: introduce a gap into the first sequence.
             {
                 seq1.appendBase('-');
                 seq2.appendBase(strSeq2.charAt(j-1));
@@ -415,6 +497,13 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
                                                                   : m.group(3));
             opt.gap_extend = Float.parseFloat(m.group(4).contains(",") ? m.group(4).replaceAll(",", ".")
                                                                   : m.group(4));
+            // Optional engine parameters.
+            Matcher m2 = Pattern.compile("engine='(full|linear)'", Pattern.CASE_INSENSITIVE).matcher(strParams);
+            if(m2.find())
+                opt.engine = m2.group(1).equalsIgnoreCase("full") ? Engine.Full : Engine.Linear;
+            m2 = Pattern.compile("band='([0-9]{1,9})'", Pattern.CASE_INSENSITIVE).matcher(strParams);
+            if(m2.find())
+                opt.band = Integer.parseInt(m2.group(1));
             return opt;
         }
         else
@@ -426,12 +515,21 @@ public class GotohPairwiseFreeshiftAligner implements IAligner
     /********************************************************************************************
     *                               PRIVATE CLASSES                                             *
     ********************************************************************************************/
+    private enum Engine
+    {
+        Auto,       // Full matrices for short sequences, linear space otherwise.
+        Full,
+        Linear
+    };
+
     private class Options
     {
         float gap_open = -10.0f;
         float gap_extend = -0.5f;
         float match = 5.0f;
         float mismatch = -4.0f;
+        Engine engine = Engine.Auto;
+        int band = 0;               // Band width of the linear space engine, 0 - no band.
     };
 
     private class OptionsDlg extends javax.swing.JDialog
@@ -0,0 +1,367 @@
+/*
+    File:
+        LinearGotohEngine.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Computes the Gotoh free-shift alignment in linear space. Instead of the
+        complete matrices, only the rows needed to continue the computation are
+        kept. The traceback is obtained by the divide-and-conquer approach of
+        Hirschberg: the rows are split in halves, the middle row is computed and
+        the lower half is traced first, which yields the column the traceback
+        enters the upper half at. Only small blocks are traced using the full
+        traceback matrix.
+
+        The traceback of GotohPairwiseFreeshiftAligner follows the best matrix
+        of every cell, which is not necessarily the optimal path. Therefore the
+        middle cell cannot be found by combining the forward and the backward
+        scores as in the original Hirschberg algorithm, and the halves are
+        recomputed from the stored middle rows instead. The result is the same
+        as the one of the full matrices.
+
+        Optionally, only the cells within the band around the diagonal are
+        computed. The band is widened by the difference of the sequence lengths.
+        The result is the same if the alignment path lies within the band.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms.alignment;
+
+import java.awt.Point;
+
+
+class LinearGotohEngine
+{
+    // Maximal number of cells of the block traced using the full traceback matrix.
+    private static final int MAXBLOCK = 1<<22;
+
+    private static final float NEG_INF = Float.NEGATIVE_INFINITY;
+
+    private float match         = 5.0f;
+    private float mismatch      = -4.0f;
+    private float go            = -10.0f;   // Gap open.
+    private float ge            = -0.5f;    // Gap extend.
+    private int nBand           = 0;        // Band width, 0 - no band.
+
+    private char[] seq1         = null;
+    private char[] seq2         = null;
+    private int dn              = 0;        // Band widening below the diagonal.
+    private int dm              = 0;        // Band widening above the diagonal.
+    private int iCur            = 0;        // Current traceback cell.
+    private int jCur            = 0;
+    private TracebackPath path  = null;
+
+
+    /**
+     *  Creates the engine with the specified scores.
+     *
+     *  @param match
+     *  @param mismatch
+     *  @param gapOpen
+     *  @param gapExtend
+     */
+    public LinearGotohEngine(float match, float mismatch, float gapOpen, float gapExtend)
+    {
+        this.match = match;
+        this.mismatch = mismatch;
+        this.go = gapOpen;
+        this.ge = gapExtend;
+    }
+
+    /**
+     *  Sets the band width. If the width is 0, all cells are computed.
+     *
+     *  @param nBand
+     */
+    public void setBandWidth(int nBand)
+    {
+        this.nBand = Math.max(nBand, 0);
+    }
+
+    /**
+     *  Aligns the sequences and returns the traceback path.
+     *
+     *  @param strSeq1
+     *  @param strSeq2
+     *  @return
+     */
+    public TracebackPath align(String strSeq1, String strSeq2)
+    {
+        seq1 = strSeq1.toCharArray();
+        seq2 = strSeq2.toCharArray();
+        path = new TracebackPath();
+        float[][] row0 = createFirstRow(seq2.length);
+        findStart(row0);
+        // Traceback.
+        iCur = path.start.x;
+        jCur = path.start.y;
+        if(iCur>0 && jCur>0)
+            trace(0, row0, iCur);
+        TracebackPath result = path;
+        path = null;
+        seq1 = null;
+        seq2 = null;
+        return result;
+    }
+
+    /**
+     *  Returns the score of the alignment of the sequences. The traceback is
+     *  not carried out, thus the score is obtained in a single pass.
+     *
+     *  @param strSeq1
+     *  @param strSeq2
+     *  @return
+     */
+    public float score(String strSeq1, String strSeq2)
+    {
+        seq1 = strSeq1.toCharArray();
+        seq2 = strSeq2.toCharArray();
+        path = new TracebackPath();
+        findStart(createFirstRow(seq2.length));
+        float fScore = path.fScore;
+        path = null;
+        seq1 = null;
+        seq2 = null;
+        return fScore;
+    }
+
+    /**
+     *  Computes all rows and sets the score and the start cell of the path
+     *  to the maximum in the last row and in the last column.
+     *
+     *  @param row0
+     */
+    private void findStart(float[][] row0)
+    {
+        int n = seq1.length;
+        int m = seq2.length;
+        dn = Math.max(n-m, 0);
+        dm = Math.max(m-n, 0);
+        float[][] prev = copyRow(row0, m);
+        float[][] cur = new float[3][m+1];
+        float[] dCol = new float[n+1];      // Last column of D.
+        float[] dRow = new float[m+1];      // Last row of D.
+        dCol[0] = 0.0f;
+        for(int i=1;i<=n;i++)
+        {
+            dCol[i] = computeRow(i, prev, cur, m, null, 0, (i==n) ? dRow : null);
+            float[][] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        // The first row of D is 0.
+        if(n==0)
+        {
+            for(int j=0;j<=m;j++)
+                dRow[j] = 0.0f;
+        }
+        prev = null;
+        cur = null;
+        // The maximum as found by Matrix2D: the first of the greatest values.
+        int p1 = 0;
+        for(int j=1;j<=m;j++)
+        {
+            if(dRow[j]>dRow[p1])
+                p1 = j;
+        }
+        int p2 = 0;
+        for(int i=1;i<=n;i++)
+        {
+            if(dCol[i]>dCol[p2])
+                p2 = i;
+        }
+        if(dRow[p1]>dCol[p2])
+        {
+            path.fScore = dRow[p1];
+            path.start = new Point(n, p1);
+        }
+        else
+        {
+            path.fScore = dCol[p2];
+            path.start = new Point(p2, m);
+        }
+    }
+
+    /**
+     *  Traces the path from the current cell, which lies in the row bottom,
+     *  until the row top or the first column is reached.
+     *
+     *  @param top
+     *  @param rowTop   G, E and F values of the row top
+     *  @param bottom
+     */
+    private void trace(int top, float[][] rowTop, int bottom)
+    {
+        int nCols = jCur+1;
+        if((long)(bottom-top)*nCols<=MAXBLOCK || bottom-top<2)
+        {
+            // Compute the traceback matrix of the block and trace it.
+            byte[] tb = new byte[(bottom-top)*nCols];
+            float[][] prev = copyRow(rowTop, jCur);
+            float[][] cur = new float[3][nCols];
+            for(int i=top+1;i<=bottom;i++)
+            {
+                computeRow(i, prev, cur, jCur, tb, (i-top-1)*nCols, null);
+                float[][] tmp = prev;
+                prev = cur;
+                cur = tmp;
+            }
+            while(iCur>top && jCur>0)
+            {
+                byte move = tb[(iCur-top-1)*nCols+jCur];
+                path.addMove(move);
+                if(move==TracebackPath.DIAGONAL)
+                {
+                    iCur--;
+                    jCur--;
+                }
+                else if(move==TracebackPath.LEFT)
+                    jCur--;
+                else
+                    iCur--;
+            }
+            return;
+        }
+        // Compute the middle row and trace the lower half first.
+        int mid = (top+bottom)>>>1;
+        float[][] prev = copyRow(rowTop, jCur);
+        float[][] cur = new float[3][nCols];
+        for(int i=top+1;i<=mid;i++)
+        {
+            computeRow(i, prev, cur, jCur, null, 0, null);
+            float[][] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        cur = null;
+        trace(mid, prev, bottom);
+        prev = null;
+        if(iCur>top && jCur>0)
+            trace(top, rowTop, mid);
+    }
+
+    /**
+     *  Computes the row i of the G, E and F matrices up to the column jMax
+     *  (inclusive) exactly as GotohPairwiseFreeshiftAligner does.
+     *
+     *  @param i
+     *  @param prev     row i-1
+     *  @param cur      row i
+     *  @param jMax
+     *  @param tb       traceback matrix or null
+     *  @param iOffset  position of the row in the traceback matrix
+     *  @param d        if not null, receives the D values
+     *  @return D value at the column jMax
+     */
+    private float computeRow(int i, float[][] prev, float[][] cur, int jMax, byte[] tb, int iOffset, float[] d)
+    {
+        float[] pg = prev[0];
+        float[] pe = prev[1];
+        float[] pf = prev[2];
+        float[] g = cur[0];
+        float[] e = cur[1];
+        float[] f = cur[2];
+        g[0] = NEG_INF;
+        e[0] = NEG_INF;
+        f[0] = -i*ge-go;
+        int jlo = 1;
+        int jhi = jMax;
+        if(nBand>0)
+        {
+            jlo = Math.max(1, i-nBand-dn);
+            jhi = Math.min(jMax, i+nBand+dm);
+            // The neighbours of the band are not computed.
+            if(jlo>1 && jlo<=jMax+1)
+            {
+                g[jlo-1] = NEG_INF;
+                e[jlo-1] = NEG_INF;
+                f[jlo-1] = NEG_INF;
+            }
+            if(jhi<jMax)
+            {
+                g[jhi+1] = NEG_INF;
+                e[jhi+1] = NEG_INF;
+                f[jhi+1] = NEG_INF;
+            }
+        }
+        char c1 = seq1[i-1];
+        boolean bAny1 = (c1=='X' || c1=='N');
+        float fAny = (match+mismatch)/2.0f;
+        for(int j=jlo;j<=jhi;j++)
+        {
+            // E matrix.
+            float val_e = Math.max(g[j-1]+go+ge, Math.max(e[j-1]+ge, f[j-1]+go+ge));
+            // F matrix.
+            float val_f = Math.max(pg[j]+go+ge, Math.max(pf[j]+ge, pe[j]+go+ge));
+            // G matrix.
+            char c2 = seq2[j-1];
+            float val = (c1==c2) ? match : mismatch;
+            if(bAny1 || c2=='X' || c2=='N')
+                val = fAny;
+            float val_g = Math.max(pg[j-1]+val, Math.max(pe[j-1]+val, pf[j-1]+val));
+            g[j] = val_g;
+            e[j] = val_e;
+            f[j] = val_f;
+            if(tb!=null)
+            {
+                byte move = (val_g>=val_e) ? TracebackPath.DIAGONAL : TracebackPath.LEFT;
+                if(val_f>Math.max(val_g, val_e))
+                    move = TracebackPath.TOP;
+                tb[iOffset+j] = move;
+            }
+            if(d!=null)
+                d[j] = Math.max(val_e, Math.max(val_f, val_g));
+        }
+        if(d!=null)
+        {
+            d[0] = 0.0f;
+            for(int j=1;j<=jMax;j++)
+            {
+                if(j<jlo || j>jhi)
+                    d[j] = NEG_INF;
+            }
+        }
+        // The first column of D is 0.
+        if(jMax==0)
+            return 0.0f;
+        if(jhi<jMax || jlo>jMax)
+            return NEG_INF;
+        return Math.max(e[jMax], Math.max(f[jMax], g[jMax]));
+    }
+
+    /**
+     *  Creates the row 0 of the G, E and F matrices.
+     *
+     *  @param m
+     *  @return
+     */
+    private float[][] createFirstRow(int m)
+    {
+        float[][] row = new float[3][m+1];
+        row[0][0] = 0.0f;
+        row[1][0] = NEG_INF;
+        row[2][0] = NEG_INF;
+        for(int j=1;j<=m;j++)
+        {
+            row[0][j] = NEG_INF;
+            row[1][j] = -j*ge-go;
+            row[2][j] = NEG_INF;
+        }
+        return row;
+    }
+
+    private static float[][] copyRow(float[][] row, int nCols)
+    {
+        float[][] copy = new float[3][nCols+1];
+        for(int k=0;k<3;k++)
+            System.arraycopy(row[k], 0, copy[k], 0, nCols+1);
+        return copy;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+    File:
+        TracebackPath.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Result of the Gotoh free-shift alignment: the score, the cell the
+        traceback starts at and the traceback moves.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package algorithms.alignment;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+
+class TracebackPath
+{
+    public static final byte DIAGONAL   = 'd';      // Match/mismatch.
+    public static final byte LEFT       = 'l';      // Gap in the first sequence.
+    public static final byte TOP        = 't';      // Gap in the second sequence.
+
+    public float fScore = 0.0f;
+    public Point start  = null;         // x - row (first sequence), y - column (second sequence)
+    public byte[] moves = new byte[256];// Moves in traceback order, i.e. starting at start.
+    public int nMoves   = 0;
+
+
+    /**
+     *  Appends the move.
+     *
+     *  @param move
+     */
+    public void addMove(byte move)
+    {
+        if(nMoves==moves.length)
+            moves = Arrays.copyOf(moves, 2*nMoves);
+        moves[nMoves++] = move;
+    }
+}
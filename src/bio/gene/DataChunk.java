@@ -3,7 +3,7 @@
         DataChunk.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.0
  * 
     Description:
         Represents a data chunk of any kind.
@@ -18,6 +18,7 @@
 package bio.gene;
 
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public abstract class DataChunk 
@@ -26,6 +27,15 @@ public abstract class DataChunk
      *  Properties object can be used to store any user-defined data.
      */
     protected HashMap<String, Object> properties = null;
+
+    // Source of the modification stamps. Every modification gets a greater
+    // stamp than all modifications before, no matter which chunk is modified.
+    private static final AtomicLong modifications = new AtomicLong(0);
+
+    /**
+     *  Stamp of the last modification of the data, the properties excluded.
+     */
+    private volatile long lModified = modifications.incrementAndGet();
     
     
     /**
@@ -58,4 +68,25 @@ public abstract class DataChunk
             return null;
         return properties.get(strName);
     }
+
+    /**
+     *  Returns the stamp of the last modification of the chunk. The stamp
+     *  increases with every modification of the data, but not when the
+     *  properties are changed. Thus, the results derived from the data can be
+     *  reused as long as the stamp remains the same.
+     *
+     *  @return
+     */
+    public long getModificationStamp()
+    {
+        return lModified;
+    }
+
+    /**
+     *  Marks the chunk as modified.
+     */
+    protected void setModified()
+    {
+        lModified = modifications.incrementAndGet();
+    }
 }
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Vector;
 import kernel.QualityChecker;
 
@@ -32,6 +33,13 @@ public class Dataset extends DataChunk
      */
     private Vector<GeneEntry> genes;
 
+    /**
+     *  Genes of the data set indexed by their upper case common names.
+     *  The index is used to quickly check for the redundant entries and
+     *  is kept in sync with the genes vector.
+     */
+    private HashMap<String, GeneEntry> index;
+
     
     /**
      *  Constructor.
@@ -40,6 +48,7 @@ public class Dataset extends DataChunk
     {
         properties = new HashMap<String, Object>();
         genes = new Vector<GeneEntry>();
+        index = new HashMap<String, GeneEntry>();
     }
     
     
@@ -81,27 +90,25 @@ public class Dataset extends DataChunk
     {
         if(ge==null)
             return;
-        // Iterate through the existing gene entries and compare
-        // them to the new one.
-        for(GeneEntry gene:genes)
+        // Look up the gene entry with the same common name.
+        GeneEntry gene = index.get(createKey(ge.getCommonName()));
+        // If the existing gene and the new gene are the same object, return.
+        if(gene==ge)
+            return;
+        // If the gene name of the existing and the new gene entries
+        // is the same, add the strain entries to existing gene entry.
+        if(gene!=null)
         {
-            // If the current gene and the new gene are the same object, return.
-            if(gene==ge)
-                return;
-            // If the gene name of the existing and the new gene entries
-            // is the same, add the strain entries to existing gene entry.
-            if(gene.getCommonName().equalsIgnoreCase(ge.getCommonName()))
-            {
-                for(int i=0;i<ge.getStrainsCount();i++)
-                    gene.addStrain(ge.getStrainEntry(i));
-                // Since this is the only way to add a new gene entry to the
-                // dataset, the function can return, since the uniqueness of
-                // the gene entry is quaranted.
-                return;
-            }
+            for(int i=0;i<ge.getStrainsCount();i++)
+                gene.addStrain(ge.getStrainEntry(i));
+            // Since this is the only way to add a new gene entry to the
+            // dataset, the function can return, since the uniqueness of
+            // the gene entry is quaranted.
+            return;
         }
         // If the gene entry does not exist, add it.
-        genes.add(ge); 
+        genes.add(ge);
+        index.put(createKey(ge.getCommonName()), ge);
     }
     
     
@@ -113,7 +120,12 @@ public class Dataset extends DataChunk
     public void removeGene(int iIndex)
     {
         if( (iIndex<genes.size()) && (iIndex>-1) )
-            genes.remove(iIndex);
+        {
+            GeneEntry ge = genes.remove(iIndex);
+            String strKey = createKey(ge.getCommonName());
+            if(index.get(strKey)==ge)
+                index.remove(strKey);
+        }
     }
     
     
@@ -126,13 +138,23 @@ public class Dataset extends DataChunk
      */
     public boolean hasGene(String strName)
     {
-        // Iterate through the genes and compare the common names.
-        for(GeneEntry gene:genes)
-        {
-            if(gene.getCommonName().equalsIgnoreCase(strName))
-                return true;
-        }
-        return false;
+        return getGeneByName(strName)!=null;
+    }
+
+
+    /**
+     *  Returns the gene entry with the specified common name or null if
+     *  the data set does not contain such gene. The names are compared
+     *  case-insensitively.
+     *
+     *  @param strName
+     *  @return
+     */
+    public GeneEntry getGeneByName(String strName)
+    {
+        if(strName==null)
+            return null;
+        return index.get(createKey(strName));
     }
     
     
@@ -211,6 +233,7 @@ public class Dataset extends DataChunk
                         return ge1.getCommonName().compareTo(ge2.getCommonName());
                     }
                 });
+        rebuildIndex();
     }
 
     /**
@@ -227,5 +250,33 @@ public class Dataset extends DataChunk
                         return q1.compareTo(q2);
                     }
                 });
+        rebuildIndex();
+    }
+
+    /**
+     *  Rebuilds the name index. Since the common name of a gene entry can
+     *  be changed after the entry was added to the data set, the index is
+     *  refreshed whenever the genes are rearranged.
+     */
+    public void rebuildIndex()
+    {
+        index.clear();
+        for(GeneEntry ge:genes)
+        {
+            String strKey = createKey(ge.getCommonName());
+            if(!index.containsKey(strKey))
+                index.put(strKey, ge);
+        }
+    }
+
+    /**
+     *  Creates the index key for the specified gene name.
+     *
+     *  @param strName
+     *  @return
+     */
+    private static String createKey(String strName)
+    {
+        return strName.toUpperCase(Locale.ENGLISH);
     }
 }
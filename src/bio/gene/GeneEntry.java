@@ -3,7 +3,7 @@
         GeneEntry.java
  *   
     Revision:
-        2.2.0.2
+        2.2.1.0
  * 
     Description:
         Represents a gene entry. A gene entry holds the StrainEntry
@@ -64,6 +64,7 @@ public class GeneEntry extends DataChunk
     public void setCommonName(String strCommonName)
     {
         this.strCommonName = (strCommonName!=null) ? strCommonName : "";
+        setModified();
     }
     
     
@@ -86,6 +87,7 @@ public class GeneEntry extends DataChunk
     public void setAlias(String strAlias)
     {
         this.strAlias = (strAlias!=null) ? strAlias : "";
+        setModified();
     }
     
     
@@ -136,6 +138,7 @@ public class GeneEntry extends DataChunk
         }
         // If the strain entry does not exist, add it.
         strains.add(se);
+        setModified();
     }
         
     /**
@@ -146,7 +149,25 @@ public class GeneEntry extends DataChunk
     public void removeStrain(int iIndex)
     {
         if( (iIndex<strains.size()) && (iIndex>-1) )
+        {
             strains.remove(iIndex);
+            setModified();
+        }
+    }
+
+    /**
+     *  Returns the stamp of the last modification of the gene entry, of any
+     *  of its strain entries or of their regions.
+     *
+     *  @return
+     */
+    @Override
+    public long getModificationStamp()
+    {
+        long lStamp = super.getModificationStamp();
+        for(StrainEntry se:strains)
+            lStamp = Math.max(lStamp, se.getModificationStamp());
+        return lStamp;
     }
 
     /**
@@ -3,7 +3,7 @@
         GeneRegion.java
  *   
     Revision:
-        2.2.0.2
+        2.2.2.0
  * 
     Description:
         Represents one sequence region such as exon, intron etc.
@@ -107,6 +107,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
             sequence = new SequenceBuffer(strSequence.replaceAll("\n", "").toUpperCase());
         else
             sequence = new SequenceBuffer("");
+        setModified();
     }
     
     
@@ -130,6 +131,23 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
     {
         return sequence.length();
     }
+
+    /**
+     *  Copies the bases from iStart to iEnd (exclusive) into the array dst
+     *  starting at iOffset, one base per byte. Unlike getSequence, the method
+     *  does not create a copy of the complete sequence.
+     *
+     *  Throws IndexOutOfBoundsException if the range exceeds the sequence.
+     *
+     *  @param iStart
+     *  @param iEnd
+     *  @param dst
+     *  @param iOffset
+     */
+    public void getBases(int iStart, int iEnd, byte[] dst, int iOffset)
+    {
+        sequence.getBytes(iStart, iEnd, dst, iOffset);
+    }
     
     /**
      *  Sets the starting position of the region. If the position is negative
@@ -142,6 +160,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
     public void setStart(int i)
     {
         iStartPos = (i>0) ? i : 0;
+        setModified();
     }
     
     
@@ -168,6 +187,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
     public void setEnd(int i)
     {
         iEndPos = (i>=iStartPos) ? i : 0;
+        setModified();
     }
     
     
@@ -191,6 +211,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
     public void setType(String strType)
     {
         this.strType = (strType==null) ? "" : strType;
+        setModified();
     }
     
     /**
@@ -216,6 +237,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
         if(iSite>-1 && iSite<sequence.length())
         {
             sequence.setBaseAt(iSite, Character.toUpperCase(base));
+            setModified();
             return true;
         }
         return false;
@@ -237,6 +259,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
         {
             sequence.removeBase(iSite);
             iEndPos-=1;
+            setModified();
             return true;
         }
         return false;
@@ -265,6 +288,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
         {
             int nRemoved = sequence.removeBases(iStart, nCount);
             iEndPos-=nRemoved;
+            setModified();
             return nRemoved;
         }
     }
@@ -283,6 +307,7 @@ public class GeneRegion extends DataChunk implements Comparable<GeneRegion>
         {
             sequence.insertBase(iSite, base);
             iEndPos+=1;
+            setModified();
             return true;
         }
         return false;
@@ -3,7 +3,7 @@
         StrainEntry.java
  *   
     Revision:
-        2.2.0.2
+        2.2.1.0
  * 
     Description:
         Represents a strain entry of a particular gene.
@@ -79,6 +79,7 @@ public class StrainEntry extends DataChunk
     public void setSpeciesName(String strSpecies)
     {
         this.strSpecies = (strSpecies!=null) ? strSpecies : "";
+        setModified();
     }
     
     /**
@@ -100,6 +101,7 @@ public class StrainEntry extends DataChunk
     public void setStrainName(String strStrainName)
     {
         this.strStrain = (strStrainName!=null) ? strStrainName : "";
+        setModified();
     }
     
     /**
@@ -121,6 +123,7 @@ public class StrainEntry extends DataChunk
     public void setChromosome(String strChromosome)
     {
         this.strChromosome = (strChromosome!=null) ? strChromosome : "";
+        setModified();
     }
     
     /**
@@ -148,6 +151,7 @@ public class StrainEntry extends DataChunk
                 if(s!=null)
                     this.populations.add(s);
             }
+            setModified();
         }
     }
     
@@ -181,6 +185,7 @@ public class StrainEntry extends DataChunk
             {
                 this.populations.remove(s);
             }
+            setModified();
         }
     }    
     
@@ -291,6 +296,7 @@ public class StrainEntry extends DataChunk
         sequence.add(region); 
         // Sort the regions.
         Collections.sort(sequence);
+        setModified();
     }
     
     /**
@@ -302,7 +308,25 @@ public class StrainEntry extends DataChunk
     public void removeRegion(int iIndex)
     {
         if( (iIndex<sequence.size()) && (iIndex>-1) )
+        {
             sequence.remove(iIndex);
+            setModified();
+        }
+    }
+
+    /**
+     *  Returns the stamp of the last modification of the strain entry or of
+     *  any of its regions.
+     *
+     *  @return
+     */
+    @Override
+    public long getModificationStamp()
+    {
+        long lStamp = super.getModificationStamp();
+        for(GeneRegion gr:sequence)
+            lStamp = Math.max(lStamp, gr.getModificationStamp());
+        return lStamp;
     }    
     
     /**
@@ -3,7 +3,7 @@
         Codon.java
  *   
     Revision:
-        1.1.0.1
+        1.2.1.0
  * 
     Description:
         Represents a single codon.
@@ -22,12 +22,22 @@ import java.util.HashMap;
 
 public class Codon extends DataChunk
 {
-    private static HashMap<String, Codon> codons = generateCodonsList();
+    // The codons by codon index (see CodonLookup).
+    private static Codon[] codons = generateCodonsList();
+
+    // The codons network is generated completely before the class is used
+    // to avoid lazy initialization when the codons are shared between threads.
+    static
+    {
+        for(Codon c:codons)
+            c.generateNeighbors();
+    }
 
     private final static int NEIGHBORSCOUNT = 9;
     
     private String strSequence  = null;
     private Codon[] neighbors   = null;    
+    private int iIndex          = -1;
 
 
     /**
@@ -37,15 +47,16 @@ public class Codon extends DataChunk
      *  @param strSequence
      *  @param ct
      */
-    private Codon(String strSequence)
+    private Codon(String strSequence, int iIndex)
     {
         properties = new HashMap<String, Object>();
         this.strSequence = strSequence;
+        this.iIndex = iIndex;
     }
 
     private void generateNeighbors()
     {
-        neighbors = new Codon[NEIGHBORSCOUNT];
+        Codon[] neighbors = new Codon[NEIGHBORSCOUNT];
         int index = 0;
         char[] bases = new char[]{'A','C','G','T'};
         // For each codon site (0,1,2) generate a codon which only
@@ -62,11 +73,12 @@ public class Codon extends DataChunk
                 // add it to the neighbors list.
                 if (!strSeq.equalsIgnoreCase(strSequence))
                 {
-                    neighbors[index] = getCodon(strSeq);
+                    neighbors[index] = codons[CodonLookup.encode(strSeq)];
                     index++;
                 }
             }
         }
+        this.neighbors = neighbors;
     }
     
     public String getSequence()
@@ -74,6 +86,18 @@ public class Codon extends DataChunk
         return strSequence;
     }
     
+    /**
+     *  Returns the index of the codon (0-63). The codons are indexed in the
+     *  order returned by generateCodonSequences, i.e. AAA=0, AAC=1, ..., TTT=63,
+     *  which is the index used by CodonLookup.
+     *
+     *  @return
+     */
+    public int getIndex()
+    {
+        return iIndex;
+    }
+
     /**
      *  Returns the number of neighbors.
      * 
@@ -98,60 +122,21 @@ public class Codon extends DataChunk
     }
 
     /**
-     *  Calculates the number of syn. and nonsyn. sites in the codon.
-     *  The flag bTerm specifies whether or not to exclude the terminal
+     *  Returns the number of syn. and nonsyn. sites in the codon. The flag
+     *  bTerm specifies whether or not to count the substitutions to terminal
      *  codons (neighbors) when estimating the number of syn. sites.
-     *  Algorithm:
-     *      There are no synonymous substitutions at position 2 of any codon.
-     *      Thus, this position should not be evaluated in order to reduce
-     *      computation costs.
-     *        Once the number of synonymous sites of the codon is calculated, the
-     *      value is added to the codon property list, in order to not re-calculate
-     *      it. Thus, for any number of analyzed codons, the CPU-time consuming
-     *      calculations are carried out max. 64 times (by the number of codons).
-     *        The calculation itself is described in the paper of Nei: for each
-     *        codon position the fraction of synonymous substitutions is calculated.
+     *  The numbers are calculated once per codon table, when the table is
+     *  created (see CodonLookup), as described in the paper of Nei: for each
+     *  codon position the fraction of synonymous substitutions is calculated.
      *
-     *  @param codon
      *  @param ct
      *  @param bTerm
-     *  @return number of syn. and nonsyn. sites or null if the site contains a gap.
+     *  @return number of syn. and nonsyn. sites
      */
     public float[] calculateNumberOfSites(ICodonTable ct, boolean bTerm)
     {
-        // Check the codon.
-        if(strSequence.contains("-"))
-            return null;
-        // Try to get the annotated value.
-        String pref = ct.getName(); // Prefix: the codon table name
-        Float sites = (Float)getProperty((bTerm) ? "SynSites_term_"+pref : "SynSites_noterm_"+pref);
-        if(sites!=null)
-            return new float[]{sites, 3.0f-sites};
-        sites = new Float(0.0f);
-        // If the value is not annotated, calculate it.
-        char[] bases = new char[]{'A','C','G','T'};
-        for (int i=0;i<3;i++)
-        {
-            int nMatches = 0;   // Number of syn. substitutions.
-            int nSubst = 0;     // Total number of substitutions.
-            for(char base:bases)
-            {
-                char[] chars = strSequence.toCharArray();
-                chars[i] = base;
-                String strNewCodon = new String(chars);
-                if(strNewCodon.equalsIgnoreCase(strSequence))
-                    continue;
-                if (!ct.isTerminal(strNewCodon) || bTerm)
-                {
-                    if(ct.areSynonymous(strNewCodon, strSequence))
-                        nMatches++;
-                    nSubst++;
-                }
-            }
-            sites  += (float) nMatches / (float)nSubst;
-        }
-        addProperty((bTerm) ? "SynSites_term_"+pref : "SynSites_noterm_"+pref, sites);
-        return new float[]{sites, 3.0f-sites};
+        CodonLookup lookup = ct.getLookup();
+        return new float[]{lookup.getSynonymousSites(iIndex, bTerm), lookup.getNonsynonymousSites(iIndex, bTerm)};
     }
 
     /**
@@ -163,12 +148,20 @@ public class Codon extends DataChunk
      */
     public static Codon getCodon(String strSequence)
     {
-        if(!strSequence.matches("[ACGTacgt]{3}"))
-            return null;
-        Codon c = codons.get(strSequence);
-        if(c.neighbors==null)
-            c.generateNeighbors();
-        return c;
+        int i = CodonLookup.encode(strSequence);
+        return (i!=CodonLookup.INVALID) ? codons[i] : null;
+    }
+
+    /**
+     *  Returns the codon with the specified index (see CodonLookup) or null
+     *  if the index is invalid.
+     *
+     *  @param iIndex
+     *  @return
+     */
+    public static Codon getCodon(int iIndex)
+    {
+        return (iIndex>-1 && iIndex<codons.length) ? codons[iIndex] : null;
     }
 
     /**
@@ -176,12 +169,12 @@ public class Codon extends DataChunk
      *
      *  @return
      */
-    private static HashMap<String, Codon> generateCodonsList()
+    private static Codon[] generateCodonsList()
     {
-        HashMap<String, Codon> network = new HashMap<String, Codon>();
         String[] seqs = generateCodonSequences();
-        for(String strSeq:seqs)
-            network.put(strSeq, new Codon(strSeq));
+        Codon[] network = new Codon[seqs.length];
+        for(int i=0;i<seqs.length;i++)
+            network[i] = new Codon(seqs[i], i);
         return network;
     }
 
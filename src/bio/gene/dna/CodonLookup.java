@@ -0,0 +1,310 @@
+/*
+    File:
+        CodonLookup.java
+ *
+    Revision:
+        1.1.0.0
+ *
+    Description:
+        Dense lookup tables of a codon table. Every codon is identified by its
+        6-bit index (0-63), two bits per base in the order A, C, G, T, i.e.
+        AAA=0, AAC=1, ..., TTT=63, which is also the index of the shared Codon
+        objects. The amino acid, the fold family, the terminal and start flags
+        and the synonymy of any two codons are stored in arrays indexed by the
+        codon index, so that the codon-based algorithms do not need to look up
+        the codon sequences in the codon table.
+
+        The numbers of synonymous sites of the codons (Nei and Gojobori, 1986)
+        are calculated once, when the codon table is created, with and without
+        the substitutions to terminal codons.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package bio.gene.dna;
+
+import java.util.Arrays;
+
+
+public final class CodonLookup
+{
+    /**
+     *  Number of codons.
+     */
+    public static final int CODONS = 64;
+
+    /**
+     *  Index of invalid codons, i.e. codons containing other characters than
+     *  A, C, G, T.
+     */
+    public static final int INVALID = -1;
+
+    // Two-bit codes of the bases; -1 for all other characters.
+    private static final byte[] BASES = new byte[128];
+
+    static
+    {
+        Arrays.fill(BASES, (byte)-1);
+        BASES['A'] = 0; BASES['C'] = 1; BASES['G'] = 2; BASES['T'] = 3;
+    }
+
+    private byte[] aminoAcids   = null;     // Amino acid number of every codon.
+    private byte[] folds        = null;     // Fold family of every codon.
+    private boolean[] terminal  = null;     // Terminal flag of every codon.
+    private boolean[] start     = null;     // Start flag of every codon.
+    private boolean[] synonymous= null;     // synonymous[i*64+j]: codons i and j are synonymous.
+    private String[] olc        = null;     // One-letter code of every amino acid number.
+    private float[] synSitesTerm    = null; // Syn. sites of every codon, terminal codons used.
+    private float[] synSitesNoTerm  = null; // Syn. sites of every codon, terminal codons excluded.
+
+
+    /**
+     *  Creates the lookup tables by querying the codon table for each codon.
+     *
+     *  @param ct
+     */
+    CodonLookup(ICodonTable ct)
+    {
+        String[] seqs = Codon.generateCodonSequences();
+        aminoAcids = new byte[CODONS];
+        folds = new byte[CODONS];
+        terminal = new boolean[CODONS];
+        start = new boolean[CODONS];
+        synonymous = new boolean[CODONS*CODONS];
+        String[] names = new String[CODONS];
+        int nAminoAcids = 0;
+        for(int i=0;i<CODONS;i++)
+        {
+            // Amino acids are numbered in the order of their first codon.
+            String strOLC = ct.getAminoAcid(seqs[i], ICodonTable.TYPE.OneLetterCode);
+            int iAA = 0;
+            while(iAA<nAminoAcids && !names[iAA].equals(strOLC))
+                iAA++;
+            if(iAA==nAminoAcids)
+                names[nAminoAcids++] = strOLC;
+            aminoAcids[i] = (byte)iAA;
+            folds[i] = (byte)ct.getFoldFamily(seqs[i]);
+            terminal[i] = ct.isTerminal(seqs[i]);
+            start[i] = ct.isStartCodon(seqs[i]);
+            for(int j=0;j<CODONS;j++)
+                synonymous[i*CODONS+j] = ct.areSynonymous(seqs[i], seqs[j]);
+        }
+        olc = Arrays.copyOf(names, nAminoAcids);
+        synSitesTerm = calculateSynonymousSites(true);
+        synSitesNoTerm = calculateSynonymousSites(false);
+    }
+
+    /**
+     *  Calculates the number of synonymous sites of every codon. For each codon
+     *  position the fraction of synonymous substitutions among all possible
+     *  substitutions is calculated. The flag bTerm specifies whether or not
+     *  the substitutions to terminal codons are counted.
+     *
+     *  @param bTerm
+     *  @return
+     */
+    private float[] calculateSynonymousSites(boolean bTerm)
+    {
+        float[] sites = new float[CODONS];
+        for(int iCodon=0;iCodon<CODONS;iCodon++)
+        {
+            float fSites = 0.0f;
+            for(int i=0;i<3;i++)
+            {
+                int nMatches = 0;   // Number of syn. substitutions.
+                int nSubst = 0;     // Total number of substitutions.
+                int iShift = 2*(2-i);
+                for(int b=0;b<4;b++)
+                {
+                    int iMutant = (iCodon&~(3<<iShift))|(b<<iShift);
+                    if(iMutant==iCodon)
+                        continue;
+                    if(!terminal[iMutant] || bTerm)
+                    {
+                        if(synonymous[iCodon*CODONS+iMutant])
+                            nMatches++;
+                        nSubst++;
+                    }
+                }
+                fSites += (float)nMatches/(float)nSubst;
+            }
+            sites[iCodon] = fSites;
+        }
+        return sites;
+    }
+
+    /**
+     *  Returns the index of the codon consisting of the specified bases or
+     *  INVALID, if one of the bases is not A, C, G or T. The bases must be
+     *  upper case.
+     *
+     *  @param b1
+     *  @param b2
+     *  @param b3
+     *  @return
+     */
+    public static int encode(char b1, char b2, char b3)
+    {
+        if( (b1|b2|b3)>127 )
+            return INVALID;
+        int i1 = BASES[b1];
+        int i2 = BASES[b2];
+        int i3 = BASES[b3];
+        if( (i1|i2|i3)<0 )
+            return INVALID;
+        return (i1<<4)|(i2<<2)|i3;
+    }
+
+    /**
+     *  Returns the index of the codon starting at the specified position of
+     *  the sequence or INVALID, if the sequence does not contain a valid codon
+     *  at that position.
+     *
+     *  @param seq
+     *  @param iOffset
+     *  @return
+     */
+    public static int encode(CharSequence seq, int iOffset)
+    {
+        if(seq==null || iOffset<0 || iOffset+3>seq.length())
+            return INVALID;
+        return encode(seq.charAt(iOffset), seq.charAt(iOffset+1), seq.charAt(iOffset+2));
+    }
+
+    /**
+     *  Returns the index of the codon or INVALID, if strCodon is not a valid
+     *  codon, i.e. three upper case bases A, C, G or T.
+     *
+     *  @param strCodon
+     *  @return
+     */
+    public static int encode(String strCodon)
+    {
+        if(strCodon==null || strCodon.length()!=3)
+            return INVALID;
+        return encode(strCodon.charAt(0), strCodon.charAt(1), strCodon.charAt(2));
+    }
+
+    /**
+     *  Same as encode, but the bases may be lower case.
+     *
+     *  @param strCodon
+     *  @return
+     */
+    public static int encodeIgnoreCase(String strCodon)
+    {
+        if(strCodon==null || strCodon.length()!=3)
+            return INVALID;
+        return encode(Character.toUpperCase(strCodon.charAt(0)),
+                      Character.toUpperCase(strCodon.charAt(1)),
+                      Character.toUpperCase(strCodon.charAt(2)));
+    }
+
+    /**
+     *  Returns the number of the amino acid encoded by the codon. The amino
+     *  acids, including the terminal "amino acid", are numbered from 0 in the
+     *  order of their first codon.
+     *
+     *  @param iCodon
+     *  @return
+     */
+    public int getAminoAcid(int iCodon)
+    {
+        return aminoAcids[iCodon];
+    }
+
+    /**
+     *  Returns the one-letter code of the amino acid with the specified number.
+     *
+     *  @param iAminoAcid
+     *  @return
+     */
+    public String getOneLetterCode(int iAminoAcid)
+    {
+        return olc[iAminoAcid];
+    }
+
+    /**
+     *  Returns the number of different amino acids, the terminal included.
+     *
+     *  @return
+     */
+    public int getAminoAcidsCount()
+    {
+        return olc.length;
+    }
+
+    /**
+     *  Returns the fold family of the codon.
+     *
+     *  @param iCodon
+     *  @return
+     */
+    public int getFoldFamily(int iCodon)
+    {
+        return folds[iCodon];
+    }
+
+    /**
+     *  Returns true if the codon is a terminal codon.
+     *
+     *  @param iCodon
+     *  @return
+     */
+    public boolean isTerminal(int iCodon)
+    {
+        return terminal[iCodon];
+    }
+
+    /**
+     *  Returns true if the codon is a start codon.
+     *
+     *  @param iCodon
+     *  @return
+     */
+    public boolean isStartCodon(int iCodon)
+    {
+        return start[iCodon];
+    }
+
+    /**
+     *  Returns true if the codons encode the same amino acid.
+     *
+     *  @param iCodon1
+     *  @param iCodon2
+     *  @return
+     */
+    public boolean areSynonymous(int iCodon1, int iCodon2)
+    {
+        return synonymous[iCodon1*CODONS+iCodon2];
+    }
+
+    /**
+     *  Returns the number of synonymous sites of the codon.
+     *
+     *  @param iCodon
+     *  @param bTerm    whether or not the substitutions to terminal codons are counted
+     *  @return
+     */
+    public float getSynonymousSites(int iCodon, boolean bTerm)
+    {
+        return (bTerm) ? synSitesTerm[iCodon] : synSitesNoTerm[iCodon];
+    }
+
+    /**
+     *  Returns the number of nonsynonymous sites of the codon, i.e. three minus
+     *  the number of synonymous sites.
+     *
+     *  @param iCodon
+     *  @param bTerm    whether or not the substitutions to terminal codons are counted
+     *  @return
+     */
+    public float getNonsynonymousSites(int iCodon, boolean bTerm)
+    {
+        return 3.0f-((bTerm) ? synSitesTerm[iCodon] : synSitesNoTerm[iCodon]);
+    }
+}
@@ -3,7 +3,7 @@
         CustomCodonTable.java
  *   
     Revision:
-        1.0.0.1
+        1.1.0.0
  * 
     Description:
         Encapsulates a custom codon table, which can be loaded from an
@@ -100,6 +100,8 @@ public class CustomCodonTable implements ICodonTable
     
     private String strName = null;
     private HashMap<String, Codon> codons = null;
+    private Codon[] table = null;           // Codons by codon index.
+    private CodonLookup lookup = null;
     
     /**
      *  Use a private constructor to avoid creating uninitialized 
@@ -117,17 +119,18 @@ public class CustomCodonTable implements ICodonTable
 
     public boolean isTerminal(String strCodon)
     {
-        Codon c = codons.get(strCodon);
-        return (c!=null) ? c.bTerminal : false;
+        int i = CodonLookup.encode(strCodon);
+        return (i!=CodonLookup.INVALID) ? table[i].bTerminal : false;
     }
 
     public String getAminoAcid(String strCodon, TYPE type)
     {
-        Codon aa = codons.get(strCodon);
-        if(aa==null)
+        int i = CodonLookup.encode(strCodon);
+        if(i==CodonLookup.INVALID)
             return null;
         else
         {
+            Codon aa = table[i];
             switch(type)
             {
                 case FullName:
@@ -144,21 +147,26 @@ public class CustomCodonTable implements ICodonTable
 
     public boolean areSynonymous(String strCodon1, String strCodon2)
     {
-        Codon aa1 = codons.get(strCodon1.toUpperCase());
-        Codon aa2 = codons.get(strCodon2.toUpperCase());
-        return (aa1!=null && aa2!=null) ? aa1.strOLC.equals(aa2.strOLC) : false;
+        int i1 = CodonLookup.encodeIgnoreCase(strCodon1);
+        int i2 = CodonLookup.encodeIgnoreCase(strCodon2);
+        return (i1!=CodonLookup.INVALID && i2!=CodonLookup.INVALID) ? table[i1].strOLC.equals(table[i2].strOLC) : false;
     }
 
     public int getFoldFamily(String strCodon)
     {
-        Codon aa = codons.get(strCodon);
-        return (aa!=null) ? aa.iFold : 0;
+        int i = CodonLookup.encode(strCodon);
+        return (i!=CodonLookup.INVALID) ? table[i].iFold : 0;
     }    
         
     public boolean isStartCodon(String strCodon)
     {
         return false;
     }
+
+    public CodonLookup getLookup()
+    {
+        return lookup;
+    }
     
     /**
      *  Creates the codons table from XML file. If the file does not exist
@@ -214,8 +222,9 @@ public class CustomCodonTable implements ICodonTable
     
     /**
      *  Creates a new custom codon table using the specified codons. If the
-     *  number of unique codons is not 64, the method returns null. If the strName
-     *  is null or empty, the new table has the name "Unnamed".
+     *  number of unique codons is not 64 or a codon is invalid, the method
+     *  returns null. If the strName is null or empty, the new table has the
+     *  name "Unnamed".
      * 
      *  @param aas
      *  @param strName
@@ -233,6 +242,13 @@ public class CustomCodonTable implements ICodonTable
             cct.codons.put(c.strCodon, c);
         if(cct.codons.size()!=64)
             return null;  
+        cct.table = new Codon[64];
+        for(Codon c:aas)
+        {
+            if(!c.isValid())
+                return null;
+            cct.table[CodonLookup.encode(c.strCodon)] = c;
+        }
         // Calculate the fold for each codon.
         char[] bases = {'A', 'C', 'G', 'T'};
         for(Codon c:aas)
@@ -250,6 +266,7 @@ public class CustomCodonTable implements ICodonTable
             }
             c.iFold = nMatches;
         }
+        cct.lookup = new CodonLookup(cct);
         return cct;
     }
     
@@ -3,7 +3,7 @@
         DefaultCodonTable.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.0
  * 
     Description:
         Implements the genetic code table.
@@ -47,6 +47,13 @@ public class DefaultCodonTable implements ICodonTable
      *  Maps the codons to the corresponding amino acids.
      */
     private HashMap<String, Codon> codons = null;
+
+    /**
+     *  Amino acids of the codons by codon index.
+     */
+    private Codon[] table = null;
+
+    private CodonLookup lookup = null;
     
     
     /**
@@ -138,6 +145,11 @@ public class DefaultCodonTable implements ICodonTable
         codons.put("TAA", aa); codons.put("TAG", aa); 
         aa = new Codon("Terminal", "Ter", "*", 1, true);
         codons.put("TGA", aa);
+        String[] seqs = bio.gene.dna.Codon.generateCodonSequences();
+        table = new Codon[seqs.length];
+        for(int i=0;i<seqs.length;i++)
+            table[i] = codons.get(seqs[i]);
+        lookup = new CodonLookup(this);
     }  
     
     public String getName()
@@ -156,8 +168,8 @@ public class DefaultCodonTable implements ICodonTable
      */
     public boolean isTerminal(String codon)
     {
-        Codon aa = codons.get(codon);
-        return (aa!=null) ? aa.bTerminal : false;
+        int i = CodonLookup.encode(codon);
+        return (i!=CodonLookup.INVALID) ? table[i].bTerminal : false;
     }    
 
     /**
@@ -174,11 +186,12 @@ public class DefaultCodonTable implements ICodonTable
      */
     public String getAminoAcid(String strCodon, TYPE type)
     {
-        Codon aa = codons.get(strCodon);
-        if(aa==null)
+        int i = CodonLookup.encode(strCodon);
+        if(i==CodonLookup.INVALID)
             return null;
         else
         {
+            Codon aa = table[i];
             switch(type)
             {
                 case FullName:
@@ -203,9 +216,9 @@ public class DefaultCodonTable implements ICodonTable
      */
     public boolean areSynonymous(String codon1, String codon2)
     {
-        Codon aa1 = codons.get(codon1.toUpperCase());
-        Codon aa2 = codons.get(codon2.toUpperCase());
-        return (aa1!=null && aa2!=null) ? aa1.strOLC.equals(aa2.strOLC) : false;
+        int i1 = CodonLookup.encodeIgnoreCase(codon1);
+        int i2 = CodonLookup.encodeIgnoreCase(codon2);
+        return (i1!=CodonLookup.INVALID && i2!=CodonLookup.INVALID) ? table[i1].strOLC.equals(table[i2].strOLC) : false;
     }    
     
     /**
@@ -217,8 +230,8 @@ public class DefaultCodonTable implements ICodonTable
      */
     public int getFoldFamily(String strCodon)
     {
-        Codon aa = codons.get(strCodon);
-        return (aa!=null) ? aa.iFold : 0;
+        int i = CodonLookup.encode(strCodon);
+        return (i!=CodonLookup.INVALID) ? table[i].iFold : 0;
     }
 
     /**
@@ -231,4 +244,9 @@ public class DefaultCodonTable implements ICodonTable
     {
         return strCodon.equalsIgnoreCase("ATG");
     }
+
+    public CodonLookup getLookup()
+    {
+        return lookup;
+    }
 }
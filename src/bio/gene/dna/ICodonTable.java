@@ -3,7 +3,7 @@
         ICodonTable.java
  *   
     Revision:
-        1.0.0.1
+        1.1.0.0
  * 
     Description:
         Interface of a codons table.
@@ -89,4 +89,12 @@ public interface ICodonTable
      *  @return
      */
     public boolean isStartCodon(String strCodon);
+
+    /**
+     *  Returns the lookup tables of the codon table, which answer the same
+     *  questions for the codon indices (see CodonLookup).
+     *
+     *  @return
+     */
+    public CodonLookup getLookup();
 }
@@ -3,7 +3,7 @@
         PluginMain.java
  *
     Revision:
-        1.0.0.1
+        1.0.0.2
  *
     Description:
         Calculates the number of the bases in the entire dataset using
@@ -18,12 +18,14 @@
 
 package builtin.analyses.composition;
 
+import algorithms.AlignmentMatrix;
 import algorithms.CodonComposition;
 import algorithms.SequenceRoutines;
 import algorithms.SiteComposition;
 import bio.gene.Dataset;
 import bio.gene.GeneEntry;
 import bio.gene.StrainEntry;
+import bio.gene.dna.CodonLookup;
 import gui.IWaitDialog;
 import java.io.File;
 import java.io.FileWriter;
@@ -331,12 +333,22 @@ public class PluginMain extends ADatasetAnalyzer
         boolean bIsLast = pos==pop[0].length()-3;
         CodonComposition cc = new CodonComposition(initData.ct, bUseTerm);
         int nStrains = pop.length;
+        CodonLookup lookup = initData.ct.getLookup();
         for(int n=0;n<nStrains;n++)
         {
-            String strCodon = pop[n].substring(pos, pos+3);
-            if(strCodon.contains("-") || (bIsLast && bExclTerm && initData.ct.isTerminal(strCodon)))
+            String strSeq = pop[n];
+            char b1 = strSeq.charAt(pos);
+            char b2 = strSeq.charAt(pos+1);
+            char b3 = strSeq.charAt(pos+2);
+            if(b1=='-' || b2=='-' || b3=='-')
                 return null;
-            cc.addCodon(strCodon);
+            if(bIsLast && bExclTerm)
+            {
+                int iCodon = CodonLookup.encode(b1, b2, b3);
+                if(iCodon!=CodonLookup.INVALID && lookup.isTerminal(iCodon))
+                    return null;
+            }
+            cc.addCodon(b1, b2, b3);
         }
         return cc;
     }
@@ -400,11 +412,13 @@ public class PluginMain extends ADatasetAnalyzer
     {
         int length = pop[0].length();
         float[] res = (ao.bSizeConst) ? new float[7] : new float[5];
+        AlignmentMatrix amp = new AlignmentMatrix(pop);
+        SiteComposition scp = new SiteComposition();
         for(int pos=0;pos<length;pos++)
         {
-            SiteComposition scp = calculateSiteComposition(pop, pos);
-            if(scp==null)
+            if(amp.hasGap(pos))
                 continue;
+            amp.getSiteComposition(pos, scp);
             res[0]++;
             float[] tmp = scp.getBaseFrequencies(ao.bSizeConst);
             for(int i=0;i<tmp.length;i++)
@@ -413,19 +427,6 @@ public class PluginMain extends ADatasetAnalyzer
         return res;
     }
 
-    private SiteComposition calculateSiteComposition(String[] pop, int pos)
-    {
-        SiteComposition sc = new SiteComposition();
-        for(String s:pop)
-        {
-            char base = s.charAt(pos);
-            if(base=='-')
-                return null;
-            sc.addBase(base);
-        }
-        return sc;
-    }
-
     /**
      *  Returns the analysis options.
      *
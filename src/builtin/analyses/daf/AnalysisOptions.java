@@ -3,7 +3,7 @@
         AnalysisOptions.java
  *   
     Revision:
-        1.0.0.1
+        1.0.1.0
  * 
     Description:
         Holds the analysis options.
@@ -22,6 +22,7 @@ public class AnalysisOptions
     public String   strPop    = null;
     public String   strOut    = null;
     public String   strOutput = null;
+    public String   strSfsOutput = null;    // Binary frequency spectrum.
     public String   strRegion = null;
     public int      iMaxlen   = Integer.MAX_VALUE;
     public int      iMinlen   = 0;
@@ -3,7 +3,7 @@
         OptionsDialog.java
  *   
     Revision:
-        1.0.0.1
+        1.0.0.2
  * 
     Description:
         Allows the user to select options for performing the analysis.
@@ -434,7 +434,7 @@ public class OptionsDialog extends javax.swing.JDialog
         jcbShow.setText("Show results in a new window");
 
         jcbListFreqs.setSelected(true);
-        jcbListFreqs.setText("List single frequencies");
+        jcbListFreqs.setText("List frequency spectrum");
 
         javax.swing.GroupLayout jPanel2Layout = new javax.swing.GroupLayout(jPanel2);
         jPanel2.setLayout(jPanel2Layout);
@@ -3,10 +3,13 @@
         PluginMain.java
  *   
     Revision:
-        1.0.0.1
+        1.1.0.0
  * 
     Description:
         Estimates the frequencies of derived mutation in the specified region.
+        The derived allele counts are accumulated in a site frequency spectrum,
+        which is written as a histogram, optionally listed per sample size and
+        optionally saved in the binary form.
  * 
     Project:
         GeneAnalyzer 2.2
@@ -17,14 +20,20 @@
 
 package builtin.analyses.daf;
 
+import algorithms.AlignmentMatrix;
+import algorithms.SiteFrequencySpectrum;
 import algorithms.SequenceRoutines;
 import algorithms.SiteComposition;
 import bio.gene.Dataset;
 import bio.gene.GeneEntry;
 import bio.gene.StrainEntry;
+import bio.gene.dna.CodonLookup;
 import bio.gene.dna.ICodonTable.TYPE;
 import gui.IWaitDialog;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -51,8 +60,12 @@ public class PluginMain extends ADatasetAnalyzer
         int  nCount;
     };
 
+    // Number of the bins of the frequency histogram.
+    private static final int HISTOGRAM_BINS = 20;
+
     private String strErr = null;
-    private Vector<Float> freqs = null;
+    private SiteFrequencySpectrum sfs = null;
+    private String[][] labels = null;   // Formatted frequencies: labels[n][k] = k/n.
     private int nMutations = 0;
     private AInitData initData = null;
     
@@ -92,7 +105,7 @@ public class PluginMain extends ADatasetAnalyzer
     {
         return "pop='<POP>' out='<OUT>' type='<NAME>' maxlen='<MAXLEN>' minlen='<MINLEN>' " +
                "range='<POS1>-<POS2>;<POS3>' any='<T/F>' exclnonffd='<T/F>' strlimit='<LIMIT>' " +
-               "combine='<T/F>' freqs='<T/F>' constsize='<T/F>' lenrange='<T/F>' output='<OUTFILE>'";
+               "combine='<T/F>' freqs='<T/F>' constsize='<T/F>' lenrange='<T/F>' sfs='<SFSFILE>' output='<OUTFILE>'";
     }
 
     public String GetLastError()
@@ -122,8 +135,9 @@ public class PluginMain extends ADatasetAnalyzer
         content.append(String.format("Codon table: %s\n\n", initData.ct.getName()));
         // Write the header.
         content.append("Gene\t\tSamp.size\tSites\tP\tDAF\t\tSubstitutions\n");
-        // Single frequencies.
-        freqs = new Vector<Float>();
+        // Frequency spectrum.
+        sfs = new SiteFrequencySpectrum();
+        labels = new String[0][];
         // Iterate through the data set and analyze the genes.
         for(int i=0;i<dataset.getGenesCount();i++)
         {
@@ -157,13 +171,10 @@ public class PluginMain extends ADatasetAnalyzer
                     content.append("\t\t"+s+"\n");
             }           
         }
-        // Add single frequencies.
+        // Add the frequency spectrum.
+        appendHistogram(content);
         if(ao.bListFreqs)
-        {
-            content.append("\n\nSingle frequencies");
-            for(Float f:freqs)
-                content.append(String.format(initData.locale, "\n%.3f", f));
-        }
+            appendSpectrum(content);
         // Save the data into the file.
         if(ao.strOutput!=null && !ao.strOutput.isEmpty())
         {
@@ -180,6 +191,28 @@ public class PluginMain extends ADatasetAnalyzer
                 return ErrorCode.IOError;
             }
         }
+        // Save the raw spectrum if necessary.
+        if(ao.strSfsOutput!=null && !ao.strSfsOutput.isEmpty())
+        {
+            try
+            {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(ao.strSfsOutput)));
+                try
+                {
+                    sfs.write(out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            catch (IOException e)
+            {
+                strErr = "An I/O error occured while saving the frequency spectrum";
+                initData.wd.close();
+                return ErrorCode.IOError;
+            }
+        }
         // Display the results if necessary.
         ResultsWindow rw = null;
         if(ao.bShowRes)
@@ -230,39 +263,48 @@ public class PluginMain extends ADatasetAnalyzer
         }
         else // Non-coding regions.
         {
+            // The sequences of the regions are appended to the builders, thus
+            // combining many regions does not copy the sequences repeatedly.
+            StringBuilder[] popsb = null;
+            StringBuilder[] outsb = null;
             int nRegs = pop.get(0).getRegionsCount();
             for(int i=0;i<nRegs;i++)
             {
                 // Check the region type and the intron length.
                 if(pop.get(0).getRegion(i).hasType(ao.strRegion) && (isRegionLengthOk(pop, out, ao, i)) )
                 {
+                    if(popsb==null)
+                    {
+                        popsb = createBuilders(pop.size());
+                        outsb = createBuilders(out.size());
+                    }
                     // Distinguish between two options:
                     //  1. Complete region sequence
                     //  2. Specific sites
                     if(ao.sites==null) // Option 1.
                     {
-                        popseq = generateSequenceSet(popseq, pop, i);
-                        outseq = generateSequenceSet(outseq, out, i);
+                        appendSequences(popsb, pop, i);
+                        appendSequences(outsb, out, i);
                     }
                     else    // Option 2.
                     {
-                        generateSequenceSet(popseq, outseq, pop, out, i, ao.sites);
+                        appendSites(popsb, outsb, pop, out, i, ao.sites);
                     }
                     // If the regions should be combined, then continue appending
-                    // the sequences to the array, otherwise run the analysis
-                    // for one region and clear the array for the next iteration.
+                    // the sequences, otherwise run the analysis for one region
+                    // and start new sequences for the next iteration.
                     if(ao.bCombine)
                         continue;
                     else
                     {
-                        res.add(calculateStatisticsNoncoding(popseq, outseq, ao));
-                        popseq = new String[pop.size()];
-                        outseq = new String[out.size()];
+                        res.add(calculateStatisticsNoncoding(toStrings(popsb), toStrings(outsb), ao));
+                        popsb = null;
+                        outsb = null;
                     }
                 }
             }
-            if(ao.bCombine && popseq[0]!=null)
-                res.add(calculateStatisticsNoncoding(popseq, outseq, ao));
+            if(ao.bCombine && popsb!=null)
+                res.add(calculateStatisticsNoncoding(toStrings(popsb), toStrings(outsb), ao));
         }
         return (res.size()!=0) ? res.toArray(new String[1]) : null;
     }
@@ -306,14 +348,10 @@ public class PluginMain extends ADatasetAnalyzer
                 continue;
             else // Polymorphic site.
             {
+                int nSampleSize = (ao.bSizeConst) ? pop.length : scp.length;
                 for(CDSSite site:derived)
                 {
-                    float f = (ao.bSizeConst) ? (float)site.nCount/(float)pop.length
-                                              : (float)site.nCount/(float)scp.length;
-                    freqs.add(f);
-                    sb.append(String.format(initData.locale, "%.3f\t(%c->%c)\t",
-                                            f, site.anc, site.derived));
-                    freq += f;
+                    freq += addDerivedMutation(sb, site, nSampleSize);
                     nDerived++;
                 }
             }
@@ -345,16 +383,23 @@ public class PluginMain extends ADatasetAnalyzer
      */
     private char[] calculateAAComposition(String[] seqs, int pos)
     {
+        CodonLookup cl = initData.ct.getLookup();
         char[] aas = new char[seqs.length];
         int n = 0;
         for(int i=0;i<aas.length;i++)
         {
-            String strCodon = seqs[i].substring(pos, pos+3);
-            if(strCodon.indexOf('-')>-1)
+            char b1 = seqs[i].charAt(pos);
+            char b2 = seqs[i].charAt(pos+1);
+            char b3 = seqs[i].charAt(pos+2);
+            if(b1=='-' || b2=='-' || b3=='-')
                 return null;
-            if(strCodon.indexOf('X')>-1 || strCodon.indexOf('N')>-1)
+            if(b1=='X' || b2=='X' || b3=='X' || b1=='N' || b2=='N' || b3=='N')
                 continue;
-            aas[n] = initData.ct.getAminoAcid(strCodon, TYPE.OneLetterCode).charAt(0);
+            int iCodon = CodonLookup.encode(b1, b2, b3);
+            if(iCodon!=CodonLookup.INVALID)
+                aas[n] = cl.getOneLetterCode(cl.getAminoAcid(iCodon)).charAt(0);
+            else
+                aas[n] = initData.ct.getAminoAcid(seqs[i].substring(pos, pos+3), TYPE.OneLetterCode).charAt(0);
             n++;
         }
         if(n==0)
@@ -479,14 +524,10 @@ public class PluginMain extends ADatasetAnalyzer
                 continue;
             else // Polymorphic site.
             {
+                int nSampleSize = (ao.bSizeConst) ? pop.length : scp.getTotalBasesCount();
                 for(CDSSite site:derived)
                 {
-                    float f = (ao.bSizeConst) ? (float)site.nCount/(float)pop.length
-                                              : (float)site.nCount/(float)scp.getTotalBasesCount();
-                    freqs.add(f);
-                    sb.append(String.format(initData.locale, "%.3f\t(%c->%c)\t",
-                                            f, site.anc, site.derived));
-                    freq += f;
+                    freq += addDerivedMutation(sb, site, nSampleSize);
                     nDerived++;
                 }
             }
@@ -515,19 +556,20 @@ public class PluginMain extends ADatasetAnalyzer
      */
     private SiteComposition calculateSiteComposition(String[] pop, int pos, AnalysisOptions ao)
     {
+        CodonLookup cl = initData.ct.getLookup();
         SiteComposition sc = new SiteComposition();
-        String strRef = pop[0].substring(pos, pos+3);
+        int iRef = CodonLookup.encodeIgnoreCase(pop[0].substring(pos, pos+3));
         boolean b = false; // Flag, specifying, whether any sequence has a FFD codon at the specified site.
         for(int n=0;n<pop.length;n++)
         {
-            String codon = pop[n].substring(pos, pos+3);
             // 1. If there is a gap in any strain return null.
-            if(codon.contains("-"))
+            if(pop[n].charAt(pos)=='-' || pop[n].charAt(pos+1)=='-' || pop[n].charAt(pos+2)=='-')
                 return null;
             // 2. Check whether the codon is a FFD codon.
             // If it is not and the option "Ignore strains with non-FFD sites" is not selected,
             // return null to exclude the entire site. Otherwise just skip the single strain.
-            if(initData.ct.getFoldFamily(codon)!=4)
+            int iCodon = CodonLookup.encode(pop[n], pos);
+            if(iCodon==CodonLookup.INVALID || cl.getFoldFamily(iCodon)!=4)
             {
                 if(ao.bNonFfd)
                     continue;
@@ -537,10 +579,10 @@ public class PluginMain extends ADatasetAnalyzer
             // 3. Check whether the codon is syn. to the reference codon.
             // If they are not synonymous, then either reject the whole site
             // and return null or proceed with all sequences.
-            if(!initData.ct.areSynonymous(codon, strRef) && !ao.bUseAny)
+            if((iRef==CodonLookup.INVALID || !cl.areSynonymous(iCodon, iRef)) && !ao.bUseAny)
                 return null;
             b = true;
-            sc.addBase(codon.charAt(2));
+            sc.addBase(pop[n].charAt(pos+2));
         }
         return (b) ? sc : null;
     }
@@ -563,16 +605,19 @@ public class PluginMain extends ADatasetAnalyzer
         int nDerived = 0;
         float freq = 0.0f;
         StringBuffer sb = new StringBuffer();
+        AlignmentMatrix amp = new AlignmentMatrix(pop);
+        AlignmentMatrix amo = new AlignmentMatrix(out);
+        SiteComposition scp = new SiteComposition();
+        SiteComposition sco = new SiteComposition();
         for(int pos=0;pos<length;pos++)
         {
-            SiteComposition scp = calculateSiteComposition(pop, pos);
-            // If the site is divergent/monomorphic or if there are less than 2
+            // If there is a gap at the site or if there are less than 2
             // valid bases at the site, then it cannot be analyzed.
-            if(scp==null || scp.getValidBasesCount()<2)
+            if(amp.hasGap(pos) || amp.getSiteComposition(pos, scp).getValidBasesCount()<2)
                 continue;
-            SiteComposition sco = calculateSiteComposition(out, pos);
-            if(sco==null)
+            if(amo.hasGap(pos))
                 continue;
+            amo.getSiteComposition(pos, sco);
             nSites++;
             CDSSite[] derived = findDerivedMutations(scp, sco);
             // Divergent or monomorphic site.
@@ -580,14 +625,10 @@ public class PluginMain extends ADatasetAnalyzer
                 continue;
             else // Polymorphic site.
             {
+                int nSampleSize = (ao.bSizeConst) ? pop.length : scp.getTotalBasesCount();
                 for(CDSSite site:derived)
                 {
-                    float f = (ao.bSizeConst) ? (float)site.nCount/(float)pop.length
-                                              : (float)site.nCount/(float)scp.getTotalBasesCount();
-                    freqs.add(f);
-                    sb.append(String.format(initData.locale, "%.3f\t(%c->%c)\t",
-                                            f, site.anc, site.derived));
-                    freq += f;
+                    freq += addDerivedMutation(sb, site, nSampleSize);
                     nDerived++;
                 }
             }
@@ -604,28 +645,6 @@ public class PluginMain extends ADatasetAnalyzer
         return sb.toString();
     }
 
-    /**
-     *  Creates a site composition object of the current site. This method returns
-     *  null if there is a gap in any sequence at the specified position.
-     *
-     *  @param seqs
-     *  @param pos
-     *  @return
-     */
-    private SiteComposition calculateSiteComposition(String[] seqs, int pos)
-    {
-        SiteComposition sc = new SiteComposition();
-        for(int n=0;n<seqs.length;n++)
-        {
-            char base = seqs[n].charAt(pos);
-            if(base=='-')
-                return null;
-            else
-                sc.addBase(seqs[n].charAt(pos));
-        }
-        return sc;
-    }
-
     /**
      *  Iterates through both population and outgroup and returns true only if
      *  the minimal and the maxinal length are not beyond the length threshold.
@@ -658,39 +677,47 @@ public class PluginMain extends ADatasetAnalyzer
         }
     }
 
+    private StringBuilder[] createBuilders(int n)
+    {
+        StringBuilder[] sb = new StringBuilder[n];
+        for(int i=0;i<n;i++)
+            sb[i] = new StringBuilder();
+        return sb;
+    }
+
+    private String[] toStrings(StringBuilder[] sb)
+    {
+        String[] seqs = new String[sb.length];
+        for(int i=0;i<sb.length;i++)
+            seqs[i] = sb[i].toString();
+        return seqs;
+    }
+
     /**
-     *  Extracts the sequence of the specified region and appends it to already extracted region if necessary.
+     *  Appends the sequence of the specified region to the already extracted regions.
      *
-     *  @param old
+     *  @param seqs
      *  @param pop
      *  @param iRegion
-     *  @param bNogtag
-     *  @return
      */
-    private String[] generateSequenceSet(String[] old, Vector<StrainEntry> pop, int iRegion)
+    private void appendSequences(StringBuilder[] seqs, Vector<StrainEntry> pop, int iRegion)
     {
-        int nStrains = pop.size();
-        String[] seqs = new String[nStrains];
-        for(int n=0;n<nStrains;n++)
-        {
-            String seq = pop.get(n).getRegion(iRegion).getSequence();
-            seqs[n] = (old[n]==null) ? seq : old[n]+seq;
-        }
-        return seqs;
+        for(int n=0;n<seqs.length;n++)
+            seqs[n].append(pop.get(n).getRegion(iRegion).getSequence());
     }
 
     /**
-     *  Extracts the sequence of the specified region and extracts only the specified sites from the sequence.
+     *  Extracts the sequence of the specified region and appends only the specified sites of the sequence.
      *  This method skippes the sites, at which there is a gap in any sequence.
      *
-     *  @param old_p
-     *  @param old_o
+     *  @param popsb
+     *  @param outsb
      *  @param pop
      *  @param out
      *  @param iRegion
      *  @param sites
      */
-    private void generateSequenceSet(String[] old_p, String[] old_o, Vector<StrainEntry> pop, Vector<StrainEntry> out, int iRegion, int[] sites)
+    private void appendSites(StringBuilder[] popsb, StringBuilder[] outsb, Vector<StrainEntry> pop, Vector<StrainEntry> out, int iRegion, int[] sites)
     {
         int nPopSize = pop.size();
         int nOutSize = out.size();
@@ -704,9 +731,89 @@ public class PluginMain extends ADatasetAnalyzer
         // Extract the sites.
         seqs = SequenceRoutines.extractAlignedSites(seqs, sites);
         for(int i=0;i<nPopSize;i++)
-            old_p[i] = (old_p[i]==null) ? seqs[i] : old_p[i]+seqs[i];
+            popsb[i].append(seqs[i]);
         for(int i=0;i<nOutSize;i++)
-            old_o[i] = (old_o[i]==null) ? seqs[nPopSize+i] : old_o[i]+seqs[nPopSize+i];
+            outsb[i].append(seqs[nPopSize+i]);
+    }
+
+    /**
+     *  Adds the derived mutation to the frequency spectrum and appends its
+     *  frequency and the substitution to the results. Returns the frequency.
+     *
+     *  @param sb
+     *  @param site
+     *  @param nSampleSize
+     *  @return
+     */
+    private float addDerivedMutation(StringBuffer sb, CDSSite site, int nSampleSize)
+    {
+        sfs.add(site.nCount, nSampleSize);
+        sb.append(getFrequencyLabel(site.nCount, nSampleSize))
+          .append("\t(").append(site.anc).append("->").append(site.derived).append(")\t");
+        return (float)site.nCount/(float)nSampleSize;
+    }
+
+    /**
+     *  Returns the frequency nDerived/nSampleSize formatted with three decimals.
+     *  The frequencies are formatted only once per analysis.
+     *
+     *  @param nDerived
+     *  @param nSampleSize
+     *  @return
+     */
+    private String getFrequencyLabel(int nDerived, int nSampleSize)
+    {
+        if(nSampleSize>=labels.length)
+            labels = Arrays.copyOf(labels, Math.max(nSampleSize+1, 2*labels.length));
+        if(labels[nSampleSize]==null)
+            labels[nSampleSize] = new String[nSampleSize+1];
+        String s = labels[nSampleSize][nDerived];
+        if(s==null)
+        {
+            s = String.format(initData.locale, "%.3f", (float)nDerived/(float)nSampleSize);
+            labels[nSampleSize][nDerived] = s;
+        }
+        return s;
+    }
+
+    /**
+     *  Appends the histogram of the derived and of the minor allele frequencies.
+     *
+     *  @param content
+     */
+    private void appendHistogram(StringBuffer content)
+    {
+        long[] daf = sfs.getHistogram(HISTOGRAM_BINS, false);
+        long[] maf = sfs.getHistogram(HISTOGRAM_BINS, true);
+        content.append("\n\nFrequency histogram");
+        content.append("\nFrequency\tDerived\tMinor");
+        for(int i=0;i<HISTOGRAM_BINS;i++)
+        {
+            content.append(String.format(initData.locale, "\n%.2f-%.2f\t%d\t%d",
+                           (double)i/HISTOGRAM_BINS, (double)(i+1)/HISTOGRAM_BINS, daf[i], maf[i]));
+        }
+    }
+
+    /**
+     *  Appends the number of derived mutations of every frequency per sample size.
+     *
+     *  @param content
+     */
+    private void appendSpectrum(StringBuffer content)
+    {
+        content.append("\n\nFrequency spectrum");
+        content.append("\nSamp.size\tDerived\tFrequency\tCount");
+        int nMax = sfs.getMaxSampleSize();
+        for(int n=1;n<=nMax;n++)
+        {
+            for(int k=0;k<=n;k++)
+            {
+                long c = sfs.getCount(k, n);
+                if(c>0)
+                    content.append('\n').append(n).append('\t').append(k).append('\t')
+                           .append(getFrequencyLabel(k, n)).append('\t').append(c);
+            }
+        }
     }
 
     /*********************************************************************************************/
@@ -785,7 +892,7 @@ public class PluginMain extends ADatasetAnalyzer
         /** The parameters line should have the following format:
             pop='<POP>' out='<OUT>' type='<NAME>' maxlen='<MAXLEN>' minlen='<MINLEN>'
             range='<POS1-POS2; POS3>' any='<T/F>' exclnonffd='<T/F>' strlimit='<LIMIT>' combine='<T/F>' freqs='<T/F>'
-            constsize='<T/F>' lenrange='<T/F>' output='<OUTFILE>'
+            constsize='<T/F>' lenrange='<T/F>' sfs='<SFSFILE>' output='<OUTFILE>'
             
             - pop:          population of interest
             - out:          outgroup
@@ -797,9 +904,10 @@ public class PluginMain extends ADatasetAnalyzer
             - exclnonffd:   whether to exclude the strains with non-FFD codons.
             - strlimit:     maximal number of strains to use
             - combine:      whether or not to combine multiple regions (see Remarks)
-            - freqs:        whether to list single frequencies
+            - freqs:        whether to list the frequency spectrum per sample size
             - constsize:    whether to assume the population size to be constant when calculating the frequencies
             - lenrange:     whether the minimal and maximal length should fall into the specified range
+            - sfs:          optional file to save the raw frequency spectrum in the binary form
             - output:       output filename
           
             Remarks:
@@ -820,7 +928,8 @@ public class PluginMain extends ADatasetAnalyzer
                                     "freqs='([TF])'\\s+"+               // 11
                                     "constsize='([TF])'\\s+"+           // 12
                                     "lenrange='([TF])'\\s+"+            // 13
-                                    "output='(.+)'$",                   // 14
+                                    "(?:sfs='([^']*)'\\s+)?"+           // 14
+                                    "output='(.+)'$",                   // 15
                                     Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
         Matcher m = p.matcher(strParams);
         if(m.find())
@@ -848,7 +957,8 @@ public class PluginMain extends ADatasetAnalyzer
             ao.bListFreqs = m.group(11).equalsIgnoreCase("T");
             ao.bSizeConst = m.group(12).equalsIgnoreCase("T");
             ao.bLenRange = m.group(13).equalsIgnoreCase("T");
-            ao.strOutput = m.group(14);
+            ao.strSfsOutput = m.group(14);
+            ao.strOutput = m.group(15);
             // Check whether the region type is CDS or FFD.
             if(ao.strRegion.equalsIgnoreCase("CDS") || ao.strRegion.equalsIgnoreCase("FFD"))
             {
@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.1
  * 
     Description:
         Analyses the four-fold degenerate sites.
@@ -25,16 +25,18 @@ import bio.gene.GeneEntry;
 import bio.gene.GeneRegion;
 import bio.gene.StrainEntry;
 import gui.IWaitDialog;
+import gui.ResultTableModel;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetAnalyzer;
+import plugin.classes.IGeneProcessor;
+import plugin.classes.MultiResultSink;
+import plugin.classes.ResultFileSink;
 
 
 public class PluginMain extends ADatasetAnalyzer
@@ -100,74 +102,61 @@ public class PluginMain extends ADatasetAnalyzer
             return ErrorCode.CancelledByUser;
         }
         initData.wd.show(IWaitDialog.TYPE.Analysis);
-        // Perform analysis.
-        StringBuffer content = new StringBuffer();
-        content.append("Analysis type: Four-fold degenerate sites\n");
-        content.append(String.format("Population of interest: %s\n", ao.strPop));
-        content.append(String.format("Outgroup: %s\n", ao.strOut));
-        content.append("Jukes-Cantor corrections:\n");
-        content.append(String.format("\tPi: %s\n", ao.bJC_Pi));
-        content.append(String.format("\tTheta: %s\n", ao.bJC_Theta));
-        content.append(String.format("\tK: %s\n", ao.bJC_K));
-        content.append(String.format("Singletons cut-off frequency: %f\n", ao.cof));
-        content.append(String.format("Codon table: %s\n\n", initData.ct.getName()));
-        content.append(String.format(NAMES, ao.strPop, ao.strPop, ao.strOut, ao.strPop, ao.strPop, ao.strOut));
-        content.append(HEADER);
-        // Iterate through the dataset.
-        int nGenes = dataset.getGenesCount();
-        for(int i=0;i<nGenes;i++)
-        {            
-            GeneEntry ge = dataset.getGeneEntry(i);
-            int nStrains = ge.getStrainsCount();
-            if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(GeneRegion.EXON)==0)
-                continue;
-            // Iterate through the strains and select the ones which belong either
-            // to the population of interest or to the outgroup.
-            Vector<String> pop = new Vector<String>();
-            Vector<String> out = new Vector<String>();
-            for(int n=0;n<nStrains;n++)
+        // The results are passed to the file and to the results window gene by gene.
+        MultiResultSink res = new MultiResultSink();
+        ResultTableModel model = null;
+        try
+        {
+            if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+                res.add(new ResultFileSink(new File(ao.strOutput)));
+            if(ao.bShowRes)
             {
-                StrainEntry se = ge.getStrainEntry(n);
-                if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
-                    pop.add(se.getCodingSequence());
-                if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
-                    out.add(se.getCodingSequence());
+                // Don't display the lines 1-12, since they only contain parameters information.
+                model = new ResultTableModel(12);
+                res.add(model);
             }
-            // The analysis only makes sence if the number of sequences in the
-            // population of interest is at least 2. It is not important here
-            // whether the outgroup population is empty or not, since some analyses
-            // can be performed even without outgroup.
-            if(pop.size()<2)
-                continue;
-            String strLine = generateGeneStatistics(pop, out, ao);
-            if(strLine!=null)
+            res.print("Analysis type: Four-fold degenerate sites\n");
+            res.print(String.format("Population of interest: %s\n", ao.strPop));
+            res.print(String.format("Outgroup: %s\n", ao.strOut));
+            res.print("Jukes-Cantor corrections:\n");
+            res.print(String.format("\tPi: %s\n", ao.bJC_Pi));
+            res.print(String.format("\tTheta: %s\n", ao.bJC_Theta));
+            res.print(String.format("\tK: %s\n", ao.bJC_K));
+            res.print(String.format("Singletons cut-off frequency: %f\n", ao.cof));
+            res.print(String.format("Codon table: %s\n\n", initData.ct.getName()));
+            res.print(String.format(NAMES, ao.strPop, ao.strPop, ao.strOut, ao.strPop, ao.strPop, ao.strOut));
+            res.print(HEADER);
+            // Analyze the genes.
+            final AnalysisOptions opts = ao;
+            IGeneProcessor gp = cacheResults(new IGeneProcessor()
             {
-                content.append(ge.getCommonName());
-                content.append("\t\t"+strLine+"\n");
-            }
-        }        
-        // Save the data into the file.
-        if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+                public String processGene(GeneEntry ge)
+                {
+                    return analyzeGeneEntry(ge, opts);
+                }
+            }, opts, initData);
+            processGenes(dataset, gp, initData.threads, res);
+            res.close();
+        }
+        catch(IOException e)
         {
             try
             {
-                PrintWriter out = new PrintWriter(new FileWriter(new File(ao.strOutput)));
-                out.print(content.toString());
-                out.close();
+                res.close();
             }
-            catch (IOException e)
+            catch(IOException ex)
             {
-                strLastError = "An I/O error occured while saving the file";
-                initData.wd.close();
-                return ErrorCode.IOError;
             }
+            strLastError = "An I/O error occured while saving the file";
+            initData.wd.close();
+            return ErrorCode.IOError;
         }
         // Display the results if necessary.
         ResultsWindow rw = null;
-        if(ao.bShowRes)
+        if(model!=null)
         {
             rw = new ResultsWindow();
-            rw.setResults(content.toString());
+            rw.setResults(model);
         }
         initData.wd.close();
         if(rw!=null)
@@ -249,6 +238,43 @@ public class PluginMain extends ADatasetAnalyzer
                              k, nP, tsp, nP-tsp, nD, tsd, nD-tsd);
     }
 
+    /**
+     *  Analyzes the gene entry and returns the results or null if the
+     *  gene entry cannot be analyzed.
+     *
+     *  @param ge
+     *  @param ao
+     *  @return
+     */
+    private String analyzeGeneEntry(GeneEntry ge, AnalysisOptions ao)
+    {
+        int nStrains = ge.getStrainsCount();
+        if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(GeneRegion.EXON)==0)
+            return null;
+        // Iterate through the strains and select the ones which belong either
+        // to the population of interest or to the outgroup.
+        Vector<String> pop = new Vector<String>();
+        Vector<String> out = new Vector<String>();
+        for(int n=0;n<nStrains;n++)
+        {
+            StrainEntry se = ge.getStrainEntry(n);
+            if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
+                pop.add(se.getCodingSequence());
+            if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
+                out.add(se.getCodingSequence());
+        }
+        // The analysis only makes sence if the number of sequences in the
+        // population of interest is at least 2. It is not important here
+        // whether the outgroup population is empty or not, since some analyses
+        // can be performed even without outgroup.
+        if(pop.size()<2)
+            return null;
+        String strLine = generateGeneStatistics(pop, out, ao);
+        if(strLine==null)
+            return null;
+        return ge.getCommonName()+"\t\t"+strLine+"\n";
+    }
+
     /**
      *  Formats the results string.
      *
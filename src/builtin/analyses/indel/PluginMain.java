@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.0.0.1
+        1.1.0.1
  * 
     Description:
         Performs indels analysis on the region of specified type.
@@ -17,22 +17,25 @@
 
 package builtin.analyses.indel;
 
+import algorithms.AlignmentMatrix;
 import algorithms.SequenceRoutines;
 import algorithms.SiteComposition;
 import bio.gene.Dataset;
 import bio.gene.GeneEntry;
 import bio.gene.StrainEntry;
 import gui.IWaitDialog;
+import gui.ResultTableModel;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetAnalyzer;
+import plugin.classes.IGeneProcessor;
+import plugin.classes.MultiResultSink;
+import plugin.classes.ResultFileSink;
 
 
 public class PluginMain extends ADatasetAnalyzer
@@ -97,72 +100,57 @@ public class PluginMain extends ADatasetAnalyzer
             return ErrorCode.CancelledByUser;
         }
         initData.wd.show(IWaitDialog.TYPE.Analysis);
-        // Outout file content.
-        StringBuffer content = new StringBuffer();
-        content.append("Analysis type: InDels analysis\n");
-        content.append(String.format("Population of interest: %s\n", ao.strPop));
-        content.append(String.format("Outgroup: %s\n", ao.strOut));
-        content.append(String.format("More distant group: %s\n", ao.strDist));
-        content.append(String.format("Region type: %s\n", ao.strType));
-        content.append(String.format("\t\t\t\t\t\t%s\t\t\t\t\t\t%s\n", ao.strPop, ao.strOut));
-        content.append(HEADER);
-        // Iterate through the dataset.
-        int nGenes = dataset.getGenesCount();
-        for(int i=0;i<nGenes;i++)
+        // The results are passed to the file and to the results window gene by gene.
+        MultiResultSink res = new MultiResultSink();
+        ResultTableModel model = null;
+        try
         {
-            GeneEntry ge = dataset.getGeneEntry(i);
-            int nStrains = ge.getStrainsCount();
-            if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(ao.strType)==0)
-                continue;
-            // Iterate through the strains and select the ones which belong either
-            // to the population of interest or to the outgroup.
-            Vector<StrainEntry> pop = new Vector<StrainEntry>();
-            Vector<StrainEntry> out = new Vector<StrainEntry>();
-            Vector<StrainEntry> mdg = new Vector<StrainEntry>(); // More distant group.
-            for(int n=0;n<nStrains;n++)
+            if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+                res.add(new ResultFileSink(new File(ao.strOutput)));
+            if(ao.bShowRes)
             {
-                StrainEntry se = ge.getStrainEntry(n);
-                if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
-                    pop.add(se);
-                if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
-                    out.add(se);
-                if(se.belongsToPopulation(ao.strDist) && mdg.size()<ao.maxstr)
-                    mdg.add(se);
+                // Don't display the lines 1-7, since they only contain parameters information.
+                model = new ResultTableModel(7);
+                res.add(model);
             }
-            // The analysis only makes sence if the number of sequences in all
-            // three populations is at least 1.
-            if(pop.size()<1 || out.size()<1 || mdg.size()<1)
-                continue;
-            String[] tmp = analyzeGene(pop, out, mdg, ao);
-            if(tmp!=null)
+            res.print("Analysis type: InDels analysis\n");
+            res.print(String.format("Population of interest: %s\n", ao.strPop));
+            res.print(String.format("Outgroup: %s\n", ao.strOut));
+            res.print(String.format("More distant group: %s\n", ao.strDist));
+            res.print(String.format("Region type: %s\n", ao.strType));
+            res.print(String.format("\t\t\t\t\t\t%s\t\t\t\t\t\t%s\n", ao.strPop, ao.strOut));
+            res.print(HEADER);
+            // Analyze the genes.
+            final AnalysisOptions opts = ao;
+            IGeneProcessor gp = cacheResults(new IGeneProcessor()
             {
-                content.append(ge.getCommonName());
-                for(String s:tmp)
-                    content.append("\t\t"+s+"\n");
-            }
+                public String processGene(GeneEntry ge)
+                {
+                    return analyzeGeneEntry(ge, opts);
+                }
+            }, opts, initData);
+            processGenes(dataset, gp, initData.threads, res);
+            res.close();
         }
-        // Save the data into the file.
-        if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+        catch(IOException e)
         {
             try
             {
-                PrintWriter out = new PrintWriter(new FileWriter(new File(ao.strOutput)));
-                out.print(content.toString());
-                out.close();
+                res.close();
             }
-            catch (IOException e)
+            catch(IOException ex)
             {
-                strErr = "An I/O error occured while saving the file";
-                initData.wd.close();
-                return ErrorCode.IOError;
             }
+            strErr = "An I/O error occured while saving the file";
+            initData.wd.close();
+            return ErrorCode.IOError;
         }
         // Display the results if necessary.
         ResultsWindow rw = null;
-        if(ao.bShowRes)
+        if(model!=null)
         {
             rw = new ResultsWindow();
-            rw.setResults(content.toString());
+            rw.setResults(model);
         }
         initData.wd.close();
         if(rw!=null)
@@ -211,6 +199,47 @@ public class PluginMain extends ADatasetAnalyzer
         return (res.size()>0) ? res.toArray(new String[1]) : null;
     }
 
+    /**
+     *  Analyzes the gene entry and returns the results or null if the
+     *  gene entry cannot be analyzed.
+     *
+     *  @param ge
+     *  @param ao
+     *  @return
+     */
+    private String analyzeGeneEntry(GeneEntry ge, AnalysisOptions ao)
+    {
+        int nStrains = ge.getStrainsCount();
+        if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(ao.strType)==0)
+            return null;
+        // Iterate through the strains and select the ones which belong either
+        // to the population of interest or to the outgroup.
+        Vector<StrainEntry> pop = new Vector<StrainEntry>();
+        Vector<StrainEntry> out = new Vector<StrainEntry>();
+        Vector<StrainEntry> mdg = new Vector<StrainEntry>(); // More distant group.
+        for(int n=0;n<nStrains;n++)
+        {
+            StrainEntry se = ge.getStrainEntry(n);
+            if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
+                pop.add(se);
+            if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
+                out.add(se);
+            if(se.belongsToPopulation(ao.strDist) && mdg.size()<ao.maxstr)
+                mdg.add(se);
+        }
+        // The analysis only makes sence if the number of sequences in all
+        // three populations is at least 1.
+        if(pop.size()<1 || out.size()<1 || mdg.size()<1)
+            return null;
+        String[] tmp = analyzeGene(pop, out, mdg, ao);
+        if(tmp==null)
+            return null;
+        StringBuffer content = new StringBuffer(ge.getCommonName());
+        for(String s:tmp)
+            content.append("\t\t"+s+"\n");
+        return content.toString();
+    }
+
     /**
      *  Analyzes the sequence. There are three patterns of sequence which can be
      *  combined with one another:
@@ -264,14 +293,23 @@ public class PluginMain extends ADatasetAnalyzer
         int nSites = 0;
         int[] unk  = new int[]{0, 0};   // Unk(D), Unk(P)
         int lsg = -1;   // Last seen gap
+        AlignmentMatrix amp = new AlignmentMatrix(pop);
+        AlignmentMatrix amo = new AlignmentMatrix(out);
+        AlignmentMatrix amd = new AlignmentMatrix(mdg);
+        boolean[] avp = findAvailableSites(amp);
+        boolean[] avo = findAvailableSites(amo);
+        boolean[] avd = findAvailableSites(amd);
+        SiteComposition scp = new SiteComposition();
+        SiteComposition sco = new SiteComposition();
+        SiteComposition scd = new SiteComposition();
         for(int i=0;i<l;i++)
         {
-            if(!allPopulationsAvailable(pop, out, mdg, i))
+            if(!avp[i] || !avo[i] || !avd[i])
                 continue;
             nSites++;
-            SiteComposition scp = calculateSiteComposition(pop, i);
-            SiteComposition sco = calculateSiteComposition(out, i);
-            SiteComposition scd = calculateSiteComposition(mdg, i);
+            amp.getSiteComposition(i, scp);
+            amo.getSiteComposition(i, sco);
+            amd.getSiteComposition(i, scd);
             int nGapsPop = scp.getGapsCount();
             int nGapsOut = sco.getGapsCount();
             int nGapsMdg = scd.getGapsCount();
@@ -284,7 +322,7 @@ public class PluginMain extends ADatasetAnalyzer
             // Check whether new new site has the same pattern as the last one.
             if(lsg>-1 && lsg==i-1)
             {
-                if(haveSamePattern(pop, out, mdg, i, lsg))
+                if(haveSamePattern(amp, i, lsg) && haveSamePattern(amo, i, lsg) && haveSamePattern(amd, i, lsg))
                 {
                     lsg = i;
                     continue;
@@ -332,77 +370,53 @@ public class PluginMain extends ADatasetAnalyzer
                              out.length, vals_o[0], vals_o[1], vals_o[2], vals_o[3], unk[0], unk[1]);
     }
 
-    private boolean allPopulationsAvailable(String[] pop, String[] out, String[] mdg, int pos)
+    /**
+     *  Returns the array of flags, specifying for each site whether at least one
+     *  sequence has a base other than a gap or X both at or before and at or after it.
+     *
+     *  @param am
+     *  @return
+     */
+    private boolean[] findAvailableSites(AlignmentMatrix am)
     {
-        boolean b = false;
-        for(String s:pop)
-        {
-            if(!s.substring(0, pos+1).matches("[-Xx]+") && !s.substring(pos).matches("[-Xx]+"))
-            {
-                b = true;
-                break;
-            }
-        }
-        if(!b)
-            return false;
-        b = false;
-        for(String s:out)
-        {
-            if(!s.substring(0, pos+1).matches("[-Xx]+") && !s.substring(pos).matches("[-Xx]+"))
-            {
-                b = true;
-                break;
-            }
-        }
-        if(!b)
-            return false;
-        b = false;
-        for(String s:mdg)
+        int l = am.getColumnsCount();
+        boolean[] av = new boolean[l];
+        for(int n=0;n<am.getRowsCount();n++)
         {
-            if(!s.substring(0, pos+1).matches("[-Xx]+") && !s.substring(pos).matches("[-Xx]+"))
-            {
-                b = true;
-                break;
-            }
+            int iFirst = 0;
+            while(iFirst<l && isGapOrMissing(am.getCode(n, iFirst)))
+                iFirst++;
+            int iLast = l-1;
+            while(iLast>=iFirst && isGapOrMissing(am.getCode(n, iLast)))
+                iLast--;
+            for(int i=iFirst;i<=iLast;i++)
+                av[i] = true;
         }
-        return b;
+        return av;
+    }
+
+    private boolean isGapOrMissing(byte code)
+    {
+        return (code==AlignmentMatrix.BASE_GAP || code==AlignmentMatrix.BASE_X);
     }
 
     /**
-     *  Returns true if the old site has the same pattern as the new one.
+     *  Returns true if the old site has the same gap pattern as the new one.
      *  
-     *  @param pop
-     *  @param out
-     *  @param mdg
+     *  @param am
      *  @param np
      *  @param op
      *  @return
      */
-    private boolean haveSamePattern(String[] pop, String[] out, String[] mdg, int np, int op)
+    private boolean haveSamePattern(AlignmentMatrix am, int np, int op)
     {
-        for(String s:pop)
-        {
-            char co = s.charAt(op);
-            char cn = s.charAt(np);
-            if( (co=='-' && cn!='-') || (cn=='-' && co!='-'))
-                return false;
-        }
-        for(String s:out)
+        for(int n=0;n<am.getRowsCount();n++)
         {
-            char co = s.charAt(op);
-            char cn = s.charAt(np);
-            if( (co=='-' && cn!='-') || (cn=='-' && co!='-'))
+            boolean bOld = (am.getCode(n, op)==AlignmentMatrix.BASE_GAP);
+            boolean bNew = (am.getCode(n, np)==AlignmentMatrix.BASE_GAP);
+            if(bOld!=bNew)
                 return false;
         }
-      
-        for(String s:mdg)
-        {
-            char co = s.charAt(op);
-            char cn = s.charAt(np);
-            if( (co=='-' && cn!='-') || (cn=='-' && co!='-'))
-                return false;
-        }
-        
         return true;
     }
 
@@ -426,25 +440,6 @@ public class PluginMain extends ADatasetAnalyzer
         return seqs;
     }
 
-    /**
-     *  Creates a site composition object of the current site.
-     *
-     *  @param seqs
-     *  @param pos
-     *  @return
-     */
-    private SiteComposition calculateSiteComposition(String[] seqs, int pos)
-    {
-        SiteComposition sc = new SiteComposition();
-        for(int n=0;n<seqs.length;n++)
-        {
-            char base = seqs[n].charAt(pos);
-            sc.addBase(seqs[n].charAt(pos));
-        }
-        return sc;
-    }
-
-
     /**
      *  Iterates through both population and outgroup and returns true only if
      *  the minimal and the maxinal length are not beyond the length threshold.
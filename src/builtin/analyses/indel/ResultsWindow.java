@@ -3,7 +3,7 @@
         ResultsWindow.java
  *
     Revision:
-        1.0.0.1
+        1.0.0.2
  *
     Description:
         Displays the analysis results.
@@ -18,12 +18,12 @@
 package builtin.analyses.indel;
 
 import algorithms.SequenceRoutines;
+import gui.ResultTableModel;
 import java.awt.Toolkit;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import javax.swing.JFrame;
-import javax.swing.table.DefaultTableModel;
 
 
 public class ResultsWindow extends javax.swing.JFrame
@@ -45,21 +45,18 @@ public class ResultsWindow extends javax.swing.JFrame
     }
 
     /**
-     *  Sets the results, prepares the table etc. Since depending on the dataset
-     *  these operations can take a while, do not display the window yet.
+     *  Sets the results. The column names of the table are kept. Since depending
+     *  on the dataset this can take a while, do not display the window yet.
      *
-     *  @param strContent
+     *  @param model
      */
-    public void setResults(String strContent)
+    public void setResults(ResultTableModel model)
     {
-        DefaultTableModel model = (DefaultTableModel)lvResults.getModel();
-        // Remove old lines.
-        for(int i=model.getRowCount()-1;i>=0;i--)
-            model.removeRow(i);
-        String[] lines = strContent.split("\n");
-        // Don't display the lines 1-6, since they only contain parameters information.
-        for(int i=7;i<lines.length;i++)
-            model.addRow(lines[i].split("\t"));
+        String[] names = new String[lvResults.getColumnCount()];
+        for(int i=0;i<names.length;i++)
+            names[i] = lvResults.getModel().getColumnName(i);
+        model.setColumnNames(names);
+        lvResults.setModel(model);
     }
 
     /**
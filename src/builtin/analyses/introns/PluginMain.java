@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.1
  * 
     Description:
         Performs short introns analysis. If a gene has multiple introns
@@ -18,6 +18,7 @@
 
 package builtin.analyses.introns;
 
+import algorithms.AlignmentMatrix;
 import algorithms.SitesBlock;
 import algorithms.BasicStatistics;
 import algorithms.SequenceRoutines;
@@ -27,16 +28,18 @@ import bio.gene.GeneEntry;
 import bio.gene.GeneRegion;
 import bio.gene.StrainEntry;
 import gui.IWaitDialog;
+import gui.ResultTableModel;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetAnalyzer;
+import plugin.classes.IGeneProcessor;
+import plugin.classes.MultiResultSink;
+import plugin.classes.ResultFileSink;
 
 
 public class PluginMain extends ADatasetAnalyzer
@@ -104,77 +107,63 @@ public class PluginMain extends ADatasetAnalyzer
             return ErrorCode.CancelledByUser;
         }
         initData.wd.show(IWaitDialog.TYPE.Analysis);
-        // Outout file content.
-        StringBuffer content = new StringBuffer();
-        content.append("Analysis type: Introns analysis\n");
-        content.append(String.format("Population of interest: %s\n", ao.strPop));
-        content.append(String.format("Outgroup: %s\n", ao.strOut));
-        content.append("Jukes-Cantor corrections:\n");
-        content.append(String.format("\tPi: %s\n", ao.bJC_Pi));
-        content.append(String.format("\tTheta: %s\n", ao.bJC_Theta));
-        content.append(String.format("\tK: %s\n", ao.bJC_K));
-        content.append(String.format("Singletons cut-off frequency: %f\n", ao.cof));
-        content.append(String.format("Codon table: %s\n", initData.ct.getName()));
-        content.append("\nNOTE:\nSample size may not reflect the real sample size used to " +
-                            "calculate statistics for each site if the sample contains missing data!\n\n");
-        content.append(String.format(NAMES, ao.strPop, ao.strPop, ao.strOut, ao.strPop, ao.strPop, ao.strOut));
-        content.append(HEADER);
-        // Iterate through the dataset.
-        int nGenes = dataset.getGenesCount();
-        for(int i=0;i<nGenes;i++)
+        // The results are passed to the file and to the results window gene by gene.
+        MultiResultSink res = new MultiResultSink();
+        ResultTableModel model = null;
+        try
         {
-            GeneEntry ge = dataset.getGeneEntry(i);
-            int nStrains = ge.getStrainsCount();
-            if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(GeneRegion.INTRON)==0)
-                continue;
-            // Iterate through the strains and select the ones which belong either
-            // to the population of interest or to the outgroup.
-            Vector<StrainEntry> pop = new Vector<StrainEntry>();
-            Vector<StrainEntry> out = new Vector<StrainEntry>();
-            for(int n=0;n<nStrains;n++)
+            if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+                res.add(new ResultFileSink(new File(ao.strOutput)));
+            if(ao.bShowRes)
             {
-                StrainEntry se = ge.getStrainEntry(n);
-                if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
-                    pop.add(se);
-                if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
-                    out.add(se);
+                // Don't display the lines 1-15, since they only contain parameters information.
+                model = new ResultTableModel(15);
+                res.add(model);
             }
-            // The analysis only makes sence if the number of sequences in the
-            // population of interest is at least 2. It is not important here
-            // whether the outgroup population is empty or not, since some analyses
-            // can be performed even without outgroup.
-            if(pop.size()<2)
-                continue;
-            String[] lines = generateGeneStatistics(pop, out, ao);
-            if(lines!=null)
+            res.print("Analysis type: Introns analysis\n");
+            res.print(String.format("Population of interest: %s\n", ao.strPop));
+            res.print(String.format("Outgroup: %s\n", ao.strOut));
+            res.print("Jukes-Cantor corrections:\n");
+            res.print(String.format("\tPi: %s\n", ao.bJC_Pi));
+            res.print(String.format("\tTheta: %s\n", ao.bJC_Theta));
+            res.print(String.format("\tK: %s\n", ao.bJC_K));
+            res.print(String.format("Singletons cut-off frequency: %f\n", ao.cof));
+            res.print(String.format("Codon table: %s\n", initData.ct.getName()));
+            res.print("\nNOTE:\nSample size may not reflect the real sample size used to " +
+                                "calculate statistics for each site if the sample contains missing data!\n\n");
+            res.print(String.format(NAMES, ao.strPop, ao.strPop, ao.strOut, ao.strPop, ao.strPop, ao.strOut));
+            res.print(HEADER);
+            // Analyze the genes.
+            final AnalysisOptions opts = ao;
+            IGeneProcessor gp = cacheResults(new IGeneProcessor()
             {
-                content.append(ge.getCommonName());
-                for(String s:lines)
-                    content.append("\t\t"+s+"\n");
-            }
+                public String processGene(GeneEntry ge)
+                {
+                    return analyzeGeneEntry(ge, opts);
+                }
+            }, opts, initData);
+            processGenes(dataset, gp, initData.threads, res);
+            res.close();
         }
-        // Save the data into the file.
-        if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+        catch(IOException e)
         {
             try
             {
-                PrintWriter out = new PrintWriter(new FileWriter(new File(ao.strOutput)));
-                out.print(content.toString());
-                out.close();
+                res.close();
             }
-            catch (IOException e)
+            catch(IOException ex)
             {
-                strErr = "An I/O error occured while saving the file";
-                initData.wd.close();
-                return ErrorCode.IOError;
             }
+            strErr = "An I/O error occured while saving the file";
+            initData.wd.close();
+            return ErrorCode.IOError;
         }
         // Display the results if necessary.
         ResultsWindow rw = null;
-        if(ao.bShowRes)
+        if(model!=null)
         {
             rw = new ResultsWindow();
-            rw.setResults(content.toString());
+            rw.setResults(model);
         }
         initData.wd.close();
         if(rw!=null)
@@ -242,19 +231,23 @@ public class PluginMain extends ADatasetAnalyzer
         float tsp = 0.0f;
         int nD = 0;
         float tsd = 0.0f;
+        AlignmentMatrix amp = new AlignmentMatrix(popseq);
+        AlignmentMatrix amo = new AlignmentMatrix(outseq);
+        SiteComposition scp = new SiteComposition();
+        SiteComposition sco = new SiteComposition();
         for(int i=0;i<l;i++)
         {
-            // For each site find out its composition.
-            SiteComposition scp = calculateSiteComposition(popseq, i);
-            if(scp==null)
+            // For each site find out its composition. Sites with gaps are skipped.
+            if(amp.hasGap(i))
                 continue;
+            amp.getSiteComposition(i, scp);
             int nvb = scp.getValidBasesCount();
             if(nvb==0 || (nvb<4 && ao.bExclAll) )
                 continue;
             spb[nvb-1].addSite(scp);
-            SiteComposition sco = calculateSiteComposition(outseq, i);
-            if(sco!=null)
+            if(!amo.hasGap(i))
             {
+                amo.getSiteComposition(i, sco);
                 tpb[nvb-1].addSite(scp);
                 // Combined site composition.
                 SiteComposition scc = SiteComposition.merge(scp, sco);
@@ -283,6 +276,46 @@ public class PluginMain extends ADatasetAnalyzer
                              k, nP, tsp, nP-tsp, nD, tsd, nD-tsd);
     }
 
+    /**
+     *  Analyzes the gene entry and returns the results or null if the
+     *  gene entry cannot be analyzed.
+     *
+     *  @param ge
+     *  @param ao
+     *  @return
+     */
+    private String analyzeGeneEntry(GeneEntry ge, AnalysisOptions ao)
+    {
+        int nStrains = ge.getStrainsCount();
+        if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(GeneRegion.INTRON)==0)
+            return null;
+        // Iterate through the strains and select the ones which belong either
+        // to the population of interest or to the outgroup.
+        Vector<StrainEntry> pop = new Vector<StrainEntry>();
+        Vector<StrainEntry> out = new Vector<StrainEntry>();
+        for(int n=0;n<nStrains;n++)
+        {
+            StrainEntry se = ge.getStrainEntry(n);
+            if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
+                pop.add(se);
+            if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
+                out.add(se);
+        }
+        // The analysis only makes sence if the number of sequences in the
+        // population of interest is at least 2. It is not important here
+        // whether the outgroup population is empty or not, since some analyses
+        // can be performed even without outgroup.
+        if(pop.size()<2)
+            return null;
+        String[] lines = generateGeneStatistics(pop, out, ao);
+        if(lines==null)
+            return null;
+        StringBuffer content = new StringBuffer(ge.getCommonName());
+        for(String s:lines)
+            content.append("\t\t"+s+"\n");
+        return content.toString();
+    }
+
     /**
      *  Formats the results string.
      *
@@ -363,28 +396,6 @@ public class PluginMain extends ADatasetAnalyzer
             old_o[i] = (old_o[i]==null) ? seqs[nPopSize+i] : old_o[i]+seqs[nPopSize+i];
     }
 
-    /**
-     *  Creates a site composition object of the current site. This method returns
-     *  null if there is a gap in any sequence at the specified position.
-     *
-     *  @param seqs
-     *  @param pos
-     *  @return
-     */
-    private SiteComposition calculateSiteComposition(String[] seqs, int pos)
-    {
-        SiteComposition sc = new SiteComposition();
-        for(int n=0;n<seqs.length;n++)
-        {
-            char base = seqs[n].charAt(pos);
-            if(base=='-')
-                return null;
-            else
-                sc.addBase(seqs[n].charAt(pos));
-        }
-        return sc;
-    }
-
     /**
      *  Iterates through both population and outgroup and returns true only if
      *  the minimal and the maxinal length are not beyond the length threshold.
@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.2
  * 
     Description:
         Analyses the synonymous and nonsynonymous sites.
@@ -27,17 +27,20 @@ import bio.gene.GeneEntry;
 import bio.gene.GeneRegion;
 import bio.gene.StrainEntry;
 import bio.gene.dna.Codon;
+import bio.gene.dna.CodonLookup;
 import gui.IWaitDialog;
+import gui.ResultTableModel;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetAnalyzer;
+import plugin.classes.IGeneProcessor;
+import plugin.classes.MultiResultSink;
+import plugin.classes.ResultFileSink;
 
 
 public class PluginMain extends ADatasetAnalyzer
@@ -108,73 +111,62 @@ public class PluginMain extends ADatasetAnalyzer
             return ErrorCode.CancelledByUser;
         }
         initData.wd.show(IWaitDialog.TYPE.Analysis);
-        // Perform analysis.
-        StringBuffer content = new StringBuffer();
-        content.append("Analysis type: Synonymous and nonsynonymous sites\n");
-        content.append(String.format("Population of interest: %s\n", ao.strPop));
-        content.append(String.format("Outgroup: %s\n", ao.strOut));
-        content.append("Jukes-Cantor corrections:\n");
-        content.append(String.format("\tPi: %s\n", ao.bJC_pi));
-        content.append(String.format("\tTheta: %s\n", ao.bJC_t));
-        content.append(String.format("\tK: %s\n", ao.bJC_K));
-        content.append(String.format("Singletons cut-off frequency: %f\n", ao.cof));
-        content.append(String.format("Codon table: %s\n\n", initData.ct.getName()));
-        content.append(String.format(NAMES, ao.strPop, ao.strPop, ao.strOut, ao.strPop, ao.strPop, ao.strOut));
-        content.append(HEADER);
-        
-        // Iterate through the dataset.
-        int nGenes = dataset.getGenesCount();
-        for(int i=0;i<nGenes;i++)
-        { 
-            GeneEntry ge = dataset.getGeneEntry(i);
-            int nStrains = ge.getStrainsCount();
-            if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(GeneRegion.EXON)==0)
-                continue;
-            Vector<String> pop = new Vector<String>();
-            Vector<String> out = new Vector<String>();
-            for(int n=0;n<nStrains;n++)
+        // The results are passed to the file and to the results window gene by gene.
+        MultiResultSink res = new MultiResultSink();
+        ResultTableModel model = null;
+        try
+        {
+            if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+                res.add(new ResultFileSink(new File(ao.strOutput)));
+            if(ao.bShowRes)
             {
-                StrainEntry se = ge.getStrainEntry(n);
-                if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
-                    pop.add(se.getCodingSequence());
-                if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
-                    out.add(se.getCodingSequence());
+                // Don't display the lines 1-12, since they only contain parameters information.
+                model = new ResultTableModel(12);
+                res.add(model);
             }
-            // The analysis only makes sence if the number of sequences in the
-            // population of interest is at least 2. It is not important here
-            // whether the outgroup population is empty or not, since some analyses
-            // can be performed even without outgroup.
-            if(pop.size()<2)
-                continue;
-            String strLine = generateGeneStatistics(pop, out, ao);
-            if(strLine!=null)
+            res.print("Analysis type: Synonymous and nonsynonymous sites\n");
+            res.print(String.format("Population of interest: %s\n", ao.strPop));
+            res.print(String.format("Outgroup: %s\n", ao.strOut));
+            res.print("Jukes-Cantor corrections:\n");
+            res.print(String.format("\tPi: %s\n", ao.bJC_pi));
+            res.print(String.format("\tTheta: %s\n", ao.bJC_t));
+            res.print(String.format("\tK: %s\n", ao.bJC_K));
+            res.print(String.format("Singletons cut-off frequency: %f\n", ao.cof));
+            res.print(String.format("Codon table: %s\n\n", initData.ct.getName()));
+            res.print(String.format(NAMES, ao.strPop, ao.strPop, ao.strOut, ao.strPop, ao.strPop, ao.strOut));
+            res.print(HEADER);
+        
+            // Analyze the genes.
+            final AnalysisOptions opts = ao;
+            IGeneProcessor gp = cacheResults(new IGeneProcessor()
             {
-                content.append(ge.getCommonName());
-                content.append("\t\t"+strLine+"\n");
-            }
+                public String processGene(GeneEntry ge)
+                {
+                    return analyzeGeneEntry(ge, opts);
+                }
+            }, opts, initData);
+            processGenes(dataset, gp, initData.threads, res);
+            res.close();
         }
-        // Save the data into the file.
-        if(ao.strOutput!=null && !ao.strOutput.isEmpty())
+        catch(IOException e)
         {
             try
             {
-                PrintWriter out = new PrintWriter(new FileWriter(new File(ao.strOutput)));
-                out.print(content.toString());
-                out.close();
+                res.close();
             }
-            catch (IOException e)
+            catch(IOException ex)
             {
-                strLastErr = "An I/O error occured while saving the file";
-                initData.wd.close();
-                return ErrorCode.IOError;
             }
+            strLastErr = "An I/O error occured while saving the file";
+            initData.wd.close();
+            return ErrorCode.IOError;
         }
         // Display the results if necessary.
         ResultsWindow rw = null;
-        if(ao.bShowRes)
+        if(model!=null)
         {
             rw = new ResultsWindow();
-            rw.setResults(content.toString());
+            rw.setResults(model);
         }
         initData.wd.close();
         if(rw!=null)
@@ -182,6 +174,41 @@ public class PluginMain extends ADatasetAnalyzer
         return ErrorCode.Ok;
     }
 
+    /**
+     *  Analyzes the gene entry and returns the results line or null if the
+     *  gene entry cannot be analyzed.
+     *
+     *  @param ge
+     *  @param ao
+     *  @return
+     */
+    private String analyzeGeneEntry(GeneEntry ge, AnalysisOptions ao)
+    {
+        int nStrains = ge.getStrainsCount();
+        if(nStrains==0 || ge.getStrainEntry(0).getRegionsCount(GeneRegion.EXON)==0)
+            return null;
+        Vector<String> pop = new Vector<String>();
+        Vector<String> out = new Vector<String>();
+        for(int n=0;n<nStrains;n++)
+        {
+            StrainEntry se = ge.getStrainEntry(n);
+            if(se.belongsToPopulation(ao.strPop) && pop.size()<ao.maxstr)
+                pop.add(se.getCodingSequence());
+            if(se.belongsToPopulation(ao.strOut) && out.size()<ao.maxstr)
+                out.add(se.getCodingSequence());
+        }
+        // The analysis only makes sence if the number of sequences in the
+        // population of interest is at least 2. It is not important here
+        // whether the outgroup population is empty or not, since some analyses
+        // can be performed even without outgroup.
+        if(pop.size()<2)
+            return null;
+        String strLine = generateGeneStatistics(pop, out, ao);
+        if(strLine==null)
+            return null;
+        return ge.getCommonName()+"\t\t"+strLine+"\n";
+    }
+
     /**
      *  Generates the statistics line.
      *
@@ -442,12 +469,22 @@ public class PluginMain extends ADatasetAnalyzer
         boolean bIsLast = pos==pop.get(0).length()-3;
         CodonComposition cc = new CodonComposition(initData.ct, bUseTerm);
         int nStrains = pop.size();
+        CodonLookup lookup = initData.ct.getLookup();
         for(int n=0;n<nStrains;n++)
         {
-            String strCodon = pop.get(n).substring(pos, pos+3);
-            if(strCodon.contains("-") || (bIsLast && bExclTerm && initData.ct.isTerminal(strCodon)))
+            String strSeq = pop.get(n);
+            char b1 = strSeq.charAt(pos);
+            char b2 = strSeq.charAt(pos+1);
+            char b3 = strSeq.charAt(pos+2);
+            if(b1=='-' || b2=='-' || b3=='-')
                 return null;
-            cc.addCodon(strCodon);
+            if(bIsLast && bExclTerm)
+            {
+                int iCodon = CodonLookup.encode(b1, b2, b3);
+                if(iCodon!=CodonLookup.INVALID && lookup.isTerminal(iCodon))
+                    return null;
+            }
+            cc.addCodon(b1, b2, b3);
         }
         return cc;
     }
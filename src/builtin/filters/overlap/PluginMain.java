@@ -3,7 +3,7 @@
         PluginMain.java
  *
     Revision:
-        1.0.0.1
+        1.0.0.2
  *
     Description:
         Filters the genes which overlap.
@@ -12,6 +12,7 @@
         The class requires the property DatasetBuilder.GENOMIC_POSITION to be
         annotated to the gene entry. This property should be an 1x2 array, whereas
         the first value is the start, and the second one the last position in the genome.
+        Only the genes on the same chromosome are compared.
  *
     Project:
         GeneAnalyzer 2.2
@@ -22,9 +23,8 @@
 
 package builtin.filters.overlap;
 
-import dpgp.DatasetBuilder;
+import dpgp.GenomicIndex;
 import bio.gene.Dataset;
-import bio.gene.GeneEntry;
 import gui.IWaitDialog;
 import java.util.Vector;
 import kernel.ErrorCode;
@@ -82,43 +82,26 @@ public class PluginMain extends ADatasetFilter
     {
         initData.wd.show(IWaitDialog.TYPE.Filter);
         Vector<Integer> ind = new Vector<Integer>();
+        GenomicIndex index = new GenomicIndex(dataset);
         int nGenes = dataset.getGenesCount();
         MAINLOOP: for(int i=0;i<nGenes;i++)
         {
-            GeneEntry g1 = dataset.getGeneEntry(i);
-            int[] tmp = (int[])g1.getProperty(DatasetBuilder.GENOMIC_POSITION);
-            if(tmp==null)
+            int[] pos1 = index.getPosition(i);
+            if(pos1==null)
             {
                 ind.add(i);
                 continue;
             }
-            int iStart1 = tmp[0];
-            int iEnd1 = tmp[1];
-            if(iStart1>iEnd1)
+            String strName1 = dataset.getGeneEntry(i).getCommonName();
+            // Only the genes on the same chromosome, which overlap the gene, are compared.
+            for(int j:index.getOverlappingGenes(i))
             {
-                int k = iEnd1;
-                iEnd1 = iStart1;
-                iStart1 = k;
-            }
-            for(int j=0;j<dataset.getGenesCount();j++)
-            {
-                GeneEntry g2 = dataset.getGeneEntry(j);
                 // If the second gene entry is just a splice variant of the same gene as the first gene entry,
                 // skip the second gene entry.
-                if(isSameGene(g1.getCommonName(), g2.getCommonName()))
-                    continue;
-                tmp = (int[])g2.getProperty(DatasetBuilder.GENOMIC_POSITION);
-                if(tmp==null)
+                if(isSameGene(strName1, dataset.getGeneEntry(j).getCommonName()))
                     continue;
-                int iStart2 = tmp[0];
-                int iEnd2 = tmp[1];
-                if(iStart2>iEnd2)
-                {
-                    int k = iEnd2;
-                    iEnd2 = iStart2;
-                    iStart2 = k;
-                }
-                if( (iStart1<iStart2 && iStart2<iEnd1) || (iStart1<iEnd2 && iEnd2<iEnd1))
+                int[] pos2 = index.getPosition(j);
+                if( (pos1[0]<pos2[0] && pos2[0]<pos1[1]) || (pos1[0]<pos2[1] && pos2[1]<pos1[1]))
                     continue MAINLOOP;
             }
             ind.add(i);
@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.1
  * 
     Description:
         Parses the files with ancestral sequence alignment.
@@ -28,14 +28,21 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetImporter;
+import plugin.classes.IGeneConsumer;
 
 public class PluginMain extends ADatasetImporter
 {
+    // The region type and the CG number are contained in the file name.
+    private static final Pattern FILENAME = Pattern.compile("([0-9A-Za-z]+).+(CG\\d+)");
+    
     private AInitData initData = null;
     private String strErr = null;
     
@@ -94,62 +101,88 @@ public class PluginMain extends ADatasetImporter
 
     @Override
     public Dataset ImportDataset(File[] files, String strParams)
+    {
+        return collectGenes(files, strParams);
+    }
+
+    @Override
+    public boolean ImportGenes(File[] files, String strParams, IGeneConsumer consumer)
     {
         initData.wd.show(IWaitDialog.TYPE.Import);
-        Dataset ds = new Dataset();
+        // Every file contains one region of a gene. Group the files by gene,
+        // so that a gene entry can be passed to the consumer as soon as all its
+        // files are read.
+        LinkedHashMap<String, Vector<File>> genes = new LinkedHashMap<String, Vector<File>>();
         for(File f:files)
-            loadData(f, ds);
+        {
+            Matcher m = FILENAME.matcher(f.getName());
+            if(!m.find())
+            {
+                strErr = String.format("File %s does not contain a CG number", f.getAbsolutePath());
+                continue;
+            }
+            String strKey = m.group(2).toUpperCase(Locale.ENGLISH);
+            Vector<File> tmp = genes.get(strKey);
+            if(tmp==null)
+            {
+                tmp = new Vector<File>();
+                genes.put(strKey, tmp);
+            }
+            tmp.add(f);
+        }
+        boolean bOk = true;
+        for(Vector<File> tmp:genes.values())
+        {
+            GeneEntry ge = null;
+            for(File f:tmp)
+                ge = loadData(f, ge);
+            if(!consumer.acceptGene(ge))
+            {
+                bOk = false;
+                break;
+            }
+        }
         initData.wd.close();
-        return ds;
+        return bOk;
     }
     
-    private void loadData(File file, Dataset ds)
+    /**
+     *  Reads the region from the file and adds it to the gene entry. If the
+     *  gene entry is null, it is created. The method returns the gene entry.
+     * 
+     *  @param file
+     *  @param ge
+     *  @return 
+     */
+    private GeneEntry loadData(File file, GeneEntry ge)
     {
+        // Intron type is contained in the file name.
+        Matcher m = FILENAME.matcher(file.getName());
+        m.find();
+        if(ge==null)
+            ge = new GeneEntry(m.group(2), "");
+        String strType = m.group(1);
+        if(strType.equalsIgnoreCase("intron"))
+            strType = GeneRegion.INTRON;
+        else if(strType.equalsIgnoreCase("introncat"))
+            strType = GeneRegion.INTRON;
+        else if(strType.equalsIgnoreCase("exon"))
+            strType = GeneRegion.EXON;
+        else if(strType.equalsIgnoreCase("5UTR"))
+            strType = GeneRegion.UTR5;
+        else if(strType.equalsIgnoreCase("3UTR"))
+            strType = GeneRegion.UTR3;
+        else if(strType.equalsIgnoreCase("intergenic"))
+            strType = GeneRegion.INTERGENIC;
+        else
+            strType = GeneRegion.UNNAMED;
         try
         {
             BufferedReader in = new BufferedReader(
                                     new InputStreamReader(
                                         new FileInputStream(file)));
-            
-            GeneEntry ge = null;
-            // Intron type is contained in the file name.
-            String strType = null;
-            Pattern p = Pattern.compile("([0-9A-Za-z]+).+(CG\\d+)");
-            Matcher m = p.matcher(file.getName());            
-            if(m.find())
-            {
-                // Look for the gene entry.
-                for(int i=0;i<ds.getGenesCount();i++)
-                {
-                    if(ds.getGeneEntry(i).getCommonName().equalsIgnoreCase(m.group(2))) 
-                        ge = ds.getGeneEntry(i);
-                }
-                if(ge==null)
-                {
-                    ge = new GeneEntry(m.group(2), "");
-                    ds.addGene(ge);
-                }
-                strType = m.group(1);
-                if(strType.equalsIgnoreCase("intron"))
-                    strType = GeneRegion.INTRON;
-                else if(strType.equalsIgnoreCase("introncat"))
-                    strType = GeneRegion.INTRON;
-                else if(strType.equalsIgnoreCase("exon"))
-                    strType = GeneRegion.EXON;
-                else if(strType.equalsIgnoreCase("5UTR"))
-                    strType = GeneRegion.UTR5;
-                else if(strType.equalsIgnoreCase("3UTR"))
-                    strType = GeneRegion.UTR3;
-                else if(strType.equalsIgnoreCase("intergenic"))
-                    strType = GeneRegion.INTERGENIC;
-                else
-                    strType = GeneRegion.UNNAMED;
-            }
-            else
-                strType = GeneRegion.UNNAMED;
-            
             String strHeader = null;
-            StringBuffer seq = new StringBuffer();
+            StringBuilder seq = new StringBuilder();
             
             String strLine;
             while((strLine = in.readLine())!=null)
@@ -162,12 +195,13 @@ public class PluginMain extends ADatasetImporter
                     }
                     // Set new header line.
                     strHeader = strLine;
-                    seq = new StringBuffer();
+                    seq.setLength(0);
                 }
                 // Sequence data.
                 else
                     seq.append(strLine);
             }
+            in.close();
             addStrain(strHeader, ge, seq.toString(), strType);
         }
         catch(FileNotFoundException e)
@@ -178,6 +212,7 @@ public class PluginMain extends ADatasetImporter
         {
             strErr = String.format("An I/O error occured while reading", file.getAbsolutePath());
         }
+        return ge;
     }
     
     private void addStrain(String strHeader, GeneEntry ge, String strSeq, String strType)
@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.1.0.1
+        1.2.0.1
  * 
     Description:
         Parses the data files in GeneAnalyzer native FASTA format.
@@ -34,6 +34,7 @@ import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetImporter;
+import plugin.classes.IGeneConsumer;
 
 
 public class PluginMain extends ADatasetImporter
@@ -57,16 +58,20 @@ public class PluginMain extends ADatasetImporter
     
     @Override
     public Dataset ImportDataset(File[] files, String strParams)
+    {
+        return collectGenes(files, strParams);
+    }
+
+    
+    @Override
+    public boolean ImportGenes(File[] files, String strParams, IGeneConsumer consumer)
     {
         initData.wd.show(IWaitDialog.TYPE.Import);
-        Dataset ds = new Dataset();
-        for(File f:files)
-        {
-            Dataset tmp = createDataset(f);
-            ds.merge(tmp);
-        }
+        boolean bOk = true;
+        for(int i=0;i<files.length && bOk;i++)
+            bOk = readGenes(files[i], consumer);
         initData.wd.close();
-        return ds;
+        return bOk;
     }
 
     
@@ -115,7 +120,16 @@ public class PluginMain extends ADatasetImporter
     }
     
     
-    private Dataset createDataset(File file)
+    /**
+     *  Reads the file and passes every gene entry to the consumer as soon as
+     *  the header of the next gene entry is read. Returns false if the consumer
+     *  stopped the import.
+     * 
+     *  @param file
+     *  @param consumer
+     *  @return 
+     */
+    private boolean readGenes(File file, IGeneConsumer consumer)
     {
         // Read the file line by line.
         try
@@ -123,11 +137,10 @@ public class PluginMain extends ADatasetImporter
             BufferedReader in = new BufferedReader(
                                     new InputStreamReader(
                                         new FileInputStream(file)));
-            Dataset ds = new Dataset();
             GeneEntry ge = null;
             
             String strHeader = null;
-            StringBuffer seq = new StringBuffer();
+            StringBuilder seq = new StringBuilder();
             
             String strLine;
             while((strLine = in.readLine())!=null)
@@ -141,13 +154,17 @@ public class PluginMain extends ADatasetImporter
                         GeneEntry tmp = addStrainEntry(strHeader,seq.toString(), ge);
                         if(ge!=tmp)
                         {
-                            ds.addGene(ge);
+                            if(ge!=null && !consumer.acceptGene(ge))
+                            {
+                                in.close();
+                                return false;
+                            }
                             ge = tmp;
                         }
                     }
                     // Set new header line.
                     strHeader = strLine;
-                    seq = new StringBuffer();
+                    seq.setLength(0);
                 }
                 // A line with the DNA sequence.
                 else
@@ -155,23 +172,22 @@ public class PluginMain extends ADatasetImporter
                     seq.append(strLine);
                 }
             }  
+            in.close();
             // Add last gene entry and last strain entry.
             if(strHeader!=null)
-            {
-                ds.addGene(addStrainEntry(strHeader, seq.toString(), ge));
-            }
-            return ds;
+                return consumer.acceptGene(addStrainEntry(strHeader, seq.toString(), ge));
+            return true;
         }
-        // Return null on error and set the error description.
+        // Set the error description and continue with the next file.
         catch(FileNotFoundException e)
         {
             strLastError = String.format("File %s was not found", file.getAbsolutePath());
-            return null;
+            return true;
         }
         catch(IOException e)
         {
             strLastError = String.format("An I/O error occured while reading", file.getAbsolutePath());
-            return null;
+            return true;
         }
     }
     
@@ -3,7 +3,7 @@
         PluginMain.java
  *   
     Revision:
-        1.2.0.1
+        1.3.0.1
  * 
     Description:
         Parses the data files in Peter Andolfatto's FASTA format.
@@ -33,6 +33,7 @@ import java.util.regex.Pattern;
 import kernel.ErrorCode;
 import plugin.AInitData;
 import plugin.classes.ADatasetImporter;
+import plugin.classes.IGeneConsumer;
 
 
 public class PluginMain extends ADatasetImporter
@@ -54,15 +55,28 @@ public class PluginMain extends ADatasetImporter
 
     @Override
     public Dataset ImportDataset(File[] files, String strParams)
+    {
+        return collectGenes(files, strParams);
+    }
+
+    @Override
+    public boolean ImportGenes(File[] files, String strParams, IGeneConsumer consumer)
     {
         index = 0;
-        Dataset ds = new Dataset();
         for(File f:files)
         {
+            // The regions are annotated at the end of the file, thus the
+            // genes are passed to the consumer after the file is read.
             Dataset tmp = createDataset(f);
-            ds.merge(tmp);
+            if(tmp==null)
+                continue;
+            for(int i=0;i<tmp.getGenesCount();i++)
+            {
+                if(!consumer.acceptGene(tmp.getGeneEntry(i)))
+                    return false;
+            }
         }
-        return ds;
+        return true;
     }
 
     public ErrorCode Initialize(AInitData initdata)
@@ -118,7 +132,7 @@ public class PluginMain extends ADatasetImporter
             GeneEntry ge = null;
             
             String strHeader = null;
-            StringBuffer seq = new StringBuffer();
+            StringBuilder seq = new StringBuilder();
             
             // Contains the regions annotations. Is also used as a flag to
             // specify whether the sequence or annotation data is being parsed.
@@ -142,7 +156,7 @@ public class PluginMain extends ADatasetImporter
                     }
                     // Set new header line.
                     strHeader = strLine;
-                    seq = new StringBuffer();
+                    seq.setLength(0);
                 }
                 // Annotation part marker found. The parser does not expect
                 // to find any annotation right after this mark in the same line.
@@ -172,6 +186,7 @@ public class PluginMain extends ADatasetImporter
                 else
                     seq.append(strLine);
             }       
+            in.close();
             // Offset indicates the shift caused by used ORF.
             int offset = 0;
             Pattern p = Pattern.compile("FRAME\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
@@ -3,7 +3,7 @@
         DPGPAlignment.java
  *
     Revision:
-        1.2.0.0
+        1.2.0.3
  *
     Description:
         Represents the multiple sequence alignment derived from multiple VMA files.
@@ -17,16 +17,24 @@
 
 package dpgp;
 
+import algorithms.RankSelectBitVector;
 import algorithms.SequenceBuffer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Vector;
 import kernel.ErrorCode;
 
@@ -49,6 +57,26 @@ public class DPGPAlignment implements Serializable
     public static final char UNKNOWN    = 'N';
     public static final char NODATA     = 'x';
 
+    /*
+        Binary file layout (all numbers are big-endian):
+            int     magic number ("DPGA")
+            int     format version
+            long    offset of the first sequence block
+            int     left-most aligned position
+            int     right-most aligned position
+            int     number of sequences (n)
+            int     alignment length (l)
+            n x UTF species names
+            n x UTF strain names
+            int     number of index entries (k)
+            k x int index entries
+            padding up to the offset of the first sequence block (page boundary)
+            n x l bytes: sequence blocks, one base per byte
+    */
+    private static final int FILE_MAGIC     = 0x44504741;
+    private static final int FILE_VERSION   = 1;
+    private static final int PAGE_SIZE      = 4096;
+
 
     // The first sequence in the vector is a melanogaster sequence.
     private SequenceBuffer[] seqs       = null;
@@ -58,6 +86,12 @@ public class DPGPAlignment implements Serializable
     private int iEnd                    = 0;        // Right-most aligned position in the melanogaster genom
     private Vector<Integer> index       = null;     // Position indices: position of every 1000th base of D.mel. genome
                                                     // in the alignment.
+    // Sequence blocks of an alignment opened from a binary file. If the alignment
+    // is mapped, seqs is null and the bases are only read when they are accessed.
+    private transient ByteBuffer[] mapped = null;
+    // Non-gap sites of the D.mel. sequence, used to convert the positions
+    // between the genome and the alignment. Created on the first use.
+    private transient RankSelectBitVector refsites = null;
 
     public DPGPAlignment()
     {
@@ -100,19 +134,20 @@ public class DPGPAlignment implements Serializable
     {
         if(iStart<0 || iEnd<0)
             return null;
-        SequenceBuffer[] buf = new SequenceBuffer[seqs.length];
+        int nSeqs = getSequencesCount();
+        SequenceBuffer[] buf = new SequenceBuffer[nSeqs];
         // Case 1: region lies completely outside of the alignment.
         if( (iStart<this.iStart && iEnd<this.iStart) || (iStart>this.iEnd && iEnd>this.iEnd) )
         {
             int nBases = iEnd-iStart+1;
-            for(int i=0;i<seqs.length;i++)
+            for(int i=0;i<nSeqs;i++)
             {
                 buf[i] = new SequenceBuffer(nBases);
                 buf[i].appendBase(NODATA, nBases);
                 return buf;
             }
         }
-        for(int i=0;i<seqs.length;i++)
+        for(int i=0;i<nSeqs;i++)
             buf[i] = new SequenceBuffer(Math.abs(iEnd-iStart)+1);
         int ls = Math.min(iStart, iEnd);    // Local start.
         int le = Math.max(iStart, iEnd);    // Local end.
@@ -120,7 +155,7 @@ public class DPGPAlignment implements Serializable
         //  => fill with NODATA.
         if(ls<this.iStart)
         {
-            for(int i=0;i<seqs.length;i++)
+            for(int i=0;i<nSeqs;i++)
                 buf[i].appendBase(NODATA, this.iStart-ls);
             ls = 0;
         }
@@ -128,22 +163,22 @@ public class DPGPAlignment implements Serializable
             ls = genToAli(ls);
         // Copy overlapping part.
         if(le>this.iEnd)
-            le = seqs[0].length()-1;
+            le = getAlignmentLength()-1;
         else
             le = genToAli(le);
-        for(int i=0;i<seqs.length;i++)
-            buf[i].appendBases(seqs[i].subsequence(ls, le), 0, le-ls);
+        for(int i=0;i<nSeqs;i++)
+            appendBases(buf[i], i, ls, le);
         // If the end of the region does not overlap with the alignment
         //  => fill with NODATA.
         le = Math.max(iStart, iEnd);
         if(le>this.iEnd)
-            for(int i=0;i<seqs.length;i++)
+            for(int i=0;i<nSeqs;i++)
                 buf[i].appendBase(NODATA, le-this.iEnd);
         // Check, whether the sequence must be reverse complemented.
         if(iStart>iEnd)
-            for(int i=0;i<seqs.length;i++)
+            for(int i=0;i<nSeqs;i++)
                 buf[i].reverseComplement();
-        for(int i=0;i<seqs.length;i++)
+        for(int i=0;i<nSeqs;i++)
             buf[i].replaceAll(MISSING, NODATA);
         return buf;
     }
@@ -185,7 +220,7 @@ public class DPGPAlignment implements Serializable
      */
     public SequenceBuffer extractRegion(int iStart, int iEnd, int iStrainIndex)
     {
-        if(iStrainIndex<0 || iStrainIndex>=seqs.length || iStart<0 || iEnd<0)
+        if(iStrainIndex<0 || iStrainIndex>=getSequencesCount() || iStart<0 || iEnd<0)
             return null;
         SequenceBuffer sb = null;
         // Case 1: region lies completely outside of the alignment.
@@ -210,10 +245,10 @@ public class DPGPAlignment implements Serializable
             ls = genToAli(ls);
         // Copy overlapping part.
         if(le>this.iEnd)
-            le = seqs[0].length()-1;
+            le = getAlignmentLength()-1;
         else
             le = genToAli(le);
-        sb.appendBases(seqs[iStrainIndex].subsequence(ls, le), 0, le-ls);
+        appendBases(sb, iStrainIndex, ls, le);
         // If the end of the region does not overlap with the alignment
         //  => fill with NODATA.
         le = Math.max(iStart, iEnd);
@@ -226,6 +261,71 @@ public class DPGPAlignment implements Serializable
         return sb;
     }
 
+    /**
+     *  Returns the length of the sequence returned by extractRegion for the
+     *  specified region without extracting it. The length is the same for all
+     *  strains. If iStart or iEnd is negative, the method returns -1.
+     *
+     *  @param iStart
+     *  @param iEnd
+     *  @return
+     */
+    public int getRegionLength(int iStart, int iEnd)
+    {
+        if(iStart<0 || iEnd<0)
+            return -1;
+        int[] part = getAlignedPart(iStart, iEnd);
+        if(part==null)
+            return Math.abs(iEnd-iStart)+1;
+        return part[0]+(part[2]-part[1]+1)+part[3];
+    }
+
+    /**
+     *  Returns the number of gaps in the D.mel. sequence of the specified
+     *  region. The result is the same as the number of gaps in the sequence
+     *  returned by extractRegion, but the region is not extracted.
+     *
+     *  @param iStart
+     *  @param iEnd
+     *  @return
+     */
+    public int getGapsCount(int iStart, int iEnd)
+    {
+        if(iStart<0 || iEnd<0)
+            return 0;
+        int[] part = getAlignedPart(iStart, iEnd);
+        if(part==null)
+            return 0;
+        RankSelectBitVector bv = getReferenceSites();
+        return (part[2]-part[1]+1)-(bv.rank(part[2]+1)-bv.rank(part[1]));
+    }
+
+    /**
+     *  Returns the part of the region overlapping with the alignment as
+     *  follows: number of leading NODATA sites, first and last alignment
+     *  site, and number of trailing NODATA sites. If the region lies
+     *  completely outside of the alignment, the method returns null.
+     *
+     *  @param iStart
+     *  @param iEnd
+     *  @return
+     */
+    private int[] getAlignedPart(int iStart, int iEnd)
+    {
+        if( (iStart<this.iStart && iEnd<this.iStart) || (iStart>this.iEnd && iEnd>this.iEnd) )
+            return null;
+        int ls = Math.min(iStart, iEnd);
+        int le = Math.max(iStart, iEnd);
+        int[] part = new int[4];
+        if(ls<this.iStart)
+            part[0] = this.iStart-ls;
+        part[1] = (ls<this.iStart) ? 0 : genToAli(ls);
+        part[2] = (le>this.iEnd) ? getAlignmentLength()-1 : genToAli(le);
+        if(le>this.iEnd)
+            part[3] = le-this.iEnd;
+        return part;
+    }
+
     /**
      *  Returns the list of species names in the same order as the alignments were
      *  added with Drosophila melanogaster at the first position.
@@ -255,22 +355,54 @@ public class DPGPAlignment implements Serializable
      */
     public int getStrainsCount()
     {
-        return seqs.length;
+        return getSequencesCount();
     }
 
     /**
-     *  Saves the alignment to the binary file, so that it can be loaded and
-     *  used later.
+     *  Returns true if the alignment was opened from a binary file and its
+     *  sequences are mapped into memory instead of being loaded.
+     *
+     *  @return
+     */
+    public boolean isMapped()
+    {
+        return (mapped!=null);
+    }
+
+    /**
+     *  Saves the alignment to the binary file, so that it can be opened and
+     *  used later. If the alignment is empty, the method returns ErrorCode.InvalidParameter.
      *
      *  @param strFilename
      *  @return
      */
     public ErrorCode saveToBinaryFile(String strFilename)
     {
+        if(seqs==null && mapped==null)
+            return ErrorCode.InvalidParameter;
         try
         {
-            ObjectOutputStream oout = new ObjectOutputStream (new FileOutputStream(strFilename));
-            oout.writeObject(this);
+            int nSeqs = getSequencesCount();
+            int nLength = getAlignmentLength();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(strFilename), 65536));
+            try
+            {
+                writeHeader(out, iStart, iEnd, species, strains, index, nLength);
+                byte[] buf = new byte[65536];
+                for(int i=0;i<nSeqs;i++)
+                {
+                    for(int pos=0;pos<nLength;pos+=buf.length)
+                    {
+                        int n = Math.min(buf.length, nLength-pos);
+                        getBytes(i, pos, pos+n, buf);
+                        out.write(buf, 0, n);
+                    }
+                }
+            }
+            finally
+            {
+                out.close();
+            }
             return ErrorCode.Ok;
         }
         catch (Exception e)
@@ -280,8 +412,98 @@ public class DPGPAlignment implements Serializable
     }
 
     /**
-     *  Loads the alignment object from the saved file and saves its data into
-     *  the alignment object.
+     *  Writes the binary alignment file using the sequence blocks stored in
+     *  separate files, one base per byte. The blocks must be in the same order
+     *  as the strains and have the length nLength.
+     *
+     *  @param output
+     *  @param iStart
+     *  @param iEnd
+     *  @param species
+     *  @param strains
+     *  @param index
+     *  @param nLength
+     *  @param blocks
+     *  @throws IOException
+     */
+    static void writeBinaryFile(File output, int iStart, int iEnd, Vector<String> species, Vector<String> strains,
+                                Vector<Integer> index, int nLength, File[] blocks) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 65536));
+        try
+        {
+            writeHeader(out, iStart, iEnd, species, strains, index, nLength);
+            byte[] buf = new byte[65536];
+            for(File f:blocks)
+            {
+                if(f.length()!=nLength)
+                    throw new IOException("Invalid sequence block");
+                FileInputStream in = new FileInputStream(f);
+                try
+                {
+                    int n;
+                    while((n = in.read(buf))>0)
+                        out.write(buf, 0, n);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     *  Writes the header of the binary file followed by the padding up to the
+     *  first sequence block.
+     *
+     *  @param out
+     *  @param iStart
+     *  @param iEnd
+     *  @param species
+     *  @param strains
+     *  @param index
+     *  @param nLength
+     *  @throws IOException
+     */
+    private static void writeHeader(DataOutputStream out, int iStart, int iEnd, Vector<String> species,
+                                    Vector<String> strains, Vector<Integer> index, int nLength) throws IOException
+    {
+        int nSeqs = strains.size();
+        // Write the header into the memory first to find out where the
+        // sequence blocks start.
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream hdr = new DataOutputStream(bout);
+        hdr.writeInt(iStart);
+        hdr.writeInt(iEnd);
+        hdr.writeInt(nSeqs);
+        hdr.writeInt(nLength);
+        for(int i=0;i<nSeqs;i++)
+            hdr.writeUTF(species.get(i));
+        for(int i=0;i<nSeqs;i++)
+            hdr.writeUTF(strains.get(i));
+        hdr.writeInt(index.size());
+        for(int i:index)
+            hdr.writeInt(i);
+        hdr.close();
+        long lOffset = ((16L+bout.size()+PAGE_SIZE-1)/PAGE_SIZE)*PAGE_SIZE;
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeLong(lOffset);
+        bout.writeTo(out);
+        for(long l=16L+bout.size();l<lOffset;l++)
+            out.write(0);
+    }
+
+    /**
+     *  Opens the alignment saved in the binary file and saves its data into
+     *  the alignment object. Only the header is read, the sequences are mapped
+     *  into memory and read when regions are extracted.
+     *  Files saved by previous versions (serialized objects) are loaded completely.
      *
      *  @param strFilename
      *  @param alignment
@@ -293,12 +515,86 @@ public class DPGPAlignment implements Serializable
         if(!f.exists())
             return ErrorCode.FileDoesNotExist;
         try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            int nSeqs = 0;
+            int nLength = 0;
+            long lOffset = 0;
+            try
+            {
+                if(in.readInt()!=FILE_MAGIC)
+                {
+                    in.close();
+                    return loadSerializedFile(strFilename, alignment);
+                }
+                if(in.readInt()!=FILE_VERSION)
+                    return ErrorCode.IOError;
+                lOffset = in.readLong();
+                alignment.iStart = in.readInt();
+                alignment.iEnd = in.readInt();
+                nSeqs = in.readInt();
+                nLength = in.readInt();
+                alignment.species = new Vector<String>(nSeqs);
+                for(int i=0;i<nSeqs;i++)
+                    alignment.species.add(in.readUTF());
+                alignment.strains = new Vector<String>(nSeqs);
+                for(int i=0;i<nSeqs;i++)
+                    alignment.strains.add(in.readUTF());
+                int nIndex = in.readInt();
+                alignment.index = new Vector<Integer>(nIndex);
+                for(int i=0;i<nIndex;i++)
+                    alignment.index.add(in.readInt());
+            }
+            finally
+            {
+                in.close();
+            }
+            // The mappings stay valid after the channel is closed.
+            ByteBuffer[] buffers = new ByteBuffer[nSeqs];
+            RandomAccessFile raf = new RandomAccessFile(f, "r");
+            try
+            {
+                FileChannel fc = raf.getChannel();
+                for(int i=0;i<nSeqs;i++)
+                    buffers[i] = fc.map(FileChannel.MapMode.READ_ONLY, lOffset+(long)i*nLength, nLength);
+            }
+            finally
+            {
+                raf.close();
+            }
+            alignment.seqs = null;
+            alignment.mapped = buffers;
+            alignment.setReferenceSites(null);
+            return ErrorCode.Ok;
+        }
+        catch(Exception e)
+        {
+            return ErrorCode.IOError;
+        }
+    }
+
+    /**
+     *  Loads the alignment saved by previous versions as a serialized object.
+     *
+     *  @param strFilename
+     *  @param alignment
+     *  @return
+     */
+    private static ErrorCode loadSerializedFile(String strFilename, DPGPAlignment alignment)
+    {
+        try
         {
             ObjectInputStream oin = new ObjectInputStream(new FileInputStream(strFilename));
             DPGPAlignment ali = (DPGPAlignment)oin.readObject();
+            oin.close();
             alignment.iEnd = ali.iEnd;
             alignment.iStart = ali.iStart;
             alignment.seqs = ali.seqs;
+            alignment.mapped = null;
+            alignment.setReferenceSites(null);
+            // Alignments saved by previous versions are not packed.
+            for(SequenceBuffer sb:alignment.seqs)
+                sb.pack();
             alignment.species = ali.species;
             alignment.strains = ali.strains;
             alignment.index   = ali.index;
@@ -319,7 +615,7 @@ public class DPGPAlignment implements Serializable
      */
     public ErrorCode saveToTextFile(String strFilename, int nBlockSize)
     {
-        if(seqs==null)
+        if(seqs==null && mapped==null)
             return ErrorCode.InvalidParameter;
         try
         {
@@ -329,14 +625,15 @@ public class DPGPAlignment implements Serializable
             File output = new File(strFilename);
             PrintWriter out = new PrintWriter(new FileWriter(output));
             int pos = 0;
-            int maxpos = seqs[0].length();
+            int maxpos = getAlignmentLength();
+            int nSeqs = getSequencesCount();
             int sp = iStart;                // Start position.
             while(pos<maxpos)
             {
                 int np = sp; // New position.
-                for(int i=0;i<seqs.length;i++)
+                for(int i=0;i<nSeqs;i++)
                 {
-                    String strSeq = seqs[i].substring(pos, Math.min(pos+nBlockSize, maxpos));
+                    String strSeq = substring(i, pos, Math.min(pos+nBlockSize, maxpos));
                     // Calculate the genome position.
                     if(i==0)
                     {
@@ -374,14 +671,18 @@ public class DPGPAlignment implements Serializable
      */
     public void addAlignment(String strSpecies, String strStrain, VMAParser.RawAlingment ali)
     {
+        // A mapped alignment must be loaded before it can be modified.
+        if(mapped!=null)
+            load();
+        setReferenceSites(null);
         strains.add(strStrain);
         species.add(strSpecies);
         // Add the first sequence.
         if(seqs==null)
         {
             seqs = new SequenceBuffer[2];
-            seqs[0] = ali.smel.clone();
-            seqs[1] = ali.sseq.clone();
+            seqs[0] = ali.smel.clone().pack();
+            seqs[1] = ali.sseq.clone().pack();
             iStart = ali.iStart;
             iEnd = ali.iEnd;
         }
@@ -397,8 +698,10 @@ public class DPGPAlignment implements Serializable
             // can yield the gap in another one, thus, increasing the total length.
             int iLength = (Math.max(iEnd, ali.iEnd)-Math.min(iStart, ali.iStart)+1)+nGapOld+nGapNew;
             SequenceBuffer[] tmp = new SequenceBuffer[seqs.length+1];
+            // The sequences are stored packed (two bases per byte) to reduce
+            // the memory demand of large alignments.
             for(int i=0;i<tmp.length;i++)
-                tmp[i] = new SequenceBuffer(iLength);
+                tmp[i] = new SequenceBuffer(iLength, true);
             /*****************************************************************
             *                       Re-align the sequences                   *
             *****************************************************************/
@@ -593,47 +896,211 @@ public class DPGPAlignment implements Serializable
      *  the position of the 1000th site of D.mel. sequence in the sequence
      *  buffer (this must not be position 1000, since there might be gaps in
      *  between), the second value is the 2000th site and so on.
+     *  The index is saved with the alignment, the positions are converted
+     *  using the bit vector of the non-gap sites, which is created here as well.
      */
     private void createIndex()
     {
         index.clear();
         index.add(0);
         int n=0;
-        for(int i=0;i<seqs[0].length();i++)
+        int l = seqs[0].length();
+        RankSelectBitVector bv = new RankSelectBitVector(l);
+        for(int i=0;i<l;i++)
         {
             if(seqs[0].baseAt(i)!=GAP)
+            {
+                bv.set(i);
                 n++;
+            }
             if(n==1000)
             {
                 index.add(i);
                 n=0;
             }
         }
+        bv.build();
+        setReferenceSites(bv);
+    }
+
+    private synchronized void setReferenceSites(RankSelectBitVector bv)
+    {
+        refsites = bv;
+    }
+
+    /**
+     *  Returns the bit vector of the non-gap sites of the D.mel. sequence.
+     *  If the vector does not exist yet, e.g. because the alignment was
+     *  opened from a binary file, it is created.
+     *
+     *  @return
+     */
+    private synchronized RankSelectBitVector getReferenceSites()
+    {
+        if(refsites==null)
+        {
+            int l = getAlignmentLength();
+            RankSelectBitVector bv = new RankSelectBitVector(l);
+            for(int i=0;i<l;i++)
+            {
+                if(baseAt(0, i)!=GAP)
+                    bv.set(i);
+            }
+            bv.build();
+            refsites = bv;
+        }
+        return refsites;
+    }
+
+    /**
+     *  Loads the mapped sequences into the memory.
+     */
+    private void load()
+    {
+        seqs = new SequenceBuffer[mapped.length];
+        for(int i=0;i<mapped.length;i++)
+        {
+            int nLength = mapped[i].capacity();
+            seqs[i] = new SequenceBuffer(nLength, true);
+            if(nLength>0)
+                seqs[i].appendBases(mapped[i], 0, nLength-1);
+        }
+        mapped = null;
+    }
+
+    /**
+     *  Returns the number of sequences in the alignment.
+     *
+     *  @return
+     */
+    private int getSequencesCount()
+    {
+        return (mapped!=null) ? mapped.length : seqs.length;
+    }
+
+    /**
+     *  Returns the number of sites in the alignment.
+     *
+     *  @return
+     */
+    private int getAlignmentLength()
+    {
+        return (mapped!=null) ? mapped[0].capacity() : seqs[0].length();
+    }
+
+    /**
+     *  Returns the base of the specified sequence at the specified site.
+     *
+     *  @param iSeq
+     *  @param iSite
+     *  @return
+     */
+    private char baseAt(int iSeq, int iSite)
+    {
+        return (mapped!=null) ? (char)mapped[iSeq].get(iSite) : seqs[iSeq].baseAt(iSite);
+    }
+
+    /**
+     *  Appends the sites from iStart to iEnd inclusive of the specified sequence
+     *  to the sequence buffer.
+     *
+     *  @param sb
+     *  @param iSeq
+     *  @param iStart
+     *  @param iEnd
+     */
+    private void appendBases(SequenceBuffer sb, int iSeq, int iStart, int iEnd)
+    {
+        if(mapped!=null)
+            sb.appendBases(mapped[iSeq], iStart, iEnd);
+        else
+            sb.appendBases(seqs[iSeq], iStart, iEnd);
+    }
+
+    /**
+     *  Copies the sites from iStart to iEnd (exclusive) of the specified sequence
+     *  into the byte array.
+     *
+     *  @param iSeq
+     *  @param iStart
+     *  @param iEnd
+     *  @param dst
+     */
+    private void getBytes(int iSeq, int iStart, int iEnd, byte[] dst)
+    {
+        if(mapped!=null)
+        {
+            ByteBuffer tmp = mapped[iSeq].duplicate();
+            tmp.position(iStart);
+            tmp.get(dst, 0, iEnd-iStart);
+        }
+        else
+            seqs[iSeq].getBytes(iStart, iEnd, dst, 0);
+    }
+
+    /**
+     *  Returns the sites from iStart to iEnd (exclusive) of the specified sequence.
+     *
+     *  @param iSeq
+     *  @param iStart
+     *  @param iEnd
+     *  @return
+     */
+    private String substring(int iSeq, int iStart, int iEnd)
+    {
+        if(mapped==null)
+            return seqs[iSeq].substring(iStart, iEnd);
+        byte[] tmp = new byte[iEnd-iStart];
+        getBytes(iSeq, iStart, iEnd, tmp);
+        return new String(tmp);
     }
 
     /**
      *  Converts the genomic position to the alignment position
-     *  and returns the converted value.
+     *  and returns the converted value. Positions outside of the
+     *  alignment are returned unchanged.
      *
      *  @param iPosition
      *  @return
      */
-    private int genToAli(int iPosition)
+    public int genToAli(int iPosition)
     {
         if(iPosition<iStart || iPosition>iEnd)
             return iPosition;
-        // Find the 1000-bp block the position is in.
-        int ind = (iPosition-this.iStart)/1000;
-        int i = index.get(ind);          // Position in the alignment to start searching from.
-        int pos = this.iStart+ind*1000-1;  // Position in the mel. genome the search starts at
-        if(ind==0)
-            pos++;
-        while(pos<iPosition)
-        {
-            i++;
-            if(seqs[0].baseAt(i)!=GAP)
-                pos++;            
-        }
+        RankSelectBitVector bv = getReferenceSites();
+        int n = iPosition-iStart+1;
+        // The first site of the alignment is always assigned to iStart, so
+        // if it is a gap, the positions of the first 1000-bp block are shifted.
+        if(n<=1000 && !bv.get(0))
+            n--;
+        if(n==0)
+            return 0;
+        int i = bv.select(n);
+        if(i<0)
+            throw new IndexOutOfBoundsException();
         return i;
     }
-}
\ No newline at end of file
+
+    /**
+     *  Converts the alignment position to the genomic position and returns
+     *  the converted value, i.e. aliToGen(genToAli(p)) is p for every base of
+     *  the D.mel. sequence. If the site is a gap in the D.mel. sequence, the
+     *  position of the preceding base is returned, respectively iStart if
+     *  there is no preceding base. If the site is outside of the alignment,
+     *  the method returns -1.
+     *
+     *  @param iSite
+     *  @return
+     */
+    public int aliToGen(int iSite)
+    {
+        RankSelectBitVector bv = getReferenceSites();
+        if(iSite<0 || iSite>=bv.length())
+            return -1;
+        int n = bv.rank(iSite+1);
+        // Reverse the shift of the first 1000-bp block applied by genToAli.
+        if(!bv.get(0) && n<1000)
+            return iStart+n;
+        return iStart+n-1;
+    }
+}
@@ -39,9 +39,16 @@ import plugin.AInitData;
 
 public class DPGPImporter
 {
+    // Setting: number of alignment columns kept in memory while merging the VMA files.
+    public static final String MERGEWINDOW      = "DPGPMergeWindow";
+    private static final int DEFAULT_WINDOW     = 262144;
+    // Setting: number of bases of the DPGP sequences kept in memory.
+    public static final String SEQUENCECACHE    = "DPGPSequenceCache";
+
     private String strErr = null;
     private AInitData id  = null;
     private ErrorCode lec;          // Last error code.
+    private int nThreads  = 0;      // Number of threads parsing the VMA files (0 - use the kernel setting).
 
     /**
      *  Initializes the DPGPImporter instance.
@@ -52,6 +59,9 @@ public class DPGPImporter
     public ErrorCode initialize(AInitData initdata)
     {
         id = initdata;
+        String strCache = (id!=null && id.sm!=null) ? id.sm.getSetting("", SEQUENCECACHE) : null;
+        if(strCache!=null && strCache.matches("[0-9]{1,12}"))
+            SequenceFragment.setCacheSize(Long.parseLong(strCache));
         return ErrorCode.Ok;
     }
 
@@ -64,9 +74,10 @@ public class DPGPImporter
      *      - strains   strains
      *      - gff       GFF file name
      *      - frags     fragments file name
+     *      - threads   number of threads parsing the VMA files (optional)
      *
      *  Remarks:
-     *  The last two parameters are mutually exclusive and, thus, should not be both
+     *  The parameters gff and frags are mutually exclusive and, thus, should not be both
      *  used in the same parameter string.
      *
      *  @return
@@ -74,7 +85,7 @@ public class DPGPImporter
     public static String getParamString()
     {
         return "vma='<FILE1>;<FILE2>' cutoff='<CUTOFF>' chr='<CHROMOSOME>' specs='<SPEC1>;<SPEC2>' "+
-               "strains='<STRAIN1>;<STRAIN2>' gff='<GFFFILE>' frags='<FRAGMENTSFILE>'";
+               "strains='<STRAIN1>;<STRAIN2>' gff='<GFFFILE>' frags='<FRAGMENTSFILE>' threads='<THREADS>'";
     }
 
     /** 
@@ -105,7 +116,7 @@ public class DPGPImporter
      *
      *  Parameter string format:
      *  vma='<FILE1>;<FILE2>' cutoff='<CUTOFF>' chr='<CHROMOSOME>' specs='<SPEC1>;<SPEC2>'
-     *  strains='<STRAIN1>;<STRAIN2>' gff='<GFFFILE>' frags='<FRAGMENTSFILE>'
+     *  strains='<STRAIN1>;<STRAIN2>' gff='<GFFFILE>' frags='<FRAGMENTSFILE>' threads='<THREADS>'
      *
      *  @param strParams
      *  @return
@@ -123,6 +134,10 @@ public class DPGPImporter
                                         "strains='(.+)'\\s+"+           // 5
                                         "(gff='.+')|(frags='.+')",      // 6
                                         Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            // Number of threads. The parameter is optional.
+            Matcher mt = Pattern.compile("threads='(\\d{1,4})'", Pattern.CASE_INSENSITIVE).matcher(strParams);
+            if(mt.find())
+                nThreads = Integer.parseInt(mt.group(1));
             Matcher m = p.matcher(strParams);
             if(m.find())
             {
@@ -349,6 +364,9 @@ public class DPGPImporter
      *  Builds the multiple alignment using the provided VMA files. THe VMA
      *  files should represent different species but the same chromosome, otherwise
      *  the alignment is incorrect.
+     *  The files are merged in a single pass into a temporary binary alignment
+     *  file, which is then mapped into memory. The number of columns kept in
+     *  memory while merging is defined by the setting DPGPMergeWindow.
      *  
      *  Remarks:
      *  If one of the following is true, the method returns null:
@@ -374,7 +392,10 @@ public class DPGPImporter
         try
         {
             VMAParser parser = new VMAParser();
-            DPGPAlignment ali = parser.parseFiles(vma, iCutoff, specs, strains);
+            parser.setThreadsCount(getThreadsCount());
+            File output = File.createTempFile("dpgp", ".ali");
+            output.deleteOnExit();
+            DPGPAlignment ali = parser.mergeFiles(vma, iCutoff, specs, strains, output, getMergeWindow());
             if(ali==null)
             {
                 strErr = parser.getLastErrorString();
@@ -384,6 +405,12 @@ public class DPGPImporter
             lec = ErrorCode.Ok;
             return ali;
         }
+        catch(IOException e)
+        {
+            lec = ErrorCode.IOError;
+            strErr = "Cannot create the temporary alignment file";
+            return null;
+        }
         catch(OutOfMemoryError oom)
         {
             lec = ErrorCode.VMError;
@@ -392,6 +419,33 @@ public class DPGPImporter
         }
     }
 
+    /**
+     *  Returns the number of alignment columns kept in memory while merging
+     *  the VMA files.
+     *
+     *  @return
+     */
+    private int getMergeWindow()
+    {
+        String strWindow = (id!=null && id.sm!=null) ? id.sm.getSetting("", MERGEWINDOW) : null;
+        if(strWindow!=null && strWindow.matches("[0-9]{1,9}") && Integer.parseInt(strWindow)>0)
+            return Integer.parseInt(strWindow);
+        return DEFAULT_WINDOW;
+    }
+
+    /**
+     *  Returns the number of threads parsing the VMA files. Unless specified
+     *  in the parameter string, the number of worker threads of the kernel is used.
+     *
+     *  @return
+     */
+    private int getThreadsCount()
+    {
+        if(nThreads>0)
+            return nThreads;
+        return (id!=null) ? Math.max(id.threads, 1) : 1;
+    }
+
     /**
      *  Returns the description of the last error occured.
      *
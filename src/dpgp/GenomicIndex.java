@@ -0,0 +1,248 @@
+/*
+    File:
+        GenomicIndex.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Index of the genomic positions of the genes of a dataset. The genes are
+        grouped by chromosome and stored in an augmented interval tree per
+        chromosome, thus the genes overlapping a genomic region are found in
+        O(log n + k) time rather than by comparing all genes.
+
+    Note:
+        Only the genes annotated with DatasetBuilder.GENOMIC_POSITION are
+        indexed. The chromosome of a gene is the chromosome of its first
+        strain entry. The index is not updated when the dataset is changed.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package dpgp;
+
+import bio.gene.Dataset;
+import bio.gene.GeneEntry;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Vector;
+
+
+public class GenomicIndex
+{
+    /**
+     *  Augmented interval tree over the intervals sorted by the start position.
+     *  The tree is implicit: the root of the range [lo, hi) is the element in
+     *  the middle, and maxEnd holds the greatest end position within the range
+     *  of the element.
+     */
+    private static class IntervalTree
+    {
+        private int[] starts    = null;
+        private int[] ends      = null;
+        private int[] genes     = null;
+        private int[] maxEnd    = null;
+
+        public IntervalTree(Vector<int[]> intervals)
+        {
+            int n = intervals.size();
+            int[][] tmp = intervals.toArray(new int[n][]);
+            Arrays.sort(tmp, new Comparator<int[]>()
+            {
+                public int compare(int[] a, int[] b)
+                {
+                    if(a[0]!=b[0])
+                        return (a[0]<b[0]) ? -1 : 1;
+                    return a[2]-b[2];
+                }
+            });
+            starts = new int[n];
+            ends = new int[n];
+            genes = new int[n];
+            maxEnd = new int[n];
+            for(int i=0;i<n;i++)
+            {
+                starts[i] = tmp[i][0];
+                ends[i] = tmp[i][1];
+                genes[i] = tmp[i][2];
+            }
+            build(0, n);
+        }
+
+        private int build(int lo, int hi)
+        {
+            if(lo>=hi)
+                return Integer.MIN_VALUE;
+            int mid = (lo+hi)>>>1;
+            maxEnd[mid] = Math.max(ends[mid], Math.max(build(lo, mid), build(mid+1, hi)));
+            return maxEnd[mid];
+        }
+
+        /**
+         *  Adds the indices of the genes overlapping the region [iStart, iEnd]
+         *  to res.
+         */
+        public void query(int lo, int hi, int iStart, int iEnd, Vector<Integer> res)
+        {
+            while(lo<hi)
+            {
+                int mid = (lo+hi)>>>1;
+                // No interval of the range reaches the region.
+                if(maxEnd[mid]<iStart)
+                    return;
+                query(lo, mid, iStart, iEnd, res);
+                // The intervals to the right start behind the region.
+                if(starts[mid]>iEnd)
+                    return;
+                if(ends[mid]>=iStart)
+                    res.add(genes[mid]);
+                lo = mid+1;
+            }
+        }
+
+        public int size()
+        {
+            return starts.length;
+        }
+    }
+
+    private HashMap<String, IntervalTree> trees = null;
+    private int[][] positions                   = null;     // Positions by gene index.
+    private String[] chromosomes                = null;     // Chromosomes by gene index.
+
+
+    /**
+     *  Creates the index of the specified dataset.
+     *
+     *  @param dataset
+     */
+    public GenomicIndex(Dataset dataset)
+    {
+        int nGenes = dataset.getGenesCount();
+        positions = new int[nGenes][];
+        chromosomes = new String[nGenes];
+        HashMap<String, Vector<int[]>> tmp = new HashMap<String, Vector<int[]>>();
+        for(int i=0;i<nGenes;i++)
+        {
+            GeneEntry ge = dataset.getGeneEntry(i);
+            positions[i] = getGenomicPosition(ge);
+            if(positions[i]==null)
+                continue;
+            chromosomes[i] = getChromosome(ge);
+            Vector<int[]> intervals = tmp.get(chromosomes[i]);
+            if(intervals==null)
+            {
+                intervals = new Vector<int[]>();
+                tmp.put(chromosomes[i], intervals);
+            }
+            intervals.add(new int[]{positions[i][0], positions[i][1], i});
+        }
+        trees = new HashMap<String, IntervalTree>();
+        for(String strChr:tmp.keySet())
+            trees.put(strChr, new IntervalTree(tmp.get(strChr)));
+    }
+
+    /**
+     *  Returns the genomic position of the gene with the specified index as
+     *  an array {start, end} with start<=end, or null if the gene does not
+     *  have any genomic position.
+     *
+     *  @param iGene
+     *  @return
+     */
+    public int[] getPosition(int iGene)
+    {
+        return (positions[iGene]!=null) ? positions[iGene].clone() : null;
+    }
+
+    /**
+     *  Returns the chromosome of the gene with the specified index, or null
+     *  if the gene does not have any genomic position.
+     *
+     *  @param iGene
+     *  @return
+     */
+    public String getChromosome(int iGene)
+    {
+        return chromosomes[iGene];
+    }
+
+    /**
+     *  Returns the indices of the genes on the specified chromosome, which
+     *  overlap the region [iStart, iEnd] by at least one position. The
+     *  indices are sorted in ascending order.
+     *
+     *  @param strChromosome
+     *  @param iStart
+     *  @param iEnd
+     *  @return
+     */
+    public int[] getOverlappingGenes(String strChromosome, int iStart, int iEnd)
+    {
+        IntervalTree tree = trees.get((strChromosome!=null) ? strChromosome : "");
+        if(tree==null)
+            return new int[0];
+        if(iStart>iEnd)
+        {
+            int k = iEnd;
+            iEnd = iStart;
+            iStart = k;
+        }
+        Vector<Integer> res = new Vector<Integer>();
+        tree.query(0, tree.size(), iStart, iEnd, res);
+        int[] indices = new int[res.size()];
+        for(int i=0;i<indices.length;i++)
+            indices[i] = res.get(i);
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     *  Returns the indices of the genes overlapping the gene with the
+     *  specified index, including the gene itself. If the gene does not have
+     *  any genomic position, an empty array is returned.
+     *
+     *  @param iGene
+     *  @return
+     */
+    public int[] getOverlappingGenes(int iGene)
+    {
+        if(positions[iGene]==null)
+            return new int[0];
+        return getOverlappingGenes(chromosomes[iGene], positions[iGene][0], positions[iGene][1]);
+    }
+
+    /**
+     *  Returns the genomic position of the gene entry as an array {start, end}
+     *  with start<=end, or null if the gene entry is not annotated with
+     *  DatasetBuilder.GENOMIC_POSITION.
+     *
+     *  @param ge
+     *  @return
+     */
+    public static int[] getGenomicPosition(GeneEntry ge)
+    {
+        int[] tmp = (int[])ge.getProperty(DatasetBuilder.GENOMIC_POSITION);
+        if(tmp==null)
+            return null;
+        return new int[]{Math.min(tmp[0], tmp[1]), Math.max(tmp[0], tmp[1])};
+    }
+
+    /**
+     *  Returns the chromosome of the gene entry, i.e. the chromosome of the
+     *  first strain entry, or an empty string if the gene entry does not have
+     *  any strain entries.
+     *
+     *  @param ge
+     *  @return
+     */
+    public static String getChromosome(GeneEntry ge)
+    {
+        return (ge.getStrainsCount()>0) ? ge.getStrainEntry(0).getChromosome() : "";
+    }
+}
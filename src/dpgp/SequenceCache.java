@@ -0,0 +1,108 @@
+/*
+    File:
+        SequenceCache.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Least recently used cache of the sequences extracted from the alignment.
+        The size of the cache is limited by the total number of bases rather
+        than by the number of sequences, since the regions differ in length.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package dpgp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+class SequenceCache
+{
+    private LinkedHashMap<Object, String> seqs = null;
+    private long nBases     = 0;    // Total number of cached bases.
+    private long nCapacity  = 0;    // Maximal number of cached bases.
+
+
+    /**
+     *  Creates the cache, which keeps at most nCapacity bases.
+     *
+     *  @param nCapacity
+     */
+    public SequenceCache(long nCapacity)
+    {
+        this.nCapacity = nCapacity;
+        seqs = new LinkedHashMap<Object, String>(256, 0.75f, true);
+    }
+
+    /**
+     *  Returns the cached sequence or null if the sequence is not in the cache.
+     *
+     *  @param key
+     *  @return
+     */
+    public synchronized String get(Object key)
+    {
+        return seqs.get(key);
+    }
+
+    /**
+     *  Adds the sequence to the cache. If the cache is full, the least recently
+     *  used sequences are removed. Sequences longer than the cache capacity
+     *  are not cached.
+     *
+     *  @param key
+     *  @param strSeq
+     */
+    public synchronized void put(Object key, String strSeq)
+    {
+        if(strSeq.length()>nCapacity)
+            return;
+        String old = seqs.put(key, strSeq);
+        if(old!=null)
+            nBases -= old.length();
+        nBases += strSeq.length();
+        trim();
+    }
+
+    /**
+     *  Removes the sequence from the cache.
+     *
+     *  @param key
+     */
+    public synchronized void remove(Object key)
+    {
+        String old = seqs.remove(key);
+        if(old!=null)
+            nBases -= old.length();
+    }
+
+    /**
+     *  Sets the maximal number of cached bases. If necessary, the least
+     *  recently used sequences are removed.
+     *
+     *  @param nCapacity
+     */
+    public synchronized void setCapacity(long nCapacity)
+    {
+        this.nCapacity = Math.max(nCapacity, 0);
+        trim();
+    }
+
+    private void trim()
+    {
+        Iterator<Map.Entry<Object, String>> it = seqs.entrySet().iterator();
+        while(nBases>nCapacity && it.hasNext())
+        {
+            nBases -= it.next().getValue().length();
+            it.remove();
+        }
+    }
+}
@@ -3,13 +3,15 @@
         SequenceFragment.java
  *
     Revision:
-        1.0.0.1
+        1.0.0.4
  *
     Description:
         Extends the standard GeneRegion class. Sequence fragment does not
         contain the sequence but the fragment start and end positions in the
         alignment instead. This approach helps to keep the memory demand as low
-        as possible, since the sequence is not duplicated.
+        as possible, since the sequence is not duplicated. The sequence is only
+        extracted when it is requested, and the recently used sequences are
+        kept in a cache of limited size.
  *
     Project:
         GeneAnalyzer 2.2
@@ -63,7 +65,12 @@ public class SequenceFragment extends GeneRegion
     private int iGenEndPos   = -1;
 
     private Vector<Operation> op_cache = null;  // Operations cache.
-    private int iLength                = 0;
+    private int iLength                = -1;    // -1 if not determined yet.
+
+    // Default number of bases kept in the sequence cache.
+    public static final int DEFAULT_CACHE_SIZE  = 8388608;
+
+    private static final SequenceCache cache = new SequenceCache(DEFAULT_CACHE_SIZE);
 
     /**
      *  Constructs a new sequence fragment.
@@ -89,13 +96,24 @@ public class SequenceFragment extends GeneRegion
         this.iGenEndPos = iEnd;
         this.properties = new HashMap<String, Object>();
         this.op_cache = new Vector<Operation>();
-        this.iLength = getSequenceLength();
+    }
+
+    /**
+     *  Sets the maximal number of bases of the sequences kept in memory. The
+     *  cache is shared by all sequence fragments.
+     *
+     *  @param nBases
+     */
+    public static void setCacheSize(long nBases)
+    {
+        cache.setCapacity(nBases);
     }
 
     @Override
     public void setSequence(String strSequence)
     {
         this.sequence = new SequenceBuffer(strSequence);
+        setModified();
     }
 
     /**
@@ -111,24 +129,61 @@ public class SequenceFragment extends GeneRegion
             return this.sequence.toString();
         else if(ali!=null)
         {
+            String strSeq = cache.get(this);
+            if(strSeq!=null)
+                return strSeq;
             SequenceBuffer tmp = ali.extractRegion(iGenStartPos, iGenEndPos, isi);
-            if(tmp!=null)
-                return getEditedSequence(tmp).toString();
-            else
+            if(tmp==null)
                 return "";
+            strSeq = getEditedSequence(tmp).toString();
+            cache.put(this, strSeq);
+            return strSeq;
         }
         else
             return "";
     }
 
+    /**
+     *  Copies the bases from iStart to iEnd (exclusive) into the array dst
+     *  starting at iOffset. If the sequence was not assigned, the bases are
+     *  taken from the (cached) sequence extracted from the alignment.
+     *
+     *  @param iStart
+     *  @param iEnd
+     *  @param dst
+     *  @param iOffset
+     */
+    @Override
+    public void getBases(int iStart, int iEnd, byte[] dst, int iOffset)
+    {
+        if(!this.sequence.isEmpty())
+        {
+            super.getBases(iStart, iEnd, dst, iOffset);
+            return;
+        }
+        String strSeq = getSequence();
+        if(iStart<0 || iEnd>strSeq.length() || iStart>iEnd)
+            throw new IndexOutOfBoundsException(String.format("Range %d-%d, length %d", iStart, iEnd, strSeq.length()));
+        for(int i=iStart;i<iEnd;i++)
+            dst[iOffset+i-iStart] = (byte)strSeq.charAt(i);
+    }
+
+    /**
+     *  Returns the length of the sequence. The length is determined from the
+     *  alignment without extracting the sequence.
+     *
+     *  @return
+     */
     @Override
     public int getSequenceLength()
     {
-        if(ali!=null && iLength==0)
+        if(iLength<0)
         {
-            SequenceBuffer tmp = ali.extractRegion(iGenStartPos, iGenEndPos, isi);
-            if(tmp!=null)
-                iLength = getEditedSequence(tmp).length();
+            // No operations can be cached before the length is determined.
+            int l = (ali!=null) ? ali.getRegionLength(iGenStartPos, iGenEndPos) : -1;
+            if(l<0)
+                return 0;
+            iLength = l;
         }
         return iLength;
     }
@@ -156,7 +211,7 @@ public class SequenceFragment extends GeneRegion
     @Override
     public int removeBases(int iStart, int nCount)
     {
-        if(iStart<0 || iStart>=iLength || nCount<1)
+        if(iStart<0 || iStart>=getSequenceLength() || nCount<1)
             return 0;
         int nRemoved = 0;
         for(int i=0;i<nCount;i++)
@@ -206,8 +261,7 @@ public class SequenceFragment extends GeneRegion
      */
     public int getGapsCount(int iGenomicFrom, int iGenomicTo)
     {
-        SequenceBuffer seq = ali.extractRegion(iGenomicFrom, iGenomicTo, 0);
-        return seq.getCharacterCount(DPGPAlignment.GAP);
+        return ali.getGapsCount(iGenomicFrom, iGenomicTo);
     }
 
     /**
@@ -250,8 +304,9 @@ public class SequenceFragment extends GeneRegion
      */
     private boolean addCachedOperation(Operation op)
     {
+        int nLength = getSequenceLength();
         // The operation must specify a valid site.
-        if(op.iSite>-1 && (op.type==OperationType.Insert) ? op.iSite<=iLength : op.iSite<iLength)
+        if(op.iSite>-1 && (op.type==OperationType.Insert) ? op.iSite<=nLength : op.iSite<nLength)
         {
             // Update the sequence length and the end position.
             switch(op.type)
@@ -268,6 +323,8 @@ public class SequenceFragment extends GeneRegion
                     break;
             }
             op_cache.add(op);
+            cache.remove(this);
+            setModified();
             return true;
         }
         return false;
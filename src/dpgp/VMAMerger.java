@@ -0,0 +1,483 @@
+/*
+    File:
+        VMAMerger.java
+ *
+    Revision:
+        1.0.0.2
+ *
+    Description:
+        Merges multiple VMA files into the multiple alignment in a single pass.
+        The files are read in parallel column by column. Every file is merged
+        by a separate stage, which combines the columns of the previous stage
+        with the columns of the file exactly as DPGPAlignment.addAlignment does,
+        so that the result is the same as adding the pairwise alignments one
+        after another. The merged columns are collected in a window of limited
+        size and written to the binary alignment file. If several threads are
+        used, the files are decoded concurrently in the background.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package dpgp;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+class VMAMerger
+{
+    private static final byte GAP       = (byte)DPGPAlignment.GAP;
+    private static final byte MISSING   = (byte)DPGPAlignment.MISSING;
+
+    /**
+     *  Single column of the multiple alignment. To avoid copying the complete
+     *  column in every stage, the rows 1..m-1 are not stored, since they all
+     *  have the same value (fill). This is the case, because a stage either
+     *  passes the column of the previous stage or replaces all its rows
+     *  except the first one by gaps or missing data.
+     */
+    private static class Column
+    {
+        byte row0   = 0;        // D.mel. base
+        byte fill   = 0;        // Value of the rows 1..m-1
+        int m       = 1;        // First explicitly stored row.
+        byte[] rows = null;
+
+        byte get(int iRow)
+        {
+            if(iRow==0)
+                return row0;
+            return (iRow<m) ? fill : rows[iRow];
+        }
+    }
+
+    /**
+     *  Source of the columns.
+     */
+    private static abstract class Source
+    {
+        /**
+         *  Returns the next column or null if there are no more columns.
+         *
+         *  @return
+         *  @throws IOException
+         */
+        abstract Column read() throws IOException;
+    }
+
+    /**
+     *  Source of the first file: its columns consist of the D.mel. sequence
+     *  and the sequence of the first strain.
+     */
+    private class FirstSource extends Source
+    {
+        private VMAStream vma = null;
+
+        FirstSource(VMAStream vma)
+        {
+            this.vma = vma;
+        }
+
+        Column read() throws IOException
+        {
+            if(!vma.next())
+                return null;
+            Column c = createColumn(vma.getMel(), (byte)0, 1);
+            c.rows[1] = vma.getSeq();
+            return c;
+        }
+    }
+
+    /**
+     *  Stage merging the columns of the previous stage (old alignment) with
+     *  the columns of the VMA file (new alignment) into the row k.
+     */
+    private class Stage extends Source
+    {
+        private Source old      = null;
+        private VMAStream vma   = null;
+        private int k           = 0;        // Row of the new strain.
+        private int po          = 0;
+        private int pn          = 0;
+        private int iPhase      = 0;
+        private Column co       = null;     // Current column of the old alignment.
+        private boolean bOld    = false;    // Whether co is valid.
+        private boolean bNew    = false;    // Whether the current column of the VMA file is valid.
+
+        Stage(Source old, int iStartOld, VMAStream vma, int iStartNew, int k) throws IOException
+        {
+            this.old = old;
+            this.vma = vma;
+            this.k = k;
+            int start = Math.min(iStartOld, iStartNew);
+            pn = start-iStartNew;
+            po = start-iStartOld;
+            co = old.read();
+            bOld = (co!=null);
+            bNew = vma.next();
+        }
+
+        private Column takeOld() throws IOException
+        {
+            Column c = co;
+            co = old.read();
+            bOld = (co!=null);
+            return c;
+        }
+
+        private Column takeNew(byte row0, byte fill) throws IOException
+        {
+            Column c = createColumn(row0, fill, k);
+            c.rows[k] = vma.getSeq();
+            bNew = vma.next();
+            return c;
+        }
+
+        Column read() throws IOException
+        {
+            // The phases are passed one after another. A phase returns columns
+            // until its condition is not met any more, then the next one starts.
+            // If the new pairwise alignment starts before the old one, add bases
+            // from the mel. sequence of the new alignment to the combined alignment.
+            if(iPhase==0)
+            {
+                if(po<0 && bNew)
+                {
+                    byte mn = vma.getMel();
+                    if(mn!=GAP)
+                        po++;
+                    return takeNew(mn, GAP);
+                }
+                iPhase++;
+            }
+            // If the new alignment starts beyond the old start, copy the bases
+            // from the old alignment and put gaps into the last sequence.
+            if(iPhase==1)
+            {
+                if(pn<0 && bOld)
+                {
+                    if(co.row0!=GAP)
+                        pn++;
+                    Column c = takeOld();
+                    c.rows[k] = GAP;
+                    return c;
+                }
+                iPhase++;
+            }
+            // If the old and the new alignment do not have common sites, fill
+            // the missing part with missing data.
+            if(iPhase==2)
+            {
+                if(po<0)
+                {
+                    po++;
+                    return createColumn(MISSING, MISSING, k+1);
+                }
+                iPhase++;
+            }
+            if(iPhase==3)
+            {
+                if(pn<0)
+                {
+                    pn++;
+                    return createColumn(MISSING, MISSING, k+1);
+                }
+                iPhase++;
+            }
+            // Common part.
+            if(iPhase==4)
+            {
+                if(bOld && bNew)
+                    return mergeColumns();
+                iPhase++;
+            }
+            // Alignment end.
+            if(iPhase==5)
+            {
+                if(bOld)
+                {
+                    Column c = takeOld();
+                    c.rows[k] = GAP;
+                    return c;
+                }
+                iPhase++;
+            }
+            if(iPhase==6)
+            {
+                if(bNew)
+                    return takeNew(vma.getMel(), GAP);
+                iPhase++;
+            }
+            return null;
+        }
+
+        /**
+         *  Merges the current columns of the old and new alignment. See
+         *  DPGPAlignment.addAlignment for the description of the patterns.
+         *
+         *  @return
+         *  @throws IOException
+         */
+        private Column mergeColumns() throws IOException
+        {
+            char mo = (char)co.row0;        // Mel. base in old alignment.
+            char mn = (char)vma.getMel();   // Mel. base in new alignment.
+            byte sn = vma.getSeq();
+            Column c = null;
+            // Pattern #1: BB - BB
+            if(mo>DPGPAlignment.MISSING && mn>DPGPAlignment.MISSING && mo==mn)
+            {
+                c = takeOld();
+                c.rows[k] = sn;
+                bNew = vma.next();
+            }
+            // Pattern #2: BB - ..
+            else if(mo>DPGPAlignment.MISSING && mn==DPGPAlignment.MISSING)
+            {
+                c = takeOld();
+                c.rows[k] = MISSING;
+                bNew = vma.next();
+            }
+            // Pattern #3: BB - -B
+            else if(mo>DPGPAlignment.MISSING && mn==DPGPAlignment.GAP)
+                c = takeNew(GAP, GAP);
+            // Pattern #4: -B - BB
+            else if(mo==DPGPAlignment.GAP && mn>DPGPAlignment.MISSING)
+            {
+                c = takeOld();
+                c.rows[k] = GAP;
+            }
+            // Pattern #5: -B - ..
+            else if(mo==DPGPAlignment.GAP && mn==DPGPAlignment.MISSING)
+            {
+                c = takeOld();
+                c.rows[k] = MISSING;
+            }
+            // Pattern #6: -B - -B
+            else if(mo==DPGPAlignment.GAP && mn==DPGPAlignment.GAP)
+            {
+                c = takeOld();
+                c.rows[k] = sn;
+                bNew = vma.next();
+            }
+            // Pattern #7: .. - BB
+            else if(mo==DPGPAlignment.MISSING && mn>DPGPAlignment.MISSING)
+            {
+                c = takeOld();
+                c.row0 = (byte)mn;
+                c.fill = MISSING;
+                c.m = k;
+                c.rows[k] = sn;
+                bNew = vma.next();
+            }
+            // Pattern #8: .. - -B
+            else if(mo==DPGPAlignment.MISSING && mn==DPGPAlignment.GAP)
+                c = takeNew(GAP, GAP);
+            // Pattern #9: .. - ..
+            else if(mo==DPGPAlignment.MISSING && mn==DPGPAlignment.MISSING)
+            {
+                c = takeOld();
+                c.row0 = MISSING;
+                c.fill = MISSING;
+                c.m = k+1;
+                bNew = vma.next();
+            }
+            else // mn!=mo and the data is not missing ==> something wrong with the alignments.
+            {
+                c = takeOld();
+                c.row0 = toLowerCase(c.row0);
+                c.fill = toLowerCase(c.fill);
+                for(int i=c.m;i<k;i++)
+                    c.rows[i] = toLowerCase(c.rows[i]);
+                c.rows[k] = toLowerCase(sn);
+                bNew = vma.next();
+            }
+            return c;
+        }
+    }
+
+    private int nRows = 0;
+    private ArrayDeque<Column> pool = new ArrayDeque<Column>();
+    private String strErrMsg = "";
+
+
+    /**
+     *  Creates a column.
+     *
+     *  @param row0
+     *  @param fill
+     *  @param m
+     *  @return
+     */
+    private Column createColumn(byte row0, byte fill, int m)
+    {
+        Column c = pool.poll();
+        if(c==null)
+        {
+            c = new Column();
+            c.rows = new byte[nRows];
+        }
+        c.row0 = row0;
+        c.fill = fill;
+        c.m = m;
+        return c;
+    }
+
+    private static byte toLowerCase(byte b)
+    {
+        return (byte)Character.toLowerCase((char)b);
+    }
+
+    /**
+     *  Merges the VMA files and saves the resulting alignment into the binary
+     *  alignment file. At most nWindow columns are kept in memory. If an error
+     *  occurs, the method returns false and the error message can be obtained
+     *  using getLastErrorString.
+     *
+     *  @param files
+     *  @param iThreshold
+     *  @param species
+     *  @param strains
+     *  @param output
+     *  @param nWindow
+     *  @param nThreads     number of threads decoding the files
+     *  @return
+     */
+    public boolean merge(File[] files, int iThreshold, String[] species, String[] strains, File output, int nWindow, int nThreads)
+    {
+        nRows = files.length+1;
+        nThreads = Math.min(nThreads, files.length);
+        ExecutorService decoders = (nThreads>1) ? Executors.newFixedThreadPool(nThreads) : null;
+        VMAStream[] streams = new VMAStream[files.length];
+        File[] blocks = new File[nRows];
+        OutputStream[] outs = new OutputStream[nRows];
+        try
+        {
+            // Build the stages.
+            int iStart = 0;
+            int iEnd = 0;
+            Source src = null;
+            for(int i=0;i<files.length;i++)
+            {
+                int iStartNew = VMAStream.findStart(files[i]);
+                streams[i] = (decoders!=null) ? new VMAStream(files[i], iThreshold, decoders)
+                                              : new VMAStream(files[i], iThreshold);
+                if(i==0)
+                {
+                    src = new FirstSource(streams[i]);
+                    iStart = iStartNew;
+                }
+                else
+                {
+                    src = new Stage(src, iStart, streams[i], iStartNew, i+1);
+                    iStart = Math.min(iStart, iStartNew);
+                }
+            }
+            // Collect the columns in the window and write them into the
+            // temporary sequence blocks.
+            for(int i=0;i<nRows;i++)
+            {
+                blocks[i] = File.createTempFile("dpgp", ".blk");
+                outs[i] = new BufferedOutputStream(new FileOutputStream(blocks[i]), 65536);
+            }
+            nWindow = Math.max(nWindow, 1);
+            byte[] window = new byte[nRows*nWindow];
+            Vector<Integer> index = new Vector<Integer>();
+            index.add(0);
+            int n = 0;
+            int nLength = 0;
+            int nCols = 0;
+            Column c;
+            while((c = src.read())!=null)
+            {
+                for(int i=0;i<nRows;i++)
+                    window[i*nWindow+nCols] = c.get(i);
+                // Update the 1000-bp index.
+                if(c.row0!=GAP)
+                    n++;
+                if(n==1000)
+                {
+                    index.add(nLength);
+                    n = 0;
+                }
+                pool.add(c);
+                nLength++;
+                nCols++;
+                if(nCols==nWindow)
+                {
+                    for(int i=0;i<nRows;i++)
+                        outs[i].write(window, i*nWindow, nCols);
+                    nCols = 0;
+                }
+            }
+            for(int i=0;i<nRows;i++)
+            {
+                outs[i].write(window, i*nWindow, nCols);
+                outs[i].close();
+                outs[i] = null;
+            }
+            for(VMAStream vma:streams)
+                iEnd = Math.max(iEnd, vma.getEnd());
+            Vector<String> vs = new Vector<String>();
+            vs.add("Drosophila melanogaster");
+            Vector<String> vst = new Vector<String>();
+            vst.add("D.mel");
+            for(int i=0;i<files.length;i++)
+            {
+                vs.add(species[i]);
+                vst.add(strains[i]);
+            }
+            DPGPAlignment.writeBinaryFile(output, iStart, iEnd, vs, vst, index, nLength, blocks);
+            return true;
+        }
+        catch(Exception e)
+        {
+            strErrMsg = "An error occured while parsing the files";
+            return false;
+        }
+        finally
+        {
+            for(VMAStream vma:streams)
+            {
+                if(vma!=null)
+                    vma.close();
+            }
+            if(decoders!=null)
+                decoders.shutdown();
+            for(int i=0;i<nRows;i++)
+            {
+                try
+                {
+                    if(outs[i]!=null)
+                        outs[i].close();
+                }
+                catch(IOException e)
+                {
+                }
+                if(blocks[i]!=null)
+                    blocks[i].delete();
+            }
+        }
+    }
+
+    /**
+     *  Returns the text description of the last error occured.
+     *
+     *  @return
+     */
+    public String getLastErrorString()
+    {
+        return strErrMsg;
+    }
+}
@@ -3,7 +3,7 @@
         VMAParser.java
  *
     Revision:
-        1.0.0.0
+        1.0.0.1
  *
     Description:
         Parses Vertical Multiple DPGPAlignment.
@@ -18,10 +18,13 @@
 package dpgp;
 
 import algorithms.SequenceBuffer;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import kernel.ErrorCode;
 
 public class VMAParser
 {
@@ -34,6 +37,20 @@ public class VMAParser
     };
 
     private String strErrMsg    = "";
+    private int nThreads        = 1;    // Number of files parsed concurrently.
+
+    /**
+     *  Sets the number of threads used to decode the VMA files. If more than
+     *  one thread is used, the files are decoded concurrently, but the
+     *  resulting alignment does not depend on the number of threads, since the
+     *  pairwise alignments are always added in the order of the files.
+     *
+     *  @param nThreads
+     */
+    public void setThreadsCount(int nThreads)
+    {
+        this.nThreads = Math.max(nThreads, 1);
+    }
 
     /**
      *  Parses the VMA files and returns the resulting multiple alignment.
@@ -51,6 +68,8 @@ public class VMAParser
      *          ...     | Several irrelevant columns
      *      All columns are TAB-separated.
      *
+     *  If several threads are used (see setThreadsCount), the files are parsed
+     *  concurrently and the pairwise alignments are added in the order of files.
      *
      *  @param files
      *  @param iThreshold
@@ -67,77 +86,144 @@ public class VMAParser
             return null;
         }
         DPGPAlignment ali = new DPGPAlignment();
-        for(int i=0;i<files.length;i++)
+        int n = Math.min(nThreads, files.length);
+        if(n<2)
         {
-            try
+            for(int i=0;i<files.length;i++)
             {
-                BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(files[i])));
-                RawAlingment ra = new RawAlingment();                
-                String strLine;               
-                ra.smel = new SequenceBuffer(5000000);      // Melanogaster sequence
-                ra.sseq = new SequenceBuffer(5000000);      // Other sequence.
-                // Read the data.
-                int cp = 0;                                 // Current position with respect to the mel. genome.
-                while((strLine = in.readLine())!=null)
+                try
+                {
+                    ali.addAlignment(species[i], strains[i], parseFile(files[i], iThreshold));
+                }
+                catch(Exception e)
                 {
-                    char base;    // D. sim. base.
-                    // Read the line until the first blank.
-                    int pos = 0;
-                    while(strLine.charAt(pos)!=' ' && strLine.charAt(pos)!='\t')
-                        pos++;
-                    // If the part is a position, check whether there is a gap between genome
-                    // positions.
-                    if(strLine.charAt(0)!='I')
+                    strErrMsg = "An error occured while parsing the files";
+                    return null;
+                }
+            }
+            return ali;
+        }
+        // At most n files are parsed ahead of the file, which is being added
+        // to the alignment, to limit the number of raw alignments in memory.
+        ExecutorService pool = Executors.newFixedThreadPool(n);
+        Vector<Future<RawAlingment>> tasks = new Vector<Future<RawAlingment>>();
+        try
+        {
+            for(int i=0;i<files.length;i++)
+            {
+                while(tasks.size()<files.length && tasks.size()<i+n)
+                {
+                    final File file = files[tasks.size()];
+                    final int iThr = iThreshold;
+                    tasks.add(pool.submit(new Callable<RawAlingment>()
                     {
-                        int ne = Integer.parseInt(strLine.substring(0, pos)); // New end position.
-                        if(ra.iStart==0)                // Set alignment start.
-                            ra.iStart = ne;
-                        ra.iEnd = ne;                   // Update alignment end.
-                        if(cp==0)
-                            cp=ne;
-                        else
+                        public RawAlingment call() throws Exception
                         {
-                            // If there is missing data between the previously parsed site and the
-                            // current site, insert missing data character.
-                            if(ne-1!=cp)
-                            {
-                                int tmp = ne-cp;
-                                ra.smel.appendBase(DPGPAlignment.MISSING, tmp-1);
-                                ra.sseq.appendBase(DPGPAlignment.MISSING, tmp-1);
-                            }
+                            return parseFile(file, iThr);
                         }
-                        cp=ne;
-                    }
-                    // Skip the blanks until the next base.
-                    while(strLine.charAt(pos)==' ' || strLine.charAt(pos)=='\t')
-                        pos++;
-                    // The current position is the D.mel. base - add it anyway.
-                    ra.smel.appendBase(strLine.charAt(pos));
-                    pos++;
-                    // Skip the blanks until the next base.
-                    while(strLine.charAt(pos)==' ' || strLine.charAt(pos)=='\t')
-                        pos++;
-                    // The current position is the base of D. sim.
-                    base = strLine.charAt(pos);
-                    pos++;
-                    // Skip the blanks until the next column - Q-score.
-                    while(strLine.charAt(pos)==' ' || strLine.charAt(pos)=='\t')
-                        pos++;
-                    int pss = pos; // Position: score start.
-                    int l = strLine.length();
-                    while(pos<l && strLine.charAt(pos)!=' ' && strLine.charAt(pos)!='\t')
-                        pos++;
-                    // Parse the score.
-                    int iScore = Integer.parseInt(strLine.substring(pss, pos));
-                    ra.sseq.appendBase((iScore>=iThreshold) ? base : DPGPAlignment.UNKNOWN);
+                    }));
                 }
+                RawAlingment ra = tasks.get(i).get();
+                tasks.set(i, null);
                 ali.addAlignment(species[i], strains[i], ra);
             }
-            catch(Exception e)
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            strErrMsg = "Parsing was interrupted";
+            return null;
+        }
+        catch(Exception e)
+        {
+            strErrMsg = "An error occured while parsing the files";
+            return null;
+        }
+        finally
+        {
+            for(Future<RawAlingment> task:tasks)
             {
-                strErrMsg = "An error occured while parsing the files";
-                return null;
+                if(task!=null)
+                    task.cancel(true);
             }
+            pool.shutdown();
+        }
+        return ali;
+    }
+
+    /**
+     *  Parses the single VMA file.
+     *
+     *  @param file
+     *  @param iThreshold
+     *  @return
+     *  @throws Exception
+     */
+    private static RawAlingment parseFile(File file, int iThreshold) throws Exception
+    {
+        VMAStream vma = new VMAStream(file, iThreshold);
+        try
+        {
+            RawAlingment ra = new RawAlingment();
+            ra.smel = new SequenceBuffer(5000000);      // Melanogaster sequence
+            ra.sseq = new SequenceBuffer(5000000);      // Other sequence.
+            while(vma.next())
+            {
+                ra.smel.appendBase((char)vma.getMel());
+                ra.sseq.appendBase((char)vma.getSeq());
+            }
+            ra.iStart = vma.getStart();
+            ra.iEnd = vma.getEnd();
+            return ra;
+        }
+        finally
+        {
+            vma.close();
+        }
+    }
+
+    /**
+     *  Parses the VMA files and saves the resulting multiple alignment into the
+     *  binary alignment file, which is then opened and returned. In contrast to
+     *  parseFiles, all files are read in a single pass and at most nWindow
+     *  alignment columns are kept in memory. The result is the same.
+     *  If several threads are used, the files are decoded concurrently.
+     *
+     *  Remarks:
+     *      filenames, species and strains arrays must have the same length and cannot be null.
+     *
+     *  @param files
+     *  @param iThreshold
+     *  @param species
+     *  @param strains
+     *  @param output       binary alignment file
+     *  @param nWindow      number of columns kept in memory
+     *  @return
+     */
+    public DPGPAlignment mergeFiles(File[] files, int iThreshold, String[] species, String[] strains, File output, int nWindow)
+    {
+        if(files==null || species==null || strains==null ||
+           files.length!=species.length || species.length!=strains.length)
+        {
+            strErrMsg = "Arrays have unequal length";
+            return null;
+        }
+        if(files.length==0)
+        {
+            strErrMsg = "No files specified";
+            return null;
+        }
+        VMAMerger merger = new VMAMerger();
+        if(!merger.merge(files, iThreshold, species, strains, output, nWindow, nThreads))
+        {
+            strErrMsg = merger.getLastErrorString();
+            return null;
+        }
+        DPGPAlignment ali = new DPGPAlignment();
+        if(DPGPAlignment.loadFromBinaryFile(output.getPath(), ali)!=ErrorCode.Ok)
+        {
+            strErrMsg = "An error occured while opening the alignment file";
+            return null;
         }
         return ali;
     }
@@ -0,0 +1,444 @@
+/*
+    File:
+        VMAStream.java
+ *
+    Revision:
+        1.0.0.2
+ *
+    Description:
+        Reads a VMA file column by column. Every column consists of the D.mel.
+        base and the base of the other sequence. Missing positions between two
+        parsed positions are returned as columns of missing data. The file is
+        scanned byte by byte and decoded in chunks, optionally in the background.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package dpgp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+
+class VMAStream
+{
+    private static final int CHUNKSIZE = 65536;     // Number of columns decoded at once.
+
+    // Decoded columns.
+    private static class Chunk
+    {
+        byte[] mel  = new byte[CHUNKSIZE];
+        byte[] seq  = new byte[CHUNKSIZE];
+        int n       = 0;
+    }
+
+    private InputStream in      = null;
+    private byte[] buf          = new byte[65536];
+    private int nBuf            = 0;        // Number of bytes in the buffer.
+    private int iBuf            = 0;        // Current position in the buffer.
+    private byte[] line         = new byte[256];
+    private int nLine           = 0;
+    private int iThreshold      = 0;
+    private volatile int iStart = 0;        // First parsed position.
+    private volatile int iEnd   = 0;        // Last parsed position.
+    private int cp              = 0;        // Current position with respect to the mel. genome.
+    private int nMissing        = 0;        // Number of pending missing data columns.
+    private boolean bPending    = false;    // The column parsed together with the missing data is pending.
+    private byte nextMel        = 0;
+    private byte nextSeq        = 0;
+
+    private Chunk cur           = new Chunk();
+    private int iPos            = -1;       // Current column in the current chunk.
+    private ExecutorService exec = null;
+    private Future<Chunk> pending = null;   // Chunk being decoded in the background.
+
+
+    /**
+     *  Opens the VMA file. Sites with quality below iThreshold are replaced
+     *  by 'N' in the other sequence.
+     *
+     *  @param file
+     *  @param iThreshold
+     *  @throws IOException
+     */
+    public VMAStream(File file, int iThreshold) throws IOException
+    {
+        in = new FileInputStream(file);
+        this.iThreshold = iThreshold;
+    }
+
+    /**
+     *  Opens the VMA file, which is decoded by the tasks submitted to the
+     *  executor. While the columns of one chunk are read, the next chunk is
+     *  decoded in the background, so that several streams are decoded
+     *  concurrently. The tasks never block, thus any number of streams may
+     *  share the same executor.
+     *
+     *  @param file
+     *  @param iThreshold
+     *  @param exec
+     *  @throws IOException
+     */
+    public VMAStream(File file, int iThreshold, ExecutorService exec) throws IOException
+    {
+        this(file, iThreshold);
+        this.exec = exec;
+        submit(new Chunk());
+    }
+
+    /**
+     *  Moves to the next column. Returns false if there are no more columns.
+     *  Throws an exception if the file cannot be read or has invalid format.
+     *
+     *  @return
+     *  @throws IOException
+     */
+    public boolean next() throws IOException
+    {
+        if(iPos+1<cur.n)
+        {
+            iPos++;
+            return true;
+        }
+        if(exec==null)
+            decode(cur);
+        else
+        {
+            if(pending==null)
+                return false;
+            Chunk c = null;
+            try
+            {
+                c = pending.get();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Parsing was interrupted");
+            }
+            catch(ExecutionException e)
+            {
+                pending = null;
+                if(e.getCause() instanceof IOException)
+                    throw (IOException)e.getCause();
+                throw new IOException(e.getCause());
+            }
+            pending = null;
+            // Decode the next chunk into the one, which has just been read.
+            if(c.n>0)
+                submit(cur);
+            cur = c;
+        }
+        iPos = 0;
+        return cur.n>0;
+    }
+
+    private void submit(final Chunk c)
+    {
+        pending = exec.submit(new Callable<Chunk>()
+        {
+            public Chunk call() throws IOException
+            {
+                decode(c);
+                return c;
+            }
+        });
+    }
+
+    /**
+     *  Returns the D.mel. base of the current column.
+     *
+     *  @return
+     */
+    public byte getMel()
+    {
+        return cur.mel[iPos];
+    }
+
+    /**
+     *  Returns the base of the other sequence in the current column.
+     *
+     *  @return
+     */
+    public byte getSeq()
+    {
+        return cur.seq[iPos];
+    }
+
+    /**
+     *  Returns the first position parsed so far or 0 if no position was parsed yet.
+     *
+     *  @return
+     */
+    public int getStart()
+    {
+        return iStart;
+    }
+
+    /**
+     *  Returns the last position parsed so far. Once next has returned false,
+     *  this is the last position of the file.
+     *
+     *  @return
+     */
+    public int getEnd()
+    {
+        return iEnd;
+    }
+
+    public void close()
+    {
+        if(pending!=null)
+        {
+            // Wait for the background task, since it is still reading the file.
+            try
+            {
+                pending.get();
+            }
+            catch(Exception e)
+            {
+            }
+            pending = null;
+        }
+        try
+        {
+            in.close();
+        }
+        catch(IOException e)
+        {
+        }
+    }
+
+    /**
+     *  Fills the chunk with the next columns. The chunk is empty at the end
+     *  of the file.
+     *
+     *  @param c
+     *  @throws IOException
+     */
+    private void decode(Chunk c) throws IOException
+    {
+        int n = 0;
+        while(n<CHUNKSIZE)
+        {
+            if(nMissing>0)
+            {
+                int k = Math.min(nMissing, CHUNKSIZE-n);
+                Arrays.fill(c.mel, n, n+k, (byte)DPGPAlignment.MISSING);
+                Arrays.fill(c.seq, n, n+k, (byte)DPGPAlignment.MISSING);
+                n += k;
+                nMissing -= k;
+            }
+            else if(bPending)
+            {
+                c.mel[n] = nextMel;
+                c.seq[n] = nextSeq;
+                n++;
+                bPending = false;
+            }
+            else if(!parseLine())
+                break;
+        }
+        c.n = n;
+    }
+
+    /**
+     *  Reads the next line into the line buffer. The line terminators are the
+     *  same as those of BufferedReader.readLine. Returns false at the end of
+     *  the file.
+     *
+     *  @return
+     *  @throws IOException
+     */
+    private boolean readLine() throws IOException
+    {
+        nLine = 0;
+        boolean bAny = false;
+        while(true)
+        {
+            if(iBuf==nBuf)
+            {
+                nBuf = in.read(buf, 0, buf.length);
+                iBuf = 0;
+                if(nBuf<=0)
+                {
+                    nBuf = 0;
+                    return bAny;
+                }
+            }
+            byte b = buf[iBuf++];
+            if(b=='\n')
+                return true;
+            if(b=='\r')
+            {
+                // Skip the '\n' of "\r\n".
+                if(iBuf==nBuf)
+                {
+                    nBuf = in.read(buf, 0, buf.length);
+                    iBuf = 0;
+                    if(nBuf<=0)
+                    {
+                        nBuf = 0;
+                        return true;
+                    }
+                }
+                if(buf[iBuf]=='\n')
+                    iBuf++;
+                return true;
+            }
+            bAny = true;
+            if(nLine==line.length)
+                line = Arrays.copyOf(line, nLine*2);
+            line[nLine++] = b;
+        }
+    }
+
+    /**
+     *  Parses the next line. The resulting column and the missing data columns
+     *  preceding it are stored as pending. Returns false at the end of the file.
+     *
+     *  @return
+     *  @throws IOException
+     */
+    private boolean parseLine() throws IOException
+    {
+        if(!readLine())
+            return false;
+        // Read the line until the first blank.
+        int pos = 0;
+        while(charAt(pos)!=' ' && charAt(pos)!='\t')
+            pos++;
+        int nGap = 0;
+        // If the part is a position, check whether there is a gap between genome
+        // positions.
+        if(line[0]!='I')
+        {
+            int ne = parseInt(0, pos);      // New end position.
+            if(iStart==0)                   // Set alignment start.
+                iStart = ne;
+            iEnd = ne;                      // Update alignment end.
+            if(cp!=0 && ne-1!=cp)
+            {
+                nGap = ne-cp-1;
+                if(nGap<0)
+                    throw new IOException("Positions are not sorted");
+            }
+            cp = ne;
+        }
+        // Skip the blanks until the next base.
+        while(charAt(pos)==' ' || charAt(pos)=='\t')
+            pos++;
+        // The current position is the D.mel. base - add it anyway.
+        byte m = charAt(pos);
+        pos++;
+        // Skip the blanks until the next base.
+        while(charAt(pos)==' ' || charAt(pos)=='\t')
+            pos++;
+        // The current position is the base of the other sequence.
+        byte base = charAt(pos);
+        pos++;
+        // Skip the blanks until the next column - Q-score.
+        while(charAt(pos)==' ' || charAt(pos)=='\t')
+            pos++;
+        int pss = pos; // Position: score start.
+        while(pos<nLine && line[pos]!=' ' && line[pos]!='\t')
+            pos++;
+        // Parse the score.
+        int iScore = parseInt(pss, pos);
+        nMissing = nGap;
+        nextMel = m;
+        nextSeq = (iScore>=iThreshold) ? base : (byte)DPGPAlignment.UNKNOWN;
+        bPending = true;
+        return true;
+    }
+
+    private byte charAt(int pos) throws IOException
+    {
+        if(pos>=nLine)
+            throw new IOException("Invalid line format");
+        return line[pos];
+    }
+
+    /**
+     *  Parses the decimal number in the line buffer. The format is the same
+     *  as accepted by Integer.parseInt.
+     *
+     *  @param iBegin
+     *  @param iEnd
+     *  @return
+     *  @throws IOException
+     */
+    private int parseInt(int iBegin, int iEnd) throws IOException
+    {
+        boolean bNegative = false;
+        int pos = iBegin;
+        if(pos<iEnd && (line[pos]=='-' || line[pos]=='+'))
+        {
+            bNegative = (line[pos]=='-');
+            pos++;
+        }
+        if(pos==iEnd)
+            throw new IOException("Invalid number");
+        long n = 0;
+        for(;pos<iEnd;pos++)
+        {
+            int d = line[pos]-'0';
+            if(d<0 || d>9)
+                throw new IOException("Invalid number");
+            n = n*10+d;
+            if(n>(long)Integer.MAX_VALUE+1)
+                throw new IOException("Invalid number");
+        }
+        if(bNegative)
+            n = -n;
+        if(n>Integer.MAX_VALUE)
+            throw new IOException("Invalid number");
+        return (int)n;
+    }
+
+    /**
+     *  Returns the first position in the VMA file or 0 if the file does not
+     *  contain any positions.
+     *
+     *  @param file
+     *  @return
+     *  @throws IOException
+     */
+    public static int findStart(File file) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+        try
+        {
+            String strLine;
+            while((strLine = in.readLine())!=null)
+            {
+                if(strLine.isEmpty() || strLine.charAt(0)=='I')
+                    continue;
+                int pos = 0;
+                while(pos<strLine.length() && strLine.charAt(pos)!=' ' && strLine.charAt(pos)!='\t')
+                    pos++;
+                int ne = Integer.parseInt(strLine.substring(0, pos));
+                if(ne!=0)
+                    return ne;
+            }
+            return 0;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+    File:
+        GeneTableModel.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Table model of the gene list of the main form. The model does not copy
+        the genes, it reads the cells directly from the dataset of the kernel
+        when the table displays them, thus only the visible rows are evaluated.
+        The "Use" column is kept in a bit set, which is initialized from the
+        selected indices of the kernel.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package gui;
+
+import bio.gene.Dataset;
+import bio.gene.GeneEntry;
+import java.util.BitSet;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import kernel.Kernel;
+import kernel.QualityChecker;
+
+
+public class GeneTableModel extends AbstractTableModel
+{
+    public static final int COL_USE     = 0;
+    public static final int COL_INDEX   = 1;
+    public static final int COL_NAME    = 2;
+    public static final int COL_ALIAS   = 3;
+    public static final int COL_STRAINS = 4;
+    public static final int COL_QUALITY = 5;
+
+    private static final long serialVersionUID = 1407200916451L;
+
+    private static final String[] COLUMNS = {"Use", "#", "Common name", "Alias", "Strains", "Quality check"};
+    private static final Class<?>[] TYPES = {Boolean.class, String.class, String.class, String.class, String.class, String.class};
+
+    private Kernel kernel       = null;
+    private Dataset ds          = null;     // Displayed dataset.
+    private int nRows           = 0;
+    private BitSet selected     = new BitSet();
+
+
+    public GeneTableModel(Kernel kernel)
+    {
+        this.kernel = kernel;
+    }
+
+    /**
+     *  Reads the dataset and the selected indices from the kernel. If the
+     *  kernel still has the same dataset and no genes were removed, only the
+     *  rows are reported as updated, respectively inserted, thus the table
+     *  keeps its state and repaints the visible rows only.
+     */
+    public void refresh()
+    {
+        Dataset tmp = kernel.getDataset();
+        int n = (tmp==null) ? 0 : tmp.getGenesCount();
+        selected.clear();
+        int[] indices = kernel.getSelectedIndices();
+        if(tmp!=null && indices!=null)
+        {
+            for(int i:indices)
+                selected.set(i);
+        }
+        if(tmp!=ds || n<nRows)
+        {
+            ds = tmp;
+            nRows = n;
+            fireTableDataChanged();
+        }
+        else
+        {
+            int nOld = nRows;
+            nRows = n;
+            if(nOld>0)
+                fireTableRowsUpdated(0, nOld-1);
+            if(n>nOld)
+                fireTableRowsInserted(nOld, n-1);
+        }
+    }
+
+    /**
+     *  Returns the indices of the genes, which are checked in the "Use" column.
+     *
+     *  @return
+     */
+    public int[] getSelectedIndices()
+    {
+        int[] indices = new int[selected.cardinality()];
+        int n = 0;
+        for(int i=selected.nextSetBit(0);i>-1 && n<indices.length;i=selected.nextSetBit(i+1))
+            indices[n++] = i;
+        return indices;
+    }
+
+    /**
+     *  Checks the genes with the specified indices and unchecks all others.
+     *
+     *  @param indices
+     */
+    public void setSelectedIndices(int[] indices)
+    {
+        selected.clear();
+        for(int i:indices)
+            selected.set(i);
+        fireSelectionChanged();
+    }
+
+    /**
+     *  Checks or unchecks all genes.
+     *
+     *  @param bSelected
+     */
+    public void setAllSelected(boolean bSelected)
+    {
+        selected.set(0, nRows, bSelected);
+        fireSelectionChanged();
+    }
+
+    /**
+     *  Inverts the checks of all genes.
+     */
+    public void invertSelection()
+    {
+        selected.flip(0, nRows);
+        fireSelectionChanged();
+    }
+
+    public int getRowCount()
+    {
+        return nRows;
+    }
+
+    public int getColumnCount()
+    {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int iCol)
+    {
+        return COLUMNS[iCol];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int iCol)
+    {
+        return TYPES[iCol];
+    }
+
+    @Override
+    public boolean isCellEditable(int iRow, int iCol)
+    {
+        return iCol==COL_USE;
+    }
+
+    public Object getValueAt(int iRow, int iCol)
+    {
+        if(iCol==COL_USE)
+            return selected.get(iRow);
+        if(iCol==COL_INDEX)
+            return iRow+1;
+        // The dataset might be modified by a worker thread before the table
+        // is refreshed.
+        if(ds==null || iRow>=ds.getGenesCount())
+            return null;
+        GeneEntry ge = ds.getGeneEntry(iRow);
+        switch(iCol)
+        {
+            case COL_NAME:
+                return ge.getCommonName();
+            case COL_ALIAS:
+                return ge.getAlias();
+            case COL_STRAINS:
+                return ge.getStrainsCount();
+            case COL_QUALITY:
+                return getQualityDescription((Integer)ge.getProperty(QualityChecker.QUALITY_LEVEL));
+        }
+        return null;
+    }
+
+    @Override
+    public void setValueAt(Object value, int iRow, int iCol)
+    {
+        if(iCol!=COL_USE)
+            return;
+        selected.set(iRow, (Boolean)value);
+        fireTableCellUpdated(iRow, iCol);
+    }
+
+    private void fireSelectionChanged()
+    {
+        if(nRows>0)
+            fireTableChanged(new TableModelEvent(this, 0, nRows-1, COL_USE));
+    }
+
+    /**
+     *  Returns the description of the quality level or null if the gene was
+     *  not checked.
+     *
+     *  @param quality
+     *  @return
+     */
+    private static String getQualityDescription(Integer quality)
+    {
+        if(quality==null)
+            return null;
+        switch(quality)
+        {
+            case QualityChecker.QUALITY_LEVEL_0:
+                return "OK";
+            case QualityChecker.QUALITY_LEVEL_1:
+                return "Negligible errors";
+            case QualityChecker.QUALITY_LEVEL_2:
+                return "Invalid ORF";
+            case QualityChecker.QUALITY_LEVEL_3:
+                return "Premature terminal codon";
+            case QualityChecker.QUALITY_LEVEL_4:
+                return "Severe deficits";
+            case QualityChecker.QUALITY_LEVEL_5:
+                return "Fatal errors";
+        }
+        return null;
+    }
+}
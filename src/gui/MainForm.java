@@ -3,7 +3,7 @@
         MainForm.java
  *   
     Revision:
-        2.6.0.1
+        2.6.3.1
  * 
     Description:
         Application main form.
@@ -31,6 +31,7 @@ import gui.views.GeneEntryDetailsView;
 import java.awt.Cursor;
 import plugin.classes.AGeneAnalyzerView;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -47,17 +48,18 @@ import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextArea;
 import javax.swing.JToggleButton;
 import javax.swing.event.ChangeListener;
-import javax.swing.table.DefaultTableModel;
 import kernel.fix.DatasetFixer;
 import kernel.ErrorCode;
 import kernel.ExtensionDetails;
 import kernel.InitData;
 import kernel.Kernel;
 import kernel.Main;
-import kernel.QualityChecker;
+import kernel.script.IScriptListener;
 import kernel.script.ScriptInterpreter;
 import kernel.SettingsManager;
 import plugin.PluginType;
@@ -111,6 +113,7 @@ public class MainForm extends JFrame
 
     
     private Kernel kernel                       = null;
+    private GeneTableModel geneModel            = null;
     private ScriptForm sf                       = null;
     private ScriptInterpreter interpreter       = null;
     private CodonTableCreator ctc               = null;
@@ -137,12 +140,21 @@ public class MainForm extends JFrame
         Thread.currentThread().setName("GeneAnalyzer Main Form");
         // Create kernel.
         this.kernel = kernel; 
-        this.interpreter = new ScriptInterpreter(kernel, this);
+        this.interpreter = new ScriptInterpreter(kernel, new IScriptListener()
+        {
+            public void instructionStarted(String strInstruction) {}
+            public void instructionFinished(String strInstruction, ErrorCode ec) {}
+            public void datasetChanged()
+            {
+                updateGeneList();
+            }
+        });
         initData = kernel.getInitializationData();
         sm = initData.sm;
         this.setGlassPane(new WaitDialog());
         kernel.setWaitDialog((IWaitDialog)this.getGlassPane());
         // Initialize controls.
+        geneModel = new GeneTableModel(kernel);
         initComponents();
         setLocationRelativeTo(null);
         setMinimumSize(new Dimension(1100, 700));
@@ -240,49 +252,7 @@ public class MainForm extends JFrame
      */
     public void updateGeneList()
     {
-        DefaultTableModel model = (DefaultTableModel)lvGenes.getModel();
-        model.setRowCount(0);
-        // Add new genes.
-        Dataset ds = kernel.getDataset();
-        if(ds==null)
-            return;
-        for(int i=0;i<ds.getGenesCount();i++)
-        {
-            String strQuality = null;
-            Integer quality = (Integer)ds.getGeneEntry(i).getProperty(QualityChecker.QUALITY_LEVEL);
-            switch(quality)
-            {
-                case QualityChecker.QUALITY_LEVEL_0:
-                    strQuality = "OK";
-                    break;
-                case QualityChecker.QUALITY_LEVEL_1:
-                    strQuality = "Negligible errors";
-                    break;
-                case QualityChecker.QUALITY_LEVEL_2:
-                    strQuality = "Invalid ORF";
-                    break;
-                case QualityChecker.QUALITY_LEVEL_3:
-                    strQuality = "Premature terminal codon";
-                    break;
-                case QualityChecker.QUALITY_LEVEL_4:
-                    strQuality = "Severe deficits";
-                    break;
-                case QualityChecker.QUALITY_LEVEL_5:
-                    strQuality = "Fatal errors";
-                    break;
-            }
-            model.addRow(new Object[]{new Boolean(false),
-                         i+1,
-                         ds.getGeneEntry(i).getCommonName(),
-                         ds.getGeneEntry(i).getAlias(),
-                         ds.getGeneEntry(i).getStrainsCount(),
-                         strQuality});
-        }
-        int[] tmp = kernel.getSelectedIndices();
-        if(tmp==null)
-            return;
-        for(int i:tmp)
-            model.setValueAt(true, i, 0);
+        geneModel.refresh();
     }    
 
     /**
@@ -318,13 +288,7 @@ public class MainForm extends JFrame
                 }
                 if(indices==null)
                     return;
-                DefaultTableModel model = (DefaultTableModel)lvGenes.getModel();
-                // Clear all genes.
-                for(int i=0;i<model.getRowCount();i++)
-                    model.setValueAt(new Boolean(false), i, 0);
-                // Set indices.
-                for(int i=0;i<indices.length;i++)
-                    model.setValueAt(new Boolean(true), indices[i], 0);
+                geneModel.setSelectedIndices(indices);
             }
         };
         new Thread(r).start();
@@ -361,19 +325,7 @@ public class MainForm extends JFrame
      */
     public int[] getSelectedIndices()
     {
-        // Indices.
-        Vector<Integer> tmp = new Vector<Integer>();
-        DefaultTableModel model = (DefaultTableModel)lvGenes.getModel();
-        // Add the indices of genes which are selected.
-        for(int i=0;i<model.getRowCount();i++)
-            if((Boolean)model.getValueAt(i, 0))
-                tmp.add(i);
-        if(tmp.size()==0)
-            return new int[]{};
-        int[] indices = new int[tmp.size()];
-        for(int i=0;i<tmp.size();i++)
-            indices[i] = tmp.get(i);
-        return indices;
+        return geneModel.getSelectedIndices();
     }
             
     private void updateViews()
@@ -463,6 +415,7 @@ public class MainForm extends JFrame
         miQualityCheck = new javax.swing.JMenuItem();
         miCreateCT = new javax.swing.JMenuItem();
         miCoverage = new javax.swing.JMenuItem();
+        miMetrics = new javax.swing.JMenuItem();
         miShowNames = new javax.swing.JMenuItem();
         jSeparator8 = new javax.swing.JSeparator();
         miScript = new javax.swing.JMenuItem();
@@ -505,29 +458,7 @@ public class MainForm extends JFrame
 
         jPanel2.setBorder(javax.swing.BorderFactory.createTitledBorder("Data set"));
 
-        lvGenes.setModel(new javax.swing.table.DefaultTableModel(
-            new Object [][] {
-
-            },
-            new String [] {
-                "Use", "#", "Common name", "Alias", "Strains", "Quality check"
-            }
-        ) {
-            Class[] types = new Class [] {
-                java.lang.Boolean.class, java.lang.String.class, java.lang.String.class, java.lang.String.class, java.lang.String.class, java.lang.String.class
-            };
-            boolean[] canEdit = new boolean [] {
-                true, false, false, false, false, false
-            };
-
-            public Class getColumnClass(int columnIndex) {
-                return types [columnIndex];
-            }
-
-            public boolean isCellEditable(int rowIndex, int columnIndex) {
-                return canEdit [columnIndex];
-            }
-        });
+        lvGenes.setModel(geneModel);
         lvGenes.setComponentPopupMenu(jpmGenesMenu);
         lvGenes.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
         lvGenes.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -781,6 +712,14 @@ public class MainForm extends JFrame
         });
         jmTools.add(miCoverage);
 
+        miMetrics.setText("Plugin metrics");
+        miMetrics.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                miMetricsActionPerformed(evt);
+            }
+        });
+        jmTools.add(miMetrics);
+
         miShowNames.setText("Show selected gene names");
         miShowNames.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -1024,15 +963,11 @@ private void jmFiltersMenuSelected(javax.swing.event.MenuEvent evt) {//GEN-FIRST
 }//GEN-LAST:event_jmFiltersMenuSelected
 
 private void jmiSelectActionPerformed1(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmiSelectActionPerformed1
-    DefaultTableModel model = (DefaultTableModel)lvGenes.getModel();
-    for(int i=0;i<model.getRowCount();i++)
-        model.setValueAt((Boolean)true, i, 0);
+    geneModel.setAllSelected(true);
 }//GEN-LAST:event_jmiSelectActionPerformed1
 
 private void jmiInvertActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmiInvertActionPerformed
-    DefaultTableModel model = (DefaultTableModel)lvGenes.getModel();
-    for(int i=0;i<model.getRowCount();i++)
-        model.setValueAt(!(Boolean)model.getValueAt(i, 0), i, 0);
+    geneModel.invertSelection();
 }//GEN-LAST:event_jmiInvertActionPerformed
 
 private void lvGenesMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_lvGenesMouseClicked
@@ -1049,9 +984,7 @@ private void lvGenesMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:eve
 }//GEN-LAST:event_lvGenesMouseClicked
 
 private void jmiUnselectActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jmiUnselectActionPerformed
-    DefaultTableModel model = (DefaultTableModel)lvGenes.getModel();
-    for(int i=0;i<model.getRowCount();i++)
-        model.setValueAt((Boolean)false, i, 0);
+    geneModel.setAllSelected(false);
 }//GEN-LAST:event_jmiUnselectActionPerformed
 
 private void miScriptActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_miScriptActionPerformed
@@ -1314,6 +1247,32 @@ private void miCoverageActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FI
     new Thread(r).start();
 }//GEN-LAST:event_miCoverageActionPerformed
 
+private void miMetricsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_miMetricsActionPerformed
+    String[] options = {"Save...", "Clear", "Close"};
+    while(true)
+    {
+        JTextArea ta = new JTextArea(kernel.getMetrics().getReport(), 20, 100);
+        ta.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        ta.setEditable(false);
+        int iRes = JOptionPane.showOptionDialog(this, new JScrollPane(ta), "Plugin metrics",
+                        JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[2]);
+        if(iRes==0)
+        {
+            JFileChooser fc = new JFileChooser();
+            fc.setSelectedFile(new File("metrics.xml"));
+            if(fc.showSaveDialog(this)!=JFileChooser.APPROVE_OPTION)
+                continue;
+            if(kernel.writeMetrics(fc.getSelectedFile())!=ErrorCode.Ok)
+                JOptionPane.showMessageDialog(this, kernel.getLastErrorString(), Main.APPTITLE, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        else if(iRes==1)
+            kernel.getMetrics().clear();
+        else
+            return;
+    }
+}//GEN-LAST:event_miMetricsActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel jPanel1;
     private javax.swing.JPanel jPanel2;
@@ -1350,6 +1309,7 @@ private void miCoverageActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FI
     private javax.swing.JMenuItem miExport;
     private javax.swing.JMenuItem miFuse;
     private javax.swing.JMenuItem miImport;
+    private javax.swing.JMenuItem miMetrics;
     private javax.swing.JMenuItem miQualityCheck;
     private javax.swing.JMenuItem miRemoveInsertions;
     private javax.swing.JMenuItem miRemovePTC;
@@ -0,0 +1,131 @@
+/*
+    File:
+        ResultTableModel.java
+ *
+    Revision:
+        1.0.0.2
+ *
+    Description:
+        Table model of the analysis results. The model receives the results as
+        text and keeps one string per line. The lines are split into the cells
+        only when the table displays them, thus large results do not need one
+        object per cell.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package gui;
+
+import java.util.ArrayList;
+import javax.swing.table.AbstractTableModel;
+import plugin.classes.IResultSink;
+
+
+public class ResultTableModel extends AbstractTableModel implements IResultSink
+{
+    private static final long serialVersionUID = 1407200916451L;
+
+    private ArrayList<String> rows  = new ArrayList<String>();
+    private String[] columns        = new String[0];
+    private StringBuilder line      = new StringBuilder();  // Incomplete last line.
+    private int nSkip               = 0;                    // Lines not to display.
+    private int iCached             = -1;                   // Row of the cached cells.
+    private String[] cells          = null;
+
+
+    /**
+     *  Creates the model, which does not display the first nSkip lines of the
+     *  results, e.g. the parameters of the analysis.
+     *
+     *  @param nSkip
+     */
+    public ResultTableModel(int nSkip)
+    {
+        this.nSkip = nSkip;
+    }
+
+    /**
+     *  Sets the column names.
+     *
+     *  @param columns
+     */
+    public void setColumnNames(String[] columns)
+    {
+        this.columns = columns.clone();
+        fireTableStructureChanged();
+    }
+
+    public void print(String strText)
+    {
+        int iStart = 0;
+        int i;
+        while( (i=strText.indexOf('\n', iStart))>-1 )
+        {
+            line.append(strText, iStart, i);
+            addLine(line.toString());
+            line.setLength(0);
+            iStart = i+1;
+        }
+        line.append(strText, iStart, strText.length());
+    }
+
+    /**
+     *  Adds the incomplete last line and removes the empty lines at the end
+     *  of the results.
+     */
+    public void close()
+    {
+        if(line.length()>0)
+            addLine(line.toString());
+        line.setLength(0);
+        while(!rows.isEmpty() && rows.get(rows.size()-1).isEmpty())
+            rows.remove(rows.size()-1);
+        rows.trimToSize();
+        fireTableDataChanged();
+    }
+
+    public int getRowCount()
+    {
+        return rows.size();
+    }
+
+    public int getColumnCount()
+    {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int iCol)
+    {
+        return columns[iCol];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int iCol)
+    {
+        return String.class;
+    }
+
+    public Object getValueAt(int iRow, int iCol)
+    {
+        // The table asks for the cells of a row one by one.
+        if(iRow!=iCached)
+        {
+            cells = rows.get(iRow).split("\t");
+            iCached = iRow;
+        }
+        return (iCol<cells.length) ? cells[iCol] : null;
+    }
+
+    private void addLine(String strLine)
+    {
+        if(nSkip>0)
+            nSkip--;
+        else
+            rows.add(strLine);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+    File:
+        AlignmentView.java
+ *
+    Revision:
+        1.0.0.0
+ *
+    Description:
+        Column-major view of the alignment of a gene entry for the editor. The
+        regions of the first strain are laid out one after another, every base
+        of a region is one column. The bases are copied from the gene entry in
+        blocks of BLOCKSIZE columns, when a column of the block is requested for
+        the first time, and the least recently used blocks are discarded, thus
+        only the parts of the alignment, which are displayed, are kept in memory.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package gui.editor;
+
+import bio.gene.GeneEntry;
+import bio.gene.GeneRegion;
+import bio.gene.StrainEntry;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public class AlignmentView
+{
+    /**
+     *  Number of columns of a block.
+     */
+    public static final int BLOCKSIZE = 1024;
+
+    /**
+     *  Base displayed where a strain does not have a base, e.g. if its region
+     *  is shorter than the region of the first strain.
+     */
+    public static final byte NOBASE = ' ';
+
+    // Maximal memory used for the cached blocks.
+    private static final int MAXCACHE = 32*1024*1024;
+
+    private GeneEntry ge        = null;
+    private int nStrains        = 0;
+    private int nColumns        = 0;
+    private GeneRegion[] regs   = null;     // Regions of the first strain.
+    private int[] regColumns    = null;     // First column of every region.
+    private int[] cdsOffsets    = null;     // Number of exon bases before every region.
+    private int[] refs          = null;     // Reference strain of every region or -1.
+    private Map<Integer, byte[]> blocks = null;
+
+
+    /**
+     *  Creates the view of the gene entry. The regions are taken from the
+     *  first strain entry.
+     *
+     *  @param ge
+     */
+    public AlignmentView(GeneEntry ge)
+    {
+        this.ge = ge;
+        nStrains = ge.getStrainsCount();
+        StrainEntry se = ge.getStrainEntry(0);
+        int nRegs = se.getRegionsCount();
+        regs = new GeneRegion[nRegs];
+        regColumns = new int[nRegs];
+        cdsOffsets = new int[nRegs];
+        refs = new int[nRegs];
+        Arrays.fill(refs, -1);
+        int iCdsLength = 0;
+        for(int i=0;i<nRegs;i++)
+        {
+            regs[i] = se.getRegion(i);
+            regColumns[i] = nColumns;
+            cdsOffsets[i] = iCdsLength;
+            nColumns += regs[i].getSequenceLength();
+            if(regs[i].hasType(GeneRegion.EXON))
+                iCdsLength += regs[i].getSequenceLength();
+        }
+        final int nMaxBlocks = Math.max(4, MAXCACHE/(BLOCKSIZE*Math.max(nStrains, 1)));
+        blocks = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest)
+            {
+                return size()>nMaxBlocks;
+            }
+        };
+    }
+
+    /**
+     *  Returns the total number of columns.
+     *
+     *  @return
+     */
+    public int getColumnsCount()
+    {
+        return nColumns;
+    }
+
+    /**
+     *  Returns the number of strains, i.e. rows.
+     *
+     *  @return
+     */
+    public int getStrainsCount()
+    {
+        return nStrains;
+    }
+
+    /**
+     *  Returns the number of regions.
+     *
+     *  @return
+     */
+    public int getRegionsCount()
+    {
+        return regs.length;
+    }
+
+    /**
+     *  Returns the iRegion-th region of the first strain.
+     *
+     *  @param iRegion
+     *  @return
+     */
+    public GeneRegion getRegion(int iRegion)
+    {
+        return regs[iRegion];
+    }
+
+    /**
+     *  Returns the first column of the region.
+     *
+     *  @param iRegion
+     *  @return
+     */
+    public int getRegionColumn(int iRegion)
+    {
+        return regColumns[iRegion];
+    }
+
+    /**
+     *  Returns the number of columns of the region.
+     *
+     *  @param iRegion
+     *  @return
+     */
+    public int getRegionLength(int iRegion)
+    {
+        return ((iRegion<regs.length-1) ? regColumns[iRegion+1] : nColumns)-regColumns[iRegion];
+    }
+
+    /**
+     *  Returns the number of exon bases before the region, i.e. the position of
+     *  the first base of the region in the coding sequence minus one.
+     *
+     *  @param iRegion
+     *  @return
+     */
+    public int getCdsOffset(int iRegion)
+    {
+        return cdsOffsets[iRegion];
+    }
+
+    /**
+     *  Returns the index of the region containing the column or -1 if the
+     *  column is invalid.
+     *
+     *  @param iColumn
+     *  @return
+     */
+    public int getRegionAtColumn(int iColumn)
+    {
+        if(iColumn<0 || iColumn>=nColumns)
+            return -1;
+        int i = Arrays.binarySearch(regColumns, iColumn);
+        if(i<0)
+            return -i-2;
+        // Skip empty regions starting at the same column.
+        while(i<regs.length-1 && regColumns[i+1]==iColumn)
+            i++;
+        return i;
+    }
+
+    /**
+     *  Returns the base of the strain at the specified column.
+     *
+     *  @param iColumn
+     *  @param iStrain
+     *  @return
+     */
+    public byte getBase(int iColumn, int iStrain)
+    {
+        int iBlock = iColumn/BLOCKSIZE;
+        byte[] block = blocks.get(iBlock);
+        if(block==null)
+        {
+            block = createBlock(iBlock);
+            blocks.put(iBlock, block);
+        }
+        return block[(iColumn-iBlock*BLOCKSIZE)*nStrains+iStrain];
+    }
+
+    /**
+     *  Returns the reference strain of the region, i.e. the first strain whose
+     *  sequence does not consist of N's, X's and gaps only.
+     *
+     *  @param iRegion
+     *  @return
+     */
+    public int getReference(int iRegion)
+    {
+        if(refs[iRegion]==-1)
+        {
+            refs[iRegion] = 0;
+            byte[] buf = new byte[BLOCKSIZE];
+            SEARCH: for(int i=0;i<nStrains;i++)
+            {
+                GeneRegion reg = ge.getStrainEntry(i).getRegion(iRegion);
+                if(reg==null)
+                    continue;
+                int nLength = reg.getSequenceLength();
+                if(nLength==0)
+                {
+                    refs[iRegion] = i;
+                    break;
+                }
+                for(int iStart=0;iStart<nLength;iStart+=BLOCKSIZE)
+                {
+                    int iEnd = Math.min(iStart+BLOCKSIZE, nLength);
+                    reg.getBases(iStart, iEnd, buf, 0);
+                    for(int n=0;n<iEnd-iStart;n++)
+                    {
+                        switch(buf[n])
+                        {
+                            case 'N': case 'X': case 'n': case 'x': case '-':
+                                break;
+                            default:
+                                refs[iRegion] = i;
+                                break SEARCH;
+                        }
+                    }
+                }
+            }
+        }
+        return refs[iRegion];
+    }
+
+    /**
+     *  Copies the bases of the block from the gene entry.
+     *
+     *  @param iBlock
+     *  @return
+     */
+    private byte[] createBlock(int iBlock)
+    {
+        int iFirst = iBlock*BLOCKSIZE;
+        int iLast = Math.min(iFirst+BLOCKSIZE, nColumns);
+        byte[] block = new byte[(iLast-iFirst)*nStrains];
+        Arrays.fill(block, NOBASE);
+        byte[] row = new byte[BLOCKSIZE];
+        int iRegion = getRegionAtColumn(iFirst);
+        while(iRegion>-1 && iRegion<regs.length && regColumns[iRegion]<iLast)
+        {
+            // Sites of the region within the block.
+            int iStart = Math.max(iFirst-regColumns[iRegion], 0);
+            int iEnd = Math.min(iLast-regColumns[iRegion], getRegionLength(iRegion));
+            int iColumn = regColumns[iRegion]+iStart-iFirst;
+            for(int i=0;i<nStrains;i++)
+            {
+                GeneRegion reg = ge.getStrainEntry(i).getRegion(iRegion);
+                if(reg==null)
+                    continue;
+                int n = Math.min(iEnd, reg.getSequenceLength())-iStart;
+                if(n<=0)
+                    continue;
+                reg.getBases(iStart, iStart+n, row, 0);
+                for(int k=0;k<n;k++)
+                    block[(iColumn+k)*nStrains+i] = row[k];
+            }
+            iRegion++;
+        }
+        return block;
+    }
+}
@@ -3,10 +3,13 @@
         EditorPanel.java
  *
     Revision:
-        1.0.0.1
+        1.1.0.0
  *
     Description:
-        Scrollable editor panel.
+        Scrollable editor panel. The panel paints only the columns and the rows
+        of the alignment, which are visible in the viewport, thus long genes
+        with many strains can be displayed and scrolled smoothly. The bases are
+        read from the column-major view of the gene entry (see AlignmentView).
 
  *
     Project:
@@ -20,24 +23,50 @@
 package gui.editor;
 
 import bio.gene.GeneEntry;
+import bio.gene.GeneRegion;
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import javax.swing.JPanel;
 import javax.swing.Scrollable;
 import javax.swing.SwingConstants;
+import plugin.classes.IAligner;
 
 public class EditorPanel extends JPanel implements Scrollable
 {
     // Show modes.
-    public static final int SM_ALL      = RegionRenderer.SM_ALL;       // Show all
-    public static final int SM_NO_IDENT = RegionRenderer.SM_NO_IDENT;  // Mask identical
-    
+    public static final int SM_ALL      = 0;    // Show all
+    public static final int SM_NO_IDENT = 1;    // Mask identical
+
     // Highlight modes.
-    public static final int HM_REGIONS  = RegionRenderer.HM_REGIONS;   // Highlight regions
-    
+    public static final int HM_REGIONS  = 0x00000001;    // Highlight regions
+
+    public static final int CELLWIDTH   = 10;
+    public static final int CELLHEIGHT  = 15;
+
     private static final int OFFSET_TOP  = 10;
-    
-    private GeneEntry ge = null;
+
+    private static final int ALPHA          = 75;
+    private static final Color EXON_EVEN    = new Color(0,255,0,ALPHA);
+    private static final Color EXON_ODD     = new Color(0,128,0,ALPHA);
+    private static final Color FRAME        = new Color(200,200,200);
+    private static final Color COORDINATES  = new Color(75,75,75);
+    private static final Font BASES_FONT    = new Font("Courier New", Font.PLAIN, 16);
+    private static final Font COORD_FONT    = new Font("Garamond", Font.PLAIN, 12);
+
+    private static final int COORDHEIGHT    = 20;
+    private static final int TICK_STEP_GENE = 10;
+    private static final int TICK_STEP_CDS  = 9;
+
+    private GeneEntry ge        = null;
+    private AlignmentView view  = null;
+    private int displayMode     = SM_ALL;
+    private int highlightMode   = HM_REGIONS;
 
     /**
      *  Draws the alignment of the sequences of the gene entry and highlights
@@ -54,63 +83,218 @@ public class EditorPanel extends JPanel implements Scrollable
     }
 
     /**
-     *  Updates the editor.
+     *  Updates the editor, e.g. after the regions of the gene entry were changed.
      */
     public void update()
     {
-        this.removeAll();
-        this.setLayout(null);
-        int nRegs = ge.getStrainEntry(0).getRegionsCount();
-        int x = 0;
-        int h = 0;
-        for(int i=0;i<nRegs;i++)
-        {
-            RegionRenderer rr = new RegionRenderer(ge, i);
-            if(h==0)
-                h=rr.getHeight();
-            rr.setBounds(x, OFFSET_TOP, rr.getWidth(), h);
-            x += rr.getWidth()-1;
-            this.add(rr);
-        }
-        this.setPreferredSize(new Dimension(x+3*RegionRenderer.CELLWIDTH, OFFSET_TOP+h));
+        view = new AlignmentView(ge);
+        int h = view.getStrainsCount()*CELLHEIGHT+2*COORDHEIGHT;
+        setPreferredSize(new Dimension((view.getColumnsCount()+3)*CELLWIDTH, OFFSET_TOP+h));
+        revalidate();
+        repaint();
     }
-    
+
     /**
      *  Sets the display mode.
      *  showMode can be one of the following:
      *      SM_ALL          if all bases should be displayed
      *      SM_NO_IDENT     if identical bases should be masked by '.'
-     *   
+     *
      *  @param showMode
      */
     public void setDisplayMode(int showMode)
     {
-        int nComp = getComponentCount();
-        for(int i=0;i<nComp;i++)
-            ((RegionRenderer)getComponent(i)).setDisplayMode(showMode);
-        invalidate();
+        displayMode = showMode;
+        repaint();
     }
-    
+
     /**
      *  Sets the highlight mask.
-     * 
+     *
      *  highlightMask can be the combination of the following flags (see Remarks):
      *       HM_REGIONS     if regions should be highlighted
-     * 
+     *
      *  Remarks:
      *      Currently only the HM_REGIONS flag is supported, but new flags might
      *      be added in the later versions.
-     * 
+     *
      *  @param highlightMask
      */
     public void setHighlightMask(int highlightMask)
     {
-        int nComp = getComponentCount();
-        for(int i=0;i<nComp;i++)
-            ((RegionRenderer)getComponent(i)).setHighlightMask(highlightMask);
-        invalidate();
+        highlightMode = highlightMask;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
+        if(view==null || view.getColumnsCount()==0)
+            return;
+        Graphics2D g2d = (Graphics2D)g;
+        Rectangle clip = g.getClipBounds();
+        if(clip==null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        // Visible columns and rows.
+        int c0 = Math.max(clip.x/CELLWIDTH, 0);
+        int c1 = Math.min((clip.x+clip.width)/CELLWIDTH+1, view.getColumnsCount());
+        int y = clip.y-OFFSET_TOP-COORDHEIGHT;
+        int r0 = Math.max(y/CELLHEIGHT-1, 0);
+        int r1 = Math.min((y+clip.height)/CELLHEIGHT+2, view.getStrainsCount());
+        int iRegion = view.getRegionAtColumn(c0);
+        while(iRegion>-1 && iRegion<view.getRegionsCount() && view.getRegionColumn(iRegion)<c1)
+        {
+            int iFirst = view.getRegionColumn(iRegion);
+            int iLast = iFirst+view.getRegionLength(iRegion);
+            if(iLast>iFirst)
+            {
+                int rc0 = Math.max(c0, iFirst);
+                int rc1 = Math.min(c1, iLast);
+                paintBackground(g2d, iRegion, rc0, rc1);
+                paintCoordinates(g2d, iRegion, rc0, rc1);
+                paintBases(g2d, iRegion, rc0, rc1, r0, r1);
+                // Frame.
+                g2d.setColor(FRAME);
+                g2d.drawRect(iFirst*CELLWIDTH, OFFSET_TOP, (iLast-iFirst)*CELLWIDTH, getAlignmentHeight()-1);
+            }
+            iRegion++;
+        }
+    }
+
+    /**
+     *  Paints the background of the columns rc0 to rc1 (exclusive) of the
+     *  region. The exons are highlighted codon-wise.
+     */
+    private void paintBackground(Graphics2D g, int iRegion, int rc0, int rc1)
+    {
+        if( (highlightMode & HM_REGIONS)==0 )
+            return;
+        int h = getAlignmentHeight();
+        GeneRegion reg = view.getRegion(iRegion);
+        if(!reg.getType().equalsIgnoreCase(GeneRegion.EXON))
+        {
+            Color[] tmp = getColors(reg.getType());
+            g.setPaint(new GradientPaint(0, OFFSET_TOP, tmp[1], 0, OFFSET_TOP+h, tmp[0]));
+            g.fillRect(rc0*CELLWIDTH, OFFSET_TOP, (rc1-rc0)*CELLWIDTH, h);
+        }
+        else
+        {
+            // Alternate the colors of the codons according to the frame.
+            GradientPaint odd = new GradientPaint(0, OFFSET_TOP, Color.WHITE, 0, OFFSET_TOP+h, EXON_ODD);
+            GradientPaint even = new GradientPaint(0, OFFSET_TOP, Color.WHITE, 0, OFFSET_TOP+h, EXON_EVEN);
+            int iOffset = view.getCdsOffset(iRegion)-view.getRegionColumn(iRegion);
+            int c = rc0;
+            while(c<rc1)
+            {
+                int iPos = (iOffset+c)%6;
+                int n = Math.min(3-iPos%3, rc1-c);
+                g.setPaint((iPos<3) ? odd : even);
+                g.fillRect(c*CELLWIDTH, OFFSET_TOP, n*CELLWIDTH, h);
+                c += n;
+            }
+        }
     }
-    
+
+    /**
+     *  Paints the gene positions above the alignment and, for exons, the CDS
+     *  positions below the alignment.
+     */
+    private void paintCoordinates(Graphics2D g, int iRegion, int rc0, int rc1)
+    {
+        g.setFont(COORD_FONT);
+        g.setColor(COORDINATES);
+        FontMetrics fm = g.getFontMetrics();
+        GeneRegion reg = view.getRegion(iRegion);
+        int iFirst = view.getRegionColumn(iRegion);
+        int iLast = iFirst+view.getRegionLength(iRegion);
+        boolean bExon = reg.getType().equalsIgnoreCase(GeneRegion.EXON);
+        int iCdsOffset = view.getCdsOffset(iRegion);
+        int yb = OFFSET_TOP+getAlignmentHeight();
+        // The labels are wider than a cell, thus the labels of the neighboring
+        // columns are painted too.
+        for(int c=Math.max(rc0-3, iFirst);c<Math.min(rc1+3, iLast);c++)
+        {
+            int iSite = c-iFirst;
+            int cx = c*CELLWIDTH;
+            int iPos = reg.getStart()+iSite;
+            if(iPos%TICK_STEP_GENE==0 || iPos==1)
+                paintLabel(g, fm, Integer.toString(iPos), cx, iFirst, iLast, OFFSET_TOP+COORDHEIGHT-5, OFFSET_TOP+COORDHEIGHT+8);
+            int iCds = iCdsOffset+iSite+1;
+            if(bExon && (iCds%TICK_STEP_CDS==0 || (iSite==0 && iCdsOffset==0)))
+                paintLabel(g, fm, Integer.toString(iCds), cx, iFirst, iLast, yb-5, yb-10);
+        }
+    }
+
+    private void paintLabel(Graphics2D g, FontMetrics fm, String s, int cx, int iFirst, int iLast, int yLabel, int yTick)
+    {
+        int sw = fm.stringWidth(s);
+        int x = cx+(CELLWIDTH-sw)/2;
+        // Only the labels, which fit into the region, are painted.
+        if(x>=iFirst*CELLWIDTH && x+sw<=iLast*CELLWIDTH)
+        {
+            g.drawString(s, x, yLabel);
+            g.drawString("'", cx+CELLWIDTH/2, yTick);
+        }
+    }
+
+    /**
+     *  Paints the bases of the rows r0 to r1 (exclusive) in the columns rc0
+     *  to rc1 (exclusive) of the region.
+     */
+    private void paintBases(Graphics2D g, int iRegion, int rc0, int rc1, int r0, int r1)
+    {
+        g.setFont(BASES_FONT);
+        g.setColor(Color.BLACK);
+        int iRef = (displayMode==SM_NO_IDENT) ? view.getReference(iRegion) : -1;
+        char[] base = new char[1];
+        for(int i=r0;i<r1;i++)
+        {
+            int yb = OFFSET_TOP+(i+1)*CELLHEIGHT+COORDHEIGHT;
+            for(int c=rc0;c<rc1;c++)
+            {
+                byte b = view.getBase(c, i);
+                if(b==AlignmentView.NOBASE)
+                    continue;
+                if(iRef>-1 && i!=iRef && b!='-' && b==view.getBase(c, iRef))
+                    b = '.';
+                base[0] = (char)b;
+                g.drawChars(base, 0, 1, c*CELLWIDTH+1, yb);
+            }
+        }
+    }
+
+    private int getAlignmentHeight()
+    {
+        return view.getStrainsCount()*CELLHEIGHT+2*COORDHEIGHT;
+    }
+
+    /**
+     *  Returns the start and end color of the gradient for each region type.
+     *
+     *  @param strType
+     *  @return
+     */
+    private Color[] getColors(String strType)
+    {
+        if(strType.equalsIgnoreCase(GeneRegion.INTRON))
+            return new Color[]{new Color(255,0,0,ALPHA), Color.WHITE};
+        else if(strType.equalsIgnoreCase(GeneRegion.UTR5))
+            return new Color[]{new Color(255,200,0,ALPHA), Color.WHITE};
+        else if(strType.equalsIgnoreCase(GeneRegion.UTR3))
+            return new Color[]{new Color(255,255,0,ALPHA), Color.WHITE};
+        else if(strType.equalsIgnoreCase(GeneRegion.INTERGENIC))
+            return new Color[]{new Color(128,128,128,ALPHA), Color.WHITE};
+        else if(strType.equalsIgnoreCase(GeneRegion.mRNA))
+            return new Color[]{new Color(220,30,225,ALPHA), Color.WHITE};
+        else if(strType.equalsIgnoreCase(GeneRegion.UNNAMED))
+            return new Color[]{new Color(225,225,225,ALPHA), Color.WHITE};
+        else if(strType.equalsIgnoreCase(IAligner.AMBIGUOUS_REGION))
+            return new Color[]{new Color(245,110,10,ALPHA), Color.WHITE};
+        else
+            return new Color[]{new Color(70,75,200,ALPHA), Color.WHITE};
+    }
+
     public Dimension getPreferredScrollableViewportSize()
     {
         return getPreferredSize();
@@ -119,17 +303,17 @@ public class EditorPanel extends JPanel implements Scrollable
     public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction)
     {
         if(orientation==SwingConstants.VERTICAL)
-            return RegionRenderer.CELLHEIGHT;
+            return CELLHEIGHT;
         else
-            return 3*RegionRenderer.CELLWIDTH;
+            return 3*CELLWIDTH;
     }
 
     public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction)
     {
         if(orientation==SwingConstants.VERTICAL)
-            return RegionRenderer.CELLHEIGHT;
+            return CELLHEIGHT;
         else
-            return 40*RegionRenderer.CELLWIDTH;
+            return 40*CELLWIDTH;
     }
 
     public boolean getScrollableTracksViewportWidth()
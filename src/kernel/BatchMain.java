@@ -0,0 +1,253 @@
+/*
+    File:
+        BatchMain.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Command-line entry point, which runs GeneAnalyzer scripts without the
+        graphical user interface. The kernel loads the plugins and the codon
+        tables as usual, but no window is created and the progress is reported
+        to the standard output. The application must be started from the
+        GeneAnalyzer directory, since the plugins, the codon tables and the
+        settings are searched in the working directory.
+
+        Usage:
+            java -cp GeneAnalyzer.jar kernel.BatchMain [options] script1.gas [script2.gas ...]
+
+        Options:
+            -list <file>        reads the names of the scripts from the file,
+                                one per line
+            -task <n>           runs only the n-th script (starting with 1),
+                                e.g. the index of the task of an array job
+            -threads <n>        number of worker threads, overrides the settings
+            -metrics <file>     writes the plugin metrics into the XML file
+            -continue           runs the remaining scripts if a script fails
+
+        The exit code is 0 if all scripts succeed, 1 if a script fails and
+        2 if the command line is invalid.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package kernel;
+
+import gui.IWaitDialog;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Vector;
+import kernel.script.IScriptListener;
+import kernel.script.ScriptInterpreter;
+
+
+public class BatchMain
+{
+    private static final SimpleDateFormat TIME = new SimpleDateFormat("HH:mm:ss");
+
+    public static void main(String[] args)
+    {
+        // Prevent the plugins from opening any windows.
+        System.setProperty("java.awt.headless", "true");
+        Vector<File> scripts = new Vector<File>();
+        int iTask = 0;
+        int nThreads = 0;
+        File metrics = null;
+        boolean bContinue = false;
+        try
+        {
+            for(int i=0;i<args.length;i++)
+            {
+                if(args[i].equals("-list"))
+                    scripts.addAll(readList(new File(args[++i])));
+                else if(args[i].equals("-task"))
+                    iTask = Integer.parseInt(args[++i]);
+                else if(args[i].equals("-threads"))
+                    nThreads = Integer.parseInt(args[++i]);
+                else if(args[i].equals("-metrics"))
+                    metrics = new File(args[++i]);
+                else if(args[i].equals("-continue"))
+                    bContinue = true;
+                else if(args[i].startsWith("-"))
+                    throw new IllegalArgumentException("Unknown option "+args[i]);
+                else
+                    scripts.add(new File(args[i]));
+            }
+        }
+        catch(IOException e)
+        {
+            System.err.println("The list of the scripts cannot be read: "+e.getMessage());
+            System.exit(2);
+        }
+        catch(RuntimeException e)
+        {
+            System.err.println("Invalid command line: "+e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+        if(iTask>0)
+        {
+            if(iTask>scripts.size())
+            {
+                System.err.println(String.format("Task %d does not exist, %d scripts specified", iTask, scripts.size()));
+                System.exit(2);
+            }
+            File script = scripts.get(iTask-1);
+            scripts.clear();
+            scripts.add(script);
+        }
+        if(scripts.isEmpty())
+        {
+            printUsage();
+            System.exit(2);
+        }
+        System.exit(run(scripts, nThreads, metrics, bContinue) ? 0 : 1);
+    }
+
+    /**
+     *  Initializes the kernel and runs the scripts one after another. Every
+     *  script starts with the dataset left by the previous one. Returns true
+     *  if all scripts succeed.
+     *
+     *  @param scripts
+     *  @param nThreads     number of worker threads or 0 to use the settings
+     *  @param metrics      file to write the plugin metrics to or null
+     *  @param bContinue    whether or not to run the remaining scripts if a
+     *                      script fails
+     *  @return
+     */
+    public static boolean run(Vector<File> scripts, int nThreads, File metrics, boolean bContinue)
+    {
+        long t0 = System.currentTimeMillis();
+        Kernel kernel = new Kernel();
+        if(kernel.initialize()!=ErrorCode.Ok)
+        {
+            report("The kernel cannot be initialized: "+kernel.getLastErrorString());
+            return false;
+        }
+        if(nThreads>0)
+            kernel.getInitializationData().threads = nThreads;
+        kernel.setWaitDialog(new IWaitDialog()
+        {
+            public void show(TYPE type) {}
+            public void setText(String strMainText, String strHintText)
+            {
+                if(strHintText!=null)
+                    report("    "+strHintText);
+            }
+            public void close() {}
+        });
+        report(String.format("Kernel initialized in %d ms", System.currentTimeMillis()-t0));
+        ScriptInterpreter si = new ScriptInterpreter(kernel, new IScriptListener()
+        {
+            private long t = 0;
+
+            public void instructionStarted(String strInstruction)
+            {
+                t = System.currentTimeMillis();
+                report("  "+strInstruction.trim());
+            }
+
+            public void instructionFinished(String strInstruction, ErrorCode ec)
+            {
+                report(String.format("  %s (%d ms)", ec, System.currentTimeMillis()-t));
+            }
+
+            public void datasetChanged() {}
+        });
+        boolean bSuccess = true;
+        for(File script:scripts)
+        {
+            report("Running "+script.getPath());
+            long t = System.currentTimeMillis();
+            ErrorCode ec = null;
+            try
+            {
+                ec = si.runScript(readScript(script));
+            }
+            catch(IOException e)
+            {
+                report("The script cannot be read: "+e.getMessage());
+                ec = ErrorCode.IOError;
+            }
+            if(ec==ErrorCode.Ok)
+                report(String.format("Finished %s in %d ms", script.getPath(), System.currentTimeMillis()-t));
+            else
+            {
+                bSuccess = false;
+                String strErr = si.getLastErrorString();
+                report(String.format("Failed %s: %s%s", script.getPath(), ec, (strErr!=null) ? " - "+strErr : ""));
+                if(!bContinue)
+                    break;
+            }
+        }
+        if(metrics!=null && kernel.writeMetrics(metrics)!=ErrorCode.Ok)
+            report("The metrics cannot be written: "+kernel.getLastErrorString());
+        return bSuccess;
+    }
+
+    private static void report(String strMessage)
+    {
+        synchronized(TIME)
+        {
+            System.out.println(TIME.format(new Date())+" "+strMessage);
+        }
+    }
+
+    private static String readScript(File file) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try
+        {
+            String strLine = null;
+            while((strLine=in.readLine())!=null)
+                sb.append(strLine).append('\n');
+        }
+        finally
+        {
+            in.close();
+        }
+        return sb.toString();
+    }
+
+    private static Vector<File> readList(File file) throws IOException
+    {
+        Vector<File> files = new Vector<File>();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try
+        {
+            String strLine = null;
+            while((strLine=in.readLine())!=null)
+            {
+                strLine = strLine.trim();
+                if(!strLine.isEmpty() && !strLine.startsWith("#"))
+                    files.add(new File(strLine));
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return files;
+    }
+
+    private static void printUsage()
+    {
+        System.err.println("Usage: java -cp GeneAnalyzer.jar kernel.BatchMain [options] script1.gas [script2.gas ...]");
+        System.err.println("Options:");
+        System.err.println("    -list <file>        reads the names of the scripts from the file");
+        System.err.println("    -task <n>           runs only the n-th script (starting with 1)");
+        System.err.println("    -threads <n>        number of worker threads");
+        System.err.println("    -metrics <file>     writes the plugin metrics into the XML file");
+        System.err.println("    -continue           runs the remaining scripts if a script fails");
+    }
+}
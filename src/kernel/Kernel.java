@@ -3,7 +3,7 @@
         Kernel.java
  *   
     Revision:
-        2.3.0.1
+        2.3.1.1
  * 
     Description:
         Application kernel.
@@ -28,6 +28,7 @@ import bio.gene.dna.ICodonTable;
 import gui.IWaitDialog;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Locale;
 import java.util.Vector;
@@ -37,8 +38,11 @@ import plugin.classes.ADatasetAnalyzer;
 import plugin.classes.ADatasetExporter;
 import plugin.classes.ADatasetFilter;
 import plugin.classes.ADatasetImporter;
+import plugin.classes.GenePipe;
 import plugin.classes.IAligner;
 import plugin.classes.IGAPlugin;
+import plugin.classes.PluginMetrics;
+import plugin.classes.ResultCache;
 import plugin.loader.AlignerLoader;
 
 
@@ -51,6 +55,9 @@ public class Kernel
     private final String DIR_ALIGNERS  = "Plugins"+File.separator+"Aligners"+File.separator;
     private final String DIR_TABLES    = "Codon tables"+File.separator;
     private final String SETTINGSFILE  = "Settings.xml";
+    private final String CACHEFILE     = "Cache"+File.separator+"Results.dat";
+    // Default maximal number of characters of the cached analysis results.
+    private static final long DEFAULT_RESULTCACHE = 67108864;
 
     private Vector<ADatasetImporter>     importers      = null;
     private Vector<ADatasetExporter>     exporters      = null;
@@ -62,6 +69,7 @@ public class Kernel
     
 
     private QualityChecker qc                           = null;
+    private PluginMetrics metrics                       = new PluginMetrics();
     
     private InitData initData                           = null;
     private int iInitTable                              = -1;   // Index of the initial codon table
@@ -99,6 +107,8 @@ public class Kernel
 
         initData.ct = initializeCodonTable(initData.sm.getSetting("", SettingsManager.CODONTABLE));
         initData.locale = initializeLocale(initData.sm.getSetting("", SettingsManager.LOCALE));
+        initData.threads = initializeThreadsCount(initData.sm.getSetting("", SettingsManager.THREADS));
+        initData.cache = initializeResultCache(initData.sm.getSetting("", SettingsManager.RESULTCACHE));
         initData.codontables = listCodonTables();
         initData.aligners = listAligners();
                 
@@ -178,6 +188,8 @@ public class Kernel
     {
         initData.locale = initializeLocale(initData.sm.getSetting("", SettingsManager.LOCALE));
         initData.ct = initializeCodonTable(initData.sm.getSetting("", SettingsManager.CODONTABLE));
+        initData.threads = initializeThreadsCount(initData.sm.getSetting("", SettingsManager.THREADS));
+        initData.cache = initializeResultCache(initData.sm.getSetting("", SettingsManager.RESULTCACHE));
     }
 
     /************************************************************************
@@ -205,6 +217,36 @@ public class Kernel
         return ErrorCode.ObjectNotFound;
     }
 
+    /**
+     *  Starts importing the files using the specified loader and returns the
+     *  pipe, which yields the imported gene entries one at a time. At most
+     *  nCapacity gene entries are held in the pipe, thus the genes can be
+     *  processed while the import is still running. The genes are not added
+     *  to the loaded dataset.
+     *  If no dataset importer with the specified name is loaded, the method
+     *  returns null.
+     *
+     *  @param files
+     *  @param strLoader
+     *  @param strParams
+     *  @param nCapacity
+     *  @return
+     */
+    public GenePipe importGenes(File[] files, String strLoader, String strParams, int nCapacity)
+    {
+        for(ADatasetImporter imp:importers)
+        {
+            if(imp.GetName().equalsIgnoreCase(strLoader))
+            {
+                GenePipe pipe = new GenePipe(nCapacity);
+                pipe.start(imp, files, strParams, metrics);
+                return pipe;
+            }
+        }
+        strLastError = String.format("Importer %s was not found", strLoader);
+        return null;
+    }
+
     /**
      *  Imports DPGP dataset.
      *
@@ -255,7 +297,7 @@ public class Kernel
             return ErrorCode.SelectionIsEmpty;
         }
         // Fuse the genes.
-        GeneFusioner gf = new GeneFusioner(initData.wd);
+        GeneFusioner gf = new GeneFusioner(initData.wd, initData.threads);
         tmp = gf.fuseGenes(tmp, listAligners());
         if(tmp==null)
             return ErrorCode.CancelledByUser;
@@ -671,6 +713,36 @@ public class Kernel
         return ErrorCode.Ok;
     }
 
+    /**
+     *  Returns the execution metrics of the plugins.
+     *
+     *  @return
+     */
+    public PluginMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     *  Writes the execution metrics of the plugins into the XML file.
+     *
+     *  @param file
+     *  @return
+     */
+    public ErrorCode writeMetrics(File file)
+    {
+        try
+        {
+            metrics.writeReport(file);
+        }
+        catch(IOException e)
+        {
+            strLastError = e.getMessage();
+            return ErrorCode.IOError;
+        }
+        return ErrorCode.Ok;
+    }
+
     /**
      *  Returns the string description of the last error occured.
      *
@@ -811,6 +883,52 @@ public class Kernel
             return Locale.US;
     }
 
+    /**
+     *  Returns the number of worker threads to use. If the setting is missing
+     *  or invalid, the number of available processors is used.
+     *
+     *  @param strThreads
+     *  @return
+     */
+    private int initializeThreadsCount(String strThreads)
+    {
+        if(strThreads!=null && strThreads.matches("[0-9]{1,4}"))
+        {
+            int n = Integer.parseInt(strThreads);
+            if(n>0)
+                return n;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     *  Returns the cache of the analysis results with the specified maximal
+     *  number of characters. If the size is 0, the results are not cached and
+     *  null is returned. If the size is not valid, the default size is used.
+     *  The existing cache is reused.
+     *
+     *  @param strSize
+     *  @return
+     */
+    private ResultCache initializeResultCache(String strSize)
+    {
+        long nSize = DEFAULT_RESULTCACHE;
+        if(strSize!=null && strSize.matches("[0-9]{1,15}"))
+            nSize = Long.parseLong(strSize);
+        if(nSize==0)
+        {
+            if(initData.cache!=null)
+                initData.cache.flush();
+            return null;
+        }
+        if(initData.cache!=null)
+        {
+            initData.cache.setCapacity(nSize);
+            return initData.cache;
+        }
+        return new ResultCache(new File(CACHEFILE), nSize);
+    }
+
     /**
      *  Loads the files using the specified loader. If multiple files are specified
      *  the method combines them to one data set. The loader is specified by its
@@ -831,6 +949,9 @@ public class Kernel
         if(ds==null)
             ds = new Dataset();
         Dataset tmp = null;
+        PluginMetrics.Call call = metrics.begin(importers.get(iIndex));
+        for(File f:files)
+            call.addBytesIn(f.length());
         try
         {
             tmp = importers.get(iIndex).ImportDataset(files, strParams);
@@ -846,6 +967,10 @@ public class Kernel
             initData.wd.close();
             return ErrorCode.ExecutionError;
         }
+        finally
+        {
+            metrics.end(call, tmp!=null, (tmp!=null) ? tmp.getGenesCount() : 0);
+        }
         int nOld = ds.getGenesCount();
         initData.wd.show(IWaitDialog.TYPE.Kernel);
         ds.merge(tmp);        
@@ -898,6 +1023,8 @@ public class Kernel
             return ErrorCode.SelectionIsEmpty;
         }
         // Save the dataset.
+        PluginMetrics.Call call = metrics.begin(exporters.get(iIndex));
+        boolean bSuccess = false;
         try
         {
             ErrorCode ec = exporters.get(iIndex).ExportDataset(tmp, file, strParams);
@@ -906,6 +1033,7 @@ public class Kernel
                 strLastError = exporters.get(iIndex).GetLastError();
                 return ErrorCode.ExecutionError;
             }
+            bSuccess = true;
         }
         catch(Exception e)
         {
@@ -913,6 +1041,13 @@ public class Kernel
             initData.wd.close();
             return ErrorCode.ExecutionError;
         }
+        finally
+        {
+            // A failed export might leave a partial or an old file.
+            if(bSuccess && file!=null && file.isFile())
+                call.addBytesOut(file.length());
+            metrics.end(call, bSuccess, tmp.getGenesCount());
+        }
         return ErrorCode.Ok;
     }
 
@@ -934,9 +1069,11 @@ public class Kernel
             return ErrorCode.NoDatasetLoaded;
         if(iIndex>=filters.size() || iIndex<0)
             return ErrorCode.ObjectNotFound;
+        PluginMetrics.Call call = metrics.begin(filters.get(iIndex));
+        int[] tmp = null;
         try
         {
-            int[] tmp = filters.get(iIndex).GetFilteredIndices(ds, strParams);
+            tmp = filters.get(iIndex).GetFilteredIndices(ds, strParams);
             if(tmp==null)
             {
                 strLastError = filters.get(iIndex).GetLastError();
@@ -964,6 +1101,10 @@ public class Kernel
             initData.wd.close();
             return ErrorCode.ExecutionError;
         }
+        finally
+        {
+            metrics.end(call, tmp!=null, ds.getGenesCount());
+        }
         return ErrorCode.Ok;
     }
 
@@ -998,6 +1139,8 @@ public class Kernel
             strLastError = "No valid data to analyze";
             return ErrorCode.SelectionIsEmpty;
         }
+        PluginMetrics.Call call = metrics.begin(analyzers.get(iIndex));
+        boolean bSuccess = false;
         try
         {
             ErrorCode ec = analyzers.get(iIndex).AnalyzeDataset(tmp, strParams);
@@ -1006,6 +1149,7 @@ public class Kernel
                 strLastError = analyzers.get(iIndex).GetLastError();
                 return ErrorCode.ExecutionError;
             }
+            bSuccess = true;
         }
         catch(Exception e)
         {
@@ -1013,6 +1157,13 @@ public class Kernel
             initData.wd.close();
             return ErrorCode.ExecutionError;
         }
+        finally
+        {
+            metrics.end(call, bSuccess, tmp.getGenesCount());
+            // Store the results of the analysis for the next session.
+            if(initData.cache!=null)
+                initData.cache.flush();
+        }
         return ErrorCode.Ok;
     }
 }
@@ -3,7 +3,7 @@
         QualityChecker.java
  *   
     Revision:
-        1.3.0.1
+        1.3.1.1
  * 
     Description:
         Performs a low-level sequence quality check. The performed tests are:
@@ -22,6 +22,12 @@
             name is defined in PROPERTY_NAME and the type is String. If the
             strain/gene entry is correct, getProperty(PROPERTY_NAME) returns null,
             i.e. nothing is annotated.
+
+            The validation of a gene entry is recorded together with its
+            modification stamp. validateDataset re-validates only the gene
+            entries, which were modified since (e.g. by the editor or the
+            DatasetFixer), or all entries, if the codon table or the code type
+            were changed. The gene entries are validated in parallel.
  
             Every gene entry is assigned a quality value (see Remarks for details):
                 0       no errors
@@ -66,6 +72,14 @@ import bio.gene.Dataset;
 import bio.gene.GeneEntry;
 import bio.gene.GeneRegion;
 import bio.gene.StrainEntry;
+import bio.gene.dna.ICodonTable;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 
 public class QualityChecker 
@@ -92,26 +106,146 @@ public class QualityChecker
     public static final int QUALITY_LEVEL_4 = 4;
     public static final int QUALITY_LEVEL_5 = 5;
 
+    /**
+     *  Name of the property holding the record of the last validation of
+     *  a gene entry.
+     */
+    private static final String VALIDATION = "QualityCheckValidation";
+
+    /**
+     *  Valid sequences for the code types.
+     */
+    private static final Pattern CT_SIMPLE      = Pattern.compile("[ACGTacgt-]+");
+    private static final Pattern CT_EXTENDED    = Pattern.compile("[ACGTNXacgtnx-]+");
+    private static final Pattern CT_COMPLETE    = Pattern.compile("[ACGTSWRYKMBVHDNUXacgtswrykmbvhdnux-]+");
+
     private InitData initData = null;
 
+    /**
+     *  Record of the validation of a gene entry.
+     */
+    private static class Validation
+    {
+        long lStamp         = 0;    // Modification stamp of the validated gene entry.
+        ICodonTable ct      = null; // Codon table used.
+        String strCodeType  = null; // Code type used.
+
+        Validation(long lStamp, ICodonTable ct, String strCodeType)
+        {
+            this.lStamp = lStamp;
+            this.ct = ct;
+            this.strCodeType = strCodeType;
+        }
+    }
+
     public QualityChecker(InitData initData)
     {
         this.initData = initData;
     }
 
     /**
-     *  Validates the complete dataset. It is reasonable to call
-     *  validateDataset at the very beginning, when a dataset is
-     *  loaded. However, if you edit one gene entry, it is more
-     *  efficient validate that single entry.
+     *  Validates the complete dataset. Only the gene entries, which were
+     *  modified since their last validation, are validated. If the codon table
+     *  or the code type were changed, all gene entries are validated.
+     *  The gene entries are validated by initData.threads worker threads.
      * 
      *  @param ds
      */
     public void validateDataset(Dataset ds)
     {
+        // The code type is resolved once, before the workers are started.
+        final String strCodeType = getCodeType();
+        final Vector<GeneEntry> genes = new Vector<GeneEntry>();
         for(int i=0;i<ds.getGenesCount();i++)
-            validateGeneEntry(ds.getGeneEntry(i));
-    }    
+        {
+            GeneEntry ge = ds.getGeneEntry(i);
+            if(!isValidated(ge, strCodeType))
+                genes.add(ge);
+        }
+        final int nGenes = genes.size();
+        int n = Math.min(initData.threads, nGenes);
+        if(n<2)
+        {
+            for(GeneEntry ge:genes)
+                validateGeneEntry(ge, strCodeType);
+            return;
+        }
+        final AtomicInteger next = new AtomicInteger(0);
+        ExecutorService pool = Executors.newFixedThreadPool(n);
+        Vector<Future<?>> tasks = new Vector<Future<?>>();
+        for(int t=0;t<n;t++)
+        {
+            tasks.add(pool.submit(new Runnable()
+            {
+                public void run()
+                {
+                    int i;
+                    while( (i=next.getAndIncrement())<nGenes )
+                        validateGeneEntry(genes.get(i), strCodeType);
+                }
+            }));
+        }
+        try
+        {
+            for(Future<?> task:tasks)
+                task.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Quality check was interrupted", e);
+        }
+        catch(ExecutionException e)
+        {
+            // Stop the remaining workers.
+            next.set(nGenes);
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     *  Returns true if the gene entry was validated with the current codon
+     *  table and the specified code type and was not modified since.
+     *
+     *  @param ge
+     *  @param strCodeType
+     *  @return
+     */
+    private boolean isValidated(GeneEntry ge, String strCodeType)
+    {
+        Object o = ge.getProperty(VALIDATION);
+        if(!(o instanceof Validation))
+            return false;
+        Validation v = (Validation)o;
+        return v.lStamp==ge.getModificationStamp() && v.ct==initData.ct &&
+               v.strCodeType.equalsIgnoreCase(strCodeType);
+    }
+
+    /**
+     *  Returns the code type. If the code type is not set, it is initialized
+     *  to SettingsManager.CT_SIMPLE, which is then also used to check the
+     *  characters of the sequences. (Previously the check was skipped for the
+     *  region validated while the setting was initialized, thus the result
+     *  depended on the order, in which the regions were validated.)
+     *
+     *  @return
+     */
+    private String getCodeType()
+    {
+        String strCodeType = initData.sm.getSetting("", SettingsManager.CODETYPE);
+        if(strCodeType==null)
+        {
+            strCodeType = SettingsManager.CT_SIMPLE;
+            initData.sm.addSetting("", SettingsManager.CODETYPE, strCodeType);
+        }
+        return strCodeType;
+    }
     
     /**
      *  Validates a single gene entry.
@@ -125,6 +259,14 @@ public class QualityChecker
      */
     public int validateGeneEntry(GeneEntry ge)
     {
+        return validateGeneEntry(ge, getCodeType());
+    }
+
+    private int validateGeneEntry(GeneEntry ge, String strCodeType)
+    {
+        // The stamp is taken first, thus a modification during the validation
+        // causes the entry to be validated again.
+        long lStamp = ge.getModificationStamp();
         int quality = QUALITY_LEVEL_0;
         StringBuffer annot = new StringBuffer();
         // Common name.
@@ -145,7 +287,7 @@ public class QualityChecker
             {
                 // Strain entry quality.
                 StrainEntry se = ge.getStrainEntry(i);
-                quality = Math.max(quality, validateStrainEntry(se));
+                quality = Math.max(quality, validateStrainEntry(se, strCodeType));
                 // All strain entries in the gene entry must have identical regions
                 // i.e. same type and same start and end positions.
                 if(i>0)
@@ -181,6 +323,7 @@ public class QualityChecker
         // Assign the quality.
         ge.addProperty(QUALITY_LEVEL, quality);
         ge.addProperty(QUALITY_DESCRIPTION, annot.toString());
+        ge.addProperty(VALIDATION, new Validation(lStamp, initData.ct, strCodeType));
         return quality;
     }    
     
@@ -198,6 +341,11 @@ public class QualityChecker
      *  @return     quality level of the strain entry
      */
     public int validateStrainEntry(StrainEntry se)
+    {
+        return validateStrainEntry(se, getCodeType());
+    }
+
+    private int validateStrainEntry(StrainEntry se, String strCodeType)
     {
         int quality = QUALITY_LEVEL_0;
         StringBuffer annot = new StringBuffer();
@@ -296,11 +444,11 @@ public class QualityChecker
                 quality = Math.max(quality, QUALITY_LEVEL_4);
             }
             int ile = se.getRegion(0).getEnd(); // last end position.
-            quality = Math.max(quality, validateGeneRegion(se.getRegion(0)));
+            quality = Math.max(quality, validateGeneRegion(se.getRegion(0), strCodeType));
             for(int i=1;i<se.getRegionsCount();i++)
             {
                 GeneRegion reg = se.getRegion(i);
-                quality = Math.max(quality, validateGeneRegion(reg));
+                quality = Math.max(quality, validateGeneRegion(reg, strCodeType));
                 // Gap.
                 if(reg.getStart()>ile+1)
                 {
@@ -337,6 +485,11 @@ public class QualityChecker
      *  @return     quality level of the gene region
      */
     public int validateGeneRegion(GeneRegion gr)
+    {
+        return validateGeneRegion(gr, getCodeType());
+    }
+
+    private int validateGeneRegion(GeneRegion gr, String strCodeType)
     {
         int quality = QUALITY_LEVEL_0;
         StringBuffer annot = new StringBuffer();
@@ -353,36 +506,23 @@ public class QualityChecker
             quality = QUALITY_LEVEL_4;
         } 
         // Sequence.
-        if(gr.getSequence().isEmpty())
+        String strSeq = gr.getSequence();
+        if(strSeq.isEmpty())
         {
             annot.append("Missing sequence;");
             quality = QUALITY_LEVEL_5;
         }  
-        // If the code type is not set, initialize it to SettingsManager.CT_SIMPLE.
-        if(initData.sm.getSetting("", SettingsManager.CODETYPE)==null)
-            initData.sm.addSetting("", SettingsManager.CODETYPE, SettingsManager.CT_SIMPLE);
         // Check for invalid chracters.
-        else if(initData.sm.getSetting("", SettingsManager.CODETYPE).equalsIgnoreCase(SettingsManager.CT_SIMPLE) &&
-                !gr.getSequence().matches("[ACGTacgt-]+"))
-        {
-            annot.append("Sequence contains invalid characters;");
-            quality = QUALITY_LEVEL_5;
-        }
-        else if(initData.sm.getSetting("", SettingsManager.CODETYPE).equalsIgnoreCase(SettingsManager.CT_EXTENDED) &&
-                !gr.getSequence().matches("[ACGTNXacgtnx-]+"))
-        {
-            annot.append("Sequence contains invalid characters;");
-            quality = QUALITY_LEVEL_5;
-        }
-        else if(initData.sm.getSetting("", SettingsManager.CODETYPE).equalsIgnoreCase(SettingsManager.CT_COMPLETE) &&
-                !gr.getSequence().matches("[ACGTSWRYKMBVHDNUXacgtswrykmbvhdnux-]+"))
+        if( (strCodeType.equalsIgnoreCase(SettingsManager.CT_SIMPLE) && !CT_SIMPLE.matcher(strSeq).matches()) ||
+            (strCodeType.equalsIgnoreCase(SettingsManager.CT_EXTENDED) && !CT_EXTENDED.matcher(strSeq).matches()) ||
+            (strCodeType.equalsIgnoreCase(SettingsManager.CT_COMPLETE) && !CT_COMPLETE.matcher(strSeq).matches()) )
         {
             annot.append("Sequence contains invalid characters;");
             quality = QUALITY_LEVEL_5;
         }
         // Sequence length.
         int iLength = gr.getEnd()-gr.getStart()+1;
-        if(gr.getSequence().length()!=iLength)
+        if(strSeq.length()!=iLength)
         {
             annot.append("Actual sequence length differs from the one given by the start/end;");
             quality = Math.max(quality, QUALITY_LEVEL_4);
@@ -49,6 +49,8 @@ public class SettingsManager
     public static final String CT_COMPLETE  = "Complete";
     public static final String LOCALE       = "Locale";
     public static final String HEAPSIZE     = "CustomHeapSize";
+    public static final String THREADS      = "ThreadsCount";
+    public static final String RESULTCACHE  = "ResultCacheSize";
 
     // Previous instance.
     private static SettingsManager prev = null;
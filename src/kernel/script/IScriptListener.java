@@ -0,0 +1,45 @@
+/*
+    File:
+        IScriptListener.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Receives the notifications of the script interpreter. The host of the
+        interpreter, e.g. the main form or the batch runner, uses them to
+        update the gene list or to report the progress.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package kernel.script;
+
+import kernel.ErrorCode;
+
+public interface IScriptListener
+{
+    /**
+     *  Called before the instruction is executed.
+     *
+     *  @param strInstruction   text of the instruction
+     */
+    public void instructionStarted(String strInstruction);
+
+    /**
+     *  Called after the instruction was executed.
+     *
+     *  @param strInstruction   text of the instruction
+     *  @param ec               result of the instruction
+     */
+    public void instructionFinished(String strInstruction, ErrorCode ec);
+
+    /**
+     *  Called when the dataset or the selection of the genes was changed.
+     */
+    public void datasetChanged();
+}
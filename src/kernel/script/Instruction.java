@@ -3,7 +3,7 @@
         Instruction.java 
  *   
     Revision:
-        1.0.0.1
+        1.0.1.0
  * 
     Description:
         Represents a single instruction, supported by GeneAnalyzer.
@@ -173,6 +173,10 @@ public class Instruction
      *                       it proceeds without waiting.
      *              <PROGRAM> is an arbitrary string to execute
      * 
+     *      - Write the execution metrics of the plugins.
+     *          SYSTEM METRICS "<FILENAME>";
+     *              <FILENAME>  target XML file
+     * 
      *  @param strInstruction
      *  @return
      */
@@ -330,6 +334,22 @@ public class Instruction
                     return inst;
                 }
             }
+            else if(lci.startsWith("system metrics "))
+            {
+                Pattern p = Pattern.compile("^SYSTEM\\s+METRICS\\s+\"([^\"]+)\";",
+                                            Pattern.CASE_INSENSITIVE|Pattern.UNICODE_CASE);
+                Matcher m = p.matcher(strInstruction);
+                if(m.find())
+                {
+                    Instruction inst = new Instruction();
+                    inst.type = InstructionType.System;
+                    inst.strObjName = null;
+                    inst.strParams = null;
+                    inst.files = new File[]{new File(m.group(1))};
+                    inst.strCmd = "Metrics";
+                    return inst;
+                }
+            }
             else
             {
                 Pattern p = Pattern.compile("^SYSTEM\\s+CODONTABLE\\s+\"([^\"]+)\";", 
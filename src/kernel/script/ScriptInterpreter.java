@@ -3,7 +3,7 @@
         ScriptInterpreter.java 
  *   
     Revision:
-        1.0.0.1
+        1.1.0.0
  * 
     Description:
         Interprets the GeneAnalyzer scripts.
@@ -18,14 +18,13 @@
 package kernel.script;
 
 import kernel.*;
-import gui.MainForm;
 import java.io.IOException;
 
 
 public class ScriptInterpreter 
 {
-    private Kernel kernel = null;
-    private MainForm mf   = null;
+    private Kernel kernel               = null;
+    private IScriptListener listener    = null;
     
     private String strLastErr = null;
     
@@ -33,11 +32,12 @@ public class ScriptInterpreter
      *  Constructs the intepreter.
      * 
      *  @param kernel   kernel to work with
+     *  @param listener receives the notifications of the interpreter, can be null
      */
-    public ScriptInterpreter(Kernel kernel, MainForm mf)
+    public ScriptInterpreter(Kernel kernel, IScriptListener listener)
     {
-        this.kernel = kernel;
-        this.mf     = mf;
+        this.kernel   = kernel;
+        this.listener = listener;
     }
     
     public String getLastErrorString()
@@ -78,7 +78,11 @@ public class ScriptInterpreter
                 Instruction instr = Instruction.createInstruction(sbi.toString());
                 if(instr!=null)
                 {
+                    if(listener!=null)
+                        listener.instructionStarted(sbi.toString());
                     ErrorCode ec = runInstruction(instr);
+                    if(listener!=null)
+                        listener.instructionFinished(sbi.toString(), ec);
                     if(ec==ErrorCode.CancelledByUser)
                     {
                         strLastErr = "The script execution was cancelled by user";
@@ -98,7 +102,8 @@ public class ScriptInterpreter
                         strLastErr = kernel.getLastErrorString();
                         return ec;
                     }
-                    mf.updateGeneList();
+                    if(listener!=null)
+                        listener.datasetChanged();
                 }
                 else
                 {
@@ -150,13 +155,15 @@ public class ScriptInterpreter
                 if(instruction.getCommand().equalsIgnoreCase("Select all"))
                 {
                     kernel.selectAll();
-                    mf.updateGeneList();
+                    if(listener!=null)
+                        listener.datasetChanged();
                     return ErrorCode.Ok;
                 }
                 else if(instruction.getCommand().equalsIgnoreCase("Invert selection"))
                 {
                     kernel.invertSelection();
-                    mf.updateGeneList();
+                    if(listener!=null)
+                        listener.datasetChanged();
                     return ErrorCode.Ok;
                 }
                 else if(instruction.getCommand().equalsIgnoreCase("Sort"))
@@ -197,6 +204,13 @@ public class ScriptInterpreter
                 }
                 else if(instruction.getCommand().equalsIgnoreCase("Codon table"))
                     return kernel.setCodonTable(instruction.getParameters());
+                else if(instruction.getCommand().equalsIgnoreCase("Metrics"))
+                {
+                    ErrorCode ec = kernel.writeMetrics(instruction.getFiles()[0]);
+                    if(ec!=ErrorCode.Ok)
+                        strLastErr = kernel.getLastErrorString();
+                    return ec;
+                }
         }
         return ErrorCode.InvalidParameter;
     }
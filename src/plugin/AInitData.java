@@ -28,6 +28,7 @@ import java.util.Locale;
 import kernel.ErrorCode;
 import kernel.SettingsManager;
 import plugin.classes.IAligner;
+import plugin.classes.ResultCache;
 
 public abstract class AInitData
 {
@@ -41,6 +42,12 @@ public abstract class AInitData
     public IWaitDialog              wd          = null;
     public String[]                 codontables = null;
     public IAligner[]               aligners    = null;
+    // Number of worker threads the plugins may use to process the genes
+    // concurrently. The value is always at least 1.
+    public int                      threads     = 1;
+    // Cache of the per-gene analysis results or null if the results
+    // are not cached.
+    public ResultCache              cache       = null;
 
 
     /**
@@ -3,7 +3,7 @@
         ADatasetAnalyzer.java
  *   
     Revision:
-        1.1.0.10
+        1.1.2.1
  * 
     Description:
         Abstract basis class which all data set analyzers should be inherited from.
@@ -18,12 +18,24 @@
 package plugin.classes;
 
 import bio.gene.Dataset;
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import kernel.ErrorCode;
+import plugin.AInitData;
 import plugin.PluginType;
 
 
 public abstract class ADatasetAnalyzer implements IGAPlugin
 {
+    // Maximal number of results per worker thread waiting to be written.
+    private static final int RESULTS_WINDOW = 64;
+
     public PluginType GetType()
     {
         return PluginType.ANALYZER;
@@ -44,4 +56,225 @@ public abstract class ADatasetAnalyzer implements IGAPlugin
      *  @return
      */
     public abstract ErrorCode AnalyzeDataset(Dataset dataset, String params);
+
+
+    /**
+     *  Returns the gene processor, which reuses the results cached for the
+     *  same gene entries, analyzer, options and codon table. If the results
+     *  are not cached, the specified gene processor is returned.
+     *
+     *  Remarks:
+     *      All public fields of the options object, except for the output
+     *      file and the display settings, must determine the results.
+     *
+     *  @param gp       gene processor
+     *  @param options  options of the analysis
+     *  @param id       initialization data
+     *  @return
+     */
+    protected IGeneProcessor cacheResults(IGeneProcessor gp, Object options, AInitData id)
+    {
+        if(id==null || id.cache==null)
+            return gp;
+        return id.cache.wrap(gp, ResultCache.createKey(this, options, id));
+    }
+
+
+    /**
+     *  Processes every gene entry of the data set with the specified gene
+     *  processor and returns the results in the order of the gene entries
+     *  in the data set. If the gene processor returns null for a gene entry,
+     *  the corresponding element of the result array is null.
+     *  If nThreads is greater than 1, the genes are distributed among the
+     *  specified number of worker threads.
+     *
+     *  Remarks:
+     *      If the gene processor throws an exception, the remaining genes are
+     *      not processed and the exception is rethrown.
+     *
+     *  @param dataset      data set to process
+     *  @param gp           gene processor
+     *  @param nThreads     number of worker threads
+     *  @return
+     */
+    protected String[] processGenes(final Dataset dataset, IGeneProcessor gp, int nThreads)
+    {
+        final IGeneProcessor proc = measureGenes(gp);
+        final int nGenes = dataset.getGenesCount();
+        final String[] results = new String[nGenes];
+        nThreads = Math.min(nThreads, nGenes);
+        if(nThreads<2)
+        {
+            for(int i=0;i<nGenes;i++)
+                results[i] = proc.processGene(dataset.getGeneEntry(i));
+            return results;
+        }
+        // The genes are not partitioned in advance, since their sizes differ
+        // significantly. Instead, every worker takes the next unprocessed gene.
+        final AtomicInteger next = new AtomicInteger(0);
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        Vector<Future<?>> tasks = new Vector<Future<?>>();
+        for(int n=0;n<nThreads;n++)
+        {
+            tasks.add(pool.submit(new Runnable()
+            {
+                public void run()
+                {
+                    int i;
+                    while( (i=next.getAndIncrement())<nGenes )
+                        results[i] = proc.processGene(dataset.getGeneEntry(i));
+                }
+            }));
+        }
+        try
+        {
+            for(Future<?> task:tasks)
+                task.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Analysis was interrupted", e);
+        }
+        catch(ExecutionException e)
+        {
+            // Stop the remaining workers.
+            next.set(nGenes);
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+
+    /**
+     *  Processes every gene entry of the data set with the specified gene
+     *  processor and passes the results to the result sink in the order of the
+     *  gene entries in the data set, as soon as they are available. The results,
+     *  which are null, are skipped. If nThreads is greater than 1, the genes
+     *  are distributed among the specified number of worker threads and at
+     *  most RESULTS_WINDOW results per thread are held in memory.
+     *
+     *  Remarks:
+     *      If the gene processor throws an exception, the remaining genes are
+     *      not processed and the exception is rethrown. The sink is not closed.
+     *
+     *  @param dataset      data set to process
+     *  @param gp           gene processor
+     *  @param nThreads     number of worker threads
+     *  @param sink         result sink
+     *  @throws java.io.IOException
+     */
+    protected void processGenes(final Dataset dataset, IGeneProcessor gp, int nThreads, IResultSink sink) throws IOException
+    {
+        final IGeneProcessor proc = measureGenes(gp);
+        final int nGenes = dataset.getGenesCount();
+        nThreads = Math.min(nThreads, nGenes);
+        if(nThreads<2)
+        {
+            for(int i=0;i<nGenes;i++)
+            {
+                String strRes = proc.processGene(dataset.getGeneEntry(i));
+                if(strRes!=null)
+                    sink.print(strRes);
+            }
+            return;
+        }
+        final String[] results = new String[nGenes];
+        final boolean[] done = new boolean[nGenes];
+        final RuntimeException[] failure = new RuntimeException[1];
+        // A worker may only take a gene if the results window is not full.
+        final Semaphore window = new Semaphore(RESULTS_WINDOW*nThreads);
+        final AtomicInteger next = new AtomicInteger(0);
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        for(int n=0;n<nThreads;n++)
+        {
+            pool.submit(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        while(true)
+                        {
+                            window.acquire();
+                            int i = next.getAndIncrement();
+                            if(i>=nGenes)
+                                return;
+                            String strRes = proc.processGene(dataset.getGeneEntry(i));
+                            synchronized(done)
+                            {
+                                results[i] = strRes;
+                                done[i] = true;
+                                done.notifyAll();
+                            }
+                        }
+                    }
+                    catch(InterruptedException e)
+                    {
+                        // The analysis was stopped.
+                    }
+                    catch(Throwable e)
+                    {
+                        next.set(nGenes);
+                        synchronized(done)
+                        {
+                            if(failure[0]==null)
+                                failure[0] = (e instanceof RuntimeException) ? (RuntimeException)e : new RuntimeException(e);
+                            done.notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+        try
+        {
+            for(int i=0;i<nGenes;i++)
+            {
+                String strRes = null;
+                synchronized(done)
+                {
+                    while(!done[i] && failure[0]==null)
+                        done.wait();
+                    if(failure[0]!=null)
+                        throw failure[0];
+                    strRes = results[i];
+                    results[i] = null;
+                }
+                window.release();
+                if(strRes!=null)
+                    sink.print(strRes);
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Analysis was interrupted", e);
+        }
+        finally
+        {
+            // Stop the remaining workers if the analysis failed.
+            next.set(nGenes);
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     *  Returns the gene processor, which records the time needed for every
+     *  gene in the metrics of the plugin call in progress. If the call is not
+     *  measured, the specified gene processor is returned.
+     *
+     *  @param gp
+     *  @return
+     */
+    private static IGeneProcessor measureGenes(IGeneProcessor gp)
+    {
+        PluginMetrics.Call call = PluginMetrics.getCurrentCall();
+        return (call!=null) ? call.wrap(gp) : gp;
+    }
 }
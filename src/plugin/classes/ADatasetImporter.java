@@ -3,7 +3,7 @@
         ADatasetImporter.java
  *   
     Revision:
-        1.1.0.10
+        1.1.1.0
  * 
     Description:
         Abstract basis class which all data set importers should be inherited from.
@@ -18,6 +18,7 @@
 package plugin.classes;
 
 import bio.gene.Dataset;
+import bio.gene.GeneEntry;
 import java.io.File;
 import plugin.PluginType;
 
@@ -62,4 +63,56 @@ public abstract class ADatasetImporter implements IGAPlugin
      *  @return
      */
     public abstract Dataset ImportDataset(File[] files, String strParams);
-}
+    
+    
+    /**
+     *  Imports the specified files and passes the gene entries one at a time
+     *  to the consumer, as soon as they are read. The files are handled as in
+     *  ImportDataset. If the consumer does not accept a gene entry, the import
+     *  is stopped and the method returns false.
+     *
+     *  The default implementation imports the complete dataset first. The
+     *  importers, which are able to read the files gene by gene, should
+     *  override this method and implement ImportDataset using collectGenes.
+     *
+     *  @param files        files to import
+     *  @param strParams    additional parameters. Can be empty or null.
+     *  @param consumer
+     *  @return
+     */
+    public boolean ImportGenes(File[] files, String strParams, IGeneConsumer consumer)
+    {
+        Dataset ds = ImportDataset(files, strParams);
+        if(ds==null)
+            return true;
+        for(int i=0;i<ds.getGenesCount();i++)
+        {
+            if(!consumer.acceptGene(ds.getGeneEntry(i)))
+                return false;
+        }
+        return true;
+    }
+    
+    
+    /**
+     *  Imports the specified files using ImportGenes and combines the gene
+     *  entries into one dataset.
+     * 
+     *  @param files
+     *  @param strParams
+     *  @return
+     */
+    protected Dataset collectGenes(File[] files, String strParams)
+    {
+        final Dataset ds = new Dataset();
+        ImportGenes(files, strParams, new IGeneConsumer()
+        {
+            public boolean acceptGene(GeneEntry ge)
+            {
+                ds.addGene(ge);
+                return true;
+            }
+        });
+        return ds;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,211 @@
+/*
+    File:
+        GenePipe.java
+ *
+    Revision:
+        1.0.0.3
+ *
+    Description:
+        Bounded queue between a streaming dataset importer and the code using
+        the imported genes. The importer runs in its own thread and is blocked
+        as soon as the specified number of gene entries is waiting, thus the
+        genes can be processed while the import is still running and the
+        memory demand is limited by the capacity of the pipe rather than by
+        the size of the imported files.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import bio.gene.GeneEntry;
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+public class GenePipe implements IGeneConsumer
+{
+    // Marks the end of the import.
+    private static final GeneEntry END = new GeneEntry("", "");
+
+    private ArrayBlockingQueue<GeneEntry> queue = null;
+    private Thread importer                     = null;
+    private volatile boolean bClosed            = false;
+    private volatile boolean bEnd               = false;
+    private volatile String strLastError        = null;
+    private PluginMetrics.Call call             = null;     // Used by the importer thread only.
+    private long tLast                          = 0;        // End of the last gene entry.
+
+
+    /**
+     *  Creates the pipe, which holds at most nCapacity gene entries.
+     *
+     *  @param nCapacity
+     */
+    public GenePipe(int nCapacity)
+    {
+        queue = new ArrayBlockingQueue<GeneEntry>(Math.max(nCapacity, 1));
+    }
+
+    /**
+     *  Starts importing the files using the specified importer in a new thread.
+     *
+     *  @param imp
+     *  @param files
+     *  @param strParams
+     */
+    public void start(ADatasetImporter imp, File[] files, String strParams)
+    {
+        start(imp, files, strParams, null);
+    }
+
+    /**
+     *  Starts importing the files using the specified importer in a new thread.
+     *  If metrics is not null, the import and the time needed to read every
+     *  gene entry are recorded.
+     *
+     *  @param imp
+     *  @param files
+     *  @param strParams
+     *  @param metrics
+     */
+    public synchronized void start(final ADatasetImporter imp, final File[] files, final String strParams, final PluginMetrics metrics)
+    {
+        if(importer!=null)
+            throw new IllegalStateException("The import has already been started");
+        importer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                if(metrics!=null)
+                {
+                    call = metrics.begin(imp);
+                    for(File f:files)
+                        call.addBytesIn(f.length());
+                    tLast = System.nanoTime();
+                }
+                boolean bSuccess = false;
+                try
+                {
+                    bSuccess = imp.ImportGenes(files, strParams, GenePipe.this);
+                    strLastError = imp.GetLastError();
+                }
+                catch(RuntimeException e)
+                {
+                    strLastError = (e.getMessage()!=null) ? e.getMessage() : e.toString();
+                }
+                finally
+                {
+                    // Some importers report an empty error string on success,
+                    // thus the result of ImportGenes decides.
+                    if(call!=null)
+                        metrics.end(call, bSuccess, 0);
+                    finish();
+                }
+            }
+        }, "Gene importer");
+        importer.setDaemon(true);
+        importer.start();
+    }
+
+    /**
+     *  Waits until the pipe can accept the gene entry and adds it to the pipe.
+     *  Returns false if the pipe was closed.
+     *
+     *  @param ge
+     *  @return
+     */
+    public boolean acceptGene(GeneEntry ge)
+    {
+        if(ge==null)
+            return !bClosed;
+        // The time waiting for the consumer is not counted.
+        if(call!=null)
+            call.addGene(ge, System.nanoTime()-tLast);
+        try
+        {
+            while(!bClosed)
+            {
+                if(queue.offer(ge, 100, TimeUnit.MILLISECONDS))
+                {
+                    tLast = System.nanoTime();
+                    return true;
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     *  Returns the next imported gene entry. The method waits until the gene
+     *  entry is available. If the import is finished, null is returned.
+     *
+     *  @return
+     */
+    public GeneEntry next()
+    {
+        if(bEnd)
+            return null;
+        try
+        {
+            GeneEntry ge = queue.take();
+            if(ge==END)
+            {
+                bEnd = true;
+                return null;
+            }
+            return ge;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     *  Stops the import and discards the gene entries not yet retrieved.
+     */
+    public void close()
+    {
+        bClosed = true;
+        bEnd = true;
+        queue.clear();
+    }
+
+    /**
+     *  Returns the last error reported by the importer, or null if the
+     *  import is not finished yet.
+     *
+     *  @return
+     */
+    public String getLastError()
+    {
+        return strLastError;
+    }
+
+    private void finish()
+    {
+        try
+        {
+            while(!bClosed)
+            {
+                if(queue.offer(END, 100, TimeUnit.MILLISECONDS))
+                    return;
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
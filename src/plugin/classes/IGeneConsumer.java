@@ -0,0 +1,40 @@
+/*
+    File:
+        IGeneConsumer.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Receives the gene entries from a streaming dataset importer one at a
+        time, as soon as they are completely read.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import bio.gene.GeneEntry;
+
+public interface IGeneConsumer
+{
+    /**
+     *  Accepts the next gene entry. The method may block until the consumer
+     *  is able to accept the gene entry, thus limiting the number of gene
+     *  entries held in memory. If the method returns false, the importer stops
+     *  the import.
+     *
+     *  Remarks:
+     *      A gene may be passed several times, if its strain entries are not
+     *      stored together in the imported files. Dataset.addGene combines
+     *      such gene entries.
+     *
+     *  @param ge
+     *  @return
+     */
+    public boolean acceptGene(GeneEntry ge);
+}
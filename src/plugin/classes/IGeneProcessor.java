@@ -0,0 +1,39 @@
+/*
+    File:
+        IGeneProcessor.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Processes a single gene entry. The interface is used by the data set
+        analyzers to split the analysis into independent per-gene tasks, which
+        can be executed concurrently.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import bio.gene.GeneEntry;
+
+public interface IGeneProcessor
+{
+    /**
+     *  Processes the gene entry and returns the result string or null if the
+     *  gene entry cannot be analyzed and should be skipped.
+     *
+     *  Remarks:
+     *      The method can be called simultaneously from different threads for
+     *      different gene entries. Thus, the implementation must not modify
+     *      any state shared between the genes.
+     *
+     *  @param ge
+     *  @return
+     */
+    public String processGene(GeneEntry ge);
+}
@@ -0,0 +1,41 @@
+/*
+    File:
+        IResultSink.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Receives the results of an analysis as they are computed, e.g. one
+        line per gene entry, instead of the complete results at the end of the
+        analysis.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import java.io.IOException;
+
+public interface IResultSink
+{
+    /**
+     *  Appends the text to the results. The text may contain several lines
+     *  separated by '\n' and does not need to end with a line separator.
+     *
+     *  @param strText
+     *  @throws java.io.IOException
+     */
+    public void print(String strText) throws IOException;
+
+    /**
+     *  Finishes the results. No text can be appended afterwards.
+     *
+     *  @throws java.io.IOException
+     */
+    public void close() throws IOException;
+}
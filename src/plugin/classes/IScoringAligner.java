@@ -0,0 +1,41 @@
+/*
+    File:
+        IScoringAligner.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Aligner, which is able to compute the alignment score without the
+        traceback. The gene fusioner uses this interface to score many pairs
+        of genes concurrently and only aligns the pairs, which are fused.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import bio.gene.StrainEntry;
+
+public interface IScoringAligner extends IAligner
+{
+    /**
+     *  Returns the score of the Alignment, which alignStrains would return for
+     *  the same entries, or Float.NaN if the entries cannot be aligned. The
+     *  parameters are handled as in alignStrains.
+     *
+     *  Remarks:
+     *      Once the parameters are set, the method can be called simultaneously
+     *      from different threads. It must not show any dialogs except for the
+     *      options dialog.
+     *
+     *  @param entries
+     *  @param strParams
+     *  @return
+     */
+    public float scoreStrains(StrainEntry[] entries, String strParams);
+}
@@ -0,0 +1,71 @@
+/*
+    File:
+        MultiResultSink.java
+ *
+    Revision:
+        1.0.0.1
+ *
+    Description:
+        Passes the analysis results to several result sinks, e.g. to a file
+        and to the results window.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import java.io.IOException;
+import java.util.Vector;
+
+
+public class MultiResultSink implements IResultSink
+{
+    private Vector<IResultSink> sinks = new Vector<IResultSink>();
+
+
+    /**
+     *  Adds the result sink.
+     *
+     *  @param sink
+     */
+    public void add(IResultSink sink)
+    {
+        if(sink!=null)
+            sinks.add(sink);
+    }
+
+    public void print(String strText) throws IOException
+    {
+        for(IResultSink sink:sinks)
+            sink.print(strText);
+    }
+
+    /**
+     *  Closes all result sinks. If a sink cannot be closed, the remaining
+     *  sinks are closed anyway and the first exception is rethrown.
+     *
+     *  @throws java.io.IOException
+     */
+    public void close() throws IOException
+    {
+        IOException ex = null;
+        for(IResultSink sink:sinks)
+        {
+            try
+            {
+                sink.close();
+            }
+            catch(IOException e)
+            {
+                if(ex==null)
+                    ex = e;
+            }
+        }
+        if(ex!=null)
+            throw ex;
+    }
+}
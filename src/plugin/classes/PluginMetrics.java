@@ -0,0 +1,482 @@
+/*
+    File:
+        PluginMetrics.java
+ *
+    Revision:
+        1.0.0.2
+ *
+    Description:
+        Execution metrics of the plugins. The kernel wraps every call of a
+        plugin with begin and end, which record the elapsed and the CPU time,
+        the number of processed genes, the number of bytes read and written,
+        the allocated memory and the garbage collections during the call.
+        The metrics are accumulated per plugin.
+
+        The genes processed using ADatasetAnalyzer.processGenes and the genes
+        imported through a GenePipe are additionally timed one by one. Their
+        times are collected in a histogram and the slowest genes are kept,
+        thus the pathological genes can be found.
+
+    Note:
+        The allocated memory and the CPU time are only available if the JVM
+        supports measuring them per thread. Otherwise they are reported as -1.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import bio.gene.GeneEntry;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.Vector;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+
+public class PluginMetrics
+{
+    // Number of the histogram buckets. The bucket i holds the genes processed
+    // in less than 2^(i+1) microseconds, the last bucket holds all slower genes.
+    public static final int HISTOGRAM_SIZE  = 32;
+    // Number of the slowest genes kept per plugin.
+    public static final int SLOWEST_GENES   = 20;
+
+    // Call in progress on the current thread.
+    private static final ThreadLocal<Call> current = new ThreadLocal<Call>();
+
+    /**
+     *  Time needed to process a single gene.
+     */
+    public static class GeneTiming implements Comparable<GeneTiming>
+    {
+        public final String strGene;
+        public final long nTime;    // Nanoseconds.
+
+        public GeneTiming(String strGene, long nTime)
+        {
+            this.strGene = strGene;
+            this.nTime = nTime;
+        }
+
+        public int compareTo(GeneTiming gt)
+        {
+            return (nTime<gt.nTime) ? -1 : ((nTime==gt.nTime) ? 0 : 1);
+        }
+    }
+
+    /**
+     *  Metrics of a single call of a plugin. The gene processors and the
+     *  result sinks wrapped by the call may be used from any thread.
+     */
+    public static class Call
+    {
+        private IGAPlugin plugin    = null;
+        private Thread owner        = null;
+        private long t0             = 0;
+        private long cpu0           = 0;
+        private long alloc0         = 0;
+        private long gcCount0       = 0;
+        private long gcTime0        = 0;
+
+        private long nGenes         = 0;
+        private long nWorkerCpu     = 0;    // CPU time of the other threads.
+        private long nWorkerAlloc   = 0;    // Memory allocated by the other threads.
+        private long nBytesIn       = 0;
+        private long nBytesOut      = 0;
+        private long[] histogram    = new long[HISTOGRAM_SIZE];
+        private PriorityQueue<GeneTiming> slowest = new PriorityQueue<GeneTiming>();
+
+        private Call(IGAPlugin plugin)
+        {
+            this.plugin = plugin;
+            owner = Thread.currentThread();
+            long[] gc = getGarbageCollections();
+            gcCount0 = gc[0];
+            gcTime0 = gc[1];
+            alloc0 = getAllocatedBytes();
+            cpu0 = getCpuTime();
+            t0 = System.nanoTime();
+        }
+
+        /**
+         *  Returns the gene processor, which records the time needed to
+         *  process every gene using the specified gene processor.
+         *
+         *  @param gp
+         *  @return
+         */
+        public IGeneProcessor wrap(final IGeneProcessor gp)
+        {
+            return new IGeneProcessor()
+            {
+                public String processGene(GeneEntry ge)
+                {
+                    boolean bWorker = (Thread.currentThread()!=owner);
+                    long alloc = (bWorker) ? getAllocatedBytes() : -1;
+                    long cpu = (bWorker) ? getCpuTime() : -1;
+                    long t = System.nanoTime();
+                    String strRes = gp.processGene(ge);
+                    t = System.nanoTime()-t;
+                    addGene(ge, t, (cpu<0) ? 0 : getCpuTime()-cpu, (alloc<0) ? 0 : getAllocatedBytes()-alloc);
+                    return strRes;
+                }
+            };
+        }
+
+        /**
+         *  Records the time needed to process the gene entry.
+         *
+         *  @param ge
+         *  @param nTime    elapsed time in nanoseconds
+         */
+        public void addGene(GeneEntry ge, long nTime)
+        {
+            addGene(ge, nTime, 0, 0);
+        }
+
+        public synchronized void addBytesIn(long nBytes)
+        {
+            nBytesIn += nBytes;
+        }
+
+        public synchronized void addBytesOut(long nBytes)
+        {
+            nBytesOut += nBytes;
+        }
+
+        private synchronized void addGene(GeneEntry ge, long nTime, long nCpu, long nAlloc)
+        {
+            nGenes++;
+            nWorkerCpu += nCpu;
+            nWorkerAlloc += nAlloc;
+            histogram[getBucket(nTime)]++;
+            if(slowest.size()<SLOWEST_GENES || slowest.peek().nTime<nTime)
+            {
+                slowest.add(new GeneTiming(ge.getCommonName(), nTime));
+                if(slowest.size()>SLOWEST_GENES)
+                    slowest.poll();
+            }
+        }
+    }
+
+    /**
+     *  Accumulated metrics of a plugin.
+     */
+    private static class Entry
+    {
+        String strType      = null;
+        String strName      = null;
+        long nCalls         = 0;
+        long nFailures      = 0;
+        long nGenes         = 0;
+        long nTime          = 0;
+        long nCpuTime       = 0;
+        long nAllocated     = 0;
+        long nGcCount       = 0;
+        long nGcTime        = 0;
+        long nBytesIn       = 0;
+        long nBytesOut      = 0;
+        long[] histogram    = new long[HISTOGRAM_SIZE];
+        PriorityQueue<GeneTiming> slowest = new PriorityQueue<GeneTiming>();
+    }
+
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+
+    /**
+     *  Starts recording the call of the plugin on the current thread.
+     *
+     *  @param plugin
+     *  @return
+     */
+    public Call begin(IGAPlugin plugin)
+    {
+        Call call = new Call(plugin);
+        current.set(call);
+        return call;
+    }
+
+    /**
+     *  Finishes recording the call and adds its metrics to the metrics of the
+     *  plugin. If no gene was timed during the call, nGenes is used as the
+     *  number of processed genes.
+     *
+     *  @param call
+     *  @param bSuccess whether or not the call succeeded
+     *  @param nGenes   number of genes processed by the call
+     */
+    public void end(Call call, boolean bSuccess, long nGenes)
+    {
+        long nTime = System.nanoTime()-call.t0;
+        long cpu = getCpuTime();
+        long alloc = getAllocatedBytes();
+        long[] gc = getGarbageCollections();
+        if(current.get()==call)
+            current.remove();
+        synchronized(this)
+        {
+            String strKey = call.plugin.GetType()+"\u0000"+call.plugin.GetName();
+            Entry e = entries.get(strKey);
+            if(e==null)
+            {
+                e = new Entry();
+                e.strType = call.plugin.GetType().toString();
+                e.strName = call.plugin.GetName();
+                entries.put(strKey, e);
+            }
+            synchronized(call)
+            {
+                e.nCalls++;
+                if(!bSuccess)
+                    e.nFailures++;
+                e.nGenes += (call.nGenes>0) ? call.nGenes : nGenes;
+                e.nTime += nTime;
+                e.nCpuTime = (cpu<0 || e.nCpuTime<0) ? -1 : e.nCpuTime+cpu-call.cpu0+call.nWorkerCpu;
+                e.nAllocated = (alloc<0 || e.nAllocated<0) ? -1 : e.nAllocated+alloc-call.alloc0+call.nWorkerAlloc;
+                e.nGcCount += gc[0]-call.gcCount0;
+                e.nGcTime += gc[1]-call.gcTime0;
+                e.nBytesIn += call.nBytesIn;
+                e.nBytesOut += call.nBytesOut;
+                for(int i=0;i<HISTOGRAM_SIZE;i++)
+                    e.histogram[i] += call.histogram[i];
+                for(GeneTiming gt:call.slowest)
+                {
+                    e.slowest.add(gt);
+                    if(e.slowest.size()>SLOWEST_GENES)
+                        e.slowest.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     *  Returns the call in progress on the current thread or null.
+     *
+     *  @return
+     */
+    public static Call getCurrentCall()
+    {
+        return current.get();
+    }
+
+    /**
+     *  Removes all recorded metrics.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     *  Returns the human readable report of the metrics of all plugins.
+     *
+     *  @return
+     */
+    public synchronized String getReport()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-9s %6s %6s %8s %10s %10s %10s %10s %6s %8s %10s %10s  %s%n",
+                  "Type", "Calls", "Failed", "Genes", "Time [s]", "CPU [s]", "ms/gene",
+                  "Alloc [MB]", "GCs", "GC [ms]", "In [KB]", "Out [KB]", "Plugin"));
+        for(Entry e:entries.values())
+        {
+            sb.append(String.format("%-9s %6d %6d %8d %10.3f %10s %10.3f %10s %6d %8d %10d %10d  %s%n",
+                      e.strType, e.nCalls, e.nFailures, e.nGenes, e.nTime/1e9,
+                      (e.nCpuTime<0) ? "-" : String.format("%.3f", e.nCpuTime/1e9),
+                      (e.nGenes>0) ? e.nTime/1e6/e.nGenes : 0.0,
+                      (e.nAllocated<0) ? "-" : String.format("%.1f", e.nAllocated/1048576.0),
+                      e.nGcCount, e.nGcTime, e.nBytesIn/1024, e.nBytesOut/1024, e.strName));
+        }
+        for(Entry e:entries.values())
+        {
+            GeneTiming[] genes = getSlowestGenes(e);
+            if(genes.length==0)
+                continue;
+            sb.append(String.format("%n%s %s: median %s, 90%% %s, 99%% %s per gene%n", e.strType, e.strName,
+                      formatBound(getPercentile(e.histogram, 0.5)),
+                      formatBound(getPercentile(e.histogram, 0.9)),
+                      formatBound(getPercentile(e.histogram, 0.99))));
+            for(GeneTiming gt:genes)
+                sb.append(String.format("    %-30s %10.3f ms%n", gt.strGene, gt.nTime/1e6));
+        }
+        return sb.toString();
+    }
+
+    /**
+     *  Writes the metrics of all plugins into the XML file.
+     *
+     *  @param file
+     *  @throws java.io.IOException
+     */
+    public synchronized void writeReport(File file) throws IOException
+    {
+        Element root = new Element("metrics");
+        for(Entry e:entries.values())
+        {
+            Element el = new Element("plugin");
+            el.setAttribute("type", e.strType);
+            el.setAttribute("name", e.strName);
+            el.setAttribute("calls", Long.toString(e.nCalls));
+            el.setAttribute("failures", Long.toString(e.nFailures));
+            el.setAttribute("genes", Long.toString(e.nGenes));
+            el.setAttribute("time_ns", Long.toString(e.nTime));
+            el.setAttribute("cpu_ns", Long.toString(e.nCpuTime));
+            el.setAttribute("allocated_bytes", Long.toString(e.nAllocated));
+            el.setAttribute("gc_count", Long.toString(e.nGcCount));
+            el.setAttribute("gc_time_ms", Long.toString(e.nGcTime));
+            el.setAttribute("bytes_in", Long.toString(e.nBytesIn));
+            el.setAttribute("bytes_out", Long.toString(e.nBytesOut));
+            Element hist = new Element("histogram");
+            hist.setAttribute("unit", "us");
+            for(int i=0;i<HISTOGRAM_SIZE;i++)
+            {
+                if(e.histogram[i]==0)
+                    continue;
+                Element bucket = new Element("bucket");
+                bucket.setAttribute("below", (i<HISTOGRAM_SIZE-1) ? Long.toString(1L<<(i+1)) : "inf");
+                bucket.setAttribute("count", Long.toString(e.histogram[i]));
+                hist.addContent(bucket);
+            }
+            el.addContent(hist);
+            Element slow = new Element("slowest");
+            for(GeneTiming gt:getSlowestGenes(e))
+            {
+                Element gene = new Element("gene");
+                gene.setAttribute("name", (gt.strGene!=null) ? gt.strGene : "");
+                gene.setAttribute("time_ns", Long.toString(gt.nTime));
+                slow.addContent(gene);
+            }
+            el.addContent(slow);
+            root.addContent(el);
+        }
+        FileWriter fw = new FileWriter(file);
+        try
+        {
+            new XMLOutputter(Format.getPrettyFormat()).output(new Document(root), fw);
+        }
+        finally
+        {
+            fw.close();
+        }
+    }
+
+    /**
+     *  Returns the slowest genes of the plugin sorted by the time descending.
+     */
+    private static GeneTiming[] getSlowestGenes(Entry e)
+    {
+        Vector<GeneTiming> tmp = new Vector<GeneTiming>(e.slowest);
+        GeneTiming[] genes = tmp.toArray(new GeneTiming[tmp.size()]);
+        Arrays.sort(genes);
+        for(int i=0;i<genes.length/2;i++)
+        {
+            GeneTiming gt = genes[i];
+            genes[i] = genes[genes.length-1-i];
+            genes[genes.length-1-i] = gt;
+        }
+        return genes;
+    }
+
+    /**
+     *  Returns the index of the histogram bucket of the time.
+     */
+    private static int getBucket(long nTime)
+    {
+        long us = nTime/1000;
+        if(us<2)
+            return 0;
+        return Math.min(63-Long.numberOfLeadingZeros(us), HISTOGRAM_SIZE-1);
+    }
+
+    /**
+     *  Returns the index of the bucket containing the specified percentile.
+     */
+    private static int getPercentile(long[] histogram, double p)
+    {
+        long n = 0;
+        for(long c:histogram)
+            n += c;
+        long nLimit = (long)Math.ceil(p*n);
+        long sum = 0;
+        for(int i=0;i<histogram.length;i++)
+        {
+            sum += histogram[i];
+            if(sum>=nLimit)
+                return i;
+        }
+        return histogram.length-1;
+    }
+
+    private static String formatBound(int iBucket)
+    {
+        if(iBucket>=HISTOGRAM_SIZE-1)
+            return "> "+formatTime(1L<<(HISTOGRAM_SIZE-1));
+        return "< "+formatTime(1L<<(iBucket+1));
+    }
+
+    private static String formatTime(long us)
+    {
+        if(us<1000)
+            return us+" us";
+        if(us<1000000)
+            return String.format("%.1f ms", us/1e3);
+        return String.format("%.1f s", us/1e6);
+    }
+
+    /**
+     *  Returns the memory allocated by the current thread or -1 if it cannot
+     *  be measured.
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean tb = ManagementFactory.getThreadMXBean();
+        if(tb instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean stb = (com.sun.management.ThreadMXBean)tb;
+            if(stb.isThreadAllocatedMemorySupported() && stb.isThreadAllocatedMemoryEnabled())
+                return stb.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     *  Returns the CPU time of the current thread or -1 if it cannot be
+     *  measured.
+     */
+    private static long getCpuTime()
+    {
+        ThreadMXBean tb = ManagementFactory.getThreadMXBean();
+        if(tb.isCurrentThreadCpuTimeSupported() && tb.isThreadCpuTimeEnabled())
+            return tb.getCurrentThreadCpuTime();
+        return -1;
+    }
+
+    /**
+     *  Returns the total number and the total time in milliseconds of the
+     *  garbage collections.
+     */
+    private static long[] getGarbageCollections()
+    {
+        long[] res = {0, 0};
+        for(GarbageCollectorMXBean gc:ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            res[0] += Math.max(gc.getCollectionCount(), 0);
+            res[1] += Math.max(gc.getCollectionTime(), 0);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,525 @@
+/*
+    File:
+        ResultCache.java
+ *
+    Revision:
+        1.0.0.3
+ *
+    Description:
+        Cache of the per-gene analysis results. The results are identified by
+        the hash of the gene entry (names, populations, regions and sequences)
+        and the hash of the analysis (analyzer, its version, its options, the
+        codon table and the locale). Thus, if the same analysis is performed on
+        an overlapping selection of genes, only the new genes are analyzed.
+        The codon table is identified by its lookup tables rather than by its
+        name, thus an edited custom codon table does not reuse the results.
+        The version of the analyzer is the modification time of its class, thus
+        the results of an updated analyzer are not reused either.
+
+        The cache is limited by the total number of characters of the results
+        and removes the least recently used results first. The results are
+        appended to the cache file, which is compacted when it grows twice as
+        large as the cache, thus they are available in the next session.
+        The cache file is only read when the cache is used for the first time,
+        thus the sessions, which do not analyze genes, do not load it.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import bio.gene.GeneEntry;
+import bio.gene.GeneRegion;
+import bio.gene.StrainEntry;
+import bio.gene.dna.CodonLookup;
+import bio.gene.dna.ICodonTable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import plugin.AInitData;
+
+
+public class ResultCache
+{
+    // Version of the analysis keys. Must be increased, when the format of the
+    // results or of the keys changes.
+    private static final int KEY_VERSION    = 2;
+    // Marks the genes, which cannot be analyzed.
+    private static final String NORESULT    = "\u0000";
+    private static final Charset UTF8       = Charset.forName("UTF-8");
+    // Options fields, which do not influence the results.
+    private static final String[] IGNORED   = {"strOutput", "bShowRes"};
+
+    private LinkedHashMap<String, String> results = null;
+    private long nChars             = 0;        // Total number of cached characters.
+    private long nCapacity          = 0;        // Maximal number of cached characters.
+    private File file               = null;     // Cache file or null.
+    private DataOutputStream log    = null;
+    private long nLogged            = 0;        // Number of characters in the cache file.
+    private boolean bLoaded         = false;    // Whether or not the cache file was read.
+
+
+    /**
+     *  Creates the cache, which keeps at most nCapacity characters. The results
+     *  stored in the file are loaded, when the cache is used for the first
+     *  time. If file is null, the results are only kept in memory.
+     *
+     *  @param file
+     *  @param nCapacity
+     */
+    public ResultCache(File file, long nCapacity)
+    {
+        this.nCapacity = Math.max(nCapacity, 0);
+        this.file = file;
+        results = new LinkedHashMap<String, String>(1024, 0.75f, true);
+        bLoaded = (file==null);
+    }
+
+    /**
+     *  Returns the gene processor, which returns the cached results of the
+     *  analysis and analyzes only the genes not found in the cache using the
+     *  specified gene processor.
+     *
+     *  @param gp
+     *  @param strAnalysis  key of the analysis as returned by createKey
+     *  @return
+     */
+    public IGeneProcessor wrap(final IGeneProcessor gp, String strAnalysis)
+    {
+        ensureLoaded();
+        final String strPrefix = hash(strAnalysis.getBytes(UTF8));
+        return new IGeneProcessor()
+        {
+            public String processGene(GeneEntry ge)
+            {
+                String strKey = strPrefix+hash(ge);
+                String strRes = get(strKey);
+                if(strRes!=null)
+                    return (strRes.equals(NORESULT)) ? null : strRes;
+                strRes = gp.processGene(ge);
+                put(strKey, (strRes!=null) ? strRes : NORESULT);
+                return strRes;
+            }
+        };
+    }
+
+    /**
+     *  Writes the results added since the last call into the cache file.
+     */
+    public synchronized void flush()
+    {
+        if(log==null)
+            return;
+        try
+        {
+            log.flush();
+        }
+        catch(IOException e)
+        {
+            closeLog();
+        }
+        if(nLogged>2*nCapacity)
+            compact();
+    }
+
+    /**
+     *  Removes all results from the cache and from the cache file.
+     */
+    public synchronized void clear()
+    {
+        results.clear();
+        nChars = 0;
+        bLoaded = true;
+        if(file!=null)
+            compact();
+    }
+
+    /**
+     *  Sets the maximal number of cached characters. If necessary, the least
+     *  recently used results are removed.
+     *
+     *  @param nCapacity
+     */
+    public synchronized void setCapacity(long nCapacity)
+    {
+        this.nCapacity = Math.max(nCapacity, 0);
+        trim();
+    }
+
+    /**
+     *  Creates the key of the analysis from the analyzer and its version, the
+     *  public fields of its options object, the codon table and the locale.
+     *  The output file and the display settings are not part of the key.
+     *
+     *  @param analyzer
+     *  @param options
+     *  @param id
+     *  @return
+     */
+    public static String createKey(IGAPlugin analyzer, Object options, AInitData id)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(KEY_VERSION).append('\u0000');
+        sb.append(analyzer.getClass().getName()).append('\u0000');
+        sb.append(getClassVersion(analyzer.getClass())).append('\u0000');
+        sb.append(analyzer.GetName()).append('\u0000');
+        sb.append((id.ct!=null) ? id.ct.getName() : "").append('\u0000');
+        sb.append((id.ct!=null) ? hash(id.ct) : "").append('\u0000');
+        sb.append(id.locale).append('\u0000');
+        Field[] fields = options.getClass().getFields();
+        Arrays.sort(fields, new Comparator<Field>()
+        {
+            public int compare(Field f1, Field f2)
+            {
+                return f1.getName().compareTo(f2.getName());
+            }
+        });
+        for(Field f:fields)
+        {
+            if(Arrays.asList(IGNORED).contains(f.getName()))
+                continue;
+            sb.append(f.getName()).append('=');
+            try
+            {
+                Object val = f.get(options);
+                if(val!=null && val.getClass().isArray())
+                {
+                    for(int i=0;i<Array.getLength(val);i++)
+                        sb.append(Array.get(val, i)).append(',');
+                }
+                else
+                    sb.append(val);
+            }
+            catch(IllegalAccessException e)
+            {
+                sb.append('?');
+            }
+            sb.append('\u0000');
+        }
+        return sb.toString();
+    }
+
+    /**
+     *  Returns the hash of the gene entry, which covers the names of the gene,
+     *  the strains and the populations as well as the regions and their
+     *  sequences.
+     *
+     *  @param ge
+     *  @return
+     */
+    public static String hash(GeneEntry ge)
+    {
+        MessageDigest md = createDigest();
+        update(md, ge.getCommonName());
+        update(md, ge.getAlias());
+        for(int i=0;i<ge.getStrainsCount();i++)
+        {
+            StrainEntry se = ge.getStrainEntry(i);
+            update(md, se.getSpeciesName());
+            update(md, se.getStrainName());
+            update(md, se.getChromosome());
+            for(String strPop:se.listPopulations())
+                update(md, strPop);
+            for(int n=0;n<se.getRegionsCount();n++)
+            {
+                GeneRegion r = se.getRegion(n);
+                update(md, r.getType());
+                update(md, r.getStart()+"-"+r.getEnd());
+                update(md, r.getSequence());
+            }
+            update(md, "");
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     *  Returns the hash of the lookup tables of the codon table, i.e. of the
+     *  amino acids, the fold families, the terminal and start codons and the
+     *  synonymy of the codons.
+     *
+     *  @param ct
+     *  @return
+     */
+    public static String hash(ICodonTable ct)
+    {
+        CodonLookup cl = ct.getLookup();
+        MessageDigest md = createDigest();
+        byte[] syn = new byte[CodonLookup.CODONS];
+        for(int i=0;i<CodonLookup.CODONS;i++)
+        {
+            update(md, cl.getOneLetterCode(cl.getAminoAcid(i)));
+            md.update((byte)cl.getFoldFamily(i));
+            md.update((byte)((cl.isTerminal(i) ? 1 : 0)|(cl.isStartCodon(i) ? 2 : 0)));
+            for(int j=0;j<CodonLookup.CODONS;j++)
+                syn[j] = (byte)(cl.areSynonymous(i, j) ? 1 : 0);
+            md.update(syn);
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     *  Returns the modification time of the class file of the specified class
+     *  or 0 if it cannot be determined.
+     */
+    private static long getClassVersion(Class<?> c)
+    {
+        URL url = c.getResource(c.getSimpleName()+".class");
+        if(url==null)
+            return 0;
+        try
+        {
+            return url.openConnection().getLastModified();
+        }
+        catch(IOException e)
+        {
+            return 0;
+        }
+    }
+
+    private synchronized String get(String strKey)
+    {
+        return results.get(strKey);
+    }
+
+    private synchronized void put(String strKey, String strRes)
+    {
+        if(strRes.length()>nCapacity)
+            return;
+        add(strKey, strRes);
+        trim();
+        if(log!=null)
+        {
+            try
+            {
+                write(log, strKey, strRes);
+                nLogged += strRes.length();
+            }
+            catch(IOException e)
+            {
+                closeLog();
+            }
+        }
+    }
+
+    private void add(String strKey, String strRes)
+    {
+        String old = results.put(strKey, strRes);
+        if(old!=null)
+            nChars -= old.length();
+        nChars += strRes.length();
+    }
+
+    private void trim()
+    {
+        Iterator<Map.Entry<String, String>> it = results.entrySet().iterator();
+        while(nChars>nCapacity && it.hasNext())
+        {
+            nChars -= it.next().getValue().length();
+            it.remove();
+        }
+    }
+
+    /**
+     *  Loads the cache file, if it was not loaded yet, and opens it for
+     *  appending. The file is only rewritten, if it has grown twice as large
+     *  as the cache or if it is damaged, respectively created, if it does not
+     *  exist.
+     */
+    private synchronized void ensureLoaded()
+    {
+        if(bLoaded)
+            return;
+        bLoaded = true;
+        if(!file.isFile() || !load() || nLogged>2*nCapacity)
+        {
+            compact();
+            return;
+        }
+        try
+        {
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+        catch(IOException e)
+        {
+            // Keep the results in memory only.
+            log = null;
+        }
+    }
+
+    /**
+     *  Loads the results from the cache file. If the file is damaged, the
+     *  results read so far are kept.
+     *
+     *  @return false if the file exists and is damaged, true otherwise.
+     */
+    private boolean load()
+    {
+        nLogged = 0;
+        if(!file.isFile())
+            return true;
+        // Number of bytes of the complete entries read so far.
+        long nValid = 0;
+        final long[] nRead = {0};
+        try
+        {
+            DataInputStream in = new DataInputStream(new FilterInputStream(new BufferedInputStream(new FileInputStream(file)))
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    int b = super.read();
+                    if(b>-1)
+                        nRead[0]++;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buf, int iOffset, int nLength) throws IOException
+                {
+                    int n = super.read(buf, iOffset, nLength);
+                    if(n>0)
+                        nRead[0] += n;
+                    return n;
+                }
+            });
+            try
+            {
+                while(true)
+                {
+                    String strKey = in.readUTF();
+                    byte[] buf = new byte[in.readInt()];
+                    in.readFully(buf);
+                    String strRes = new String(buf, UTF8);
+                    add(strKey, strRes);
+                    trim();
+                    nLogged += strRes.length();
+                    nValid = nRead[0];
+                }
+            }
+            catch(EOFException e)
+            {
+                // End of the file.
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch(IOException e)
+        {
+            // Keep the results read so far.
+        }
+        catch(RuntimeException e)
+        {
+            // Damaged file, e.g. invalid length of the result.
+        }
+        return nValid==file.length();
+    }
+
+    /**
+     *  Rewrites the cache file with the cached results in the order of their
+     *  last use and reopens it for appending.
+     */
+    private void compact()
+    {
+        closeLog();
+        File tmp = new File(file.getPath()+".tmp");
+        try
+        {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if(dir!=null)
+                dir.mkdirs();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            for(Map.Entry<String, String> e:results.entrySet())
+                write(out, e.getKey(), e.getValue());
+            out.close();
+            if( (file.exists() && !file.delete()) || !tmp.renameTo(file) )
+                throw new IOException("The cache file cannot be replaced");
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            nLogged = nChars;
+        }
+        catch(IOException e)
+        {
+            // Keep the results in memory only.
+            tmp.delete();
+            closeLog();
+        }
+    }
+
+    private void closeLog()
+    {
+        if(log==null)
+            return;
+        try
+        {
+            log.close();
+        }
+        catch(IOException e)
+        {
+        }
+        log = null;
+    }
+
+    private static void write(DataOutputStream out, String strKey, String strRes) throws IOException
+    {
+        byte[] buf = strRes.getBytes(UTF8);
+        out.writeUTF(strKey);
+        out.writeInt(buf.length);
+        out.write(buf);
+    }
+
+    private static void update(MessageDigest md, String str)
+    {
+        if(str!=null)
+            md.update(str.getBytes(UTF8));
+        md.update((byte)0);
+    }
+
+    private static String hash(byte[] data)
+    {
+        MessageDigest md = createDigest();
+        return toHex(md.digest(data));
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] digest)
+    {
+        StringBuilder sb = new StringBuilder(2*digest.length);
+        for(byte b:digest)
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+    File:
+        ResultFileSink.java
+ *
+    Revision:
+        1.0.0.2
+ *
+    Description:
+        Writes the analysis results into a file through a buffer, thus the
+        results reach the file while the analysis is running. When the sink
+        is closed, the length of the file is added to the bytes written by the
+        plugin call, which created the sink.
+ *
+    Project:
+        GeneAnalyzer 2.2
+ *
+    Copyright:
+        (c) 2008. Sergej Nowoshilow, Biozentrum, Martinsried, Germany.
+ */
+
+package plugin.classes;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+
+public class ResultFileSink implements IResultSink
+{
+    private static final int BUFFER_SIZE = 65536;
+
+    private BufferedWriter out      = null;
+    private File file               = null;
+    private PluginMetrics.Call call = null;     // Call, the written bytes are added to.
+
+
+    /**
+     *  Creates the file. An existing file is overwritten.
+     *
+     *  @param file
+     *  @throws java.io.IOException
+     */
+    public ResultFileSink(File file) throws IOException
+    {
+        out = new BufferedWriter(new FileWriter(file), BUFFER_SIZE);
+        this.file = file;
+        call = PluginMetrics.getCurrentCall();
+    }
+
+    public void print(String strText) throws IOException
+    {
+        out.write(strText);
+    }
+
+    public void close() throws IOException
+    {
+        out.close();
+        // The file length includes the header lines and counts the bytes of
+        // the encoded characters.
+        if(call!=null)
+        {
+            call.addBytesOut(file.length());
+            call = null;
+        }
+    }
+}